@@ -4,8 +4,8 @@ import java.util.Random;
 
 import junit.framework.TestCase;
 
-import static edu.rice.pcdp.PCDP.finish;
-import static edu.rice.pcdp.PCDP.async;
+import static edu.coursera.parallel.AsyncFinish.finish;
+import static edu.coursera.parallel.AsyncFinish.async;
 
 public class BankTransactionsTest extends TestCase {
     private final static int numAccounts = 3_000;
@@ -0,0 +1,135 @@
+package edu.coursera.parallel;
+
+import java.util.Locale;
+
+/**
+ * Static finish and async on a shared TaskRuntime, as drop-in replacements
+ * for those of edu.rice.pcdp.PCDP.
+ * <p>
+ * The runtime is started on first use. Its number of workers is read from
+ * the asyncfinish.numWorkers system property, defaulting to the number of
+ * processors, and its backend from asyncfinish.backend, WORK_STEALING or
+ * VIRTUAL_THREADS ignoring case, defaulting to WORK_STEALING. Since they are
+ * read while a class is initialized, where an exception would leave the
+ * static methods unusable, a value that cannot be used is reported on
+ * standard error and the default is used instead.
+ */
+public final class AsyncFinish {
+    /**
+     * System property giving the number of workers.
+     */
+    public static final String NUM_WORKERS_PROPERTY =
+            "asyncfinish.numWorkers";
+    /**
+     * System property giving the backend.
+     */
+    public static final String BACKEND_PROPERTY = "asyncfinish.backend";
+
+    /**
+     * Default constructor.
+     */
+    private AsyncFinish() {
+    }
+
+    /**
+     * Holder of the shared runtime, created when the holder is first used.
+     */
+    private static final class Holder {
+        /**
+         * The shared runtime.
+         */
+        private static final TaskRuntime RUNTIME = createRuntime();
+    }
+
+    /**
+     * Create the shared runtime from the system properties.
+     *
+     * @return The runtime
+     */
+    private static TaskRuntime createRuntime() {
+        return new TaskRuntime(
+                parseWorkers(System.getProperty(NUM_WORKERS_PROPERTY)),
+                parseBackend(System.getProperty(BACKEND_PROPERTY)));
+    }
+
+    /**
+     * Parse a number of workers.
+     *
+     * @param value Value of the property, may be null
+     * @return The number of workers, the number of processors if value is
+     *         null or not a positive integer
+     */
+    static int parseWorkers(final String value) {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        if (value == null) {
+            return processors;
+        }
+        try {
+            final int workers = Integer.parseInt(value.trim());
+            if (workers > 0) {
+                return workers;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.err.println("Invalid " + NUM_WORKERS_PROPERTY + " " + value
+                + ", using " + processors);
+        return processors;
+    }
+
+    /**
+     * Parse a backend name, ignoring case.
+     *
+     * @param name Value of the property, may be null
+     * @return The backend of that name, WORK_STEALING if there is none or
+     *         this JVM cannot run it
+     */
+    static TaskRuntime.Backend parseBackend(final String name) {
+        final TaskRuntime.Backend fallback = TaskRuntime.Backend.WORK_STEALING;
+        if (name == null) {
+            return fallback;
+        }
+        for (final TaskRuntime.Backend backend
+                : TaskRuntime.Backend.values()) {
+            if (backend.name().equals(name.trim().toUpperCase(Locale.ROOT))) {
+                if (backend == TaskRuntime.Backend.VIRTUAL_THREADS
+                        && !TaskRuntime.isVirtualThreadsSupported()) {
+                    System.err.println("Virtual threads are not supported"
+                            + " by this JVM, using " + fallback);
+                    return fallback;
+                }
+                return backend;
+            }
+        }
+        System.err.println("Unknown " + BACKEND_PROPERTY + " " + name
+                + ", using " + fallback);
+        return fallback;
+    }
+
+    /**
+     * Run body, then wait until every task spawned inside it has completed.
+     *
+     * @param body The body of the finish
+     */
+    public static void finish(final Runnable body) {
+        Holder.RUNTIME.finish(body);
+    }
+
+    /**
+     * Spawn a task in the innermost finish of the calling thread.
+     *
+     * @param task The task
+     */
+    public static void async(final Runnable task) {
+        Holder.RUNTIME.async(task);
+    }
+
+    /**
+     * Get the number of worker threads of the shared runtime.
+     *
+     * @return # of workers
+     */
+    public static int numThreads() {
+        return Holder.RUNTIME.getWorkers();
+    }
+}
@@ -0,0 +1,93 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The state of one finish: how many of the tasks spawned in it have not
+ * completed yet, the thread waiting for them, and the first exception any
+ * of them threw. Tasks only hold a reference to their scope, so spawning
+ * a task allocates nothing for its bookkeeping.
+ */
+final class FinishScope {
+    /**
+     * Number of tasks spawned and not yet completed.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    /**
+     * First exception thrown by the body or a task, later ones being added
+     * to it as suppressed.
+     */
+    private final AtomicReference<Throwable> failure =
+            new AtomicReference<>();
+    /**
+     * Thread running the finish, unparked when the last task completes.
+     */
+    private final Thread waiter;
+
+    /**
+     * Constructor.
+     *
+     * @param setWaiter Thread running the finish
+     */
+    FinishScope(final Thread setWaiter) {
+        this.waiter = setWaiter;
+    }
+
+    /**
+     * Count a task about to be spawned.
+     */
+    void increment() {
+        pending.incrementAndGet();
+    }
+
+    /**
+     * Count a task as completed, waking the waiter if it was the last.
+     */
+    void complete() {
+        if (pending.decrementAndGet() == 0) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Get the number of tasks not yet completed.
+     *
+     * @return # of pending tasks
+     */
+    int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Record an exception thrown by the body or a task.
+     *
+     * @param e The exception
+     */
+    void fail(final Throwable e) {
+        if (!failure.compareAndSet(null, e)) {
+            final Throwable first = failure.get();
+            if (first != e) {
+                synchronized (first) {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rethrow the first exception recorded, if any. Checked exceptions, which
+     * a Runnable can only throw by deceiving the compiler, are wrapped.
+     */
+    void rethrow() {
+        final Throwable e = failure.get();
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof Error) {
+            throw (Error) e;
+        } else if (e != null) {
+            throw new RuntimeException(e);
+        }
+    }
+}
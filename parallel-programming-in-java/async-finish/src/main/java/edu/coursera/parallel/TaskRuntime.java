@@ -0,0 +1,607 @@
+package edu.coursera.parallel;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks spawned with async inside finish scopes, with the programming
+ * model of PCDP: finish runs its body and returns once every task spawned
+ * in it, directly or by those tasks, has completed, rethrowing the first
+ * exception any of them threw.
+ * <p>
+ * With the work-stealing backend each worker thread owns a
+ * WorkStealingDeque. async pushes onto the calling thread's deque, which
+ * allocates nothing beyond the task itself, and the thread pops its own
+ * tasks newest first while idle threads steal the oldest ones. A thread
+ * waiting in finish runs tasks rather than blocking, and only parks, for
+ * a short time, when there is nothing it can take. Threads that are not
+ * workers get a deque of their own while they are inside a finish, so the
+ * workers can steal what they spawn.
+ * <p>
+ * With the virtual-thread backend every task runs on a virtual thread of
+ * its own. That backend needs Thread.startVirtualThread, which is looked
+ * up at run time so that the runtime still builds and runs on Java 8.
+ * <p>
+ * Workers are daemon threads, but close should be called to stop them.
+ */
+public final class TaskRuntime implements AutoCloseable {
+    /**
+     * How tasks are run.
+     */
+    public enum Backend {
+        /**
+         * A fixed set of worker threads stealing from each other's deques.
+         */
+        WORK_STEALING,
+        /**
+         * A virtual thread per task.
+         */
+        VIRTUAL_THREADS
+    }
+
+    /**
+     * Number of times a thread with nothing to run looks for work again
+     * before parking.
+     */
+    static final int SPINS = 64;
+    /**
+     * Longest time a thread waiting in finish parks before looking for
+     * work again, in nanoseconds.
+     */
+    static final long WAIT_PARK_NANOS = 50000L;
+    /**
+     * Longest time an idle worker parks before looking for work again, in
+     * nanoseconds. Workers are normally unparked as soon as work appears;
+     * this bounds the delay if that wakeup is missed.
+     */
+    static final long IDLE_PARK_NANOS = 1000000L;
+
+    /**
+     * Thread.startVirtualThread, or null if this JVM cannot start virtual
+     * threads.
+     */
+    private static final MethodHandle START_VIRTUAL = findStartVirtual();
+
+    /**
+     * How tasks are run.
+     */
+    private final Backend backend;
+    /**
+     * Number of worker threads, the intended parallelism for the
+     * virtual-thread backend.
+     */
+    private final int parallelism;
+    /**
+     * Worker threads, none for the virtual-thread backend.
+     */
+    private final Worker[] workers;
+    /**
+     * Deques of the threads other than workers that are inside a finish.
+     * Replaced, never modified, so thieves can read it without locking.
+     */
+    private volatile WorkStealingDeque[] externals =
+            new WorkStealingDeque[0];
+    /**
+     * Context of each thread that is not a worker.
+     */
+    private final ThreadLocal<Context> contexts =
+            ThreadLocal.withInitial(this::newContext);
+    /**
+     * Number of workers that are about to park or parked.
+     */
+    private final AtomicInteger idle = new AtomicInteger();
+    /**
+     * Worker at which wakeOne starts looking for a parked one.
+     */
+    private final AtomicInteger nextWake = new AtomicInteger();
+    /**
+     * Whether close has been called.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The state a thread keeps while running tasks of this runtime.
+     */
+    private static final class Context {
+        /**
+         * Deque the thread pushes its tasks onto, null for the
+         * virtual-thread backend.
+         */
+        private final WorkStealingDeque deque;
+        /**
+         * Holder for the tasks the thread takes.
+         */
+        private final WorkStealingDeque.Taken taken =
+                new WorkStealingDeque.Taken();
+        /**
+         * Innermost finish the thread is in, null if none.
+         */
+        private FinishScope scope;
+        /**
+         * Number of nested finishes the thread is running.
+         */
+        private int depth;
+        /**
+         * State of the generator picking victims to steal from.
+         */
+        private int seed;
+
+        /**
+         * Constructor.
+         *
+         * @param setDeque Deque of the thread
+         * @param setSeed Initial state of the victim generator, not zero
+         */
+        Context(final WorkStealingDeque setDeque, final int setSeed) {
+            this.deque = setDeque;
+            this.seed = setSeed;
+        }
+
+        /**
+         * Draw the next value of the victim generator, an xorshift.
+         *
+         * @param bound Exclusive upper bound, positive
+         * @return A value from 0 to bound - 1
+         */
+        int nextVictim(final int bound) {
+            int x = seed;
+            x ^= x << 13;
+            x ^= x >>> 17;
+            x ^= x << 5;
+            seed = x;
+            return (x & Integer.MAX_VALUE) % bound;
+        }
+    }
+
+    /**
+     * A worker thread of the work-stealing backend.
+     */
+    private final class Worker extends Thread {
+        /**
+         * State of the worker.
+         */
+        private final Context context;
+        /**
+         * Whether the worker is about to park or parked, so worth waking.
+         */
+        private volatile boolean parked;
+
+        /**
+         * Constructor.
+         *
+         * @param w Index of the worker
+         */
+        Worker(final int w) {
+            super("async-finish-worker-" + w);
+            this.context = new Context(new WorkStealingDeque(), 2 * w + 1);
+            setDaemon(true);
+        }
+
+        /**
+         * Get the runtime the worker belongs to.
+         *
+         * @return The runtime
+         */
+        TaskRuntime getRuntime() {
+            return TaskRuntime.this;
+        }
+
+        @Override
+        public void run() {
+            int misses = 0;
+            while (!closed) {
+                if (take(context)) {
+                    runTaken(context);
+                    misses = 0;
+                } else if (++misses < SPINS) {
+                    Thread.yield();
+                } else {
+                    // Announce the park before the last look for work, so
+                    // that a thread pushing in between sees it
+                    parked = true;
+                    idle.incrementAndGet();
+                    if (!closed && !anyWork()) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    idle.decrementAndGet();
+                    parked = false;
+                    misses = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor for the work-stealing backend, starting the workers.
+     *
+     * @param setWorkers Number of worker threads
+     */
+    public TaskRuntime(final int setWorkers) {
+        this(setWorkers, Backend.WORK_STEALING);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param setWorkers Number of worker threads for the work-stealing
+     *        backend, otherwise the intended parallelism
+     * @param setBackend How tasks are run
+     */
+    public TaskRuntime(final int setWorkers, final Backend setBackend) {
+        if (setWorkers < 1) {
+            throw new IllegalArgumentException("Invalid number of workers: "
+                    + setWorkers);
+        }
+        if (setBackend == null) {
+            throw new IllegalArgumentException("No backend given");
+        }
+        if (setBackend == Backend.VIRTUAL_THREADS && START_VIRTUAL == null) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads are not available on Java "
+                    + System.getProperty("java.version"));
+        }
+        this.backend = setBackend;
+        this.parallelism = setWorkers;
+        if (setBackend == Backend.WORK_STEALING) {
+            this.workers = new Worker[setWorkers];
+            for (int w = 0; w < setWorkers; w++) {
+                workers[w] = new Worker(w);
+            }
+            for (final Worker worker : workers) {
+                worker.start();
+            }
+        } else {
+            this.workers = new Worker[0];
+        }
+    }
+
+    /**
+     * Look up Thread.startVirtualThread and check that it can be called,
+     * which it cannot before Java 21 unless preview features are enabled.
+     *
+     * @return The method, or null if virtual threads are not available
+     */
+    private static MethodHandle findStartVirtual() {
+        try {
+            final MethodHandle start = MethodHandles.publicLookup()
+                    .findStatic(Thread.class, "startVirtualThread",
+                            MethodType.methodType(Thread.class,
+                                    Runnable.class));
+            final Runnable noop = () -> { };
+            final Thread probe = (Thread) start.invokeExact(noop);
+            probe.join();
+            return start;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether this JVM can run the virtual-thread backend.
+     *
+     * @return Whether virtual threads are available
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return START_VIRTUAL != null;
+    }
+
+    /**
+     * Run body, then wait until every task spawned inside it has completed.
+     * If the body or any task threw, the first exception is rethrown once
+     * they all have, with the others added to it as suppressed.
+     *
+     * @param body The body of the finish
+     */
+    public void finish(final Runnable body) {
+        if (closed) {
+            throw new IllegalStateException("Runtime is closed");
+        }
+        final Context context = context();
+        final FinishScope scope = new FinishScope(Thread.currentThread());
+        final FinishScope outer = context.scope;
+        final boolean external = backend == Backend.WORK_STEALING
+                && !isWorker() && context.depth == 0;
+        if (external) {
+            register(context.deque);
+        }
+        context.scope = scope;
+        context.depth++;
+        try {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                scope.fail(e);
+            }
+            if (backend == Backend.WORK_STEALING) {
+                help(context, scope);
+            } else {
+                while (scope.getPending() > 0) {
+                    LockSupport.park(scope);
+                }
+            }
+        } finally {
+            if (external) {
+                drain(context);
+            }
+            context.depth--;
+            context.scope = outer;
+            if (external) {
+                deregister(context.deque);
+            }
+        }
+        scope.rethrow();
+    }
+
+    /**
+     * Spawn a task in the innermost finish of the calling thread, which
+     * may be the finish of the task that is spawning it.
+     *
+     * @param task The task
+     */
+    public void async(final Runnable task) {
+        final Context context = context();
+        final FinishScope scope = context.scope;
+        if (scope == null) {
+            throw new IllegalStateException(
+                    "async must be called inside finish");
+        }
+        scope.increment();
+        if (backend == Backend.WORK_STEALING) {
+            context.deque.push(task, scope);
+            if (idle.get() > 0) {
+                wakeOne();
+            }
+        } else {
+            try {
+                final Runnable run = () -> runTask(context(), task, scope);
+                START_VIRTUAL.invoke(run);
+            } catch (Throwable e) {
+                scope.complete();
+                throw new IllegalStateException(
+                        "Could not start a virtual thread", e);
+            }
+        }
+    }
+
+    /**
+     * Get the number of worker threads, the intended parallelism for the
+     * virtual-thread backend.
+     *
+     * @return # of workers
+     */
+    public int getWorkers() {
+        return parallelism;
+    }
+
+    /**
+     * Get how tasks are run.
+     *
+     * @return The backend
+     */
+    public Backend getBackend() {
+        return backend;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (final Worker worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        for (final Worker worker : workers) {
+            if (worker != Thread.currentThread()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the context of the calling thread.
+     *
+     * @return The context
+     */
+    private Context context() {
+        final Thread thread = Thread.currentThread();
+        if (thread instanceof Worker
+                && ((Worker) thread).getRuntime() == this) {
+            return ((Worker) thread).context;
+        }
+        return contexts.get();
+    }
+
+    /**
+     * Whether the calling thread is a worker of this runtime.
+     *
+     * @return Whether the caller is one of the workers
+     */
+    private boolean isWorker() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof Worker
+                && ((Worker) thread).getRuntime() == this;
+    }
+
+    /**
+     * Create the context of a thread that is not a worker.
+     *
+     * @return The context
+     */
+    private Context newContext() {
+        final WorkStealingDeque deque = backend == Backend.WORK_STEALING
+                ? new WorkStealingDeque() : null;
+        return new Context(deque,
+                System.identityHashCode(Thread.currentThread()) | 1);
+    }
+
+    /**
+     * Make a deque visible to thieves.
+     *
+     * @param deque The deque
+     */
+    private synchronized void register(final WorkStealingDeque deque) {
+        final WorkStealingDeque[] current = externals;
+        final WorkStealingDeque[] updated =
+                Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = deque;
+        externals = updated;
+    }
+
+    /**
+     * Stop offering a deque to thieves. drain must have emptied it first.
+     *
+     * @param deque The deque
+     */
+    private synchronized void deregister(final WorkStealingDeque deque) {
+        final WorkStealingDeque[] current = externals;
+        final WorkStealingDeque[] updated =
+                new WorkStealingDeque[current.length - 1];
+        int k = 0;
+        for (final WorkStealingDeque other : current) {
+            if (other != deque) {
+                updated[k++] = other;
+            }
+        }
+        externals = updated;
+    }
+
+    /**
+     * Run tasks until every task of a finish has completed.
+     *
+     * @param context Context of the thread waiting
+     * @param scope The finish
+     */
+    private void help(final Context context, final FinishScope scope) {
+        int misses = 0;
+        while (scope.getPending() > 0) {
+            if (take(context)) {
+                runTaken(context);
+                misses = 0;
+            } else if (++misses < SPINS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(scope, WAIT_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Run the tasks left in the deque of a thread that is not a worker as
+     * its outermost finish completes. Every task of that finish has
+     * completed, but while waiting the thread may have stolen a task of
+     * another finish that spawned more onto this deque. Once the deque is
+     * no longer offered to thieves nothing else could take those, and that
+     * finish would wait forever. Only the thread pushes onto its deque, so
+     * it is empty once a pop fails.
+     *
+     * @param context Context of the thread
+     */
+    private void drain(final Context context) {
+        while (context.deque.pop(context.taken)) {
+            runTaken(context);
+        }
+    }
+
+    /**
+     * Take a task, popping the newest one of the thread's own deque if there
+     * is one, otherwise stealing the oldest of another's.
+     *
+     * @param context Context of the thread
+     * @return Whether a task was taken into context.taken
+     */
+    private boolean take(final Context context) {
+        if (context.deque.pop(context.taken)) {
+            return true;
+        }
+        final WorkStealingDeque[] others = externals;
+        final int victims = workers.length + others.length;
+        final int start = context.nextVictim(victims);
+        for (int k = 0; k < victims; k++) {
+            final int v = (start + k) % victims;
+            final WorkStealingDeque victim = v < workers.length
+                    ? workers[v].context.deque : others[v - workers.length];
+            if (victim != context.deque && victim.steal(context.taken)) {
+                // Pass the wakeup on while there is more to steal
+                if (!victim.isEmpty() && idle.get() > 0) {
+                    wakeOne();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run the task last taken by a thread.
+     *
+     * @param context Context of the thread
+     */
+    private void runTaken(final Context context) {
+        final Runnable task = context.taken.getTask();
+        final FinishScope scope = context.taken.getScope();
+        context.taken.clear();
+        runTask(context, task, scope);
+    }
+
+    /**
+     * Run a task in its finish, recording what it throws, then count it as
+     * completed.
+     *
+     * @param context Context of the thread running it
+     * @param task The task
+     * @param scope Finish the task was spawned in
+     */
+    private static void runTask(final Context context, final Runnable task,
+            final FinishScope scope) {
+        final FinishScope outer = context.scope;
+        context.scope = scope;
+        try {
+            task.run();
+        } catch (Throwable e) {
+            scope.fail(e);
+        } finally {
+            context.scope = outer;
+            scope.complete();
+        }
+    }
+
+    /**
+     * Whether any deque appears to hold a task.
+     *
+     * @return Whether there may be work to take
+     */
+    private boolean anyWork() {
+        for (final Worker worker : workers) {
+            if (!worker.context.deque.isEmpty()) {
+                return true;
+            }
+        }
+        for (final WorkStealingDeque deque : externals) {
+            if (!deque.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unpark one parked worker, if there is one.
+     */
+    private void wakeOne() {
+        final int start = nextWake.getAndIncrement() & Integer.MAX_VALUE;
+        for (int k = 0; k < workers.length; k++) {
+            final Worker worker = workers[(start + k) % workers.length];
+            if (worker.parked) {
+                worker.parked = false;
+                LockSupport.unpark(worker);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A Chase-Lev work-stealing deque of tasks, each paired with the finish
+ * scope it belongs to. Only the owning thread pushes and pops, at the
+ * bottom, newest first; any thread may steal from the top, oldest first,
+ * competing with the others and with the owner's last pop through a CAS on
+ * top.
+ * <p>
+ * A task and its scope are kept in parallel arrays rather than wrapped in
+ * an object, so pushing allocates nothing until the deque has to grow.
+ * Every field the algorithm orders is volatile or atomic, whose accesses
+ * Java keeps sequentially consistent, which supplies the store-load fence
+ * between the owner's write of bottom and read of top in pop.
+ * <p>
+ * Only the owner writes the slots. Taken tasks are not kept reachable by
+ * the deque: pop clears the slot it takes, and on every push and pop the
+ * owner also clears the slots of the tasks stolen since, which are those
+ * below top. A thief clearing its own slot after its CAS could race a grow
+ * copying that slot into the new storage, and a late clear could erase a
+ * task pushed into the slot since.
+ */
+final class WorkStealingDeque {
+    /**
+     * Initial number of slots, a power of two.
+     */
+    static final int INITIAL_CAPACITY = 1 << 8;
+
+    /**
+     * Index of the oldest task, advanced by a CAS in steal and in the pop
+     * of the last task.
+     */
+    private final AtomicLong top = new AtomicLong();
+    /**
+     * Index one past the newest task, written only by the owner.
+     */
+    private volatile long bottom;
+    /**
+     * Current storage, replaced by the owner when it grows.
+     */
+    private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+    /**
+     * Index below which every slot has been cleared, read and written only
+     * by the owner.
+     */
+    private long cleared;
+
+    /**
+     * A task and its scope, as returned by pop and steal. Each thread
+     * reuses one instance.
+     */
+    static final class Taken {
+        /**
+         * The task taken.
+         */
+        private Runnable task;
+        /**
+         * The scope of the task taken.
+         */
+        private FinishScope scope;
+
+        /**
+         * Get the task taken.
+         *
+         * @return The task
+         */
+        Runnable getTask() {
+            return task;
+        }
+
+        /**
+         * Get the scope of the task taken.
+         *
+         * @return The scope
+         */
+        FinishScope getScope() {
+            return scope;
+        }
+
+        /**
+         * Drop the references to the last task taken.
+         */
+        void clear() {
+            task = null;
+            scope = null;
+        }
+    }
+
+    /**
+     * Circular storage of tasks and their scopes, indexed by position
+     * modulo the capacity.
+     */
+    private static final class Slots {
+        /**
+         * Task in each slot.
+         */
+        private final AtomicReferenceArray<Runnable> tasks;
+        /**
+         * Scope of the task in each slot.
+         */
+        private final AtomicReferenceArray<FinishScope> scopes;
+        /**
+         * Capacity minus one.
+         */
+        private final int mask;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity Number of slots, a power of two
+         */
+        Slots(final int capacity) {
+            this.tasks = new AtomicReferenceArray<>(capacity);
+            this.scopes = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+    }
+
+    /**
+     * Add a task at the bottom, growing the storage when it is full. Owner
+     * only.
+     *
+     * @param task The task
+     * @param scope The scope it belongs to
+     */
+    void push(final Runnable task, final FinishScope scope) {
+        final long b = bottom;
+        final long t = top.get();
+        Slots s = slots;
+        if (b - t >= s.mask) {
+            s = grow(s, t, b);
+        }
+        clearTaken(s, t, b);
+        final int i = (int) b & s.mask;
+        s.tasks.set(i, task);
+        s.scopes.set(i, scope);
+        bottom = b + 1;
+    }
+
+    /**
+     * Double the storage, copying the tasks from t to b. Owner only. The old
+     * storage is left intact for thieves still reading it.
+     *
+     * @param old Current storage
+     * @param t Top index
+     * @param b Bottom index
+     * @return The new storage
+     */
+    private Slots grow(final Slots old, final long t, final long b) {
+        final Slots s = new Slots(2 * (old.mask + 1));
+        for (long k = t; k < b; k++) {
+            s.tasks.set((int) k & s.mask, old.tasks.get((int) k & old.mask));
+            s.scopes.set((int) k & s.mask,
+                    old.scopes.get((int) k & old.mask));
+        }
+        slots = s;
+        return s;
+    }
+
+    /**
+     * Clear the slots of the tasks taken from below top since the last call.
+     * Owner only. Every index below top is dead, since top never goes back,
+     * but only those from b minus the capacity on are cleared: the slot of
+     * any earlier one has been reused by a later push.
+     *
+     * @param s Current storage
+     * @param t A value top has had
+     * @param b Bottom index
+     */
+    private void clearTaken(final Slots s, final long t, final long b) {
+        for (long k = Math.max(cleared, b - s.mask - 1); k < t; k++) {
+            s.tasks.set((int) k & s.mask, null);
+            s.scopes.set((int) k & s.mask, null);
+        }
+        if (t > cleared) {
+            cleared = t;
+        }
+    }
+
+    /**
+     * Take the newest task. Owner only.
+     *
+     * @param out Receives the task and its scope
+     * @return Whether a task was taken
+     */
+    boolean pop(final Taken out) {
+        final long b = bottom - 1;
+        final Slots s = slots;
+        bottom = b;
+        final long t = top.get();
+        if (t > b) {
+            bottom = b + 1;
+            clearTaken(s, t, b + 1);
+            return false;
+        }
+        final int i = (int) b & s.mask;
+        out.task = s.tasks.get(i);
+        out.scope = s.scopes.get(i);
+        if (t == b) {
+            // Last task: race the thieves for it
+            final boolean won = top.compareAndSet(t, t + 1);
+            bottom = b + 1;
+            if (!won) {
+                out.clear();
+                clearTaken(s, t + 1, b + 1);
+                return false;
+            }
+        }
+        // No thief can take this slot any more, so drop the references
+        s.tasks.set(i, null);
+        s.scopes.set(i, null);
+        clearTaken(s, t, b);
+        return true;
+    }
+
+    /**
+     * Take the oldest task. Any thread.
+     *
+     * @param out Receives the task and its scope
+     * @return Whether a task was taken; false also when another thread won
+     *         the race for it
+     */
+    boolean steal(final Taken out) {
+        final long t = top.get();
+        final long b = bottom;
+        if (t >= b) {
+            return false;
+        }
+        final Slots s = slots;
+        final int i = (int) t & s.mask;
+        final Runnable task = s.tasks.get(i);
+        final FinishScope scope = s.scopes.get(i);
+        if (task == null || !top.compareAndSet(t, t + 1)) {
+            return false;
+        }
+        out.task = task;
+        out.scope = scope;
+        return true;
+    }
+
+    /**
+     * Whether the deque appears empty. Any thread; the answer may be stale.
+     *
+     * @return Whether there was no task to take
+     */
+    boolean isEmpty() {
+        return top.get() >= bottom;
+    }
+}
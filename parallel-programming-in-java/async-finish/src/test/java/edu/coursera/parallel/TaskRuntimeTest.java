@@ -0,0 +1,252 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+public class TaskRuntimeTest extends TestCase {
+
+    private static int getNCores() {
+        String ncoresStr = System.getenv("COURSERA_GRADER_NCORES");
+        if (ncoresStr == null) {
+            return Runtime.getRuntime().availableProcessors();
+        } else {
+            return Integer.parseInt(ncoresStr);
+        }
+    }
+
+    /**
+     * Sums 1 to n by splitting the range in halves, spawning one half and computing the other, down to single
+     * elements.
+     */
+    private static void sumTree(final TaskRuntime runtime, final int lo, final int hi, final AtomicLong sum) {
+        if (hi - lo == 1) {
+            sum.addAndGet(lo);
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        runtime.async(() -> sumTree(runtime, lo, mid, sum));
+        sumTree(runtime, mid, hi, sum);
+    }
+
+    /**
+     * Fibonacci with a finish around each pair of recursive calls, as in the PCDP examples.
+     */
+    private static int fib(final TaskRuntime runtime, final int n) {
+        if (n < 2) {
+            return n;
+        }
+        final int[] left = new int[1];
+        final int[] right = new int[1];
+        runtime.finish(() -> {
+            runtime.async(() -> left[0] = fib(runtime, n - 1));
+            right[0] = fib(runtime, n - 2);
+        });
+        return left[0] + right[0];
+    }
+
+    private void checkRuntime(final TaskRuntime runtime) {
+        // Many flat tasks
+        final int N = 100000;
+        final AtomicInteger count = new AtomicInteger();
+        runtime.finish(() -> {
+            for (int i = 0; i < N; i++) {
+                runtime.async(count::incrementAndGet);
+            }
+        });
+        assertEquals(N, count.get());
+
+        // Tasks spawning tasks into the same finish
+        final AtomicLong sum = new AtomicLong();
+        runtime.finish(() -> sumTree(runtime, 1, 1 << 16, sum));
+        assertEquals((long) (1 << 16) * ((1 << 16) - 1) / 2, sum.get());
+
+        // Nested finishes, each waiting for its own tasks only
+        assertEquals(6765, fib(runtime, 20));
+
+        // A finish with no tasks, and results written by tasks visible after it
+        runtime.finish(() -> { });
+        final int[] result = new int[1];
+        runtime.finish(() -> runtime.async(() -> result[0] = 42));
+        assertEquals(42, result[0]);
+
+        // Many threads that are not workers using the runtime at once
+        final Thread[] callers = new Thread[4];
+        final AtomicInteger shared = new AtomicInteger();
+        for (int t = 0; t < callers.length; t++) {
+            callers[t] = new Thread(() -> {
+                for (int r = 0; r < 100; r++) {
+                    runtime.finish(() -> {
+                        for (int i = 0; i < 100; i++) {
+                            runtime.async(shared::incrementAndGet);
+                        }
+                    });
+                }
+            });
+            callers[t].start();
+        }
+        for (Thread caller : callers) {
+            try {
+                caller.join();
+            } catch (InterruptedException e) {
+                fail("Interrupted");
+            }
+        }
+        assertEquals(callers.length * 100 * 100, shared.get());
+    }
+
+    /**
+     * Checks flat, recursive and nested finishes on the work-stealing backend, with one worker and with several.
+     */
+    public void testWorkStealing() {
+        try (TaskRuntime runtime = new TaskRuntime(1)) {
+            checkRuntime(runtime);
+        }
+        try (TaskRuntime runtime = new TaskRuntime(Math.max(4, getNCores()))) {
+            assertEquals(Math.max(4, getNCores()), runtime.getWorkers());
+            checkRuntime(runtime);
+        }
+        try {
+            new TaskRuntime(0);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks that finishes of threads that are not workers complete when they steal each other's tasks and those
+     * tasks spawn more, so that a thread can leave its finish with tasks of another's still in its deque.
+     */
+    public void testExternalsStealingSpawningTasks() throws InterruptedException {
+        final int TRIALS = 200;
+        final int SPAWNERS = 8;
+        try (TaskRuntime runtime = new TaskRuntime(1)) {
+            final AtomicInteger shared = new AtomicInteger();
+            final Runnable spawner = () -> {
+                for (int j = 0; j < SPAWNERS; j++) {
+                    runtime.async(shared::incrementAndGet);
+                }
+                // Let the other threads finish the rest of the thief's own tasks meanwhile
+                Thread.yield();
+            };
+            for (int r = 0; r < TRIALS; r++) {
+                // New threads every trial, so that no later finish offers a thread's deque to thieves again
+                final Thread[] callers = new Thread[2];
+                for (int t = 0; t < callers.length; t++) {
+                    callers[t] = new Thread(() -> runtime.finish(() -> {
+                        for (int i = 0; i < SPAWNERS; i++) {
+                            runtime.async(spawner);
+                        }
+                    }));
+                    callers[t].setDaemon(true);
+                    callers[t].start();
+                }
+                for (Thread caller : callers) {
+                    caller.join(10000);
+                    assertFalse("Finish of trial " + r + " never completed", caller.isAlive());
+                }
+            }
+            assertEquals(TRIALS * 2 * SPAWNERS * SPAWNERS, shared.get());
+        }
+    }
+
+    /**
+     * Checks the same programs on the virtual-thread backend, where the JVM supports it.
+     */
+    public void testVirtualThreads() {
+        if (!TaskRuntime.isVirtualThreadsSupported()) {
+            try {
+                new TaskRuntime(4, TaskRuntime.Backend.VIRTUAL_THREADS);
+                fail("Expected an UnsupportedOperationException");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+            System.out.println("Virtual threads are not available, skipping");
+            return;
+        }
+        try (TaskRuntime runtime = new TaskRuntime(4, TaskRuntime.Backend.VIRTUAL_THREADS)) {
+            checkRuntime(runtime);
+        }
+    }
+
+    /**
+     * Checks that finish waits for every task before rethrowing the first exception, and that async outside a finish
+     * is rejected.
+     */
+    public void testExceptions() {
+        try (TaskRuntime runtime = new TaskRuntime(4)) {
+            final AtomicInteger completed = new AtomicInteger();
+            try {
+                runtime.finish(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        final int ii = i;
+                        runtime.async(() -> {
+                            if (ii % 10 == 0) {
+                                throw new IllegalStateException("Task " + ii);
+                            }
+                            completed.incrementAndGet();
+                        });
+                    }
+                });
+                fail("Expected an IllegalStateException");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().startsWith("Task "));
+                assertEquals(9, e.getSuppressed().length);
+            }
+            assertEquals(90, completed.get());
+
+            // An exception thrown in an inner finish propagates out through the task
+            try {
+                runtime.finish(() -> runtime.async(() -> runtime.finish(() -> runtime.async(() -> {
+                    throw new ArithmeticException("inner");
+                }))));
+                fail("Expected an ArithmeticException");
+            } catch (ArithmeticException e) {
+                assertEquals("inner", e.getMessage());
+            }
+
+            try {
+                runtime.async(() -> { });
+                fail("Expected an IllegalStateException");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+
+            // The runtime is still usable
+            final int[] result = new int[1];
+            runtime.finish(() -> runtime.async(() -> result[0] = 7));
+            assertEquals(7, result[0]);
+        }
+    }
+
+    /**
+     * Checks the shared runtime behind the static methods.
+     */
+    public void testAsyncFinish() {
+        final int[] result = new int[1];
+        AsyncFinish.finish(() -> AsyncFinish.async(() -> result[0] = 42));
+        assertEquals(42, result[0]);
+        assertTrue(AsyncFinish.numThreads() >= 1);
+    }
+
+    /**
+     * Checks the system property values are parsed ignoring case and whitespace, and that unusable values fall back
+     * to the defaults instead of throwing.
+     */
+    public void testAsyncFinishProperties() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        assertEquals(3, AsyncFinish.parseWorkers(" 3 "));
+        assertEquals(processors, AsyncFinish.parseWorkers(null));
+        assertEquals(processors, AsyncFinish.parseWorkers("0"));
+        assertEquals(processors, AsyncFinish.parseWorkers("many"));
+
+        assertEquals(TaskRuntime.Backend.WORK_STEALING, AsyncFinish.parseBackend(" work_stealing "));
+        assertEquals(TaskRuntime.Backend.WORK_STEALING, AsyncFinish.parseBackend(null));
+        assertEquals(TaskRuntime.Backend.WORK_STEALING, AsyncFinish.parseBackend("fork-join"));
+        assertEquals(TaskRuntime.isVirtualThreadsSupported()
+                ? TaskRuntime.Backend.VIRTUAL_THREADS : TaskRuntime.Backend.WORK_STEALING,
+                AsyncFinish.parseBackend("Virtual_Threads"));
+    }
+}
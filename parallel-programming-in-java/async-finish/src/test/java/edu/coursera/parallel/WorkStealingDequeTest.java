@@ -0,0 +1,178 @@
+package edu.coursera.parallel;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+import junit.framework.TestCase;
+
+public class WorkStealingDequeTest extends TestCase {
+
+    /**
+     * A task that only carries its index.
+     */
+    private static final class Numbered implements Runnable {
+        final int index;
+
+        Numbered(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    /**
+     * Checks the owner pops newest first, thieves steal oldest first, and the deque grows past its initial capacity.
+     */
+    public void testOrder() {
+        final WorkStealingDeque deque = new WorkStealingDeque();
+        final WorkStealingDeque.Taken taken = new WorkStealingDeque.Taken();
+        final FinishScope scope = new FinishScope(Thread.currentThread());
+        final int N = 3 * WorkStealingDeque.INITIAL_CAPACITY + 5;
+        assertTrue(deque.isEmpty());
+        assertFalse(deque.pop(taken));
+        assertFalse(deque.steal(taken));
+
+        for (int i = 0; i < N; i++) {
+            deque.push(new Numbered(i), scope);
+        }
+        assertFalse(deque.isEmpty());
+        assertTrue(deque.steal(taken));
+        assertEquals(0, ((Numbered) taken.getTask()).index);
+        assertSame(scope, taken.getScope());
+        assertTrue(deque.pop(taken));
+        assertEquals(N - 1, ((Numbered) taken.getTask()).index);
+        for (int i = N - 2; i >= 1; i--) {
+            assertTrue(deque.pop(taken));
+            assertEquals(i, ((Numbered) taken.getTask()).index);
+        }
+        assertFalse(deque.pop(taken));
+        assertFalse(deque.steal(taken));
+        assertTrue(deque.isEmpty());
+    }
+
+    /**
+     * Push every task from this thread, popping about a third of the time so the deque grows and shrinks, while
+     * several thieves steal, and pass each task taken to onTaken.
+     */
+    private static void pushWhileStealing(final Runnable[] tasks, final Consumer<Runnable> onTaken)
+            throws InterruptedException {
+        final int THIEVES = 3;
+        final WorkStealingDeque deque = new WorkStealingDeque();
+        final FinishScope scope = new FinishScope(Thread.currentThread());
+        final boolean[] done = new boolean[1];
+
+        final Thread[] thieves = new Thread[THIEVES];
+        for (int t = 0; t < THIEVES; t++) {
+            thieves[t] = new Thread(() -> {
+                final WorkStealingDeque.Taken taken = new WorkStealingDeque.Taken();
+                while (true) {
+                    if (deque.steal(taken)) {
+                        onTaken.accept(taken.getTask());
+                    } else {
+                        synchronized (done) {
+                            if (done[0] && deque.isEmpty()) {
+                                return;
+                            }
+                        }
+                        Thread.yield();
+                    }
+                }
+            });
+            thieves[t].start();
+        }
+
+        final WorkStealingDeque.Taken taken = new WorkStealingDeque.Taken();
+        for (int i = 0; i < tasks.length; i++) {
+            deque.push(tasks[i], scope);
+            if (i % 3 == 0 && deque.pop(taken)) {
+                onTaken.accept(taken.getTask());
+            }
+        }
+        while (deque.pop(taken)) {
+            onTaken.accept(taken.getTask());
+        }
+        synchronized (done) {
+            done[0] = true;
+        }
+        for (Thread thief : thieves) {
+            thief.join();
+        }
+    }
+
+    /**
+     * Checks that with an owner pushing and popping and several thieves stealing, every task is taken exactly once.
+     */
+    public void testConcurrentSteals() throws InterruptedException {
+        final int N = 1000000;
+        final AtomicIntegerArray seen = new AtomicIntegerArray(N);
+        final Numbered[] tasks = new Numbered[N];
+        for (int i = 0; i < N; i++) {
+            tasks[i] = new Numbered(i);
+        }
+
+        pushWhileStealing(tasks, task -> seen.incrementAndGet(((Numbered) task).index));
+
+        for (int i = 0; i < N; i++) {
+            assertEquals("Task " + i + " taken the wrong number of times", 1, seen.get(i));
+        }
+    }
+
+    /**
+     * Checks the same with one task pushed over and over, so that a thief clearing the slot it stole from cannot
+     * tell the task it took from the same task pushed again into that slot.
+     */
+    public void testConcurrentStealsOfOneTask() throws InterruptedException {
+        final int N = 1000000;
+        final Runnable[] tasks = new Runnable[N];
+        Arrays.fill(tasks, new Numbered(0));
+        final AtomicInteger taken = new AtomicInteger();
+
+        pushWhileStealing(tasks, task -> taken.incrementAndGet());
+
+        assertEquals(N, taken.get());
+    }
+
+    /**
+     * Checks that neither stealing nor popping leaves the deque holding a reference to the task taken, including tasks
+     * stolen before the deque grew, whose slots the growth copied.
+     */
+    public void testTakenSlotsCleared() {
+        final WorkStealingDeque deque = new WorkStealingDeque();
+        final WorkStealingDeque.Taken taken = new WorkStealingDeque.Taken();
+        final FinishScope scope = new FinishScope(Thread.currentThread());
+        final int N = 2 * WorkStealingDeque.INITIAL_CAPACITY + 3;
+        final List<WeakReference<Runnable>> refs = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            final Runnable task = new Numbered(i);
+            refs.add(new WeakReference<>(task));
+            deque.push(task, scope);
+            if (i % 4 == 0) {
+                assertTrue(deque.steal(taken));
+            }
+        }
+        assertTrue(deque.steal(taken));
+        assertTrue(deque.steal(taken));
+        while (deque.pop(taken)) {
+            // take the rest
+        }
+        taken.clear();
+
+        for (int attempt = 0; attempt < 10 && refs.stream().anyMatch(ref -> ref.get() != null); attempt++) {
+            System.gc();
+        }
+        for (int i = 0; i < refs.size(); i++) {
+            assertNull("Task " + i + " still reachable", refs.get(i).get());
+        }
+        // The deque itself is still usable
+        deque.push(new Numbered(N), scope);
+        assertTrue(deque.steal(taken));
+        assertEquals(N, ((Numbered) taken.getTask()).index);
+    }
+}
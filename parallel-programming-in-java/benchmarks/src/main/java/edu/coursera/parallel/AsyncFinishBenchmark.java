@@ -0,0 +1,154 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.rice.pcdp.PCDP;
+
+/**
+ * Time to spawn and join empty tasks with finish and async, PCDP against
+ * TaskRuntime. The flat benchmarks spawn every task from the thread running
+ * the finish, which stresses stealing from one deque; the tree benchmarks
+ * spawn them recursively, halving the range each time, as divide and
+ * conquer code does. Since the tasks do nothing, the time is all overhead.
+ * <p>
+ * PCDP reads its number of workers once per JVM, so each parameter set runs
+ * in a fork of its own. The virtual-thread backend may be selected with
+ * -p backend=VIRTUAL_THREADS on a JVM that supports it; the PCDP results do
+ * not depend on it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AsyncFinishBenchmark {
+
+    /**
+     * Number of tasks spawned per finish.
+     */
+    @Param({"1000", "100000"})
+    private int tasks;
+    /**
+     * Number of worker threads of each runtime. PCDP's finish can hang with
+     * fewer than four workers on a single-core machine.
+     */
+    @Param({"4", "8"})
+    private int threads;
+    /**
+     * How TaskRuntime runs the tasks.
+     */
+    @Param({"WORK_STEALING"})
+    private TaskRuntime.Backend backend;
+
+    /**
+     * The runtime measured against PCDP.
+     */
+    private TaskRuntime runtime;
+
+    /**
+     * A task that does nothing, shared so that spawning it allocates
+     * nothing.
+     */
+    private static final Runnable EMPTY = () -> { };
+
+    /**
+     * Size PCDP's pool and start the runtime.
+     */
+    @Setup
+    public void setup() {
+        System.setProperty("pcdp.numWorkers", Integer.toString(threads));
+        runtime = new TaskRuntime(threads, backend);
+    }
+
+    /**
+     * Stop the runtime.
+     */
+    @TearDown
+    public void tearDown() {
+        runtime.close();
+    }
+
+    /**
+     * Spawn the tasks from the finish body with PCDP.
+     */
+    @Benchmark
+    public void pcdpFlat() {
+        PCDP.finish(() -> {
+            for (int i = 0; i < tasks; i++) {
+                PCDP.async(EMPTY);
+            }
+        });
+    }
+
+    /**
+     * Spawn the tasks from the finish body with TaskRuntime.
+     */
+    @Benchmark
+    public void runtimeFlat() {
+        runtime.finish(() -> {
+            for (int i = 0; i < tasks; i++) {
+                runtime.async(EMPTY);
+            }
+        });
+    }
+
+    /**
+     * Spawn the tasks recursively with PCDP.
+     */
+    @Benchmark
+    public void pcdpTree() {
+        PCDP.finish(() -> pcdpSpawn(0, tasks));
+    }
+
+    /**
+     * Spawn the tasks recursively with TaskRuntime.
+     */
+    @Benchmark
+    public void runtimeTree() {
+        runtime.finish(() -> runtimeSpawn(0, tasks));
+    }
+
+    /**
+     * Spawn a task for the lower half of a range and carry on with the
+     * upper half, down to single elements, with PCDP.
+     *
+     * @param lo First element of the range
+     * @param hi One past the last element
+     */
+    private static void pcdpSpawn(final int lo, final int hi) {
+        if (hi - lo > 1) {
+            final int mid = (lo + hi) >>> 1;
+            PCDP.async(() -> pcdpSpawn(lo, mid));
+            pcdpSpawn(mid, hi);
+        }
+    }
+
+    /**
+     * Spawn a task for the lower half of a range and carry on with the
+     * upper half, down to single elements, with TaskRuntime.
+     *
+     * @param lo First element of the range
+     * @param hi One past the last element
+     */
+    private void runtimeSpawn(final int lo, final int hi) {
+        if (hi - lo > 1) {
+            final int mid = (lo + hi) >>> 1;
+            runtime.async(() -> runtimeSpawn(lo, mid));
+            runtimeSpawn(mid, hi);
+        }
+    }
+}
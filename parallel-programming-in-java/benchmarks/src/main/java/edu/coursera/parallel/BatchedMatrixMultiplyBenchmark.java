@@ -0,0 +1,161 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to multiply a batch of small square matrices with
+ * BatchedMatrixMultiply, packed and jagged, against multiplying the pairs one
+ * at a time with the sequential and the parallel FlatMatrix kernels. PCDP
+ * reads its worker count once, so it is set in setup before the first
+ * parallel region of each fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BatchedMatrixMultiplyBenchmark {
+
+    /**
+     * Number of products in the batch.
+     */
+    @Param({"20000"})
+    private int batch;
+    /**
+     * Size of each dimension of every matrix.
+     */
+    @Param({"4", "8", "16", "32"})
+    private int n;
+    /**
+     * Number of PCDP worker threads. PCDP's finish can hang with fewer than
+     * four workers on a single-core machine.
+     */
+    @Param({"4", "8"})
+    private int threads;
+
+    /**
+     * Left operands, packed back to back.
+     */
+    private double[] a;
+    /**
+     * Right operands, packed back to back.
+     */
+    private double[] b;
+    /**
+     * Outputs, packed back to back.
+     */
+    private double[] c;
+    /**
+     * Left operands, jagged.
+     */
+    private double[][][] jaggedA;
+    /**
+     * Right operands, jagged.
+     */
+    private double[][][] jaggedB;
+    /**
+     * Outputs, jagged.
+     */
+    private double[][][] jaggedC;
+    /**
+     * Left operands, one FlatMatrix each.
+     */
+    private FlatMatrix[] flatA;
+    /**
+     * Right operands, one FlatMatrix each.
+     */
+    private FlatMatrix[] flatB;
+    /**
+     * Output shared by every per-pair product.
+     */
+    private FlatMatrix flatC;
+
+    /**
+     * Create the operands in every layout and size the PCDP runtime.
+     */
+    @Setup
+    public void setup() {
+        System.setProperty("pcdp.numWorkers", Integer.toString(threads));
+        final int size = n * n;
+        final Random rand = new Random(314);
+        a = new double[batch * size];
+        b = new double[batch * size];
+        c = new double[batch * size];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = rand.nextInt(100);
+            b[i] = rand.nextInt(100);
+        }
+        jaggedA = new double[batch][n][n];
+        jaggedB = new double[batch][n][n];
+        jaggedC = new double[batch][n][n];
+        flatA = new FlatMatrix[batch];
+        flatB = new FlatMatrix[batch];
+        flatC = new FlatMatrix(n, n);
+        for (int t = 0; t < batch; t++) {
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(a, t * size + i * n, jaggedA[t][i], 0, n);
+                System.arraycopy(b, t * size + i * n, jaggedB[t][i], 0, n);
+            }
+            flatA[t] = FlatMatrix.fromRows(jaggedA[t]);
+            flatB[t] = FlatMatrix.fromRows(jaggedB[t]);
+        }
+    }
+
+    /**
+     * The packed batch.
+     * @return The outputs
+     */
+    @Benchmark
+    public double[] batched() {
+        BatchedMatrixMultiply.multiply(a, b, c, batch, n);
+        return c;
+    }
+
+    /**
+     * The jagged batch.
+     * @return The outputs
+     */
+    @Benchmark
+    public double[][][] batchedJagged() {
+        BatchedMatrixMultiply.multiply(jaggedA, jaggedB, jaggedC);
+        return jaggedC;
+    }
+
+    /**
+     * One sequential multiply per pair.
+     * @return The last output
+     */
+    @Benchmark
+    public FlatMatrix perPairSequential() {
+        for (int t = 0; t < batch; t++) {
+            MatrixMultiply.seqMatrixMultiply(flatA[t], flatB[t], flatC);
+        }
+        return flatC;
+    }
+
+    /**
+     * One parallel multiply per pair, each opening its own parallel region.
+     * @return The last output
+     */
+    @Benchmark
+    public FlatMatrix perPairParallel() {
+        for (int t = 0; t < batch; t++) {
+            MatrixMultiply.parMatrixMultiply(flatA[t], flatB[t], flatC);
+        }
+        return flatC;
+    }
+}
@@ -0,0 +1,56 @@
+package edu.coursera.parallel;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. Runs JMH with the GC profiler enabled and
+ * JSON results written to jmh-result.json, so that runs can be compared for
+ * regressions; options given on the command line take precedence.
+ */
+public final class BenchmarkMain {
+
+    /**
+     * File the results are written to unless -rff is given.
+     */
+    static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    /**
+     * Default constructor.
+     */
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Run the benchmarks.
+     * @param args Standard JMH command line options
+     * @throws CommandLineOptionException If the options cannot be parsed
+     * @throws RunnerException If a benchmark fails
+     */
+    public static void main(final String[] args)
+            throws CommandLineOptionException, RunnerException {
+        final CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldList()) {
+            new Runner(cmdOptions).list();
+            return;
+        }
+        if (cmdOptions.shouldListWithParams()) {
+            new Runner(cmdOptions).listWithParams(cmdOptions);
+            return;
+        }
+        final Options options = new OptionsBuilder()
+            .parent(cmdOptions)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(cmdOptions.getResultFormat()
+                    .orElse(ResultFormatType.JSON))
+            .result(cmdOptions.getResult().orElse(DEFAULT_RESULT_FILE))
+            .build();
+        new Runner(options).run();
+    }
+}
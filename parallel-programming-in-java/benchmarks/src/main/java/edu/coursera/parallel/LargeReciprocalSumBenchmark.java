@@ -0,0 +1,125 @@
+package edu.coursera.parallel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The 10^9 point of the speedup curves of ReciprocalArraySumBenchmark. A
+ * double[] of that size needs an 8 GB heap, so the input is a file of raw
+ * doubles, written once per trial and summed memory mapped by the same
+ * engine on pools of each size. Where the file does not fit in memory the
+ * sum streams it from disk, and the curve then shows the disk's bandwidth
+ * rather than the engine's speedup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class LargeReciprocalSumBenchmark {
+
+    /**
+     * Number of doubles written at a time.
+     */
+    static final int WRITE_CHUNK = 1 << 20;
+
+    /**
+     * Number of doubles in the file.
+     */
+    @Param({"1000000000"})
+    private int size;
+    /**
+     * Number of worker threads of the pool the sum runs on.
+     */
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    /**
+     * Temporary file of raw doubles in native byte order, without zeros.
+     */
+    private Path file;
+    /**
+     * The mapped file.
+     */
+    private MappedDoubleFile input;
+    /**
+     * Pool with the requested number of workers.
+     */
+    private ForkJoinPool pool;
+    /**
+     * Engine running on pool with the calibrated leaf size.
+     */
+    private ReductionEngine engine;
+
+    /**
+     * Write and map the file, and create the pool.
+     * @throws IOException If the file cannot be written or mapped
+     */
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("reciprocal", ".bin");
+        final ByteBuffer bytes = ByteBuffer
+            .allocateDirect(WRITE_CHUNK * Double.BYTES)
+            .order(ByteOrder.nativeOrder());
+        final Random rand = new Random(314);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE)) {
+            for (int written = 0; written < size; written += WRITE_CHUNK) {
+                bytes.clear();
+                final int count = Math.min(WRITE_CHUNK, size - written);
+                for (int i = 0; i < count; i++) {
+                    bytes.putDouble(1 + rand.nextInt(99));
+                }
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+        }
+        input = MappedDoubleFile.map(file, ByteOrder.nativeOrder());
+        pool = new ForkJoinPool(threads);
+        engine = new ReductionEngine(pool,
+                ReciprocalArraySum.getEngine().getLeafSize());
+    }
+
+    /**
+     * Shut the pool down and delete the file.
+     * @throws IOException If the file cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.delete(file);
+    }
+
+    /**
+     * Adaptive fork-join sum of the mapped file.
+     * @return The sum
+     */
+    @Benchmark
+    public double parArraySumMapped() {
+        return ReciprocalArraySum.parArraySum(input, engine);
+    }
+}
@@ -0,0 +1,103 @@
+package edu.coursera.parallel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to sum the reciprocals of a file of raw doubles, loading it into a
+ * double[] first against summing the memory-mapped file directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MappedDoubleFileBenchmark {
+
+    /**
+     * Number of doubles in the file.
+     */
+    @Param({"1048576", "33554432"})
+    private int size;
+
+    /**
+     * Temporary file of raw doubles in native byte order.
+     */
+    private Path file;
+
+    /**
+     * Write the file.
+     * @throws IOException If the file cannot be written
+     */
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("reciprocal", ".bin");
+        final ByteBuffer bytes = ByteBuffer.allocate(size * Double.BYTES)
+            .order(ByteOrder.nativeOrder());
+        final Random rand = new Random(314);
+        for (int i = 0; i < size; i++) {
+            bytes.putDouble(1 + rand.nextInt(99));
+        }
+        bytes.flip();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Delete the file.
+     * @throws IOException If the file cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    /**
+     * Read the file onto the heap, then sum the array.
+     * @return The sum
+     * @throws IOException If the file cannot be read
+     */
+    @Benchmark
+    public double loadThenSum() throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        final double[] values = new double[bytes.length / Double.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder())
+            .asDoubleBuffer().get(values);
+        return ReciprocalArraySum.parArraySum(values);
+    }
+
+    /**
+     * Sum the mapped file.
+     * @return The sum
+     * @throws IOException If the file cannot be mapped
+     */
+    @Benchmark
+    public double mappedSum() throws IOException {
+        return ReciprocalArraySum.parArraySum(file);
+    }
+}
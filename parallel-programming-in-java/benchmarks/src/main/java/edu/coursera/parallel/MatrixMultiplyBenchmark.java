@@ -0,0 +1,258 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the matrix multiplies across matrix sizes and worker counts.
+ * PCDP reads its worker count once, from the pcdp.numWorkers system property,
+ * so it is set in setup before the first parallel region of each fork. The
+ * Strassen multiply runs on the fork-join common pool instead, which is
+ * sized when the JVM starts, so it has one benchmark per pool size, each
+ * forking with the common pool parallelism on its command line. The naive
+ * kernels take minutes per multiply at the largest sizes, so they only run
+ * on the smaller sizes, and the sequential multiply is not swept over the
+ * worker counts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MatrixMultiplyBenchmark {
+
+    /**
+     * The operands and the output, in the jagged and the flat layouts.
+     */
+    public abstract static class Operands {
+        /**
+         * Left operand.
+         */
+        double[][] a;
+        /**
+         * Right operand.
+         */
+        double[][] b;
+        /**
+         * Output.
+         */
+        double[][] c;
+        /**
+         * Left operand, flat.
+         */
+        FlatMatrix flatA;
+        /**
+         * Right operand, flat.
+         */
+        FlatMatrix flatB;
+        /**
+         * Transpose of the right operand, flat.
+         */
+        FlatMatrix flatBT;
+        /**
+         * Output, flat.
+         */
+        FlatMatrix flatC;
+
+        /**
+         * Create NxN operands and output.
+         * @param n Size of each dimension of the matrices
+         */
+        final void create(final int n) {
+            a = createMatrix(n);
+            b = createMatrix(n);
+            c = new double[n][n];
+            flatA = FlatMatrix.fromRows(a);
+            flatB = FlatMatrix.fromRows(b);
+            flatBT = flatB.transpose();
+            flatC = new FlatMatrix(n, n);
+        }
+    }
+
+    /**
+     * Operands of every size, for the blocked kernels.
+     */
+    @State(Scope.Benchmark)
+    public static class LargeOperands extends Operands {
+        /**
+         * Size of each dimension of the matrices.
+         */
+        @Param({"256", "512", "1024", "2048", "4096"})
+        private int n;
+
+        /**
+         * Create the operands.
+         */
+        @Setup
+        public void setup() {
+            create(n);
+        }
+    }
+
+    /**
+     * Operands of the sizes the naive kernels finish in seconds.
+     */
+    @State(Scope.Benchmark)
+    public static class SmallOperands extends Operands {
+        /**
+         * Size of each dimension of the matrices.
+         */
+        @Param({"256", "512", "1024"})
+        private int n;
+
+        /**
+         * Create the operands.
+         */
+        @Setup
+        public void setup() {
+            create(n);
+        }
+    }
+
+    /**
+     * Number of PCDP workers, in its own state so that the sequential and
+     * the Strassen multiplies are not swept over it.
+     */
+    @State(Scope.Benchmark)
+    public static class Workers {
+        /**
+         * Number of PCDP worker threads. PCDP's finish can hang with fewer
+         * than four workers on a single-core machine, so smaller counts are
+         * left out of the default sweep; pass -p threads=1,2 to try them
+         * where they work.
+         */
+        @Param({"4", "8"})
+        private int threads;
+
+        /**
+         * Size the PCDP runtime.
+         */
+        @Setup
+        public void setup() {
+            System.setProperty("pcdp.numWorkers", Integer.toString(threads));
+        }
+    }
+
+    /**
+     * Create an NxN matrix of small random integers.
+     * @param size Size of each dimension
+     * @return The matrix
+     */
+    private static double[][] createMatrix(final int size) {
+        final double[][] matrix = new double[size][size];
+        final Random rand = new Random(314);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                matrix[i][j] = rand.nextInt(100);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Sequential multiply.
+     * @param m The operands
+     * @return The output matrix
+     */
+    @Benchmark
+    public double[][] seqMatrixMultiply(final SmallOperands m) {
+        final int n = m.c.length;
+        MatrixMultiply.seqMatrixMultiply(m.a, m.b, m.c, n);
+        return m.c;
+    }
+
+    /**
+     * Parallel multiply.
+     * @param m The operands
+     * @param workers The PCDP worker count
+     * @return The output matrix
+     */
+    @Benchmark
+    public double[][] parMatrixMultiply(final SmallOperands m,
+                                        final Workers workers) {
+        final int n = m.c.length;
+        MatrixMultiply.parMatrixMultiply(m.a, m.b, m.c, n);
+        return m.c;
+    }
+
+    /**
+     * Parallel cache-blocked multiply with the default tile sizes.
+     * @param m The operands
+     * @param workers The PCDP worker count
+     * @return The output matrix
+     */
+    @Benchmark
+    public double[][] blockedMatrixMultiply(final LargeOperands m,
+                                            final Workers workers) {
+        final int n = m.c.length;
+        MatrixMultiply.blockedMatrixMultiply(m.a, m.b, m.c, n);
+        return m.c;
+    }
+
+    /**
+     * Recursive multiply with Strassen steps and the default thresholds, on
+     * a common pool of four workers.
+     * @param m The operands
+     * @return The output matrix
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xmx4g",
+        "-Djava.util.concurrent.ForkJoinPool.common.parallelism=4"})
+    public FlatMatrix strassenMatrixMultiply4(final LargeOperands m) {
+        MatrixMultiply.strassenMatrixMultiply(m.flatA, m.flatB, m.flatC);
+        return m.flatC;
+    }
+
+    /**
+     * Recursive multiply with Strassen steps and the default thresholds, on
+     * a common pool of eight workers.
+     * @param m The operands
+     * @return The output matrix
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xmx4g",
+        "-Djava.util.concurrent.ForkJoinPool.common.parallelism=8"})
+    public FlatMatrix strassenMatrixMultiply8(final LargeOperands m) {
+        MatrixMultiply.strassenMatrixMultiply(m.flatA, m.flatB, m.flatC);
+        return m.flatC;
+    }
+
+    /**
+     * Parallel cache-blocked multiply of flat matrices.
+     * @param m The operands
+     * @param workers The PCDP worker count
+     * @return The output matrix
+     */
+    @Benchmark
+    public FlatMatrix flatMatrixMultiply(final LargeOperands m,
+                                         final Workers workers) {
+        MatrixMultiply.parMatrixMultiply(m.flatA, m.flatB, m.flatC);
+        return m.flatC;
+    }
+
+    /**
+     * Parallel multiply of flat matrices with the right operand transposed.
+     * @param m The operands
+     * @param workers The PCDP worker count
+     * @return The output matrix
+     */
+    @Benchmark
+    public FlatMatrix flatMatrixMultiplyTransposed(final LargeOperands m,
+                                                   final Workers workers) {
+        MatrixMultiply.parMatrixMultiplyTransposed(m.flatA, m.flatBT,
+                                                   m.flatC);
+        return m.flatC;
+    }
+}
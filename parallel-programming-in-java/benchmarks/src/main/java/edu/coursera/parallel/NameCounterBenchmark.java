@@ -0,0 +1,121 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to find the most common of a large, skewed set of names with a
+ * parallel stream, counting exactly with NameCounter against approximately
+ * with SpaceSavingCounter. Name i of the domain occurs roughly in
+ * proportion to 1 / (i + 1).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NameCounterBenchmark {
+
+    /**
+     * Number of names counted.
+     */
+    @Param({"2000000"})
+    private int names;
+    /**
+     * Number of distinct names they are drawn from.
+     */
+    @Param({"1000", "1000000"})
+    private int domain;
+    /**
+     * Number of worker threads of the pool the streams run on.
+     */
+    @Param({"1", "4"})
+    private int threads;
+
+    /**
+     * Names to count.
+     */
+    private String[] input;
+    /**
+     * Pool with the requested number of workers.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Draw the names and create the pool.
+     */
+    @Setup
+    public void setup() {
+        final double[] cumulative = new double[domain];
+        double total = 0.0;
+        for (int i = 0; i < domain; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        final Random r = new Random(42);
+        input = new String[names];
+        for (int i = 0; i < names; i++) {
+            int rank = Arrays.binarySearch(cumulative,
+                    r.nextDouble() * total);
+            rank = rank < 0 ? -rank - 1 : rank;
+            input[i] = "name" + Math.min(rank, domain - 1);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Shut the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Exact counts with per-task open-addressing maps.
+     * @return The most common name
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If the count fails
+     */
+    @Benchmark
+    public String exact() throws InterruptedException, ExecutionException {
+        return pool.submit(() -> Arrays.stream(input).parallel()
+                .collect(NameCounter::new, NameCounter::increment,
+                         NameCounter::merge)
+                .mostCommon())
+            .get();
+    }
+
+    /**
+     * Approximate counts keeping 1024 names per task.
+     * @return The most common name
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If the count fails
+     */
+    @Benchmark
+    public String spaceSaving()
+            throws InterruptedException, ExecutionException {
+        return pool.submit(() -> Arrays.stream(input).parallel()
+                .collect(() -> new SpaceSavingCounter(1024),
+                         SpaceSavingCounter::offer, SpaceSavingCounter::merge)
+                .mostCommon())
+            .get();
+    }
+}
@@ -0,0 +1,134 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the one-dimensional iterative averaging solvers across
+ * problem sizes and task counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OneDimAveragingPhaserBenchmark {
+
+    /**
+     * Number of sweeps per solve.
+     */
+    static final int ITERATIONS = 200;
+
+    /**
+     * Number of interior points.
+     */
+    @Param({"65536", "4194304"})
+    private int n;
+    /**
+     * Number of threads the parallel solvers use.
+     */
+    @Param({"1", "2", "4", "8"})
+    private int tasks;
+
+    /**
+     * Output array.
+     */
+    private double[] myNew;
+    /**
+     * Input array, with the right boundary fixed at 1.
+     */
+    private double[] myVal;
+    /**
+     * Partitioner of the rebalancing solver, kept across calls.
+     */
+    private ChunkPartitioner partitioner;
+
+    /**
+     * Create the arrays.
+     */
+    @Setup
+    public void setup() {
+        myNew = new double[n + 2];
+        myVal = new double[n + 2];
+        myVal[n + 1] = 1.0;
+        myNew[n + 1] = 1.0;
+        partitioner = new ChunkPartitioner(n, tasks);
+    }
+
+    /**
+     * Sequential solver.
+     * @return The output array
+     */
+    @Benchmark
+    public double[] runSequential() {
+        OneDimAveragingPhaser.runSequential(ITERATIONS, myNew, myVal, n);
+        return myNew;
+    }
+
+    /**
+     * Phaser barrier solver.
+     * @return The output array
+     */
+    @Benchmark
+    public double[] runParallelBarrier() {
+        OneDimAveragingPhaser.runParallelBarrier(ITERATIONS, myNew, myVal, n,
+                                                 tasks);
+        return myNew;
+    }
+
+    /**
+     * Phaser fuzzy barrier solver.
+     * @return The output array
+     */
+    @Benchmark
+    public double[] runParallelFuzzyBarrier() {
+        OneDimAveragingPhaser.runParallelFuzzyBarrier(ITERATIONS, myNew, myVal,
+                                                      n, tasks);
+        return myNew;
+    }
+
+    /**
+     * Phaser barrier solver rebalancing its chunks.
+     * @return The output array
+     */
+    @Benchmark
+    public double[] runParallelBalanced() {
+        OneDimAveragingPhaser.runParallelBalanced(ITERATIONS, myNew, myVal, n,
+                                                  partitioner);
+        return myNew;
+    }
+
+    /**
+     * Point-to-point phaser solver.
+     * @return The output array
+     */
+    @Benchmark
+    public double[] runParallelPointToPoint() {
+        OneDimAveragingPhaser.runParallelPointToPoint(ITERATIONS, myNew, myVal,
+                                                      n, tasks);
+        return myNew;
+    }
+
+    /**
+     * Temporally blocked solver.
+     * @return The output array
+     */
+    @Benchmark
+    public double[] runParallelTemporalBlocking() {
+        OneDimAveragingPhaser.runParallelTemporalBlocking(ITERATIONS, myNew,
+                                                          myVal, n, tasks);
+        return myNew;
+    }
+}
@@ -0,0 +1,231 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the reciprocal array sums across input sizes and pool sizes,
+ * and of several DoubleReducer reductions computed separately or fused. The
+ * pool is a state of its own, so the sequential sums are not swept over the
+ * thread counts. The forks add the jdk.incubator.vector module so the
+ * VECTOR leaf kernel runs on the Vector API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g",
+    "--add-modules=jdk.incubator.vector"})
+public class ReciprocalArraySumBenchmark {
+
+    /**
+     * Number of elements summed.
+     */
+    @Param({"1000", "1000000", "100000000"})
+    private int size;
+
+    /**
+     * Input array, without zeros.
+     */
+    private double[] input;
+    /**
+     * Four reductions computed by the reducer benchmarks.
+     */
+    private final DoubleReducer[] reducers = {
+        DoubleReducer.sum(x -> 1 / x), DoubleReducer.sum(x -> x * x),
+        DoubleReducer.min(), DoubleReducer.max()
+    };
+
+    /**
+     * Create the input.
+     */
+    @Setup
+    public void setup() {
+        input = new double[size];
+        final Random rand = new Random(314);
+        for (int i = 0; i < size; i++) {
+            input[i] = 1 + rand.nextInt(99);
+        }
+    }
+
+    /**
+     * Pool the parallel sums run on, in its own state so that only they are
+     * run once per thread count.
+     */
+    @State(Scope.Benchmark)
+    public static class PoolState {
+        /**
+         * Number of worker threads of the pool.
+         */
+        @Param({"1", "2", "4", "8"})
+        private int threads;
+        /**
+         * Pool with the requested number of workers.
+         */
+        private ForkJoinPool pool;
+        /**
+         * Engine running on pool with the calibrated leaf size.
+         */
+        private ReductionEngine engine;
+
+        /**
+         * Create the pool.
+         */
+        @Setup
+        public void setup() {
+            pool = new ForkJoinPool(threads);
+            engine = new ReductionEngine(pool,
+                    ReciprocalArraySum.getEngine().getLeafSize());
+        }
+
+        /**
+         * Shut the pool down.
+         */
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sequential reference loop.
+     * @return The sum
+     */
+    @Benchmark
+    public double seqArraySum() {
+        return ReciprocalArraySum.seqArraySum(input);
+    }
+
+    /**
+     * Adaptive fork-join sum with the default leaf kernel, the one chosen
+     * by the reciprocal.leafKernel system property.
+     * @param pool The pool
+     * @return The sum
+     */
+    @Benchmark
+    public double parArraySum(final PoolState pool) {
+        return ReciprocalArraySum.parArraySum(input, pool.engine);
+    }
+
+    /**
+     * Leaf kernel to sum with, in its own state so that only
+     * parArraySumLeaf is run once per kernel.
+     */
+    @State(Scope.Benchmark)
+    public static class KernelState {
+        /**
+         * Name of the leaf kernel.
+         */
+        @Param({"SCALAR", "UNROLLED", "VECTOR"})
+        private String name;
+        /**
+         * The leaf kernel.
+         */
+        private ReciprocalArraySum.LeafKernel kernel;
+
+        /**
+         * Look the kernel up by name.
+         */
+        @Setup
+        public void setup() {
+            kernel = ReciprocalArraySum.LeafKernel.valueOf(name);
+        }
+    }
+
+    /**
+     * Bytes of input read, reported by JMH as a rate next to the score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bandwidth {
+        /**
+         * Gigabytes of input read in this iteration.
+         */
+        public double gigabytes;
+
+        /**
+         * Clear the count before each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            gigabytes = 0.0;
+        }
+    }
+
+    /**
+     * Adaptive fork-join sum with each leaf kernel, with the input
+     * bandwidth in GB/s as the gigabytes secondary result.
+     * @param pool The pool
+     * @param state The leaf kernel
+     * @param bandwidth Input bandwidth counter
+     * @return The sum
+     */
+    @Benchmark
+    public double parArraySumLeaf(final PoolState pool,
+                                  final KernelState state,
+                                  final Bandwidth bandwidth) {
+        bandwidth.gigabytes += size * (double) Double.BYTES / 1e9;
+        return ReciprocalArraySum.parArraySum(input, pool.engine,
+                                              state.kernel);
+    }
+
+    /**
+     * Sequential compensated sum, the leaf loop of the bit-reproducible sum.
+     * @return The sum
+     */
+    @Benchmark
+    public double seqSumCompensated() {
+        return CompensatedReciprocalSum.seqSum(input);
+    }
+
+    /**
+     * Bit-reproducible compensated sum.
+     * @param pool The pool
+     * @return The sum
+     */
+    @Benchmark
+    public double parArraySumReproducible(final PoolState pool) {
+        return CompensatedReciprocalSum.parSum(input, pool.pool);
+    }
+
+    /**
+     * The four reductions as separate parallel passes.
+     * @param pool The pool
+     * @return The last reduced value
+     */
+    @Benchmark
+    public double reduceSeparate(final PoolState pool) {
+        double value = 0.0;
+        for (final DoubleReducer reducer : reducers) {
+            value = reducer.reduce(input, pool.engine);
+        }
+        return value;
+    }
+
+    /**
+     * The four reductions fused into one parallel pass.
+     * @param pool The pool
+     * @return The reduced values
+     */
+    @Benchmark
+    public double[] reduceFused(final PoolState pool) {
+        return DoubleReducer.reduceAll(input, pool.engine, reducers);
+    }
+}
@@ -0,0 +1,251 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of ReciprocalSumAccumulator under many concurrent producers,
+ * adding one value at a time or a batch at a time, against an accumulator
+ * guarded by a single lock. Each group runs PRODUCERS producer threads and
+ * one thread taking snapshots, all on the same accumulator; -tg changes the
+ * split. The values secondary result counts values added, so single and
+ * batched adds compare directly.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReciprocalSumAccumulatorBenchmark {
+
+    /**
+     * Number of producer threads in each group.
+     */
+    static final int PRODUCERS = 8;
+    /**
+     * Number of values in each batch.
+     */
+    static final int BATCH = 1024;
+
+    /**
+     * Striped accumulator shared by the group.
+     */
+    private final ReciprocalSumAccumulator accumulator =
+        new ReciprocalSumAccumulator();
+    /**
+     * Single-lock accumulator shared by the group.
+     */
+    private final LockedAccumulator locked = new LockedAccumulator();
+
+    /**
+     * The baseline: a sum and a count behind one monitor.
+     */
+    static final class LockedAccumulator {
+        /**
+         * Sum of the reciprocals of the values added.
+         */
+        private double sum;
+        /**
+         * Number of values added.
+         */
+        private long count;
+
+        /**
+         * Add the reciprocal of a single value.
+         * @param value The value to add
+         */
+        synchronized void add(final double value) {
+            sum += 1 / value;
+            count++;
+        }
+
+        /**
+         * Add the reciprocals of a chunk, reduced outside the lock.
+         * @param chunk The values to add
+         */
+        void addAll(final double[] chunk) {
+            final double partial =
+                ReciprocalArraySum.rangeSum(chunk, 0, chunk.length);
+            synchronized (this) {
+                sum += partial;
+                count += chunk.length;
+            }
+        }
+
+        /**
+         * Returns the current reciprocal sum.
+         * @return The sum of the reciprocals of all values added so far
+         */
+        synchronized double snapshot() {
+            return sum;
+        }
+    }
+
+    /**
+     * Values one producer adds, cycling through a fixed batch.
+     */
+    @State(Scope.Thread)
+    public static class Feed {
+        /**
+         * The batch, without zeros.
+         */
+        private final double[] batch = new double[BATCH];
+        /**
+         * Index of the next value added singly.
+         */
+        private int next;
+
+        /**
+         * Fill the batch, differently for each thread.
+         */
+        @Setup
+        public void setup() {
+            final Random rand = new Random(Thread.currentThread().getId());
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = 1 + rand.nextInt(99);
+            }
+        }
+
+        /**
+         * Get the next value to add singly.
+         * @return The value
+         */
+        double nextValue() {
+            final double value = batch[next];
+            next = (next + 1) & (BATCH - 1);
+            return value;
+        }
+    }
+
+    /**
+     * Values added, reported by JMH as a rate next to the score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Values {
+        /**
+         * Values added in this iteration.
+         */
+        public long values;
+
+        /**
+         * Clear the count before each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            values = 0;
+        }
+    }
+
+    /**
+     * One value at a time into the striped accumulator.
+     * @param feed Values of this producer
+     * @param values Counter of values added
+     */
+    @Benchmark
+    @Group("add")
+    @GroupThreads(PRODUCERS)
+    public void add(final Feed feed, final Values values) {
+        accumulator.add(feed.nextValue());
+        values.values++;
+    }
+
+    /**
+     * Snapshots of the striped accumulator while add runs.
+     * @return The sum
+     */
+    @Benchmark
+    @Group("add")
+    @GroupThreads(1)
+    public double addSnapshot() {
+        return accumulator.snapshot();
+    }
+
+    /**
+     * A batch at a time into the striped accumulator.
+     * @param feed Values of this producer
+     * @param values Counter of values added
+     */
+    @Benchmark
+    @Group("addAll")
+    @GroupThreads(PRODUCERS)
+    public void addAll(final Feed feed, final Values values) {
+        accumulator.addAll(feed.batch);
+        values.values += BATCH;
+    }
+
+    /**
+     * Snapshots of the striped accumulator while addAll runs.
+     * @return The sum
+     */
+    @Benchmark
+    @Group("addAll")
+    @GroupThreads(1)
+    public double addAllSnapshot() {
+        return accumulator.snapshot();
+    }
+
+    /**
+     * One value at a time under the lock.
+     * @param feed Values of this producer
+     * @param values Counter of values added
+     */
+    @Benchmark
+    @Group("lockedAdd")
+    @GroupThreads(PRODUCERS)
+    public void lockedAdd(final Feed feed, final Values values) {
+        locked.add(feed.nextValue());
+        values.values++;
+    }
+
+    /**
+     * Snapshots under the lock while lockedAdd runs.
+     * @return The sum
+     */
+    @Benchmark
+    @Group("lockedAdd")
+    @GroupThreads(1)
+    public double lockedAddSnapshot() {
+        return locked.snapshot();
+    }
+
+    /**
+     * A batch at a time under the lock.
+     * @param feed Values of this producer
+     * @param values Counter of values added
+     */
+    @Benchmark
+    @Group("lockedAddAll")
+    @GroupThreads(PRODUCERS)
+    public void lockedAddAll(final Feed feed, final Values values) {
+        locked.addAll(feed.batch);
+        values.values += BATCH;
+    }
+
+    /**
+     * Snapshots under the lock while lockedAddAll runs.
+     * @return The sum
+     */
+    @Benchmark
+    @Group("lockedAddAll")
+    @GroupThreads(1)
+    public double lockedAddAllSnapshot() {
+        return locked.snapshot();
+    }
+}
@@ -0,0 +1,168 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the sparse products across densities and worker counts,
+ * against the dense blocked multiply of the same matrices. The sparse
+ * operand has SKEWED_ROWS fully dense rows, so that splitting by row count
+ * rather than nonzero count would show. PCDP reads its worker count once,
+ * so it is set in setup as in MatrixMultiplyBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SparseMatrixMultiplyBenchmark {
+
+    /**
+     * Number of fully dense rows at the top of the sparse operand.
+     */
+    private static final int SKEWED_ROWS = 8;
+
+    /**
+     * Size of each dimension of the matrices.
+     */
+    @Param({"2048"})
+    private int n;
+    /**
+     * Fraction of nonzero elements in the rows of the sparse operand other
+     * than the dense ones.
+     */
+    @Param({"0.001", "0.01", "0.05", "0.2"})
+    private double density;
+    /**
+     * Number of PCDP worker threads. PCDP's finish can hang with fewer than
+     * four workers on a single-core machine, so smaller counts are left
+     * out of the default sweep; pass -p threads=1,2 to try them where they
+     * work.
+     */
+    @Param({"4", "8"})
+    private int threads;
+
+    /**
+     * Sparse operand, as a dense matrix.
+     */
+    private double[][] sparse;
+    /**
+     * Sparse operand in CSR form.
+     */
+    private CsrMatrix csr;
+    /**
+     * Sparse operand in CSC form.
+     */
+    private CscMatrix csc;
+    /**
+     * Dense operand.
+     */
+    private double[][] dense;
+    /**
+     * Dense vector operand.
+     */
+    private double[] x;
+    /**
+     * Output.
+     */
+    private double[][] c;
+    /**
+     * Vector output.
+     */
+    private double[] y;
+
+    /**
+     * Create the operands and size the PCDP runtime.
+     */
+    @Setup
+    public void setup() {
+        System.setProperty("pcdp.numWorkers", Integer.toString(threads));
+        final Random rand = new Random(314);
+        sparse = new double[n][n];
+        dense = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i < SKEWED_ROWS || rand.nextDouble() < density) {
+                    sparse[i][j] = 1 + rand.nextInt(100);
+                }
+                dense[i][j] = rand.nextInt(100);
+            }
+        }
+        csr = CsrMatrix.fromDense(sparse);
+        csc = csr.toCsc();
+        x = dense[0].clone();
+        c = new double[n][n];
+        y = new double[n];
+    }
+
+    /**
+     * Dense blocked multiply of the sparse operand by the dense one.
+     * @return The output matrix
+     */
+    @Benchmark
+    public double[][] denseBlocked() {
+        MatrixMultiply.blockedMatrixMultiply(sparse, dense, c, n);
+        return c;
+    }
+
+    /**
+     * Sparse CSR operand times the dense operand.
+     * @return The output matrix
+     */
+    @Benchmark
+    public double[][] sparseTimesDense() {
+        SparseMatrixMultiply.multiply(csr, dense, c);
+        return c;
+    }
+
+    /**
+     * Dense operand times the sparse CSC operand.
+     * @return The output matrix
+     */
+    @Benchmark
+    public double[][] denseTimesSparse() {
+        SparseMatrixMultiply.multiply(dense, csc, c);
+        return c;
+    }
+
+    /**
+     * Sparse operand times itself.
+     * @return The sparse output matrix
+     */
+    @Benchmark
+    public CsrMatrix sparseTimesSparse() {
+        return SparseMatrixMultiply.multiply(csr, csr);
+    }
+
+    /**
+     * Sparse operand times a dense vector.
+     * @return The output vector
+     */
+    @Benchmark
+    public double[] sparseTimesVector() {
+        SparseMatrixMultiply.multiply(csr, x, y);
+        return y;
+    }
+
+    /**
+     * Conversion of the sparse operand from dense to CSR form.
+     * @return The converted matrix
+     */
+    @Benchmark
+    public CsrMatrix fromDense() {
+        return CsrMatrix.fromDense(sparse);
+    }
+}
@@ -0,0 +1,96 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of a 2-D Jacobi run on StencilEngine across grid sizes and task
+ * counts, with and without computing the largest change of every sweep for
+ * the convergence test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StencilEngineBenchmark {
+
+    /**
+     * Number of sweeps per run.
+     */
+    static final int ITERATIONS = 100;
+
+    /**
+     * Number of interior points along each of the two dimensions.
+     */
+    @Param({"256", "1024"})
+    private int n;
+    /**
+     * Number of threads the engine uses.
+     */
+    @Param({"1", "2", "4", "8"})
+    private int tasks;
+
+    /**
+     * Engine under test.
+     */
+    private StencilEngine engine;
+    /**
+     * Output grid.
+     */
+    private double[] myNew;
+    /**
+     * Input grid.
+     */
+    private double[] myVal;
+
+    /**
+     * Create the engine and the grids. The grids are filled independently,
+     * so their boundaries differ and the values alternate between them
+     * instead of converging, however many sweeps run.
+     */
+    @Setup
+    public void setup() {
+        engine = new StencilEngine(new int[] {n, n}, Stencil.jacobi(2), tasks);
+        myNew = new double[engine.getPaddedLength()];
+        myVal = new double[engine.getPaddedLength()];
+        final Random rand = new Random(314);
+        for (int i = 0; i < myVal.length; i++) {
+            myVal[i] = rand.nextDouble();
+            myNew[i] = rand.nextDouble();
+        }
+    }
+
+    /**
+     * A fixed number of sweeps.
+     * @return The output grid
+     */
+    @Benchmark
+    public double[] run() {
+        engine.run(myNew, myVal, ITERATIONS);
+        return myNew;
+    }
+
+    /**
+     * The same sweeps, computing the largest change of each with a
+     * tolerance that is never reached.
+     * @return The number of iterations run
+     */
+    @Benchmark
+    public int runWithResidual() {
+        return engine.run(myNew, myVal, ITERATIONS, 0.0);
+    }
+}
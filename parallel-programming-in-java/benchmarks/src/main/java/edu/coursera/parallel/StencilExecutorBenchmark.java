@@ -0,0 +1,101 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time per call of short one-dimensional averaging jobs, where the cost of
+ * starting threads dominates: a thread per task per call against the
+ * persistent workers of StencilExecutor. With iterations = 0 the time is
+ * the pure per-run overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StencilExecutorBenchmark {
+
+    /**
+     * Number of interior points.
+     */
+    @Param({"4096"})
+    private int n;
+    /**
+     * Number of sweeps per job.
+     */
+    @Param({"0", "10"})
+    private int iterations;
+    /**
+     * Number of threads the solvers use.
+     */
+    @Param({"1", "2", "4", "8"})
+    private int tasks;
+
+    /**
+     * Output array.
+     */
+    private double[] myNew;
+    /**
+     * Input array, with the right boundary fixed at 1.
+     */
+    private double[] myVal;
+    /**
+     * Executor with one worker per task.
+     */
+    private StencilExecutor executor;
+
+    /**
+     * Create the arrays and start the executor.
+     */
+    @Setup
+    public void setup() {
+        myNew = new double[n + 2];
+        myVal = new double[n + 2];
+        myVal[n + 1] = 1.0;
+        myNew[n + 1] = 1.0;
+        executor = new StencilExecutor(tasks);
+    }
+
+    /**
+     * Stop the executor.
+     */
+    @TearDown
+    public void tearDown() {
+        executor.close();
+    }
+
+    /**
+     * Phaser barrier solver, starting a thread per task.
+     * @return The output array
+     */
+    @Benchmark
+    public double[] threadPerCall() {
+        OneDimAveragingPhaser.runParallelBarrier(iterations, myNew, myVal, n,
+                                                 tasks);
+        return myNew;
+    }
+
+    /**
+     * The same job on persistent workers.
+     * @return The output array
+     */
+    @Benchmark
+    public double[] persistentWorkers() {
+        executor.run(iterations, myNew, myVal, n);
+        return myNew;
+    }
+}
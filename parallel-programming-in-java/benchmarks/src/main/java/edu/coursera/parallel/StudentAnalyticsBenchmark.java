@@ -0,0 +1,405 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the StudentAnalytics queries across roster sizes and pool
+ * sizes. Parallel streams run on the common pool of whichever pool submits
+ * them, so each parallel query is submitted to a pool with the requested
+ * number of workers. The CommonPool variants call the parallel stream
+ * queries directly, on the common pool whatever the thread count, and the
+ * Pooled variants run on the requested pool with chunks from a
+ * StudentSpliterator. The Columnar variants run the same queries over a
+ * StudentTable built from the roster. The reports benchmarks run all three
+ * queries, as separate parallel streams or as one StudentQueryEngine pass.
+ * The Incremental variants answer from the aggregates an
+ * IncrementalStudentAnalytics keeps, built once from the roster, so they
+ * measure only the cost of a query, not of maintaining the aggregates.
+ * The pool is a state of its own, so the Imperative, CommonPool and
+ * Incremental variants are not swept over the thread counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StudentAnalyticsBenchmark {
+
+    /**
+     * First names students are drawn from.
+     */
+    private static final String[] FIRST_NAMES = {"Sanjay", "Yunming", "John",
+        "Vivek", "Shams", "Max"};
+    /**
+     * Last names students are drawn from.
+     */
+    private static final String[] LAST_NAMES = {"Chatterjee", "Zhang",
+        "Smith", "Sarkar", "Imam", "Grossman"};
+
+    /**
+     * Number of students in the roster.
+     */
+    @Param({"10000", "2000000"})
+    private int students;
+
+    /**
+     * Roster, of which the first 30% are current students.
+     */
+    private Student[] studentArray;
+    /**
+     * Queries under test.
+     */
+    private final StudentAnalytics analytics = new StudentAnalytics();
+    /**
+     * The roster in columnar form.
+     */
+    private StudentTable table;
+    /**
+     * Aggregates of the roster.
+     */
+    private IncrementalStudentAnalytics incremental;
+    /**
+     * Engine running the three queries as one pass.
+     */
+    private final StudentQueryEngine engine = new StudentQueryEngine();
+    /**
+     * Average age of enrolled students, as a StudentQuery.
+     */
+    private final StudentQuery<double[], Double> averageAgeQuery =
+        StudentQuery.average(s -> s.checkIsCurrent(), Student::getAge);
+    /**
+     * Most common first name of inactive students, as a StudentQuery.
+     */
+    private final StudentQuery<NameCounter, String> commonNameQuery =
+        StudentQuery.mostCommon(s -> !s.checkIsCurrent(),
+                                Student::getFirstName);
+    /**
+     * Count of failed students older than 20, as a StudentQuery.
+     */
+    private final StudentQuery<long[], Long> failedQuery = StudentQuery.count(
+            s -> !s.checkIsCurrent() && s.getAge() > 20 && s.getGrade() < 65);
+
+    /**
+     * Create the roster, the table and the aggregates.
+     */
+    @Setup
+    public void setup() {
+        studentArray = new Student[students];
+        final Random r = new Random(123);
+        final int currentStudents = students * 3 / 10;
+        for (int s = 0; s < students; s++) {
+            studentArray[s] = new Student(
+                    FIRST_NAMES[r.nextInt(FIRST_NAMES.length)],
+                    LAST_NAMES[r.nextInt(LAST_NAMES.length)],
+                    r.nextDouble() * 100.0, 1 + r.nextInt(100),
+                    s < currentStudents);
+        }
+        table = StudentTable.fromStudents(studentArray);
+        incremental = IncrementalStudentAnalytics.fromStudents(studentArray);
+    }
+
+    /**
+     * Pool the parallel queries run on, in its own state so that only they
+     * are run once per thread count.
+     */
+    @State(Scope.Benchmark)
+    public static class PoolState {
+        /**
+         * Number of worker threads of the pool.
+         */
+        @Param({"1", "2", "4", "8"})
+        private int threads;
+        /**
+         * Pool with the requested number of workers.
+         */
+        private ForkJoinPool pool;
+        /**
+         * Queries under test, running their Pooled variants on pool.
+         */
+        private StudentAnalytics pooledAnalytics;
+
+        /**
+         * Create the pool.
+         */
+        @Setup
+        public void setup() {
+            pool = new ForkJoinPool(threads);
+            pooledAnalytics = new StudentAnalytics(pool);
+        }
+
+        /**
+         * Shut the pool down.
+         */
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sequential average age of enrolled students.
+     * @return The average age
+     */
+    @Benchmark
+    public double averageAgeImperative() {
+        return analytics.averageAgeOfEnrolledStudentsImperative(studentArray);
+    }
+
+    /**
+     * Parallel stream average age of enrolled students.
+     * @param pool The pool
+     * @return The average age
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If the query fails
+     */
+    @Benchmark
+    public double averageAgeParallelStream(final PoolState pool)
+            throws InterruptedException, ExecutionException {
+        return pool.pool.submit(() -> analytics
+                .averageAgeOfEnrolledStudentsParallelStream(studentArray))
+            .get();
+    }
+
+    /**
+     * Sequential most common first name of inactive students.
+     * @return The most common name
+     */
+    @Benchmark
+    public String mostCommonFirstNameImperative() {
+        return analytics.mostCommonFirstNameOfInactiveStudentsImperative(
+                studentArray);
+    }
+
+    /**
+     * Parallel stream most common first name of inactive students.
+     * @param pool The pool
+     * @return The most common name
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If the query fails
+     */
+    @Benchmark
+    public String mostCommonFirstNameParallelStream(final PoolState pool)
+            throws InterruptedException, ExecutionException {
+        return pool.pool.submit(() -> analytics
+                .mostCommonFirstNameOfInactiveStudentsParallelStream(
+                        studentArray))
+            .get();
+    }
+
+    /**
+     * Sequential count of failed students older than 20.
+     * @return The count
+     */
+    @Benchmark
+    public int countFailedImperative() {
+        return analytics.countNumberOfFailedStudentsOlderThan20Imperative(
+                studentArray);
+    }
+
+    /**
+     * Parallel stream count of failed students older than 20.
+     * @param pool The pool
+     * @return The count
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If the query fails
+     */
+    @Benchmark
+    public int countFailedParallelStream(final PoolState pool)
+            throws InterruptedException, ExecutionException {
+        return pool.pool.submit(() -> analytics
+                .countNumberOfFailedStudentsOlderThan20ParallelStream(
+                        studentArray))
+            .get();
+    }
+
+    /**
+     * Parallel stream average age of enrolled students on the common pool.
+     * @return The average age
+     */
+    @Benchmark
+    public double averageAgeCommonPool() {
+        return analytics.averageAgeOfEnrolledStudentsParallelStream(
+                studentArray);
+    }
+
+    /**
+     * Average age of enrolled students on the requested pool with sized
+     * chunks.
+     * @param pool The pool
+     * @return The average age
+     */
+    @Benchmark
+    public double averageAgePooled(final PoolState pool) {
+        return pool.pooledAnalytics.averageAgeOfEnrolledStudentsPooled(
+                studentArray);
+    }
+
+    /**
+     * Parallel stream most common first name of inactive students on the
+     * common pool.
+     * @return The most common name
+     */
+    @Benchmark
+    public String mostCommonFirstNameCommonPool() {
+        return analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(
+                studentArray);
+    }
+
+    /**
+     * Most common first name of inactive students on the requested pool with
+     * sized chunks.
+     * @param pool The pool
+     * @return The most common name
+     */
+    @Benchmark
+    public String mostCommonFirstNamePooled(final PoolState pool) {
+        return pool.pooledAnalytics
+            .mostCommonFirstNameOfInactiveStudentsPooled(studentArray);
+    }
+
+    /**
+     * Parallel stream count of failed students older than 20 on the common
+     * pool.
+     * @return The count
+     */
+    @Benchmark
+    public int countFailedCommonPool() {
+        return analytics.countNumberOfFailedStudentsOlderThan20ParallelStream(
+                studentArray);
+    }
+
+    /**
+     * Count of failed students older than 20 on the requested pool with
+     * sized chunks.
+     * @param pool The pool
+     * @return The count
+     */
+    @Benchmark
+    public int countFailedPooled(final PoolState pool) {
+        return pool.pooledAnalytics
+            .countNumberOfFailedStudentsOlderThan20Pooled(studentArray);
+    }
+
+    /**
+     * Average age of enrolled students over the columnar table.
+     * @param pool The pool
+     * @return The average age
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If the query fails
+     */
+    @Benchmark
+    public double averageAgeColumnar(final PoolState pool)
+            throws InterruptedException, ExecutionException {
+        return pool.pool.submit(() -> analytics
+                .averageAgeOfEnrolledStudentsColumnar(table))
+            .get();
+    }
+
+    /**
+     * Most common first name of inactive students over the columnar table.
+     * @param pool The pool
+     * @return The most common name
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If the query fails
+     */
+    @Benchmark
+    public String mostCommonFirstNameColumnar(final PoolState pool)
+            throws InterruptedException, ExecutionException {
+        return pool.pool.submit(() -> analytics
+                .mostCommonFirstNameOfInactiveStudentsColumnar(table))
+            .get();
+    }
+
+    /**
+     * Count of failed students older than 20 over the columnar table.
+     * @param pool The pool
+     * @return The count
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If the query fails
+     */
+    @Benchmark
+    public int countFailedColumnar(final PoolState pool)
+            throws InterruptedException, ExecutionException {
+        return pool.pool.submit(() -> analytics
+                .countNumberOfFailedStudentsOlderThan20Columnar(table))
+            .get();
+    }
+
+    /**
+     * The three queries as separate parallel streams.
+     * @param pool The pool
+     * @return The count, the last of the results
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If a query fails
+     */
+    @Benchmark
+    public int reportsSeparate(final PoolState pool)
+            throws InterruptedException, ExecutionException {
+        return pool.pool.submit(() -> {
+            analytics.averageAgeOfEnrolledStudentsParallelStream(studentArray);
+            analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(
+                    studentArray);
+            return analytics
+                .countNumberOfFailedStudentsOlderThan20ParallelStream(
+                        studentArray);
+        }).get();
+    }
+
+    /**
+     * The three queries fused into one parallel pass.
+     * @param pool The pool
+     * @return The results
+     * @throws InterruptedException If interrupted while waiting
+     * @throws ExecutionException If a query fails
+     */
+    @Benchmark
+    public StudentQueryEngine.Results reportsFused(final PoolState pool)
+            throws InterruptedException, ExecutionException {
+        return pool.pool.submit(() -> engine.runAll(studentArray,
+                averageAgeQuery, commonNameQuery, failedQuery)).get();
+    }
+
+    /**
+     * Average age of enrolled students from the aggregates.
+     * @return The average age
+     */
+    @Benchmark
+    public double averageAgeIncremental() {
+        return incremental.averageAgeOfEnrolledStudents();
+    }
+
+    /**
+     * Most common first name of inactive students from the aggregates.
+     * @return The most common name
+     */
+    @Benchmark
+    public String mostCommonFirstNameIncremental() {
+        return incremental.mostCommonFirstNameOfInactiveStudents();
+    }
+
+    /**
+     * Count of failed students older than 20 from the aggregates.
+     * @return The count
+     */
+    @Benchmark
+    public int countFailedIncremental() {
+        return incremental.countNumberOfFailedStudentsOlderThan20();
+    }
+}
@@ -0,0 +1,137 @@
+package edu.coursera.parallel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to load a roster with StudentLoader, from CSV and from its binary
+ * format, against reading the CSV one line at a time with String.split.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StudentLoaderBenchmark {
+
+    /**
+     * First names students are drawn from.
+     */
+    private static final String[] FIRST_NAMES = {"Sanjay", "Yunming", "John",
+        "Vivek", "Shams", "Max", "Zoë"};
+    /**
+     * Last names students are drawn from.
+     */
+    private static final String[] LAST_NAMES = {"Chatterjee", "Zhang",
+        "Smith", "Sarkar", "Imam", "Grossman"};
+
+    /**
+     * Number of students in the roster.
+     */
+    @Param({"10000", "2000000"})
+    private int students;
+
+    /**
+     * Temporary CSV roster.
+     */
+    private Path csv;
+    /**
+     * Temporary binary roster.
+     */
+    private Path binary;
+
+    /**
+     * Write the roster in both formats.
+     * @throws IOException If a file cannot be written
+     */
+    @Setup
+    public void setup() throws IOException {
+        final Student[] studentArray = new Student[students];
+        final Random r = new Random(123);
+        final int currentStudents = students * 3 / 10;
+        for (int s = 0; s < students; s++) {
+            studentArray[s] = new Student(
+                    FIRST_NAMES[r.nextInt(FIRST_NAMES.length)],
+                    LAST_NAMES[r.nextInt(LAST_NAMES.length)],
+                    r.nextDouble() * 100.0, 1 + r.nextInt(100),
+                    s < currentStudents);
+        }
+        csv = Files.createTempFile("students", ".csv");
+        binary = Files.createTempFile("students", ".bin");
+        StudentLoader.writeCsv(csv, studentArray);
+        StudentLoader.writeBinary(binary, studentArray);
+    }
+
+    /**
+     * Delete the files.
+     * @throws IOException If a file cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(csv);
+        Files.delete(binary);
+    }
+
+    /**
+     * Read the CSV roster one line at a time with String.split.
+     * @return The roster
+     * @throws IOException If the file cannot be read
+     */
+    @Benchmark
+    public Student[] readCsvSequential() throws IOException {
+        final List<Student> result = new ArrayList<Student>();
+        try (BufferedReader reader = Files.newBufferedReader(csv,
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(",");
+                result.add(new Student(fields[0], fields[1],
+                        Double.parseDouble(fields[2]),
+                        Integer.parseInt(fields[3]),
+                        Boolean.parseBoolean(fields[4])));
+            }
+        }
+        return result.toArray(new Student[0]);
+    }
+
+    /**
+     * Read the CSV roster in parallel chunks.
+     * @return The roster
+     * @throws IOException If the file cannot be read
+     */
+    @Benchmark
+    public Student[] readCsv() throws IOException {
+        return StudentLoader.readCsv(csv);
+    }
+
+    /**
+     * Read the binary roster.
+     * @return The roster
+     * @throws IOException If the file cannot be read
+     */
+    @Benchmark
+    public Student[] readBinary() throws IOException {
+        return StudentLoader.readBinary(binary);
+    }
+}
@@ -1,10 +1,10 @@
 package edu.coursera.parallel;
 
-import static edu.rice.pcdp.PCDP.finish;
-import static edu.rice.pcdp.PCDP.async;
+import static edu.coursera.parallel.AsyncFinish.finish;
+import static edu.coursera.parallel.AsyncFinish.async;
 
 /**
- * A simple class for testing compilation of an PCDP project.
+ * A simple class for testing compilation of an async/finish project.
  */
 public final class Setup {
 
@@ -15,7 +15,7 @@ public final class Setup {
     }
 
     /**
-     * A simple method for testing compilation of an PCDP project.
+     * A simple method for testing compilation of an async/finish project.
      * @param val Input value
      * @return Dummy value
      */
@@ -0,0 +1,219 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A reciprocal array sum whose result is bit-for-bit reproducible, whatever
+ * the number of threads or the way work is stolen.
+ * <p>
+ * The input is cut into blocks of a fixed size. Each block is summed with a
+ * compensated (Kahan-Babuska/Neumaier) loop, and the block results are merged
+ * pairwise along a tree that always splits a range of blocks at its midpoint.
+ * Both the blocks and the tree depend only on the input length, so the same
+ * floating-point operations are performed in the same order on every run; the
+ * parallel tasks only decide which thread performs them. Carrying the
+ * compensation terms through the tree also keeps the error independent of
+ * the input length, rather than growing with it as in the naive loop.
+ */
+public final class CompensatedReciprocalSum {
+
+    /**
+     * Number of elements summed by a single compensated leaf loop.
+     */
+    static final int BLOCK_SIZE = 4096;
+    /**
+     * Ranges of at most this many blocks are merged by the task that owns
+     * them instead of being forked further. This only affects scheduling,
+     * never the order of operations.
+     */
+    static final int SEQUENTIAL_BLOCKS = 16;
+
+    /**
+     * Default constructor.
+     */
+    private CompensatedReciprocalSum() {
+    }
+
+    /**
+     * Sequentially compute the reproducible reciprocal sum of input.
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input
+     */
+    public static double seqSum(final double[] input) {
+        final double[] acc = new double[2];
+        sumBlocks(input, 0, numBlocks(input.length), acc);
+        return acc[0] + acc[1];
+    }
+
+    /**
+     * Compute the reproducible reciprocal sum of input on the common pool.
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input, identical to
+     * seqSum
+     */
+    public static double parSum(final double[] input) {
+        return parSum(input, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compute the reproducible reciprocal sum of input on the given pool.
+     * @param input Input array
+     * @param pool Pool to run on
+     * @return The sum of the reciprocals of the array input, identical to
+     * seqSum
+     */
+    public static double parSum(final double[] input, final ForkJoinPool pool) {
+        final BlockRangeTask task = new BlockRangeTask(input, 0,
+                numBlocks(input.length));
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        return task.sum + task.compensation;
+    }
+
+    /**
+     * Computes the number of fixed-size blocks covering nElements.
+     * @param nElements The number of elements to cover
+     * @return The number of blocks, the last of which may be partial
+     */
+    private static int numBlocks(final int nElements) {
+        // Integer ceil
+        return (nElements + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Sequentially merge blocks [lo, hi) along the fixed pairwise tree.
+     * @param input Input array
+     * @param lo First block
+     * @param hi One past the last block
+     * @param acc Receives the sum in acc[0] and its compensation in acc[1]
+     */
+    private static void sumBlocks(final double[] input, final int lo,
+                                  final int hi, final double[] acc) {
+        if (hi - lo <= 1) {
+            sumBlock(input, lo, hi, acc);
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        sumBlocks(input, lo, mid, acc);
+        final double leftSum = acc[0];
+        final double leftCompensation = acc[1];
+        sumBlocks(input, mid, hi, acc);
+        merge(leftSum, leftCompensation, acc[0], acc[1], acc);
+    }
+
+    /**
+     * Sum the reciprocals of a single block with Neumaier's compensated loop,
+     * which unlike plain Kahan summation also tolerates terms larger than the
+     * running sum.
+     * @param input Input array
+     * @param lo The block to sum, or hi for an empty input
+     * @param hi One past the block to sum
+     * @param acc Receives the sum in acc[0] and its compensation in acc[1]
+     */
+    private static void sumBlock(final double[] input, final int lo,
+                                 final int hi, final double[] acc) {
+        final int start = (int) Math.min((long) lo * BLOCK_SIZE, input.length);
+        final int end = (int) Math.min((long) hi * BLOCK_SIZE, input.length);
+        double sum = 0.0;
+        double compensation = 0.0;
+        for (int k = start; k < end; k++) {
+            final double term = 1 / input[k];
+            final double t = sum + term;
+            if (Math.abs(sum) >= Math.abs(term)) {
+                compensation += (sum - t) + term;
+            } else {
+                compensation += (term - t) + sum;
+            }
+            sum = t;
+        }
+        acc[0] = sum;
+        acc[1] = compensation;
+    }
+
+    /**
+     * Merge two compensated partial sums, folding the rounding error of
+     * adding their leading parts into the compensation (Knuth's TwoSum).
+     * @param leftSum Sum of the left range
+     * @param leftCompensation Compensation of the left range
+     * @param rightSum Sum of the right range
+     * @param rightCompensation Compensation of the right range
+     * @param acc Receives the merged sum in acc[0] and compensation in acc[1]
+     */
+    private static void merge(final double leftSum,
+                              final double leftCompensation,
+                              final double rightSum,
+                              final double rightCompensation,
+                              final double[] acc) {
+        final double sum = leftSum + rightSum;
+        final double virtualRight = sum - leftSum;
+        final double error = (leftSum - (sum - virtualRight))
+            + (rightSum - virtualRight);
+        acc[0] = sum;
+        acc[1] = (leftCompensation + rightCompensation) + error;
+    }
+
+    /**
+     * A task merging a range of blocks, which forks its left half until the
+     * range is small enough to merge sequentially.
+     */
+    private static final class BlockRangeTask extends RecursiveAction {
+        /**
+         * Input array to reciprocal sum.
+         */
+        private final double[] input;
+        /**
+         * First block of this task.
+         */
+        private final int lo;
+        /**
+         * One past the last block of this task.
+         */
+        private final int hi;
+        /**
+         * Sum produced by this task.
+         */
+        private double sum;
+        /**
+         * Compensation of the sum produced by this task.
+         */
+        private double compensation;
+
+        /**
+         * Constructor.
+         * @param setInput Input values
+         * @param setLo First block
+         * @param setHi One past the last block
+         */
+        BlockRangeTask(final double[] setInput, final int setLo,
+                       final int setHi) {
+            this.input = setInput;
+            this.lo = setLo;
+            this.hi = setHi;
+        }
+
+        @Override
+        protected void compute() {
+            final double[] acc = new double[2];
+            if (hi - lo <= SEQUENTIAL_BLOCKS) {
+                sumBlocks(input, lo, hi, acc);
+            } else {
+                final int mid = (lo + hi) >>> 1;
+                final BlockRangeTask left = new BlockRangeTask(input, lo, mid);
+                final BlockRangeTask right = new BlockRangeTask(input, mid,
+                                                                hi);
+                left.fork();
+                right.compute();
+                left.join();
+                merge(left.sum, left.compensation, right.sum,
+                      right.compensation, acc);
+            }
+            sum = acc[0];
+            compensation = acc[1];
+        }
+    }
+}
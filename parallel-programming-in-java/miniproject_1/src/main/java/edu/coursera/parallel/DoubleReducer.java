@@ -0,0 +1,253 @@
+package edu.coursera.parallel;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A parallel map-reduce over a primitive double array, generalizing the
+ * reciprocal sum of {@link ReciprocalArraySum} to arbitrary element-wise
+ * kernels. Each element is mapped with a {@link DoubleUnaryOperator} and the
+ * results are merged with an associative {@link DoubleBinaryOperator}, so no
+ * values are boxed and nothing is allocated per element.
+ * <p>
+ * Several reducers can be fused with {@link #reduceAll} so that all of their
+ * aggregates are computed in a single pass over the input.
+ */
+public final class DoubleReducer {
+
+    /**
+     * Upper bound on the number of chunks a fused reduction is split into,
+     * per worker of the pool running it.
+     */
+    static final int CHUNKS_PER_WORKER = 8;
+    /**
+     * Number of elements every fused reducer processes in turn before moving
+     * on, small enough for the block to stay in the L1 cache.
+     */
+    static final int FUSED_BLOCK_SIZE = 1024;
+
+    /**
+     * Value of the reduction over an empty range.
+     */
+    private final double identity;
+    /**
+     * Kernel applied to each element.
+     */
+    private final DoubleUnaryOperator map;
+    /**
+     * Associative operator merging two mapped values or partial results.
+     */
+    private final DoubleBinaryOperator combine;
+
+    /**
+     * Constructor.
+     * @param setIdentity Identity of combine, returned for empty inputs
+     * @param setMap Kernel applied to each element
+     * @param setCombine Associative operator merging partial results
+     */
+    public DoubleReducer(final double setIdentity,
+                         final DoubleUnaryOperator setMap,
+                         final DoubleBinaryOperator setCombine) {
+        this.identity = setIdentity;
+        this.map = setMap;
+        this.combine = setCombine;
+    }
+
+    /**
+     * Create a reducer summing the mapped elements.
+     * @param setMap Kernel applied to each element
+     * @return A new reducer
+     */
+    public static DoubleReducer sum(final DoubleUnaryOperator setMap) {
+        return new DoubleReducer(0.0, setMap, Double::sum);
+    }
+
+    /**
+     * Create a reducer finding the smallest element.
+     * @return A new reducer
+     */
+    public static DoubleReducer min() {
+        return new DoubleReducer(Double.POSITIVE_INFINITY,
+                                 DoubleUnaryOperator.identity(), Math::min);
+    }
+
+    /**
+     * Create a reducer finding the largest element.
+     * @return A new reducer
+     */
+    public static DoubleReducer max() {
+        return new DoubleReducer(Double.NEGATIVE_INFINITY,
+                                 DoubleUnaryOperator.identity(), Math::max);
+    }
+
+    /**
+     * Getter for the identity of this reducer.
+     * @return Value of the reduction over an empty range
+     */
+    public double getIdentity() {
+        return identity;
+    }
+
+    /**
+     * Sequentially reduce a range of an input array.
+     * @param input Input array
+     * @param startInclusive First index to reduce
+     * @param endExclusive Index one past the last to reduce
+     * @return The reduced value of the range
+     */
+    double reduceRange(final double[] input, final int startInclusive,
+                       final int endExclusive) {
+        double value = identity;
+        for (int k = startInclusive; k < endExclusive; k++) {
+            value = combine.applyAsDouble(value, map.applyAsDouble(input[k]));
+        }
+        return value;
+    }
+
+    /**
+     * Reduce an input array in parallel on the common pool.
+     * @param input Input array
+     * @return The reduced value of input
+     */
+    public double reduce(final double[] input) {
+        return reduce(input, ReductionEngine.commonPool());
+    }
+
+    /**
+     * Reduce an input array in parallel with the given engine.
+     * @param input Input array
+     * @param engine Engine to run the reduction with
+     * @return The reduced value of input
+     */
+    public double reduce(final double[] input, final ReductionEngine engine) {
+        return engine.reduce(0, input.length,
+                             (start, end) -> reduceRange(input, start, end),
+                             combine);
+    }
+
+    /**
+     * Compute the dot product of two arrays of the same length in parallel on
+     * the common pool.
+     * @param a First input array
+     * @param b Second input array
+     * @return The sum of a[i] * b[i]
+     */
+    public static double dot(final double[] a, final double[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Length mismatch: " + a.length
+                    + " != " + b.length);
+        }
+        return ReductionEngine.commonPool().reduce(0, a.length,
+                (start, end) -> {
+                    double value = 0.0;
+                    for (int k = start; k < end; k++) {
+                        value += a[k] * b[k];
+                    }
+                    return value;
+                }, Double::sum);
+    }
+
+    /**
+     * Compute several reductions of the same input in a single parallel pass
+     * on the common pool.
+     * @param input Input array
+     * @param reducers Reducers to compute
+     * @return The value of each reducer, in the order they were given
+     */
+    public static double[] reduceAll(final double[] input,
+                                     final DoubleReducer... reducers) {
+        return reduceAll(input, ReductionEngine.commonPool(), reducers);
+    }
+
+    /**
+     * Compute several reductions of the same input in a single parallel pass.
+     * The input is cut into chunks with
+     * {@link ReciprocalArraySum#getChunkStartInclusive} and
+     * {@link ReciprocalArraySum#getChunkEndExclusive}; every chunk writes one
+     * partial result per reducer into a shared array, which is combined in
+     * chunk order once all chunks are done.
+     * Within a chunk the reducers take turns over small blocks, so the input
+     * is streamed from memory only once.
+     * @param input Input array
+     * @param engine Engine whose pool and leaf size the chunks are sized for
+     * @param reducers Reducers to compute
+     * @return The value of each reducer, in the order they were given
+     */
+    public static double[] reduceAll(final double[] input,
+                                     final ReductionEngine engine,
+                                     final DoubleReducer... reducers) {
+        final int nReducers = reducers.length;
+        final int nElements = input.length;
+        final double[] result = new double[nReducers];
+        for (int r = 0; r < nReducers; r++) {
+            result[r] = reducers[r].identity;
+        }
+        if (nElements == 0 || nReducers == 0) {
+            return result;
+        }
+
+        final int maxChunks = engine.getPool().getParallelism()
+            * CHUNKS_PER_WORKER;
+        final int wanted = Math.max(1, Math.min(maxChunks,
+                nElements / engine.getLeafSize()));
+        // Recompute the count so that no trailing chunk is empty
+        final int nChunks = ReciprocalArraySum.getChunkSize(
+                ReciprocalArraySum.getChunkSize(wanted, nElements), nElements);
+
+        final double[] partials = new double[nChunks * nReducers];
+        engine.withLeafSize(1).reduce(0, nChunks, (first, last) -> {
+            for (int chunk = first; chunk < last; chunk++) {
+                reduceChunk(input, reducers, partials, chunk, nChunks);
+            }
+            return 0.0;
+        }, (left, right) -> 0.0);
+
+        for (int chunk = 0; chunk < nChunks; chunk++) {
+            for (int r = 0; r < nReducers; r++) {
+                result[r] = reducers[r].combine.applyAsDouble(result[r],
+                        partials[chunk * nReducers + r]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the partial result of every reducer over one chunk of the input.
+     * @param input Input array
+     * @param reducers Reducers to compute
+     * @param partials Destination of the partial results, nReducers per chunk
+     * @param chunk The chunk to reduce
+     * @param nChunks The number of chunks created
+     */
+    private static void reduceChunk(final double[] input,
+                                    final DoubleReducer[] reducers,
+                                    final double[] partials,
+                                    final int chunk, final int nChunks) {
+        final int nReducers = reducers.length;
+        final int offset = chunk * nReducers;
+        final int start = ReciprocalArraySum.getChunkStartInclusive(chunk,
+                nChunks, input.length);
+        final int end = ReciprocalArraySum.getChunkEndExclusive(chunk,
+                nChunks, input.length);
+
+        if (nReducers == 1) {
+            partials[offset] = reducers[0].reduceRange(input, start, end);
+            return;
+        }
+
+        for (int r = 0; r < nReducers; r++) {
+            partials[offset + r] = reducers[r].identity;
+        }
+        // Walk the chunk in blocks that stay in L1 while every reducer runs
+        for (int blockStart = start; blockStart < end;
+                blockStart += FUSED_BLOCK_SIZE) {
+            final int blockEnd = Math.min(end, blockStart + FUSED_BLOCK_SIZE);
+            for (int r = 0; r < nReducers; r++) {
+                final DoubleReducer reducer = reducers[r];
+                partials[offset + r] = reducer.combine.applyAsDouble(
+                        partials[offset + r],
+                        reducer.reduceRange(input, blockStart, blockEnd));
+            }
+        }
+    }
+}
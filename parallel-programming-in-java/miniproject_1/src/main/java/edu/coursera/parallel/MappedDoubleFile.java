@@ -0,0 +1,135 @@
+package edu.coursera.parallel;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of raw doubles mapped read-only into memory, so that it can be
+ * reduced straight from the page cache without first being copied into a
+ * double[].
+ * <p>
+ * A single mapping is limited to 2GB, so the file is mapped as consecutive
+ * segments of 2^segmentShift doubles each (1GB by default). Element i lives
+ * in segment i &gt;&gt; segmentShift.
+ */
+public final class MappedDoubleFile {
+
+    /**
+     * Default log2 of the number of doubles in each mapped segment.
+     */
+    static final int SEGMENT_SHIFT = 27;
+
+    /**
+     * Views of the mapped segments, in file order.
+     */
+    private final DoubleBuffer[] segments;
+    /**
+     * Total number of doubles in the file.
+     */
+    private final int length;
+    /**
+     * Log2 of the number of doubles in each segment.
+     */
+    private final int segmentShift;
+
+    /**
+     * Constructor.
+     * @param setSegments Views of the mapped segments
+     * @param setLength Total number of doubles
+     * @param setSegmentShift Log2 of the number of doubles per segment
+     */
+    private MappedDoubleFile(final DoubleBuffer[] setSegments,
+                             final int setLength, final int setSegmentShift) {
+        this.segments = setSegments;
+        this.length = setLength;
+        this.segmentShift = setSegmentShift;
+    }
+
+    /**
+     * Map a file of raw doubles. Trailing bytes that do not make up a whole
+     * double are ignored.
+     * @param file File to map
+     * @param order Byte order the doubles were written in
+     * @return The mapped file
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public static MappedDoubleFile map(final Path file, final ByteOrder order)
+            throws IOException {
+        return map(file, order, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Map a file of raw doubles using segments of a given size.
+     * @param file File to map
+     * @param order Byte order the doubles were written in
+     * @param segmentShift Log2 of the number of doubles per segment
+     * @return The mapped file
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    static MappedDoubleFile map(final Path file, final ByteOrder order,
+                                final int segmentShift) throws IOException {
+        final int segmentSize = 1 << segmentShift;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            final long nDoubles = channel.size() / Double.BYTES;
+            if (nDoubles > Integer.MAX_VALUE) {
+                throw new IOException(file + " holds " + nDoubles
+                        + " doubles, more than can be indexed");
+            }
+
+            final int length = (int) nDoubles;
+            final int nSegments = (int) ((nDoubles + segmentSize - 1)
+                    >> segmentShift);
+            final DoubleBuffer[] segments = new DoubleBuffer[nSegments];
+            for (int s = 0; s < nSegments; s++) {
+                final long first = (long) s << segmentShift;
+                final long count = Math.min(segmentSize, nDoubles - first);
+                final MappedByteBuffer bytes = channel.map(
+                        FileChannel.MapMode.READ_ONLY, first * Double.BYTES,
+                        count * Double.BYTES);
+                segments[s] = bytes.order(order).asDoubleBuffer();
+            }
+            // The mappings stay valid after the channel is closed
+            return new MappedDoubleFile(segments, length, segmentShift);
+        }
+    }
+
+    /**
+     * Getter for the number of doubles in the file.
+     * @return The number of doubles
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Getter for the log2 of the number of doubles in each segment.
+     * @return The segment shift
+     */
+    int segmentShift() {
+        return segmentShift;
+    }
+
+    /**
+     * Getter for the number of mapped segments.
+     * @return The number of segments
+     */
+    int numSegments() {
+        return segments.length;
+    }
+
+    /**
+     * Getter for a mapped segment. Only absolute gets may be used on the
+     * returned view, as it is shared between threads.
+     * @param segment Index of the segment
+     * @return View of the segment
+     */
+    DoubleBuffer segment(final int segment) {
+        return segments[segment];
+    }
+}
@@ -1,9 +1,14 @@
 package edu.coursera.parallel;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.file.Path;
+import java.util.Locale;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveAction;
 
 /**
  * Class wrapping methods for implementing reciprocal array sum in parallel.
@@ -39,8 +44,8 @@ public final class ReciprocalArraySum {
      * @param nElements The number of elements to chunk across
      * @return The default chunk size
      */
-    private static int getChunkSize(final int nChunks,
-                                    final int nElements) {
+    static int getChunkSize(final int nChunks,
+                            final int nElements) {
         // Integer ceil
         return (nElements + nChunks - 1) / nChunks;
     }
@@ -54,9 +59,9 @@ public final class ReciprocalArraySum {
      * @return The inclusive index that this chunk starts at in the set of
      * nElements
      */
-    private static int getChunkStartInclusive(final int chunk,
-                                              final int nChunks,
-                                              final int nElements) {
+    static int getChunkStartInclusive(final int chunk,
+                                      final int nChunks,
+                                      final int nElements) {
         final int chunkSize = getChunkSize(nChunks,
                                            nElements);
         return chunk * chunkSize;
@@ -70,9 +75,9 @@ public final class ReciprocalArraySum {
      * @param nElements The number of elements to chunk across
      * @return The exclusive end index for this chunk
      */
-    private static int getChunkEndExclusive(final int chunk,
-                                            final int nChunks,
-                                            final int nElements) {
+    static int getChunkEndExclusive(final int chunk,
+                                    final int nChunks,
+                                    final int nElements) {
         final int chunkSize = getChunkSize(nChunks,
                                            nElements);
         final int end = (chunk + 1) * chunkSize;
@@ -84,114 +89,304 @@ public final class ReciprocalArraySum {
     }
 
     /**
-     * This class stub can be filled in to implement the body of each task
-     * created to perform reciprocal array sum in parallel.
+     * Sequential kernel computing the sum of the reciprocals of a range of an
+     * input array, used as the leaf of the parallel reductions.
+     * @param input Input array
+     * @param startInclusive First index to sum
+     * @param endExclusive Index one past the last to sum
+     * @return The sum of the reciprocals of input in the given range
      */
-    private static class ReciprocalArraySumTask extends RecursiveAction {
+    static double rangeSum(final double[] input, final int startInclusive,
+                           final int endExclusive) {
+        double value = 0;
+        for (int k = startInclusive; k < endExclusive; k++) {
+            value += 1 / input[k];
+        }
+        return value;
+    }
 
-        static int SEQUENTIAL_THRESHOLD = 5000;
+    /**
+     * Sequential kernel computing the same sum as rangeSum with four
+     * independent accumulators. Breaking the loop-carried dependency on a
+     * single accumulator lets consecutive divisions and additions overlap in
+     * the pipeline instead of each waiting for the previous add to retire.
+     * @param input Input array
+     * @param startInclusive First index to sum
+     * @param endExclusive Index one past the last to sum
+     * @return The sum of the reciprocals of input in the given range
+     */
+    static double rangeSumUnrolled(final double[] input,
+                                   final int startInclusive,
+                                   final int endExclusive) {
+        double value0 = 0;
+        double value1 = 0;
+        double value2 = 0;
+        double value3 = 0;
+        int k = startInclusive;
+        for (; k <= endExclusive - 4; k += 4) {
+            value0 += 1 / input[k];
+            value1 += 1 / input[k + 1];
+            value2 += 1 / input[k + 2];
+            value3 += 1 / input[k + 3];
+        }
+        for (; k < endExclusive; k++) {
+            value0 += 1 / input[k];
+        }
+        return (value0 + value1) + (value2 + value3);
+    }
 
+    /**
+     * Sequential kernel computing the sum of the reciprocals of a range of a
+     * buffer, using only absolute gets so the buffer can be shared between
+     * tasks.
+     * @param input Input buffer
+     * @param startInclusive First index to sum
+     * @param endExclusive Index one past the last to sum
+     * @return The sum of the reciprocals of input in the given range
+     */
+    static double rangeSum(final DoubleBuffer input, final int startInclusive,
+                           final int endExclusive) {
+        double value = 0;
+        for (int k = startInclusive; k < endExclusive; k++) {
+            value += 1 / input.get(k);
+        }
+        return value;
+    }
+
+    /**
+     * Sequential kernel computing the sum of the reciprocals of a range of a
+     * mapped file, which may span several of its segments.
+     * @param input Input file
+     * @param startInclusive First index to sum
+     * @param endExclusive Index one past the last to sum
+     * @return The sum of the reciprocals of input in the given range
+     */
+    static double rangeSum(final MappedDoubleFile input,
+                           final int startInclusive, final int endExclusive) {
+        final int shift = input.segmentShift();
+        double value = 0;
+        int k = startInclusive;
+        while (k < endExclusive) {
+            final int segment = k >> shift;
+            final int base = segment << shift;
+            final int end = (int) Math.min(endExclusive,
+                                           (long) base + (1 << shift));
+            value += rangeSum(input.segment(segment), k - base, end - base);
+            k = end;
+        }
+        return value;
+    }
+
+    /**
+     * Leaf loops the parallel reciprocal sums can run. The default is read
+     * once from the reciprocal.leafKernel system property, and is SCALAR if
+     * it is not set, so results do not change unless a faster kernel is
+     * asked for; the others add in a different order from seqArraySum, so
+     * their results may differ in the last bits.
+     */
+    enum LeafKernel {
         /**
-         * Starting index for traversal done by this task.
+         * Single accumulator loop, summing in the same order as seqArraySum.
          */
-        private final int startIndexInclusive;
+        SCALAR {
+            @Override
+            double sum(final double[] input, final int startInclusive,
+                       final int endExclusive) {
+                return rangeSum(input, startInclusive, endExclusive);
+            }
+        },
         /**
-         * Ending index for traversal done by this task.
+         * Four accumulator loop, see rangeSumUnrolled.
          */
-        private final int endIndexExclusive;
+        UNROLLED {
+            @Override
+            double sum(final double[] input, final int startInclusive,
+                       final int endExclusive) {
+                return rangeSumUnrolled(input, startInclusive, endExclusive);
+            }
+        },
         /**
-         * Input array to reciprocal sum.
+         * Four vector accumulators on the incubating Vector API, see
+         * VectorReciprocalSum. Runs UNROLLED where that API is not
+         * available: before Java 17, or without --add-modules
+         * jdk.incubator.vector.
          */
-        private final double[] input;
+        VECTOR {
+            @Override
+            double sum(final double[] input, final int startInclusive,
+                       final int endExclusive) {
+                if (VectorKernel.RANGE_SUM == null) {
+                    return rangeSumUnrolled(input, startInclusive,
+                                            endExclusive);
+                }
+                try {
+                    return (double) VectorKernel.RANGE_SUM.invokeExact(input,
+                            startInclusive, endExclusive);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
         /**
-         * Intermediate value produced by this task.
+         * Kernel used when none is given explicitly.
          */
-        private double value;
+        static final LeafKernel DEFAULT =
+            parse(System.getProperty("reciprocal.leafKernel"));
 
-        private int numTasks;
-        private int numElements;
+        /**
+         * Parse a kernel name, ignoring case. Since this runs while the
+         * class is initialized, an unknown name selects SCALAR rather than
+         * throwing, which would leave the class unusable.
+         * @param name Name of the kernel, may be null
+         * @return The kernel of that name, SCALAR if there is none
+         */
+        static LeafKernel parse(final String name) {
+            if (name != null) {
+                for (final LeafKernel kernel : values()) {
+                    if (kernel.name().equals(name.trim()
+                            .toUpperCase(Locale.ROOT))) {
+                        if (kernel == VECTOR && !isVectorSupported()) {
+                            System.err.println("Vector API not available, "
+                                    + VECTOR + " runs " + UNROLLED);
+                        }
+                        return kernel;
+                    }
+                }
+                System.err.println("Unknown reciprocal.leafKernel " + name
+                        + ", using " + SCALAR);
+            }
+            return SCALAR;
+        }
 
         /**
-         * Constructor.
-         * @param setStartIndexInclusive Set the starting index to begin
-         * parallel traversal at.
-         * @param setEndIndexExclusive Set ending index for parallel traversal.
-         * @param setInput Input values
+         * Whether VECTOR runs on the Vector API rather than falling back to
+         * UNROLLED.
+         * @return Whether the Vector API is available
          */
-        ReciprocalArraySumTask(final int setStartIndexInclusive,
-                               final int setEndIndexExclusive,
-                               final double[] setInput) {
-            this.startIndexInclusive = setStartIndexInclusive;
-            this.endIndexExclusive = setEndIndexExclusive;
-            this.input = setInput;
-            this.numTasks = 2;
-            this.numElements = input.length;
+        static boolean isVectorSupported() {
+            return VectorKernel.RANGE_SUM != null;
         }
 
-        public ReciprocalArraySumTask(final int setStartIndexInclusive,
-                                      final int setEndIndexExclusive,
-                                      final double[] setInput,
-                                      int numTasks,
-                                      int numElements) {
-            this.startIndexInclusive = setStartIndexInclusive;
-            this.endIndexExclusive = setEndIndexExclusive;
-            this.input = setInput;
-            this.numTasks = numTasks;
-            this.numElements = numElements;
+        /**
+         * Sum the reciprocals of a range of an input array.
+         * @param input Input array
+         * @param startInclusive First index to sum
+         * @param endExclusive Index one past the last to sum
+         * @return The sum of the reciprocals of input in the given range
+         */
+        abstract double sum(double[] input, int startInclusive,
+                            int endExclusive);
+    }
+
+    /**
+     * Lazily looked up entry point of the Vector API kernel.
+     */
+    private static final class VectorKernel {
+        /**
+         * VectorReciprocalSum.rangeSum, or null if it cannot run here.
+         */
+        static final MethodHandle RANGE_SUM = find();
+
+        /**
+         * Default constructor.
+         */
+        private VectorKernel() {
         }
 
         /**
-         * Getter for the value produced by this task.
-         * @return Value produced by this task
+         * Look VectorReciprocalSum.rangeSum up and call it once, which
+         * fails if its class was not compiled, cannot be loaded by this
+         * JVM, or the jdk.incubator.vector module is missing.
+         * @return The method, or null if the Vector API is not available
          */
-        public double getValue() {
-            return value;
+        private static MethodHandle find() {
+            try {
+                final MethodHandle rangeSum = MethodHandles.lookup()
+                    .findStatic(Class.forName(
+                            "edu.coursera.parallel.VectorReciprocalSum"),
+                        "rangeSum", MethodType.methodType(double.class,
+                            double[].class, int.class, int.class));
+                final double[] probe = {1.0, 2.0};
+                final double sum = (double) rangeSum.invokeExact(probe, 0,
+                                                                 2);
+                return sum == 1.5 ? rangeSum : null;
+            } catch (Throwable e) {
+                return null;
+            }
         }
+    }
 
-        @Override
-        protected void compute() {
+    /**
+     * Lazily initialized engine whose leaf size is calibrated against the
+     * reciprocal sum kernel the first time it is needed.
+     */
+    private static final class CalibratedEngine {
+        /**
+         * Engine running on the common pool.
+         */
+        static final ReductionEngine INSTANCE = calibrate();
 
-            if ((endIndexExclusive - startIndexInclusive) <= SEQUENTIAL_THRESHOLD) {
-                //seq
-                for (int k = startIndexInclusive; k < endIndexExclusive; k++) {
-                    value += 1 / input[k];
-                }
-            } else {
-
-                List<ReciprocalArraySumTask> tasks = new ArrayList<>();
-                for (int i = 0; i < numTasks; i++) {
-
-                    int start = getChunkStartInclusive(i,
-                                                       numTasks,
-                                                        numElements) + startIndexInclusive;
-                    int end = getChunkEndExclusive(i,
-                                                   numTasks,
-                                                    numElements) + startIndexInclusive;
-
-                    ReciprocalArraySumTask t1 = new ReciprocalArraySumTask(start,
-                                                                           end,
-                                                                           input,
-                                                                           numTasks,
-                                                                           end - start);
-
-                    if(i < numTasks - 1){
-                        t1.fork();
-                        tasks.add(t1);
-                    }
-                    else{
-                         t1.compute();
-                        value += t1.getValue();
-                    }
-                }
-                for (ReciprocalArraySumTask task : tasks) {
-                    task.join();
-                    value += task.getValue();
-                }
+        /**
+         * Default constructor.
+         */
+        private CalibratedEngine() {
+        }
 
+        /**
+         * Measure the per-element cost of the reciprocal sum on a synthetic
+         * input and pick a leaf size from it.
+         * @return The calibrated engine
+         */
+        private static ReductionEngine calibrate() {
+            final double[] sample =
+                new double[ReductionEngine.CALIBRATION_SAMPLE];
+            for (int i = 0; i < sample.length; i++) {
+                sample[i] = 1 + (i % 100);
             }
+            return ReductionEngine.calibrate(ForkJoinPool.commonPool(),
+                    (start, end) -> LeafKernel.DEFAULT.sum(sample, start,
+                                                           end),
+                    sample.length);
         }
     }
 
+    /**
+     * Getter for the engine shared by the parallel reciprocal sums.
+     * @return The calibrated engine
+     */
+    static ReductionEngine getEngine() {
+        return CalibratedEngine.INSTANCE;
+    }
+
+    /**
+     * Compute the reciprocal sum of input in parallel with the given engine
+     * and the default leaf kernel.
+     * @param input Input array
+     * @param engine Engine to run the reduction with
+     * @return The sum of the reciprocals of the array input
+     */
+    static double parArraySum(final double[] input,
+                              final ReductionEngine engine) {
+        return parArraySum(input, engine, LeafKernel.DEFAULT);
+    }
+
+    /**
+     * Compute the reciprocal sum of input in parallel with the given engine
+     * and leaf kernel.
+     * @param input Input array
+     * @param engine Engine to run the reduction with
+     * @param kernel Leaf loop to run on each range
+     * @return The sum of the reciprocals of the array input
+     */
+    static double parArraySum(final double[] input,
+                              final ReductionEngine engine,
+                              final LeafKernel kernel) {
+        return engine.reduce(0, input.length,
+                             (start, end) -> kernel.sum(input, start, end),
+                             Double::sum);
+    }
+
     public static void main(String[] args) {
         double[] input = {0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9};
         System.out.println(seqArraySum(input));
@@ -200,44 +395,107 @@ public final class ReciprocalArraySum {
     }
 
     /**
-     * TODO: Modify this method to compute the same reciprocal sum as
-     * seqArraySum, but use two tasks running in parallel under the Java Fork
-     * Join framework. You may assume that the length of the input array is
-     * evenly divisible by 2.
+     * Compute the same reciprocal sum as seqArraySum in parallel under the
+     * Java Fork Join framework, letting the calibrated engine decide how far
+     * to split the input.
      * @param input Input array
      * @return The sum of the reciprocals of the array input
      */
     protected static double parArraySum(final double[] input) {
-        assert input.length % 2 == 0;
-
-        ReciprocalArraySumTask r1 = new ReciprocalArraySumTask(0,
-                                                               input.length,
-                                                               input);
-
-        ForkJoinPool.commonPool().invoke(r1);
-
-        return r1.getValue();
+        return parArraySum(input, getEngine());
     }
 
     /**
-     * TODO: Extend the work you did to implement parArraySum to use a set
-     * number of tasks to compute the reciprocal array sum. You may find the
-     * above utilities getChunkStartInclusive and getChunkEndExclusive helpful
-     * in computing the range of element indices that belong to each chunk.
+     * Compute the reciprocal sum in parallel, making sure the input may be
+     * split into at least numTasks pieces. Splitting beyond that is left to
+     * the calibrated engine, so numTasks no longer has to match the machine.
      * @param input Input array
-     * @param numTasks The number of tasks to create
+     * @param numTasks The minimum number of tasks the input may be split into
      * @return The sum of the reciprocals of the array input
      */
     protected static double parManyTaskArraySum(final double[] input,
                                                 final int numTasks) {
-        ReciprocalArraySumTask r1 = new ReciprocalArraySumTask(0,
-                                                               input.length,
-                                                               input,
-                                                               numTasks,
-                                                               input.length);
+        final ReductionEngine engine = getEngine();
+        final int maxLeafSize = getChunkSize(Math.max(numTasks, 1),
+                                             Math.max(input.length, 1));
+        if (maxLeafSize < engine.getLeafSize()) {
+            return parArraySum(input, engine.withLeafSize(maxLeafSize));
+        }
+        return parArraySum(input, engine);
+    }
+
+    /**
+     * Compute the reciprocal sum in parallel with compensated leaf loops and
+     * a fixed combine tree, so that the result is the same bit for bit
+     * regardless of the number of threads. See CompensatedReciprocalSum.
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input
+     */
+    protected static double parArraySumReproducible(final double[] input) {
+        return CompensatedReciprocalSum.parSum(input);
+    }
+
+    /**
+     * Compute the reciprocal sum of the remaining elements of a buffer in
+     * parallel, without copying them into an array. The buffer may be direct
+     * or mapped; its position is left unchanged.
+     * @param input Input buffer
+     * @return The sum of the reciprocals of the buffer contents
+     */
+    protected static double parArraySum(final DoubleBuffer input) {
+        final DoubleBuffer view = input.slice();
+        return getEngine().reduce(0, view.remaining(),
+                                  (start, end) -> rangeSum(view, start, end),
+                                  Double::sum);
+    }
 
-        ForkJoinPool.commonPool().invoke(r1);
+    /**
+     * Compute the reciprocal sum of a file of raw doubles in the platform's
+     * native byte order, see parArraySum(Path, ByteOrder).
+     * @param file File of raw doubles
+     * @return The sum of the reciprocals of the file contents
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    protected static double parArraySum(final Path file) throws IOException {
+        return parArraySum(file, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Compute the reciprocal sum of a file of raw doubles in parallel. The
+     * file is memory mapped and its index range split across fork-join
+     * tasks, so the reduction streams from the page cache without copying
+     * the file onto the heap.
+     * @param file File of raw doubles
+     * @param order Byte order the doubles were written in
+     * @return The sum of the reciprocals of the file contents
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    protected static double parArraySum(final Path file,
+                                        final ByteOrder order)
+            throws IOException {
+        return parArraySum(MappedDoubleFile.map(file, order));
+    }
 
-        return r1.getValue();
+    /**
+     * Compute the reciprocal sum of an already mapped file in parallel.
+     * @param input Mapped file of raw doubles
+     * @return The sum of the reciprocals of the file contents
+     */
+    static double parArraySum(final MappedDoubleFile input) {
+        return parArraySum(input, getEngine());
+    }
+
+    /**
+     * Compute the reciprocal sum of an already mapped file in parallel with
+     * the given engine.
+     * @param input Mapped file of raw doubles
+     * @param engine Engine to run the reduction with
+     * @return The sum of the reciprocals of the file contents
+     */
+    static double parArraySum(final MappedDoubleFile input,
+                              final ReductionEngine engine) {
+        return engine.reduce(0, input.length(),
+                             (start, end) -> rangeSum(input, start, end),
+                             Double::sum);
     }
 }
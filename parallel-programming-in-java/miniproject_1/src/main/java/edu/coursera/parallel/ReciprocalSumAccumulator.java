@@ -0,0 +1,175 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent, incremental reciprocal sum for inputs that arrive as a feed
+ * rather than as a complete array. Any number of producer threads may add
+ * values or whole chunks while others take snapshots, and the full input is
+ * never materialized.
+ * <p>
+ * The running sum is kept in a {@link DoubleAdder}, whose cells are striped
+ * across threads under contention, so producers do not all CAS the same
+ * word. A chunk is first reduced locally with the same loop as
+ * {@link ReciprocalArraySum#seqArraySum} and then published with a single
+ * add. As with DoubleAdder, a snapshot taken while producers are running is
+ * not an atomic view: it includes some subset of the concurrent updates.
+ */
+public final class ReciprocalSumAccumulator {
+
+    /**
+     * Chunks at least this long are reduced in parallel before being added.
+     */
+    static final int PARALLEL_CHUNK_THRESHOLD = 1 << 16;
+
+    /**
+     * Sum of the reciprocals of all values added since the last reset.
+     */
+    private final DoubleAdder sum = new DoubleAdder();
+    /**
+     * Number of values added since the last reset.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Add the reciprocal of a single value.
+     * @param value The value to add
+     */
+    public void add(final double value) {
+        sum.add(1 / value);
+        count.increment();
+    }
+
+    /**
+     * Add the reciprocals of every value in a chunk.
+     * @param chunk The values to add
+     */
+    public void addAll(final double[] chunk) {
+        addAll(chunk, 0, chunk.length);
+    }
+
+    /**
+     * Add the reciprocals of the values in a range of a chunk. Large ranges
+     * are reduced on the fork-join pool first, so a single producer with a
+     * big batch does not serialize the work.
+     * @param chunk The values to add
+     * @param startInclusive First index to add
+     * @param endExclusive Index one past the last to add
+     */
+    public void addAll(final double[] chunk, final int startInclusive,
+                       final int endExclusive) {
+        final int n = endExclusive - startInclusive;
+        if (n <= 0) {
+            return;
+        }
+
+        final double partial;
+        if (n < PARALLEL_CHUNK_THRESHOLD) {
+            partial = ReciprocalArraySum.rangeSum(chunk, startInclusive,
+                                                  endExclusive);
+        } else {
+            partial = ReciprocalArraySum.getEngine().reduce(startInclusive,
+                    endExclusive,
+                    (start, end) -> ReciprocalArraySum.LeafKernel.DEFAULT
+                        .sum(chunk, start, end),
+                    Double::sum);
+        }
+        sum.add(partial);
+        count.add(n);
+    }
+
+    /**
+     * Returns the current reciprocal sum.
+     * @return The sum of the reciprocals of all values added so far
+     */
+    public double snapshot() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the number of values added so far.
+     * @return The current count
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Discard all values added so far. Only meaningful when no producer is
+     * adding concurrently.
+     */
+    public void reset() {
+        sum.reset();
+        count.reset();
+    }
+
+    /**
+     * Returns the current reciprocal sum and count and resets the
+     * accumulator, closing a window of the feed.
+     * <p>
+     * The sum and the count are each read and reset atomically, but not
+     * together: a value added by a producer while the window closes may
+     * have its reciprocal counted in this window and itself in the next,
+     * or the other way round. With no producer running the two always
+     * agree. From Java 9 on, each adder clears every cell with an atomic
+     * swap, so across consecutive windows every value is counted once in
+     * the sums and once in the counts. On Java 8 a cell is read and then
+     * cleared, so an add landing in between is lost from both.
+     * @return The sum and count of the values added since the last reset
+     */
+    public Snapshot snapshotThenReset() {
+        final double windowSum = sum.sumThenReset();
+        final long windowCount = count.sumThenReset();
+        return new Snapshot(windowSum, windowCount);
+    }
+
+    /**
+     * The sum and count of a window closed by snapshotThenReset.
+     */
+    public static final class Snapshot {
+        /**
+         * Sum of the reciprocals of the values in the window.
+         */
+        private final double sum;
+        /**
+         * Number of values in the window.
+         */
+        private final long count;
+
+        /**
+         * Constructor.
+         * @param setSum Sum of the reciprocals of the values in the window
+         * @param setCount Number of values in the window
+         */
+        Snapshot(final double setSum, final long setCount) {
+            this.sum = setSum;
+            this.count = setCount;
+        }
+
+        /**
+         * Getter for the sum.
+         * @return Sum of the reciprocals of the values in the window
+         */
+        public double getSum() {
+            return sum;
+        }
+
+        /**
+         * Getter for the count.
+         * @return Number of values in the window
+         */
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Returns the String representation of the current sum.
+     * @return The String representation of the current sum
+     */
+    @Override
+    public String toString() {
+        return Double.toString(snapshot());
+    }
+}
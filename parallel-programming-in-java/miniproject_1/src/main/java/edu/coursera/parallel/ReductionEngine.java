@@ -0,0 +1,296 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * A generic fork-join reduction over a range of array indices whose
+ * granularity adapts to the load of the pool it runs on, rather than being
+ * fixed by a sequential threshold or a caller-chosen number of tasks.
+ * <p>
+ * A task keeps halving its range and forking the right half only while its
+ * worker has few surplus queued tasks (see
+ * {@link ForkJoinTask#getSurplusQueuedTaskCount()}); once the other workers
+ * are kept busy it processes the remainder of its range sequentially. The
+ * leaf size only bounds how fine that splitting can become, and can either
+ * be fixed or chosen by {@link #calibrate} from the measured per-element cost
+ * of the kernel.
+ */
+public final class ReductionEngine {
+
+    /**
+     * A sequential kernel that reduces the elements in a range of indices to a
+     * single value. Applying a kernel to an empty range must return the
+     * identity of the combine operator used with it.
+     */
+    @FunctionalInterface
+    public interface RangeKernel {
+        /**
+         * Reduce the elements in [startInclusive, endExclusive).
+         * @param startInclusive First index of the range
+         * @param endExclusive Index one past the end of the range
+         * @return The reduced value of the range
+         */
+        double apply(int startInclusive, int endExclusive);
+    }
+
+    /**
+     * Leaf size used when none is given or calibrated.
+     */
+    static final int DEFAULT_LEAF_SIZE = 4096;
+    /**
+     * Smallest leaf size calibration may choose.
+     */
+    static final int MIN_LEAF_SIZE = 256;
+    /**
+     * Largest leaf size calibration may choose.
+     */
+    static final int MAX_LEAF_SIZE = 1 << 20;
+    /**
+     * A task stops forking once its worker has more than this many surplus
+     * queued tasks for idle workers to steal.
+     */
+    static final int SURPLUS_THRESHOLD = 3;
+    /**
+     * Time a single leaf should take, so that it amortizes the cost of
+     * forking and joining the task that computes it.
+     */
+    static final long TARGET_LEAF_NANOS = 50_000L;
+    /**
+     * Number of elements timed by {@link #calibrate}.
+     */
+    static final int CALIBRATION_SAMPLE = 1 << 16;
+    /**
+     * Number of timed runs over the calibration sample, the fastest of which
+     * is used so that JIT compilation is not counted as per-element cost.
+     */
+    static final int CALIBRATION_RUNS = 8;
+
+    /**
+     * Pool that reductions run on.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * Ranges no larger than this are never split further.
+     */
+    private final int leafSize;
+
+    /**
+     * Constructor.
+     * @param setPool Pool to run reductions on
+     * @param setLeafSize Size below which ranges are not split further
+     */
+    public ReductionEngine(final ForkJoinPool setPool, final int setLeafSize) {
+        if (setLeafSize < 1) {
+            throw new IllegalArgumentException("Leaf size must be positive: "
+                    + setLeafSize);
+        }
+        this.pool = setPool;
+        this.leafSize = setLeafSize;
+    }
+
+    /**
+     * Create an engine running on the common pool with the default leaf size.
+     * @return A new engine
+     */
+    public static ReductionEngine commonPool() {
+        return new ReductionEngine(ForkJoinPool.commonPool(),
+                                   DEFAULT_LEAF_SIZE);
+    }
+
+    /**
+     * Create an engine whose leaf size is chosen from the measured cost of
+     * running the kernel over the first nElements indices, so that each leaf
+     * takes roughly {@link #TARGET_LEAF_NANOS}.
+     * @param setPool Pool to run reductions on
+     * @param kernel Kernel that will be reduced with the engine
+     * @param nElements Number of indices the kernel may be applied to
+     * @return A new engine with a calibrated leaf size
+     */
+    public static ReductionEngine calibrate(final ForkJoinPool setPool,
+                                            final RangeKernel kernel,
+                                            final int nElements) {
+        final int sample = Math.min(nElements, CALIBRATION_SAMPLE);
+        if (sample == 0) {
+            return new ReductionEngine(setPool, DEFAULT_LEAF_SIZE);
+        }
+
+        long best = Long.MAX_VALUE;
+        double sink = 0.0;
+        for (int run = 0; run < CALIBRATION_RUNS; run++) {
+            final long start = System.nanoTime();
+            sink += kernel.apply(0, sample);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        // Keep the timed work observable so it is not optimized away
+        if (sink == Double.MIN_VALUE) {
+            best++;
+        }
+
+        final double nanosPerElement = Math.max(best, 1L) / (double) sample;
+        return new ReductionEngine(setPool,
+                                   leafSizeFor(nanosPerElement));
+    }
+
+    /**
+     * Computes the leaf size that makes a leaf take
+     * {@link #TARGET_LEAF_NANOS}, given the cost of a single element.
+     * @param nanosPerElement Measured cost of one element
+     * @return The clamped leaf size
+     */
+    static int leafSizeFor(final double nanosPerElement) {
+        final double size = TARGET_LEAF_NANOS / nanosPerElement;
+        if (size < MIN_LEAF_SIZE) {
+            return MIN_LEAF_SIZE;
+        } else if (size > MAX_LEAF_SIZE) {
+            return MAX_LEAF_SIZE;
+        } else {
+            return (int) size;
+        }
+    }
+
+    /**
+     * Getter for the leaf size of this engine.
+     * @return Size below which ranges are not split further
+     */
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    /**
+     * Getter for the pool this engine runs on.
+     * @return The pool reductions run on
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Create an engine running on the same pool with a different leaf size.
+     * @param setLeafSize Size below which ranges are not split further
+     * @return A new engine
+     */
+    public ReductionEngine withLeafSize(final int setLeafSize) {
+        return new ReductionEngine(pool, setLeafSize);
+    }
+
+    /**
+     * Reduce the range [startInclusive, endExclusive) in parallel. Partial
+     * results are always combined in index order, so combine only needs to be
+     * associative.
+     * @param startInclusive First index of the range
+     * @param endExclusive Index one past the end of the range
+     * @param kernel Sequential kernel applied to each leaf range
+     * @param combine Associative operator merging two partial results
+     * @return The reduced value of the range
+     */
+    public double reduce(final int startInclusive, final int endExclusive,
+                         final RangeKernel kernel,
+                         final DoubleBinaryOperator combine) {
+        if (endExclusive - startInclusive <= leafSize) {
+            return kernel.apply(startInclusive, endExclusive);
+        }
+
+        final ReduceTask task = new ReduceTask(startInclusive, endExclusive,
+                                               kernel, combine, leafSize,
+                                               null);
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        return task.value;
+    }
+
+    /**
+     * A task that reduces a range, forking off its right halves while the
+     * pool has too little queued work. Forked halves are chained through
+     * next so they can be joined without allocating a list.
+     */
+    private static final class ReduceTask extends RecursiveAction {
+        /**
+         * Starting index for traversal done by this task.
+         */
+        private final int startIndexInclusive;
+        /**
+         * Ending index for traversal done by this task.
+         */
+        private final int endIndexExclusive;
+        /**
+         * Kernel applied to leaf ranges.
+         */
+        private final RangeKernel kernel;
+        /**
+         * Operator merging partial results.
+         */
+        private final DoubleBinaryOperator combine;
+        /**
+         * Size below which ranges are not split further.
+         */
+        private final int leafSize;
+        /**
+         * Previously forked sibling, covering the range right of this one.
+         */
+        private final ReduceTask next;
+        /**
+         * Intermediate value produced by this task.
+         */
+        private double value;
+
+        /**
+         * Constructor.
+         * @param setStartIndexInclusive Set the starting index to begin
+         * parallel traversal at.
+         * @param setEndIndexExclusive Set ending index for parallel traversal.
+         * @param setKernel Kernel applied to leaf ranges
+         * @param setCombine Operator merging partial results
+         * @param setLeafSize Size below which ranges are not split
+         * @param setNext Previously forked sibling, or null
+         */
+        ReduceTask(final int setStartIndexInclusive,
+                   final int setEndIndexExclusive,
+                   final RangeKernel setKernel,
+                   final DoubleBinaryOperator setCombine,
+                   final int setLeafSize,
+                   final ReduceTask setNext) {
+            this.startIndexInclusive = setStartIndexInclusive;
+            this.endIndexExclusive = setEndIndexExclusive;
+            this.kernel = setKernel;
+            this.combine = setCombine;
+            this.leafSize = setLeafSize;
+            this.next = setNext;
+        }
+
+        @Override
+        protected void compute() {
+            final int start = startIndexInclusive;
+            int end = endIndexExclusive;
+            ReduceTask forked = null;
+
+            while (end - start > leafSize
+                    && getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD) {
+                final int mid = (start + end) >>> 1;
+                forked = new ReduceTask(mid, end, kernel, combine, leafSize,
+                                        forked);
+                forked.fork();
+                end = mid;
+            }
+
+            double result = kernel.apply(start, end);
+
+            // The most recently forked task is adjacent to our own range
+            while (forked != null) {
+                if (forked.tryUnfork()) {
+                    forked.compute();
+                } else {
+                    forked.join();
+                }
+                result = combine.applyAsDouble(result, forked.value);
+                forked = forked.next;
+            }
+            value = result;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package edu.coursera.parallel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Leaf loop of the reciprocal sum on the incubating Vector API. It is
+ * compiled for Java 17 with the jdk.incubator.vector module, and only ever
+ * reached through ReciprocalArraySum.LeafKernel.VECTOR, which looks it up
+ * reflectively and runs UNROLLED when it cannot be loaded.
+ */
+final class VectorReciprocalSum {
+    /**
+     * Widest vector shape the platform supports.
+     */
+    private static final VectorSpecies<Double> SPECIES =
+        DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Default constructor.
+     */
+    private VectorReciprocalSum() {
+    }
+
+    /**
+     * Sum the reciprocals of a range of an input array with four
+     * independent vector accumulators, so that consecutive divisions
+     * overlap the way they do in rangeSumUnrolled, each over a full vector
+     * of lanes. The elements past the last whole vector are added one by
+     * one.
+     * @param input Input array
+     * @param startInclusive First index to sum
+     * @param endExclusive Index one past the last to sum
+     * @return The sum of the reciprocals of input in the given range
+     */
+    static double rangeSum(final double[] input, final int startInclusive,
+                           final int endExclusive) {
+        final int lanes = SPECIES.length();
+        final DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector value0 = DoubleVector.zero(SPECIES);
+        DoubleVector value1 = DoubleVector.zero(SPECIES);
+        DoubleVector value2 = DoubleVector.zero(SPECIES);
+        DoubleVector value3 = DoubleVector.zero(SPECIES);
+        int k = startInclusive;
+        for (; k <= endExclusive - 4 * lanes; k += 4 * lanes) {
+            value0 = value0.add(one.div(
+                DoubleVector.fromArray(SPECIES, input, k)));
+            value1 = value1.add(one.div(
+                DoubleVector.fromArray(SPECIES, input, k + lanes)));
+            value2 = value2.add(one.div(
+                DoubleVector.fromArray(SPECIES, input, k + 2 * lanes)));
+            value3 = value3.add(one.div(
+                DoubleVector.fromArray(SPECIES, input, k + 3 * lanes)));
+        }
+        for (; k <= endExclusive - lanes; k += lanes) {
+            value0 = value0.add(one.div(
+                DoubleVector.fromArray(SPECIES, input, k)));
+        }
+        double value = value0.add(value1).add(value2.add(value3))
+            .reduceLanes(VectorOperators.ADD);
+        for (; k < endExclusive; k++) {
+            value += 1 / input[k];
+        }
+        return value;
+    }
+}
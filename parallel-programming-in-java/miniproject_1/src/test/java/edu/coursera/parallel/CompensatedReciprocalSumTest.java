@@ -0,0 +1,80 @@
+package edu.coursera.parallel;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class CompensatedReciprocalSumTest extends TestCase {
+    /**
+     * Create an input whose reciprocals span many orders of magnitude, which is where naive summation loses
+     * precision.
+     */
+    private double[] createArray(final int N) {
+        final double[] input = new double[N];
+        final Random rand = new Random(314);
+
+        for (int i = 0; i < N; i++) {
+            input[i] = Math.pow(10, rand.nextInt(12) - 4) * (1 + rand.nextDouble());
+        }
+
+        return input;
+    }
+
+    /**
+     * Sum the reciprocals exactly, so the only error left is the final rounding to double.
+     */
+    private double exactSum(final double[] input) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < input.length; i++) {
+            sum = sum.add(new BigDecimal(1 / input[i]));
+        }
+        return sum.doubleValue();
+    }
+
+    public void testEmptyAndPartialBlocks() {
+        final int[] sizes = {0, 1, CompensatedReciprocalSum.BLOCK_SIZE - 1, CompensatedReciprocalSum.BLOCK_SIZE,
+            CompensatedReciprocalSum.BLOCK_SIZE + 1};
+
+        for (int N : sizes) {
+            final double[] input = createArray(N);
+            assertEquals("Mismatch for N = " + N, exactSum(input), CompensatedReciprocalSum.parSum(input),
+                    Math.ulp(exactSum(input)));
+        }
+    }
+
+    public void testMoreAccurateThanNaive() {
+        final double[] input = createArray(500_000);
+        final double exact = exactSum(input);
+
+        final double compensatedError = Math.abs(CompensatedReciprocalSum.parSum(input) - exact);
+        final double naiveError = Math.abs(ReciprocalArraySum.seqArraySum(input) - exact);
+
+        assertTrue("Compensated error " + compensatedError + " is not within an ulp of the exact sum",
+                compensatedError <= Math.ulp(exact));
+        assertTrue(compensatedError <= naiveError);
+    }
+
+    /**
+     * The result must not depend on the number of threads.
+     */
+    public void testBitReproducibleAcrossPools() {
+        final double[] input = createArray(3_000_017);
+        final long expected = Double.doubleToRawLongBits(CompensatedReciprocalSum.seqSum(input));
+
+        final int[] parallelisms = {1, 2, 3, 7, 16};
+        for (int parallelism : parallelisms) {
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                for (int r = 0; r < 3; r++) {
+                    final double sum = CompensatedReciprocalSum.parSum(input, pool);
+                    assertEquals("Result changed with parallelism " + parallelism, expected,
+                            Double.doubleToRawLongBits(sum));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class DoubleReducerTest extends TestCase {
+    public void testReciprocalSumMatchesReciprocalArraySum() {
+        final double[] input = ReciprocalFixtures.createArray(1_000_000);
+        final double expected = ReciprocalArraySum.seqArraySum(input);
+        final double sum = DoubleReducer.sum(x -> 1 / x).reduce(input);
+        assertEquals(expected, sum, 1E-6);
+    }
+
+    public void testEmptyInputReturnsIdentity() {
+        final double[] input = new double[0];
+        assertEquals(0.0, DoubleReducer.sum(x -> x).reduce(input));
+        assertEquals(Double.POSITIVE_INFINITY, DoubleReducer.min().reduce(input));
+
+        final double[] all = DoubleReducer.reduceAll(input, DoubleReducer.min(), DoubleReducer.max());
+        assertEquals(Double.POSITIVE_INFINITY, all[0]);
+        assertEquals(Double.NEGATIVE_INFINITY, all[1]);
+    }
+
+    public void testDot() {
+        final double[] a = ReciprocalFixtures.createArray(100_003);
+        final double[] b = ReciprocalFixtures.createArray(100_003);
+        double expected = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            expected += a[i] * b[i];
+        }
+        assertEquals(expected, DoubleReducer.dot(a, b), 1E-6 * expected);
+    }
+
+    /**
+     * The fused pass must agree with separate passes for sizes that do not divide evenly into chunks.
+     */
+    public void testFusedMatchesSeparate() {
+        final ReductionEngine engine = new ReductionEngine(ForkJoinPool.commonPool(), 10);
+        final int[] sizes = {1, 9, 10, 11, 1_000, 123_457};
+
+        for (int N : sizes) {
+            final double[] input = ReciprocalFixtures.createArray(N);
+            final DoubleReducer[] reducers = {
+                DoubleReducer.sum(x -> x * x), DoubleReducer.sum(Math::log), DoubleReducer.min(), DoubleReducer.max()
+            };
+
+            final double[] fused = DoubleReducer.reduceAll(input, engine, reducers);
+            for (int r = 0; r < reducers.length; r++) {
+                final double separate = reducers[r].reduceRange(input, 0, N);
+                assertEquals("Mismatch for reducer " + r + " and N = " + N, separate, fused[r],
+                        1E-9 * Math.abs(separate));
+            }
+        }
+    }
+}
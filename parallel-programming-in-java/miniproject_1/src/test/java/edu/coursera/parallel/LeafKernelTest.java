@@ -0,0 +1,60 @@
+package edu.coursera.parallel;
+
+import junit.framework.TestCase;
+
+public class LeafKernelTest extends TestCase {
+    /**
+     * Check every remainder of the four-way unrolled loop, and ranges that do not start at zero.
+     */
+    public void testUnrolledMatchesScalar() {
+        final double[] input = ReciprocalFixtures.createArray(64);
+        for (int start = 0; start < 5; start++) {
+            for (int end = start; end <= input.length; end++) {
+                final double expected = ReciprocalArraySum.rangeSum(input, start, end);
+                final double sum = ReciprocalArraySum.LeafKernel.UNROLLED.sum(input, start, end);
+                assertEquals("Mismatch for [" + start + ", " + end + ")", expected, sum, 1E-12);
+            }
+        }
+    }
+
+    public void testParallelWithEachKernel() {
+        final double[] input = ReciprocalFixtures.createArray(1_000_003);
+        final double expected = ReciprocalArraySum.seqArraySum(input);
+        for (ReciprocalArraySum.LeafKernel kernel : ReciprocalArraySum.LeafKernel.values()) {
+            final double sum = ReciprocalArraySum.parArraySum(input, ReciprocalArraySum.getEngine(), kernel);
+            assertEquals("Mismatch for " + kernel, expected, sum, 1E-6);
+        }
+    }
+
+    /**
+     * Check every remainder of the vector loop, whole vectors and single elements, and ranges that do not start at
+     * zero. On JDK 17 and later the build adds the Vector API module, so the vector path itself must run there.
+     */
+    public void testVectorMatchesScalar() {
+        if (!System.getProperty("java.specification.version").startsWith("1.")
+                && Integer.parseInt(System.getProperty("java.specification.version")) >= 17) {
+            assertTrue("Vector API not available", ReciprocalArraySum.LeafKernel.isVectorSupported());
+        }
+        final double[] input = ReciprocalFixtures.createArray(200);
+        for (int start = 0; start < 9; start++) {
+            for (int end = start; end <= input.length; end++) {
+                final double expected = ReciprocalArraySum.rangeSum(input, start, end);
+                final double sum = ReciprocalArraySum.LeafKernel.VECTOR.sum(input, start, end);
+                assertEquals("Mismatch for [" + start + ", " + end + ")", expected, sum, 1E-12);
+            }
+        }
+    }
+
+    /**
+     * Check that kernel names are parsed regardless of case, and that no name or an unknown one selects SCALAR, so
+     * results only change when a faster kernel is asked for.
+     */
+    public void testParse() {
+        assertEquals(ReciprocalArraySum.LeafKernel.SCALAR, ReciprocalArraySum.LeafKernel.parse("scalar"));
+        assertEquals(ReciprocalArraySum.LeafKernel.UNROLLED, ReciprocalArraySum.LeafKernel.parse(" Unrolled "));
+        assertEquals(ReciprocalArraySum.LeafKernel.VECTOR, ReciprocalArraySum.LeafKernel.parse("vector"));
+        assertEquals(ReciprocalArraySum.LeafKernel.SCALAR, ReciprocalArraySum.LeafKernel.parse(null));
+        assertEquals(ReciprocalArraySum.LeafKernel.SCALAR, ReciprocalArraySum.LeafKernel.parse("vectorised"));
+        assertEquals(ReciprocalArraySum.LeafKernel.SCALAR, ReciprocalArraySum.LeafKernel.DEFAULT);
+    }
+}
@@ -0,0 +1,85 @@
+package edu.coursera.parallel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import junit.framework.TestCase;
+
+public class MappedDoubleFileTest extends TestCase {
+    /**
+     * Dump an array to a temporary file of raw doubles, optionally followed by a few stray bytes.
+     */
+    private Path writeFile(final double[] input, final ByteOrder order, final int trailingBytes) throws IOException {
+        final Path file = Files.createTempFile("reciprocal", ".bin");
+        file.toFile().deleteOnExit();
+
+        final ByteBuffer bytes = ByteBuffer.allocate(input.length * Double.BYTES + trailingBytes).order(order);
+        bytes.asDoubleBuffer().put(input);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        return file;
+    }
+
+    public void testDirectBuffer() {
+        final double[] input = ReciprocalFixtures.createArray(100_001);
+        final DoubleBuffer buffer = ByteBuffer.allocateDirect(input.length * Double.BYTES)
+                .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        buffer.put(input);
+        buffer.position(1);
+
+        final double expected = ReciprocalArraySum.seqArraySum(input) - 1 / input[0];
+        assertEquals(expected, ReciprocalArraySum.parArraySum(buffer), 1E-6);
+        assertEquals("Position must be left unchanged", 1, buffer.position());
+    }
+
+    public void testMappedFileBothByteOrders() throws IOException {
+        final double[] input = ReciprocalFixtures.createArray(250_000);
+        final double expected = ReciprocalArraySum.seqArraySum(input);
+
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            final Path file = writeFile(input, order, 3);
+            try {
+                assertEquals("Mismatch for " + order, expected, ReciprocalArraySum.parArraySum(file, order), 1E-6);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Use tiny segments so that leaf ranges straddle segment boundaries.
+     */
+    public void testRangesSpanningSegments() throws IOException {
+        final double[] input = ReciprocalFixtures.createArray(100_000);
+        final Path file = writeFile(input, ByteOrder.nativeOrder(), 0);
+        try {
+            final MappedDoubleFile mapped = MappedDoubleFile.map(file, ByteOrder.nativeOrder(), 10);
+            assertEquals(input.length, mapped.length());
+            assertEquals(98, mapped.numSegments());
+
+            assertEquals(ReciprocalArraySum.rangeSum(input, 1000, 5000),
+                    ReciprocalArraySum.rangeSum(mapped, 1000, 5000), 1E-9);
+            assertEquals(ReciprocalArraySum.seqArraySum(input), ReciprocalArraySum.parArraySum(mapped), 1E-6);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testEmptyFile() throws IOException {
+        final Path file = writeFile(new double[0], ByteOrder.nativeOrder(), 0);
+        try {
+            assertEquals(0.0, ReciprocalArraySum.parArraySum(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+
+/**
+ * Random inputs shared by the tests.
+ */
+final class ReciprocalFixtures {
+    private ReciprocalFixtures() {
+    }
+
+    /**
+     * An array of N integers from 1 to 99, the same for every call.
+     */
+    static double[] createArray(final int N) {
+        return createArray(N, 314);
+    }
+
+    /**
+     * An array of N integers from 1 to 99, the same for every call with the same seed.
+     */
+    static double[] createArray(final int N, final long seed) {
+        final double[] input = new double[N];
+        final Random rand = new Random(seed);
+
+        for (int i = 0; i < N; i++) {
+            input[i] = 1 + rand.nextInt(99);
+        }
+
+        return input;
+    }
+}
@@ -0,0 +1,126 @@
+package edu.coursera.parallel;
+
+import junit.framework.TestCase;
+
+public class ReciprocalSumAccumulatorTest extends TestCase {
+    final static private int PRODUCERS = 16;
+    final static private int VALUES_PER_PRODUCER = 1_000_000;
+
+    /**
+     * Run one thread per producer, each feeding its own array through the given body, and wait for them all.
+     */
+    private void runProducers(final double[][] inputs, final ProducerBody body) {
+        final Thread[] threads = new Thread[inputs.length];
+        for (int p = 0; p < inputs.length; p++) {
+            final double[] input = inputs[p];
+            threads[p] = new Thread(() -> body.run(input));
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private interface ProducerBody {
+        void run(double[] input);
+    }
+
+    private double[][] createInputs() {
+        final double[][] inputs = new double[PRODUCERS][];
+        for (int p = 0; p < PRODUCERS; p++) {
+            inputs[p] = ReciprocalFixtures.createArray(VALUES_PER_PRODUCER, p);
+        }
+        return inputs;
+    }
+
+    private double expectedSum(final double[][] inputs) {
+        double expected = 0.0;
+        for (double[] input : inputs) {
+            expected += ReciprocalArraySum.seqArraySum(input);
+        }
+        return expected;
+    }
+
+    public void testSingleValuesAndChunks() {
+        final double[] input = ReciprocalFixtures.createArray(200_000, 1);
+        final ReciprocalSumAccumulator acc = new ReciprocalSumAccumulator();
+
+        acc.add(input[0]);
+        acc.addAll(input, 1, 10);
+        acc.addAll(input, 10, 10);
+        acc.addAll(input, 10, input.length);
+
+        assertEquals(input.length, acc.count());
+        assertEquals(ReciprocalArraySum.seqArraySum(input), acc.snapshot(), 1E-6);
+
+        final ReciprocalSumAccumulator.Snapshot window = acc.snapshotThenReset();
+        assertEquals(ReciprocalArraySum.seqArraySum(input), window.getSum(), 1E-6);
+        assertEquals(input.length, window.getCount());
+        assertEquals(0.0, acc.snapshot());
+        assertEquals(0, acc.count());
+    }
+
+    public void testConcurrentProducers() {
+        final double[][] inputs = createInputs();
+        final ReciprocalSumAccumulator acc = new ReciprocalSumAccumulator();
+
+        runProducers(inputs, input -> {
+            for (int i = 0; i < input.length; i += 1000) {
+                acc.addAll(input, i, Math.min(input.length, i + 1000));
+            }
+        });
+
+        assertEquals((long) PRODUCERS * VALUES_PER_PRODUCER, acc.count());
+        assertEquals(expectedSum(inputs), acc.snapshot(), 1E-3);
+    }
+
+    /**
+     * Closes windows while producers are adding, and checks that the windows together account for every value.
+     */
+    public void testWindowsUnderConcurrentAdds() {
+        final double[][] inputs = createInputs();
+        final ReciprocalSumAccumulator acc = new ReciprocalSumAccumulator();
+        final double[] windowSums = new double[1];
+        final long[] windowCounts = new long[1];
+        final int[] windows = new int[1];
+        final boolean[] done = new boolean[1];
+
+        final Thread closer = new Thread(() -> {
+            while (true) {
+                final boolean last;
+                synchronized (done) {
+                    last = done[0];
+                }
+                final ReciprocalSumAccumulator.Snapshot window = acc.snapshotThenReset();
+                windowSums[0] += window.getSum();
+                windowCounts[0] += window.getCount();
+                windows[0]++;
+                if (last) {
+                    return;
+                }
+            }
+        });
+        closer.start();
+        runProducers(inputs, input -> {
+            for (int i = 0; i < input.length; i++) {
+                acc.add(input[i]);
+            }
+        });
+        synchronized (done) {
+            done[0] = true;
+        }
+        try {
+            closer.join();
+        } catch (InterruptedException e) {
+            fail("Interrupted");
+        }
+
+        assertTrue(windows[0] > 1);
+        assertEquals((long) PRODUCERS * VALUES_PER_PRODUCER, windowCounts[0]);
+        assertEquals(expectedSum(inputs), windowSums[0], 1E-3);
+    }
+}
@@ -0,0 +1,73 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class ReductionEngineTest extends TestCase {
+    private double seqArraySum(final double[] input) {
+        double sum = 0;
+        for (int i = 0; i < input.length; i++) {
+            sum += 1 / input[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Check the engine against a sequential sum for sizes around the leaf size and for every split depth.
+     */
+    public void testReduceMatchesSequential() {
+        final ReductionEngine engine = new ReductionEngine(ForkJoinPool.commonPool(), 16);
+        final int[] sizes = {0, 1, 15, 16, 17, 100, 1_000, 65_537};
+
+        for (int N : sizes) {
+            final double[] input = ReciprocalFixtures.createArray(N);
+            final double expected = seqArraySum(input);
+            final double sum = ReciprocalArraySum.parArraySum(input, engine);
+            assertEquals("Mismatch for N = " + N, expected, sum, 1E-9);
+        }
+    }
+
+    /**
+     * Partial results must be combined in index order, so a non-commutative combine still gives the sequential result.
+     */
+    public void testCombineIsInIndexOrder() {
+        final int N = 10_000;
+        final ReductionEngine engine = new ReductionEngine(ForkJoinPool.commonPool(), 7);
+
+        // Encodes the leftmost index of a range; keeping the left operand is associative but not commutative
+        final double first = engine.reduce(0, N, (start, end) -> start < end ? start : Double.NaN,
+                (left, right) -> Double.isNaN(left) ? right : left);
+        assertEquals(0.0, first);
+    }
+
+    /**
+     * parManyTaskArraySum used to recurse forever when asked for a single task.
+     */
+    public void testManyTaskWithOneTask() {
+        final double[] input = ReciprocalFixtures.createArray(100_000);
+        assertEquals(seqArraySum(input), ReciprocalArraySum.parManyTaskArraySum(input, 1), 1E-9);
+    }
+
+    public void testCalibrationIsClamped() {
+        assertEquals(ReductionEngine.MIN_LEAF_SIZE, ReductionEngine.leafSizeFor(1E6));
+        assertEquals(ReductionEngine.MAX_LEAF_SIZE, ReductionEngine.leafSizeFor(1E-6));
+
+        final int leaf = ReciprocalArraySum.getEngine().getLeafSize();
+        assertTrue("Calibrated leaf size out of range: " + leaf,
+                leaf >= ReductionEngine.MIN_LEAF_SIZE && leaf <= ReductionEngine.MAX_LEAF_SIZE);
+    }
+
+    /**
+     * Check the calibrated engine against the sequential sum for 10^3 .. 10^7 elements.
+     */
+    public void testCalibratedEngineAcrossSizes() {
+        for (int exponent = 3; exponent <= 7; exponent++) {
+            final int N = (int) Math.pow(10, exponent);
+            final double[] input = ReciprocalFixtures.createArray(N);
+            final double correct = seqArraySum(input);
+            final double sum = ReciprocalArraySum.parArraySum(input);
+            assertEquals("Mismatch for N = " + N, correct, sum, 1E-3);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package edu.coursera.parallel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * The analytics of {@link StudentAnalytics}, maintained incrementally for a
+ * roster that changes over time instead of being recomputed by a full scan.
+ * <p>
+ * Every insert, update or remove adjusts a handful of running aggregates:
+ * the sum and count of ages of current students, the number of failed
+ * students older than 20, and a count per first name of inactive students.
+ * Queries read these aggregates, so the average age and failed count are
+ * O(1) and the most common name is O(distinct names), however large the
+ * roster grows.
+ * <p>
+ * Any number of threads may apply changes concurrently. The running sums are
+ * {@link LongAdder}s and {@link DoubleAdder}s, whose cells are striped across
+ * threads, and the name counts live in a {@link ConcurrentHashMap}. As with
+ * the adders, a query that runs while writers are active is not an atomic
+ * view: it reflects some subset of the concurrent changes. The age sum is a
+ * floating-point running total, so after many removals it may differ from a
+ * fresh sum in the last few bits.
+ */
+public final class IncrementalStudentAnalytics {
+
+    /**
+     * Sum of the ages of current students.
+     */
+    private final DoubleAdder enrolledAgeSum = new DoubleAdder();
+    /**
+     * Number of current students.
+     */
+    private final LongAdder enrolledCount = new LongAdder();
+    /**
+     * Number of failed students older than 20.
+     */
+    private final LongAdder failedOlderThan20Count = new LongAdder();
+    /**
+     * Number of inactive students with each first name. A count may drop to
+     * zero, but its entry is kept for when the name comes back.
+     */
+    private final Map<String, LongAdder> inactiveFirstNameCounts =
+        new ConcurrentHashMap<String, LongAdder>();
+    /**
+     * Number of students in the roster.
+     */
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Build aggregates over an initial roster, in parallel.
+     * @param studentArray Student data for the class.
+     * @return Aggregates of the roster
+     */
+    public static IncrementalStudentAnalytics fromStudents(
+            final Student[] studentArray) {
+        final IncrementalStudentAnalytics analytics =
+            new IncrementalStudentAnalytics();
+        Stream.of(studentArray).parallel().forEach(analytics::insert);
+        return analytics;
+    }
+
+    /**
+     * Add a student to the roster.
+     * @param s Student joining the roster
+     */
+    public void insert(final Student s) {
+        apply(s, 1);
+    }
+
+    /**
+     * Add a batch of students to the roster, such as a chunk handed over by
+     * {@link StudentLoader#readCsv(java.nio.file.Path,
+     * java.util.function.Consumer)} while the rest of the file is still
+     * being parsed.
+     * @param chunk Students joining the roster
+     */
+    public void insertAll(final Student[] chunk) {
+        for (Student s : chunk) {
+            apply(s, 1);
+        }
+    }
+
+    /**
+     * Remove a student from the roster. The student must have been inserted
+     * before; removing a student that was never inserted corrupts the
+     * aggregates.
+     * @param s Student leaving the roster
+     */
+    public void remove(final Student s) {
+        apply(s, -1);
+    }
+
+    /**
+     * Replace a student of the roster by their new record, for example
+     * after a grade change or when they stop being current.
+     * @param oldRecord Record currently in the roster
+     * @param newRecord Record replacing it
+     */
+    public void update(final Student oldRecord, final Student newRecord) {
+        remove(oldRecord);
+        insert(newRecord);
+    }
+
+    /**
+     * Adjust every aggregate a student contributes to.
+     * @param s Student being added or removed
+     * @param sign 1 to add the student, -1 to remove them
+     */
+    private void apply(final Student s, final int sign) {
+        size.add(sign);
+        if (s.checkIsCurrent()) {
+            enrolledAgeSum.add(sign * s.getAge());
+            enrolledCount.add(sign);
+        } else {
+            inactiveFirstNameCounts.computeIfAbsent(s.getFirstName(),
+                    name -> new LongAdder()).add(sign);
+            if (s.getAge() > 20 && s.getGrade() < 65) {
+                failedOlderThan20Count.add(sign);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of students in the roster.
+     * @return The roster size
+     */
+    public long size() {
+        return size.sum();
+    }
+
+    /**
+     * Computes the average age of all actively enrolled students from the
+     * running sum and count, in O(1). This mirrors the functionality of
+     * {@link StudentAnalytics#averageAgeOfEnrolledStudentsImperative}.
+     * @return Average age of enrolled students
+     */
+    public double averageAgeOfEnrolledStudents() {
+        return enrolledAgeSum.sum() / (double) enrolledCount.sum();
+    }
+
+    /**
+     * Finds the most common first name out of all students that are no
+     * longer active in the class, with one scan of the distinct names. This
+     * mirrors the functionality of
+     * {@link StudentAnalytics#mostCommonFirstNameOfInactiveStudentsImperative}.
+     * @return Most common first name of inactive students, or null if there
+     * are none
+     */
+    public String mostCommonFirstNameOfInactiveStudents() {
+        String mostCommon = null;
+        long mostCommonCount = 0;
+        for (Map.Entry<String, LongAdder> entry
+                : inactiveFirstNameCounts.entrySet()) {
+            final long count = entry.getValue().sum();
+            if (count > mostCommonCount) {
+                mostCommon = entry.getKey();
+                mostCommonCount = count;
+            }
+        }
+        return mostCommon;
+    }
+
+    /**
+     * Returns the number of students who have failed the course who are
+     * also older than 20 years old, in O(1). This mirrors the functionality
+     * of
+     * {@link StudentAnalytics#countNumberOfFailedStudentsOlderThan20Imperative}.
+     * @return Number of failed grades from students older than 20 years old.
+     */
+    public int countNumberOfFailedStudentsOlderThan20() {
+        return (int) failedOlderThan20Count.sum();
+    }
+}
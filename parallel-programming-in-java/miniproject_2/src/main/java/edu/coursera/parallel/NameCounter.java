@@ -0,0 +1,202 @@
+package edu.coursera.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * An exact String to int frequency map using open addressing with linear
+ * probing over parallel key and count arrays, so counting does not box
+ * values or allocate an entry per name.
+ * <p>
+ * A counter is not thread-safe. Parallel counting gives each task its own
+ * counter and merges them at the end, which is the contract of
+ * {@link java.util.stream.Stream#collect(java.util.function.Supplier,
+ * java.util.function.BiConsumer, java.util.function.BiConsumer)}.
+ */
+public final class NameCounter {
+
+    /**
+     * Initial number of slots; must be a power of two.
+     */
+    static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Key of each slot, or null if the slot is empty.
+     */
+    private String[] keys;
+    /**
+     * Count of each slot.
+     */
+    private int[] counts;
+    /**
+     * Number of distinct keys.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    public NameCounter() {
+        this.keys = new String[INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Count one more occurrence of a name.
+     * @param name Name to count
+     */
+    public void increment(final String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Count several more occurrences of a name.
+     * @param name Name to count
+     * @param count Number of occurrences to add
+     */
+    public void add(final String name, final int count) {
+        final int mask = keys.length - 1;
+        int slot = spread(name.hashCode()) & mask;
+        while (true) {
+            final String key = keys[slot];
+            if (key == null) {
+                keys[slot] = name;
+                counts[slot] = count;
+                size++;
+                // Keep the load factor at or below one half
+                if (2 * size > keys.length) {
+                    grow();
+                }
+                return;
+            } else if (key == name || key.equals(name)) {
+                counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the number of occurrences counted for a name.
+     * @param name Name to look up
+     * @return Its count, or 0 if it was never counted
+     */
+    public int get(final String name) {
+        final int mask = keys.length - 1;
+        int slot = spread(name.hashCode()) & mask;
+        while (true) {
+            final String key = keys[slot];
+            if (key == null) {
+                return 0;
+            } else if (key == name || key.equals(name)) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the number of distinct names counted.
+     * @return The number of distinct names
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add every count of another counter into this one.
+     * @param other Counter to merge; left unchanged
+     */
+    public void merge(final NameCounter other) {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.keys[slot] != null) {
+                add(other.keys[slot], other.counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Find the most frequent name with a single linear scan.
+     * @return The name with the highest count, or null if nothing was counted
+     */
+    public String mostCommon() {
+        String mostCommon = null;
+        int mostCommonCount = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null && counts[slot] > mostCommonCount) {
+                mostCommon = keys[slot];
+                mostCommonCount = counts[slot];
+            }
+        }
+        return mostCommon;
+    }
+
+    /**
+     * Find the k most frequent names using a bounded min-heap of slots, in
+     * O(n log k) rather than sorting every name.
+     * @param k Number of names to return
+     * @return Up to k names, most frequent first
+     */
+    public List<String> topK(final int k) {
+        final PriorityQueue<Integer> heap = new PriorityQueue<Integer>(
+                Math.max(k, 1), (a, b) -> Integer.compare(counts[a],
+                                                          counts[b]));
+        for (int slot = 0; slot < keys.length && k > 0; slot++) {
+            if (keys[slot] == null) {
+                continue;
+            }
+            if (heap.size() < k) {
+                heap.add(slot);
+            } else if (counts[slot] > counts[heap.peek()]) {
+                heap.poll();
+                heap.add(slot);
+            }
+        }
+
+        final List<String> result = new ArrayList<String>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(keys[heap.poll()]);
+        }
+        // The heap yields the least frequent first
+        for (int i = 0, j = result.size() - 1; i < j; i++, j--) {
+            final String tmp = result.get(i);
+            result.set(i, result.get(j));
+            result.set(j, tmp);
+        }
+        return result;
+    }
+
+    /**
+     * Double the number of slots and re-insert every key.
+     */
+    private void grow() {
+        final String[] oldKeys = keys;
+        final int[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        final int mask = keys.length - 1;
+
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldKeys[old] == null) {
+                continue;
+            }
+            int slot = spread(oldKeys[old].hashCode()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[old];
+            counts[slot] = oldCounts[old];
+        }
+    }
+
+    /**
+     * Mix the high bits of a hash code into the low bits used for indexing,
+     * as HashMap does.
+     * @param hash Hash code
+     * @return The spread hash
+     */
+    static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,232 @@
+package edu.coursera.parallel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An approximate heavy-hitter counter using the Space-Saving algorithm
+ * (Metwally, Agrawal and El Abbadi), for name domains too large to count
+ * exactly. It keeps at most capacity names, so its memory does not grow
+ * with the number of distinct names.
+ * <p>
+ * When a new name arrives and the counter is full, the name with the
+ * smallest count is evicted and the newcomer inherits that count plus one.
+ * Counts therefore never underestimate, and overestimate by at most
+ * n / capacity after n names; any name occurring more than n / capacity
+ * times is guaranteed to be tracked. The tracked names are kept in an
+ * indexed binary min-heap on their counts, so both increments and
+ * evictions take O(log capacity).
+ * <p>
+ * A counter is not thread-safe; parallel counting gives each task its own
+ * counter and merges them, which preserves the same error bound.
+ */
+public final class SpaceSavingCounter {
+
+    /**
+     * Maximum number of names tracked.
+     */
+    private final int capacity;
+    /**
+     * Heap position of each tracked name.
+     */
+    private final Map<String, Integer> slots;
+    /**
+     * Name at each heap position.
+     */
+    private final String[] names;
+    /**
+     * Estimated count at each heap position; counts[0] is the smallest.
+     */
+    private final long[] counts;
+    /**
+     * Number of heap positions in use.
+     */
+    private int size;
+    /**
+     * Total number of names offered, including merged ones.
+     */
+    private long total;
+
+    /**
+     * Constructor.
+     * @param setCapacity Maximum number of names to track
+     */
+    public SpaceSavingCounter(final int setCapacity) {
+        if (setCapacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: "
+                    + setCapacity);
+        }
+        this.capacity = setCapacity;
+        this.slots = new HashMap<String, Integer>(2 * setCapacity);
+        this.names = new String[setCapacity];
+        this.counts = new long[setCapacity];
+    }
+
+    /**
+     * Count one occurrence of a name.
+     * @param name Name to count
+     */
+    public void offer(final String name) {
+        offer(name, 1);
+    }
+
+    /**
+     * Count several occurrences of a name.
+     * @param name Name to count
+     * @param count Number of occurrences
+     */
+    private void offer(final String name, final long count) {
+        total += count;
+        final Integer slot = slots.get(name);
+        if (slot != null) {
+            counts[slot] += count;
+            siftDown(slot);
+        } else if (size < capacity) {
+            slots.put(name, size);
+            names[size] = name;
+            counts[size] = count;
+            siftUp(size);
+            size++;
+        } else {
+            // Evict the name with the smallest count, at the root
+            slots.remove(names[0]);
+            slots.put(name, 0);
+            names[0] = name;
+            counts[0] += count;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Merge another counter into this one. A name missing from a full
+     * counter may have occurred up to that counter's minimum count times, so
+     * it is credited with that minimum; the capacity largest merged counts
+     * are then kept.
+     * @param other Counter to merge; left unchanged
+     */
+    public void merge(final SpaceSavingCounter other) {
+        final long thisMissing = size == capacity ? counts[0] : 0;
+        final long otherMissing = other.size == other.capacity
+            ? other.counts[0] : 0;
+
+        final Map<String, Long> merged = new HashMap<String, Long>(
+                2 * (size + other.size));
+        for (int i = 0; i < size; i++) {
+            merged.put(names[i], counts[i] + otherMissing);
+        }
+        for (int i = 0; i < other.size; i++) {
+            final Long mine = merged.get(other.names[i]);
+            merged.put(other.names[i], other.counts[i]
+                    + (mine == null ? thisMissing : mine - otherMissing));
+        }
+
+        final List<Map.Entry<String, Long>> entries =
+            new ArrayList<Map.Entry<String, Long>>(merged.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        final long mergedTotal = total + other.total;
+        slots.clear();
+        size = Math.min(capacity, entries.size());
+        // Descending counts, stored back to front, form a valid min-heap
+        for (int i = 0; i < size; i++) {
+            final Map.Entry<String, Long> entry = entries.get(size - 1 - i);
+            slots.put(entry.getKey(), i);
+            names[i] = entry.getKey();
+            counts[i] = entry.getValue();
+        }
+        total = mergedTotal;
+    }
+
+    /**
+     * Returns the estimated count of a name.
+     * @param name Name to look up
+     * @return An upper bound on its count, or 0 if it is not tracked
+     */
+    public long estimate(final String name) {
+        final Integer slot = slots.get(name);
+        return slot == null ? 0 : counts[slot];
+    }
+
+    /**
+     * Returns the total number of names counted.
+     * @return The number of names offered, including merged counters
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Find the name with the highest estimated count.
+     * @return The most frequent tracked name, or null if nothing was counted
+     */
+    public String mostCommon() {
+        String mostCommon = null;
+        long mostCommonCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (counts[i] > mostCommonCount) {
+                mostCommon = names[i];
+                mostCommonCount = counts[i];
+            }
+        }
+        return mostCommon;
+    }
+
+    /**
+     * Move the entry at a heap position towards the root until its parent
+     * has a count no larger than its own.
+     * @param position Heap position to sift
+     */
+    private void siftUp(final int position) {
+        int child = position;
+        while (child > 0) {
+            final int parent = (child - 1) / 2;
+            if (counts[parent] <= counts[child]) {
+                return;
+            }
+            swap(parent, child);
+            child = parent;
+        }
+    }
+
+    /**
+     * Move the entry at a heap position towards the leaves until neither
+     * child has a smaller count.
+     * @param position Heap position to sift
+     */
+    private void siftDown(final int position) {
+        int parent = position;
+        while (true) {
+            final int left = 2 * parent + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left;
+            if (left + 1 < size && counts[left + 1] < counts[left]) {
+                smallest = left + 1;
+            }
+            if (counts[parent] <= counts[smallest]) {
+                return;
+            }
+            swap(parent, smallest);
+            parent = smallest;
+        }
+    }
+
+    /**
+     * Exchange two heap positions, keeping the name index up to date.
+     * @param a First position
+     * @param b Second position
+     */
+    private void swap(final int a, final int b) {
+        final String name = names[a];
+        final long count = counts[a];
+        names[a] = names[b];
+        counts[a] = counts[b];
+        names[b] = name;
+        counts[b] = count;
+        slots.put(names[a], a);
+        slots.put(names[b], b);
+    }
+}
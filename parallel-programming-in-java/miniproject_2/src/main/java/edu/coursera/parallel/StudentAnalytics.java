@@ -4,16 +4,50 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A simple wrapper class for various analytics methods.
  */
 public final class StudentAnalytics {
 
+    /**
+     * Pool the Pooled queries run on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor whose Pooled queries run on the common pool.
+     */
+    public StudentAnalytics() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor.
+     * @param setPool Pool the Pooled queries run on, isolating them from
+     *        other work using the common pool
+     */
+    public StudentAnalytics(final ForkJoinPool setPool) {
+        this.pool = setPool;
+    }
+
+    /**
+     * Create a parallel stream over the students, split into chunks sized
+     * for the pool the Pooled queries run on. A parallel stream runs on the
+     * pool of the thread that starts its terminal operation, so the stream
+     * must be consumed inside a task submitted to that pool.
+     * @param studentArray Student data for the class.
+     * @return A parallel stream of the students
+     */
+    private Stream<Student> pooledStream(final Student[] studentArray) {
+        return StreamSupport.stream(new StudentSpliterator(studentArray,
+                pool.getParallelism()), true);
+    }
+
     /**
      * Sequentially computes the average age of all actively enrolled students
      * using loops.
@@ -102,23 +136,64 @@ public final class StudentAnalytics {
      * longer active in the class using parallel streams. This should mirror the
      * functionality of mostCommonFirstNameOfInactiveStudentsImperative. This
      * method should not use any loops.
+     * <p>
+     * Each stream task counts into its own NameCounter, the counters are
+     * merged at the end, and the winner is found with a linear scan rather
+     * than by sorting every name.
      * @param studentArray Student data for the class.
      * @return Most common first name of inactive students
      */
     public String mostCommonFirstNameOfInactiveStudentsParallelStream(
             final Student[] studentArray) {
+        return countFirstNamesOfInactiveStudents(studentArray).mostCommon();
+    }
+
+    /**
+     * Compute the k most common first names out of all students that are no
+     * longer active in the class, in parallel.
+     * @param studentArray Student data for the class.
+     * @param k Number of names to return
+     * @return Up to k first names of inactive students, most common first
+     */
+    public List<String> topFirstNamesOfInactiveStudentsParallelStream(
+            final Student[] studentArray, final int k) {
+        return countFirstNamesOfInactiveStudents(studentArray).topK(k);
+    }
 
-        Optional<Map.Entry<String, Long>> mostCommon = Stream.of(studentArray)
+    /**
+     * Count the first names of all students that are no longer active in
+     * the class, in parallel.
+     * @param studentArray Student data for the class.
+     * @return Exact count of each first name of inactive students
+     */
+    private NameCounter countFirstNamesOfInactiveStudents(
+            final Student[] studentArray) {
+        return Stream.of(studentArray)
                 .parallel()
                 .filter(s -> !s.checkIsCurrent())
-                .map(s -> s.getFirstName())
-                .collect(Collectors.groupingBy(Function.identity(),
-                                               Collectors.counting()))
-                .entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .findFirst();
+                .collect(NameCounter::new,
+                         (counter, s) -> counter.increment(s.getFirstName()),
+                         NameCounter::merge);
+    }
 
-        return mostCommon.get().getKey();
+    /**
+     * Estimate the most common first name out of all students that are no
+     * longer active in the class, in parallel and in bounded memory, with a
+     * Space-Saving counter per stream task. The result is exact whenever the
+     * most common name occurs more than (inactive students / capacity) times.
+     * @param studentArray Student data for the class.
+     * @param capacity Maximum number of names each counter tracks
+     * @return Most common first name of inactive students, approximately
+     */
+    public String mostCommonFirstNameOfInactiveStudentsApproximate(
+            final Student[] studentArray, final int capacity) {
+        return Stream.of(studentArray)
+                .parallel()
+                .filter(s -> !s.checkIsCurrent())
+                .collect(() -> new SpaceSavingCounter(capacity),
+                         (counter, s) -> counter.offer(s.getFirstName()),
+                         SpaceSavingCounter::merge)
+                .mostCommon();
     }
 
     /**
@@ -164,4 +239,163 @@ public final class StudentAnalytics {
                 .filter(s -> !s.checkIsCurrent() && s.getAge() > 20 && s.getGrade() < 65)
                 .count();
     }
+
+    /**
+     * Compute the average age of all actively enrolled students in parallel
+     * on this analytics' pool, with chunks from a StudentSpliterator. This
+     * mirrors the functionality of averageAgeOfEnrolledStudentsImperative.
+     * @param studentArray Student data for the class.
+     * @return Average age of enrolled students
+     */
+    public double averageAgeOfEnrolledStudentsPooled(
+            final Student[] studentArray) {
+        return pool.submit(() -> pooledStream(studentArray)
+                .filter(s -> s.checkIsCurrent())
+                .mapToDouble(s -> s.getAge())
+                .average()
+                .getAsDouble()).join();
+    }
+
+    /**
+     * Compute the most common first name out of all students that are no
+     * longer active in the class in parallel on this analytics' pool, with
+     * chunks from a StudentSpliterator. This mirrors the functionality of
+     * mostCommonFirstNameOfInactiveStudentsImperative.
+     * @param studentArray Student data for the class.
+     * @return Most common first name of inactive students
+     */
+    public String mostCommonFirstNameOfInactiveStudentsPooled(
+            final Student[] studentArray) {
+        return pool.submit(() -> pooledStream(studentArray)
+                .filter(s -> !s.checkIsCurrent())
+                .collect(NameCounter::new,
+                         (counter, s) -> counter.increment(s.getFirstName()),
+                         NameCounter::merge)
+                .mostCommon()).join();
+    }
+
+    /**
+     * Compute the number of students who have failed the course who are
+     * also older than 20 years old in parallel on this analytics' pool, with
+     * chunks from a StudentSpliterator. This mirrors the functionality of
+     * countNumberOfFailedStudentsOlderThan20Imperative.
+     * @param studentArray Student data for the class.
+     * @return Number of failed grades from students older than 20 years old.
+     */
+    public int countNumberOfFailedStudentsOlderThan20Pooled(
+            final Student[] studentArray) {
+        return pool.submit(() -> (int) pooledStream(studentArray)
+                .filter(s -> !s.checkIsCurrent() && s.getAge() > 20
+                        && s.getGrade() < 65)
+                .count()).join();
+    }
+
+    /**
+     * Compute the average age of all actively enrolled students in parallel
+     * over a columnar table. Only the current bitset and the age column are
+     * read, one 64-row bitset word at a time. This mirrors the functionality
+     * of averageAgeOfEnrolledStudentsImperative.
+     * @param table Student data for the class.
+     * @return Average age of enrolled students
+     */
+    public double averageAgeOfEnrolledStudentsColumnar(
+            final StudentTable table) {
+        final long[] currentBits = table.getCurrentBits();
+        final double[] ages = table.getAges();
+
+        final long count = IntStream.range(0, currentBits.length)
+                .parallel()
+                .mapToLong(w -> Long.bitCount(currentBits[w]))
+                .sum();
+        final double ageSum = IntStream.range(0, currentBits.length)
+                .parallel()
+                .mapToDouble(w -> {
+                    final int base = w * StudentTable.ROWS_PER_WORD;
+                    double sum = 0.0;
+                    for (long word = currentBits[w]; word != 0;
+                            word &= word - 1) {
+                        sum += ages[base + Long.numberOfTrailingZeros(word)];
+                    }
+                    return sum;
+                })
+                .sum();
+
+        return ageSum / (double) count;
+    }
+
+    /**
+     * Compute the most common first name out of all students that are no
+     * longer active in parallel over a columnar table. Each task counts the
+     * dictionary codes of its inactive rows into a dense int[] indexed by
+     * code, the counts are summed, and the most frequent code is found with a
+     * linear scan. This mirrors the functionality of
+     * mostCommonFirstNameOfInactiveStudentsImperative.
+     * @param table Student data for the class.
+     * @return Most common first name of inactive students
+     */
+    public String mostCommonFirstNameOfInactiveStudentsColumnar(
+            final StudentTable table) {
+        final long[] currentBits = table.getCurrentBits();
+        final int[] firstNameCodes = table.getFirstNameCodes();
+        final String[] dictionary = table.getFirstNameDictionary();
+
+        final int[] nameCounts = IntStream.range(0, currentBits.length)
+                .parallel()
+                .collect(() -> new int[dictionary.length],
+                    (counts, w) -> {
+                        final int base = w * StudentTable.ROWS_PER_WORD;
+                        for (long word = ~currentBits[w]
+                                & table.validRowsMask(w);
+                                word != 0; word &= word - 1) {
+                            counts[firstNameCodes[base
+                                    + Long.numberOfTrailingZeros(word)]]++;
+                        }
+                    },
+                    (left, right) -> {
+                        for (int code = 0; code < left.length; code++) {
+                            left[code] += right[code];
+                        }
+                    });
+
+        String mostCommon = null;
+        int mostCommonCount = 0;
+        for (int code = 0; code < nameCounts.length; code++) {
+            if (nameCounts[code] > mostCommonCount) {
+                mostCommon = dictionary[code];
+                mostCommonCount = nameCounts[code];
+            }
+        }
+        return mostCommon;
+    }
+
+    /**
+     * Compute the number of students who have failed the course who are
+     * also older than 20 years old in parallel over a columnar table. This
+     * mirrors the functionality of
+     * countNumberOfFailedStudentsOlderThan20Imperative.
+     * @param table Student data for the class.
+     * @return Number of failed grades from students older than 20 years old.
+     */
+    public int countNumberOfFailedStudentsOlderThan20Columnar(
+            final StudentTable table) {
+        final long[] currentBits = table.getCurrentBits();
+        final double[] ages = table.getAges();
+        final int[] grades = table.getGrades();
+
+        return IntStream.range(0, currentBits.length)
+                .parallel()
+                .map(w -> {
+                    final int base = w * StudentTable.ROWS_PER_WORD;
+                    int count = 0;
+                    for (long word = ~currentBits[w] & table.validRowsMask(w);
+                            word != 0; word &= word - 1) {
+                        final int row = base + Long.numberOfTrailingZeros(word);
+                        if (ages[row] > 20 && grades[row] < 65) {
+                            count++;
+                        }
+                    }
+                    return count;
+                })
+                .sum();
+    }
 }
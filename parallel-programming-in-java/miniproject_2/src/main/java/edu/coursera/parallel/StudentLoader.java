@@ -0,0 +1,615 @@
+package edu.coursera.parallel;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Loads rosters of {@link Student}s from files, in parallel.
+ * <p>
+ * Two formats are supported. The CSV format has one student per line,
+ * firstName,lastName,age,grade,isCurrent, with no header and no quoting, so
+ * names must not contain commas or line breaks. The file is memory-mapped,
+ * cut into chunks at line boundaries and each chunk is parsed straight from
+ * the mapped bytes on the common pool: numbers are decoded without building
+ * Strings, and each parser reuses the name Strings it has already seen.
+ * <p>
+ * The binary format is the columnar layout of {@link StudentTable} written
+ * to disk: a header, the two name dictionaries, then the age, grade, current
+ * bitset and name code columns as big-endian arrays. Loading it is a bulk
+ * copy of each column, with no parsing at all.
+ */
+public final class StudentLoader {
+
+    /**
+     * Smallest CSV chunk worth parsing as its own task.
+     */
+    static final int MIN_CHUNK_BYTES = 1 << 20;
+    /**
+     * Number of CSV chunks per worker of the common pool, so that a worker
+     * finishing early can steal another chunk.
+     */
+    static final int CHUNKS_PER_WORKER = 4;
+    /**
+     * First four bytes of a binary roster file, "STUD".
+     */
+    static final int BINARY_MAGIC = 0x53545544;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StudentLoader() {
+    }
+
+    /**
+     * Load a CSV roster.
+     * @param file File to load
+     * @return The students, in file order
+     * @throws IOException If the file cannot be read or a line is malformed
+     */
+    public static Student[] readCsv(final Path file) throws IOException {
+        return readCsv(file, chunk -> { });
+    }
+
+    /**
+     * Load a CSV roster, handing over each chunk as soon as it is parsed so
+     * that analytics can start before the whole file is loaded. For example,
+     * passing chunk -&gt; analytics.insertAll(chunk) for an
+     * {@link IncrementalStudentAnalytics} makes partial aggregates available
+     * while parsing continues.
+     * @param file File to load
+     * @param onChunk Called with the students of each chunk, in no
+     *        particular order and possibly from several threads at once
+     * @return The students, in file order
+     * @throws IOException If the file cannot be read or a line is malformed
+     */
+    public static Student[] readCsv(final Path file,
+                                    final Consumer<Student[]> onChunk)
+            throws IOException {
+        return readCsv(file, onChunk, MIN_CHUNK_BYTES);
+    }
+
+    /**
+     * Load a CSV roster using chunks of at least a given size.
+     * @param file File to load
+     * @param onChunk Called with the students of each chunk
+     * @param minChunkBytes Smallest chunk parsed as its own task
+     * @return The students, in file order
+     * @throws IOException If the file cannot be read or a line is malformed
+     */
+    static Student[] readCsv(final Path file,
+                             final Consumer<Student[]> onChunk,
+                             final int minChunkBytes) throws IOException {
+        final ByteBuffer bytes = map(file);
+        final int length = bytes.limit();
+        final int nChunks = (int) Math.max(1, Math.min(
+                (long) ForkJoinPool.getCommonPoolParallelism()
+                    * CHUNKS_PER_WORKER,
+                length / Math.max(1, minChunkBytes)));
+
+        // Move each evenly spaced cut forward to the start of a line
+        final int[] bounds = new int[nChunks + 1];
+        bounds[nChunks] = length;
+        for (int c = 1; c < nChunks; c++) {
+            int cut = Math.max(bounds[c - 1], (int) ((long) c * length
+                        / nChunks));
+            while (cut > 0 && cut < length && bytes.get(cut - 1) != '\n') {
+                cut++;
+            }
+            bounds[c] = cut;
+        }
+
+        final Student[][] chunks;
+        try {
+            chunks = IntStream.range(0, nChunks).parallel()
+                .mapToObj(c -> {
+                    final Student[] chunk = new CsvParser(file, bytes)
+                        .parse(bounds[c], bounds[c + 1]);
+                    onChunk.accept(chunk);
+                    return chunk;
+                })
+                .toArray(Student[][]::new);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        int total = 0;
+        for (Student[] chunk : chunks) {
+            total += chunk.length;
+        }
+        final Student[] students = new Student[total];
+        int offset = 0;
+        for (Student[] chunk : chunks) {
+            System.arraycopy(chunk, 0, students, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return students;
+    }
+
+    /**
+     * Write a roster in the CSV format read by readCsv.
+     * @param file File to write
+     * @param studentArray Student data for the class.
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeCsv(final Path file, final Student[] studentArray)
+            throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8)) {
+            for (Student s : studentArray) {
+                writer.write(s.getFirstName());
+                writer.write(',');
+                writer.write(s.getLastName());
+                writer.write(',');
+                writer.write(Double.toString(s.getAge()));
+                writer.write(',');
+                writer.write(Integer.toString(s.getGrade()));
+                writer.write(',');
+                writer.write(Boolean.toString(s.checkIsCurrent()));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Write a roster in the binary format.
+     * @param file File to write
+     * @param studentArray Student data for the class.
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeBinary(final Path file,
+                                   final Student[] studentArray)
+            throws IOException {
+        writeBinary(file, StudentTable.fromStudents(studentArray));
+    }
+
+    /**
+     * Write a columnar roster in the binary format.
+     * @param file File to write
+     * @param table Student data for the class.
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeBinary(final Path file, final StudentTable table)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(table.size());
+            writeDictionary(out, table.getFirstNameDictionary());
+            writeDictionary(out, table.getLastNameDictionary());
+            for (double age : table.getAges()) {
+                out.writeDouble(age);
+            }
+            for (int grade : table.getGrades()) {
+                out.writeInt(grade);
+            }
+            for (long word : table.getCurrentBits()) {
+                out.writeLong(word);
+            }
+            for (int code : table.getFirstNameCodes()) {
+                out.writeInt(code);
+            }
+            for (int code : table.getLastNameCodes()) {
+                out.writeInt(code);
+            }
+        }
+    }
+
+    /**
+     * Write a name dictionary as its size followed by each name as a byte
+     * count and UTF-8 bytes.
+     * @param out Stream to write to
+     * @param dictionary Names to write
+     * @throws IOException If the stream cannot be written
+     */
+    private static void writeDictionary(final DataOutputStream out,
+                                        final String[] dictionary)
+            throws IOException {
+        out.writeInt(dictionary.length);
+        for (String name : dictionary) {
+            final byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+    }
+
+    /**
+     * Load a binary roster as a columnar table.
+     * @param file File to load
+     * @return The table
+     * @throws IOException If the file cannot be read or is not a roster
+     */
+    public static StudentTable readBinaryTable(final Path file)
+            throws IOException {
+        final ByteBuffer bytes = map(file);
+        try {
+            if (bytes.getInt() != BINARY_MAGIC) {
+                throw new IOException(file + " is not a binary roster");
+            }
+            final int n = bytes.getInt();
+            final String[] firstNameDictionary = readDictionary(bytes);
+            final String[] lastNameDictionary = readDictionary(bytes);
+
+            final double[] ages = new double[n];
+            bytes.asDoubleBuffer().get(ages);
+            bytes.position(bytes.position() + n * Double.BYTES);
+            final int[] grades = new int[n];
+            bytes.asIntBuffer().get(grades);
+            bytes.position(bytes.position() + n * Integer.BYTES);
+            final long[] currentBits = new long[StudentTable.numWords(n)];
+            bytes.asLongBuffer().get(currentBits);
+            bytes.position(bytes.position()
+                    + currentBits.length * Long.BYTES);
+            final int[] firstNameCodes = new int[n];
+            bytes.asIntBuffer().get(firstNameCodes);
+            bytes.position(bytes.position() + n * Integer.BYTES);
+            final int[] lastNameCodes = new int[n];
+            bytes.asIntBuffer().get(lastNameCodes);
+
+            return StudentTable.fromColumns(ages, grades, currentBits,
+                    firstNameCodes, firstNameDictionary, lastNameCodes,
+                    lastNameDictionary);
+        } catch (BufferUnderflowException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    /**
+     * Load a binary roster.
+     * @param file File to load
+     * @return The students, in file order
+     * @throws IOException If the file cannot be read or is not a roster
+     */
+    public static Student[] readBinary(final Path file) throws IOException {
+        final StudentTable table = readBinaryTable(file);
+        final Student[] students = new Student[table.size()];
+        IntStream.range(0, students.length).parallel()
+            .forEach(i -> students[i] = table.getStudent(i));
+        return students;
+    }
+
+    /**
+     * Read a name dictionary written by writeDictionary.
+     * @param bytes Buffer positioned at the dictionary; advanced past it
+     * @return The names, indexed by code
+     */
+    private static String[] readDictionary(final ByteBuffer bytes) {
+        final String[] dictionary = new String[bytes.getInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            final byte[] utf8 = new byte[bytes.getInt()];
+            bytes.get(utf8);
+            dictionary[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Map a whole file read-only.
+     * @param file File to map
+     * @return The mapped bytes
+     * @throws IOException If the file cannot be mapped or exceeds 2GB
+     */
+    private static ByteBuffer map(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2GB");
+            }
+            final MappedByteBuffer bytes = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // The mapping stays valid after the channel is closed
+            return bytes;
+        }
+    }
+
+    /**
+     * Parses the lines of one chunk of a mapped CSV file. Each parser is
+     * used by a single task and only reads the shared buffer with absolute
+     * gets.
+     */
+    private static final class CsvParser {
+
+        /**
+         * Number of slots of the name cache; must be a power of two.
+         */
+        private static final int NAME_CACHE_SIZE = 256;
+        /**
+         * Powers of ten that are exact doubles.
+         */
+        private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+        };
+
+        /**
+         * File being parsed, for error messages.
+         */
+        private final Path file;
+        /**
+         * Mapped bytes of the whole file.
+         */
+        private final ByteBuffer bytes;
+        /**
+         * Names recently decoded, by hash of their bytes.
+         */
+        private final String[] cachedNames = new String[NAME_CACHE_SIZE];
+        /**
+         * UTF-8 bytes of each cached name.
+         */
+        private final byte[][] cachedBytes = new byte[NAME_CACHE_SIZE][];
+        /**
+         * Scratch space for the bytes of the current name.
+         */
+        private byte[] scratch = new byte[64];
+        /**
+         * Start of the line being parsed.
+         */
+        private int lineStart;
+
+        /**
+         * Constructor.
+         * @param setFile File being parsed
+         * @param setBytes Mapped bytes of the whole file
+         */
+        private CsvParser(final Path setFile, final ByteBuffer setBytes) {
+            this.file = setFile;
+            this.bytes = setBytes;
+        }
+
+        /**
+         * Parse every line of a chunk.
+         * @param start Offset of the first line of the chunk
+         * @param end Offset one past the last byte of the chunk
+         * @return The students of the chunk, in file order
+         */
+        private Student[] parse(final int start, final int end) {
+            final List<Student> students = new ArrayList<Student>();
+            int pos = start;
+            while (pos < end) {
+                lineStart = pos;
+                int lineEnd = pos;
+                while (lineEnd < end && bytes.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                final int next = lineEnd + 1;
+                if (lineEnd > pos && bytes.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > pos) {
+                    students.add(parseLine(pos, lineEnd));
+                }
+                pos = next;
+            }
+            return students.toArray(new Student[0]);
+        }
+
+        /**
+         * Parse one non-empty line.
+         * @param start Offset of the line
+         * @param end Offset of its terminator
+         * @return The student the line describes
+         */
+        private Student parseLine(final int start, final int end) {
+            final int afterFirst = nextField(start, end);
+            final int afterLast = nextField(afterFirst, end);
+            final int afterAge = nextField(afterLast, end);
+            final int afterGrade = nextField(afterAge, end);
+            return new Student(parseName(start, afterFirst - 1),
+                               parseName(afterFirst, afterLast - 1),
+                               parseDouble(afterLast, afterAge - 1),
+                               parseInt(afterAge, afterGrade - 1),
+                               parseBoolean(afterGrade, end));
+        }
+
+        /**
+         * Find the start of the next field.
+         * @param start Offset of the current field
+         * @param end Offset of the end of the line
+         * @return Offset just past the comma ending the current field
+         */
+        private int nextField(final int start, final int end) {
+            for (int i = start; i < end; i++) {
+                if (bytes.get(i) == ',') {
+                    return i + 1;
+                }
+            }
+            throw malformed();
+        }
+
+        /**
+         * Decode a name, reusing the String of an identical earlier name.
+         * @param start Offset of the name
+         * @param end Offset one past its last byte
+         * @return The name
+         */
+        private String parseName(final int start, final int end) {
+            final int length = end - start;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, 2 * scratch.length)];
+            }
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                scratch[i] = bytes.get(start + i);
+                hash = 31 * hash + scratch[i];
+            }
+
+            final int slot = NameCounter.spread(hash) & (NAME_CACHE_SIZE - 1);
+            final byte[] cached = cachedBytes[slot];
+            if (cached != null && cached.length == length) {
+                int i = 0;
+                while (i < length && cached[i] == scratch[i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return cachedNames[slot];
+                }
+            }
+
+            final String name = new String(scratch, 0, length,
+                                           StandardCharsets.UTF_8);
+            cachedBytes[slot] = Arrays.copyOf(scratch, length);
+            cachedNames[slot] = name;
+            return name;
+        }
+
+        /**
+         * Decode a double. Decimals with at most 18 digits whose value and
+         * power of ten are exact doubles are computed with one correctly
+         * rounded multiply or divide; anything else falls back to
+         * Double.parseDouble.
+         * @param start Offset of the number
+         * @param end Offset one past its last byte
+         * @return The number
+         */
+        private double parseDouble(final int start, final int end) {
+            int i = start;
+            boolean negative = false;
+            if (i < end && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+                negative = bytes.get(i) == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int nDigits = 0;
+            int exponent = 0;
+            boolean fraction = false;
+            for (; i < end; i++) {
+                final byte b = bytes.get(i);
+                if (b >= '0' && b <= '9') {
+                    mantissa = 10 * mantissa + (b - '0');
+                    nDigits++;
+                    if (fraction) {
+                        exponent--;
+                    }
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+            }
+            if (i < end && (bytes.get(i) == 'e' || bytes.get(i) == 'E')) {
+                i++;
+                boolean negativeExponent = false;
+                if (i < end && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+                    negativeExponent = bytes.get(i) == '-';
+                    i++;
+                }
+                int explicit = 0;
+                final int firstExponentDigit = i;
+                while (i < end && bytes.get(i) >= '0' && bytes.get(i) <= '9'
+                        && explicit < 1000) {
+                    explicit = 10 * explicit + (bytes.get(i) - '0');
+                    i++;
+                }
+                if (i == firstExponentDigit) {
+                    nDigits = 0;
+                }
+                exponent += negativeExponent ? -explicit : explicit;
+            }
+
+            if (i == end && nDigits > 0 && nDigits <= 18
+                    && mantissa < (1L << 53)
+                    && Math.abs(exponent) < POWERS_OF_TEN.length) {
+                final double value = exponent >= 0
+                    ? mantissa * POWERS_OF_TEN[exponent]
+                    : mantissa / POWERS_OF_TEN[-exponent];
+                return negative ? -value : value;
+            }
+            try {
+                return Double.parseDouble(new String(scratchOf(start, end),
+                        StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw malformed();
+            }
+        }
+
+        /**
+         * Decode a non-negative or negative decimal int.
+         * @param start Offset of the number
+         * @param end Offset one past its last byte
+         * @return The number
+         */
+        private int parseInt(final int start, final int end) {
+            int i = start;
+            final boolean negative = i < end && bytes.get(i) == '-';
+            if (negative) {
+                i++;
+            }
+            if (i == end || end - i > 9) {
+                throw malformed();
+            }
+            int value = 0;
+            for (; i < end; i++) {
+                final byte b = bytes.get(i);
+                if (b < '0' || b > '9') {
+                    throw malformed();
+                }
+                value = 10 * value + (b - '0');
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Decode true or false.
+         * @param start Offset of the value
+         * @param end Offset one past its last byte
+         * @return The value
+         */
+        private boolean parseBoolean(final int start, final int end) {
+            if (end - start == 4 && bytes.get(start) == 't'
+                    && bytes.get(start + 1) == 'r'
+                    && bytes.get(start + 2) == 'u'
+                    && bytes.get(start + 3) == 'e') {
+                return true;
+            } else if (end - start == 5 && bytes.get(start) == 'f'
+                    && bytes.get(start + 1) == 'a'
+                    && bytes.get(start + 2) == 'l'
+                    && bytes.get(start + 3) == 's'
+                    && bytes.get(start + 4) == 'e') {
+                return false;
+            }
+            throw malformed();
+        }
+
+        /**
+         * Copy a range of the file.
+         * @param start Offset of the range
+         * @param end Offset one past its last byte
+         * @return The bytes of the range
+         */
+        private byte[] scratchOf(final int start, final int end) {
+            final byte[] range = new byte[end - start];
+            for (int i = 0; i < range.length; i++) {
+                range[i] = bytes.get(start + i);
+            }
+            return range;
+        }
+
+        /**
+         * Describe the line being parsed as malformed.
+         * @return An exception to throw out of the parsing task
+         */
+        private UncheckedIOException malformed() {
+            return new UncheckedIOException(new IOException(
+                    "Malformed student record at byte " + lineStart
+                    + " of " + file));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package edu.coursera.parallel;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * A declarative query over {@link Student}s: a filter followed by an
+ * aggregation. Queries hold no data and are run by a
+ * {@link StudentQueryEngine}, which evaluates any number of them in one pass
+ * over the students.
+ * <p>
+ * The aggregation is an ordinary {@link Collector}, so projection and
+ * group-by compose with {@link Collectors#mapping} and
+ * {@link Collectors#groupingBy}. The factories below cover the common
+ * reports with primitive containers that do not box per row.
+ * @param <A> Type of the mutable per-task aggregation state
+ * @param <R> Type of the query result
+ */
+public final class StudentQuery<A, R> {
+
+    /**
+     * Rows that pass this filter are aggregated.
+     */
+    private final Predicate<Student> filter;
+    /**
+     * Aggregation applied to the rows that pass the filter.
+     */
+    private final Collector<Student, A, R> aggregation;
+    /**
+     * Accumulator of the aggregation, looked up once rather than per row.
+     */
+    private final BiConsumer<A, Student> accumulator;
+
+    /**
+     * Constructor.
+     * @param setFilter Rows that pass this filter are aggregated
+     * @param setAggregation Aggregation applied to the filtered rows
+     */
+    private StudentQuery(final Predicate<Student> setFilter,
+                         final Collector<Student, A, R> setAggregation) {
+        this.filter = setFilter;
+        this.aggregation = setAggregation;
+        this.accumulator = setAggregation.accumulator();
+    }
+
+    /**
+     * Create a query from a filter and any collector.
+     * @param filter Rows that pass this filter are aggregated
+     * @param aggregation Aggregation applied to the filtered rows
+     * @param <A> Type of the mutable aggregation state
+     * @param <R> Type of the result
+     * @return The query
+     */
+    public static <A, R> StudentQuery<A, R> of(
+            final Predicate<Student> filter,
+            final Collector<Student, A, R> aggregation) {
+        return new StudentQuery<A, R>(filter, aggregation);
+    }
+
+    /**
+     * Count the rows that pass a filter.
+     * @param filter Rows to count
+     * @return The query
+     */
+    public static StudentQuery<long[], Long> count(
+            final Predicate<Student> filter) {
+        return of(filter, Collector.of(() -> new long[1],
+                (state, s) -> state[0]++,
+                (left, right) -> {
+                    left[0] += right[0];
+                    return left;
+                },
+                state -> state[0]));
+    }
+
+    /**
+     * Sum a numeric field over the rows that pass a filter.
+     * @param filter Rows to sum over
+     * @param field Field to sum
+     * @return The query
+     */
+    public static StudentQuery<double[], Double> sum(
+            final Predicate<Student> filter,
+            final ToDoubleFunction<Student> field) {
+        return of(filter, Collector.of(() -> new double[1],
+                (state, s) -> state[0] += field.applyAsDouble(s),
+                (left, right) -> {
+                    left[0] += right[0];
+                    return left;
+                },
+                state -> state[0]));
+    }
+
+    /**
+     * Average a numeric field over the rows that pass a filter.
+     * @param filter Rows to average over
+     * @param field Field to average
+     * @return The query, whose result is NaN if no row passes the filter
+     */
+    public static StudentQuery<double[], Double> average(
+            final Predicate<Student> filter,
+            final ToDoubleFunction<Student> field) {
+        // state[0] is the sum, state[1] the number of rows
+        return of(filter, Collector.of(() -> new double[2],
+                (state, s) -> {
+                    state[0] += field.applyAsDouble(s);
+                    state[1]++;
+                },
+                (left, right) -> {
+                    left[0] += right[0];
+                    left[1] += right[1];
+                    return left;
+                },
+                state -> state[0] / state[1]));
+    }
+
+    /**
+     * Find the most common value of a String field over the rows that pass
+     * a filter.
+     * @param filter Rows to count
+     * @param field Field whose values are counted
+     * @return The query, whose result is null if no row passes the filter
+     */
+    public static StudentQuery<NameCounter, String> mostCommon(
+            final Predicate<Student> filter,
+            final Function<Student, String> field) {
+        return of(filter, Collector.of(NameCounter::new,
+                (counter, s) -> counter.increment(field.apply(s)),
+                (left, right) -> {
+                    left.merge(right);
+                    return left;
+                },
+                NameCounter::mostCommon));
+    }
+
+    /**
+     * Group the rows that pass a filter by a key and aggregate each group.
+     * @param filter Rows to group
+     * @param key Key of each row
+     * @param downstream Aggregation applied to each group
+     * @param <K> Type of the key
+     * @param <R> Type of the result of each group
+     * @return The query
+     */
+    public static <K, R> StudentQuery<?, Map<K, R>> groupBy(
+            final Predicate<Student> filter,
+            final Function<Student, K> key,
+            final Collector<Student, ?, R> downstream) {
+        return of(filter, Collectors.groupingBy(key, downstream));
+    }
+
+    /**
+     * Returns a query that only aggregates the rows that pass both this
+     * query's filter and another.
+     * @param other Additional filter
+     * @return The narrowed query
+     */
+    public StudentQuery<A, R> and(final Predicate<Student> other) {
+        return new StudentQuery<A, R>(filter.and(other), aggregation);
+    }
+
+    /**
+     * Getter for the filter.
+     * @return Rows that pass this filter are aggregated
+     */
+    Predicate<Student> getFilter() {
+        return filter;
+    }
+
+    /**
+     * Creates a fresh aggregation state.
+     * @return An empty state
+     */
+    A newState() {
+        return aggregation.supplier().get();
+    }
+
+    /**
+     * Aggregate one row that passed the filter.
+     * @param state State to update
+     * @param s Row to aggregate
+     */
+    void accumulate(final A state, final Student s) {
+        accumulator.accept(state, s);
+    }
+
+    /**
+     * Combine the states of two disjoint sets of rows.
+     * @param left State of the first rows
+     * @param right State of the second rows
+     * @return The combined state
+     */
+    A combine(final A left, final A right) {
+        return aggregation.combiner().apply(left, right);
+    }
+
+    /**
+     * Computes the result from a final state.
+     * @param state State covering every row
+     * @return The query result
+     */
+    R finish(final A state) {
+        return aggregation.finisher().apply(state);
+    }
+}
@@ -0,0 +1,291 @@
+package edu.coursera.parallel;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Runs {@link StudentQuery}s, fusing any number of them into a single pass
+ * over the students.
+ * <p>
+ * A batch of queries is first compiled into a plan: filters shared by
+ * several queries (the same Predicate instance) are evaluated once per row,
+ * and every query keeps its own aggregation state. The students are then
+ * scanned a block at a time: each distinct filter produces a selection of
+ * the block's matching rows, and each query aggregates its selection while
+ * the block is still in cache. Each stream task holds one state per query
+ * for the blocks it scanned, and task states are combined query by query,
+ * so a dozen reports cost one scan of the data rather than a dozen.
+ * <p>
+ * Small inputs are not worth the fork-join overhead, so the pass only runs
+ * in parallel when rows times queries reaches a threshold.
+ */
+public final class StudentQueryEngine {
+
+    /**
+     * Default number of row-query evaluations below which a pass runs
+     * sequentially.
+     */
+    static final long DEFAULT_PARALLEL_THRESHOLD = 1 << 15;
+    /**
+     * Number of rows scanned together; small enough for the rows to stay in
+     * cache while every query aggregates them.
+     */
+    static final int BLOCK_SIZE = 1024;
+
+    /**
+     * Number of row-query evaluations below which a pass runs sequentially.
+     */
+    private final long parallelThreshold;
+
+    /**
+     * Constructor using the default parallel threshold.
+     */
+    public StudentQueryEngine() {
+        this(DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Constructor.
+     * @param setParallelThreshold Number of row-query evaluations below
+     *        which a pass runs sequentially
+     */
+    public StudentQueryEngine(final long setParallelThreshold) {
+        if (setParallelThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "Parallel threshold must not be negative: "
+                    + setParallelThreshold);
+        }
+        this.parallelThreshold = setParallelThreshold;
+    }
+
+    /**
+     * Run a single query.
+     * @param studentArray Student data for the class.
+     * @param query Query to run
+     * @param <R> Type of the query result
+     * @return The query result
+     */
+    public <R> R run(final Student[] studentArray,
+                     final StudentQuery<?, R> query) {
+        return runAll(studentArray, query).get(query);
+    }
+
+    /**
+     * Run several queries in one fused pass over the students.
+     * @param studentArray Student data for the class.
+     * @param queries Queries to run
+     * @return The result of every query
+     */
+    public Results runAll(final Student[] studentArray,
+                          final StudentQuery<?, ?>... queries) {
+        final Plan plan = new Plan(queries);
+        final int nRows = studentArray.length;
+        IntStream blocks = IntStream.range(0,
+                (nRows + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        if (isParallel(nRows, queries.length)) {
+            blocks = blocks.parallel();
+        }
+        final Partial partial = blocks.collect(plan::newPartial,
+                (p, block) -> plan.accumulate(p, studentArray,
+                        block * BLOCK_SIZE,
+                        Math.min(nRows, (block + 1) * BLOCK_SIZE)),
+                plan::combine);
+        return plan.finish(partial);
+    }
+
+    /**
+     * Decide whether a pass should run in parallel.
+     * @param nRows Number of students scanned
+     * @param nQueries Number of queries fused into the pass
+     * @return true if the pass is large enough to run in parallel
+     */
+    boolean isParallel(final int nRows, final int nQueries) {
+        return (long) nRows * nQueries >= parallelThreshold;
+    }
+
+    /**
+     * The results of a fused pass, looked up by query.
+     */
+    public static final class Results {
+
+        /**
+         * Result of each query that was run.
+         */
+        private final Map<StudentQuery<?, ?>, Object> results;
+
+        /**
+         * Constructor.
+         * @param setResults Result of each query that was run
+         */
+        private Results(final Map<StudentQuery<?, ?>, Object> setResults) {
+            this.results = setResults;
+        }
+
+        /**
+         * Getter for the result of a query.
+         * @param query A query that was part of the pass
+         * @param <R> Type of the query result
+         * @return The query result
+         */
+        @SuppressWarnings("unchecked")
+        public <R> R get(final StudentQuery<?, R> query) {
+            if (!results.containsKey(query)) {
+                throw new IllegalArgumentException(
+                        "Query was not part of this pass");
+            }
+            return (R) results.get(query);
+        }
+    }
+
+    /**
+     * The aggregation states of every query over the rows one task scanned.
+     */
+    private static final class Partial {
+
+        /**
+         * Aggregation state of each query.
+         */
+        private final Object[] states;
+        /**
+         * Scratch space for the rows of the current block that pass each
+         * distinct filter.
+         */
+        private final int[][] selections;
+        /**
+         * Number of rows in each selection.
+         */
+        private final int[] selected;
+
+        /**
+         * Constructor.
+         * @param setStates Aggregation state of each query
+         * @param nFilters Number of distinct filters
+         */
+        private Partial(final Object[] setStates, final int nFilters) {
+            this.states = setStates;
+            this.selections = new int[nFilters][BLOCK_SIZE];
+            this.selected = new int[nFilters];
+        }
+    }
+
+    /**
+     * A batch of queries compiled for a fused pass.
+     */
+    private static final class Plan {
+
+        /**
+         * Queries of the batch, viewed with erased state and result types.
+         */
+        private final StudentQuery<Object, Object>[] queries;
+        /**
+         * Distinct filters of the batch.
+         */
+        private final Predicate<Student>[] filters;
+        /**
+         * Index into filters of the filter of each query.
+         */
+        private final int[] filterOf;
+
+        /**
+         * Compile a batch of queries, deduplicating their filters.
+         * @param batch Queries to run
+         */
+        @SuppressWarnings("unchecked")
+        private Plan(final StudentQuery<?, ?>[] batch) {
+            this.queries = new StudentQuery[batch.length];
+            this.filterOf = new int[batch.length];
+            final Map<Predicate<Student>, Integer> distinct =
+                new IdentityHashMap<Predicate<Student>, Integer>();
+            for (int q = 0; q < batch.length; q++) {
+                queries[q] = (StudentQuery<Object, Object>) batch[q];
+                final Predicate<Student> filter = batch[q].getFilter();
+                Integer index = distinct.get(filter);
+                if (index == null) {
+                    index = distinct.size();
+                    distinct.put(filter, index);
+                }
+                filterOf[q] = index;
+            }
+
+            this.filters = new Predicate[distinct.size()];
+            for (Map.Entry<Predicate<Student>, Integer> entry
+                    : distinct.entrySet()) {
+                filters[entry.getValue()] = entry.getKey();
+            }
+        }
+
+        /**
+         * Creates the empty states of one task.
+         * @return A fresh state for every query
+         */
+        private Partial newPartial() {
+            final Object[] states = new Object[queries.length];
+            for (int q = 0; q < queries.length; q++) {
+                states[q] = queries[q].newState();
+            }
+            return new Partial(states, filters.length);
+        }
+
+        /**
+         * Feed one block of rows to every query, each query seeing only the
+         * rows that pass its filter.
+         * @param partial States of the task scanning the block
+         * @param rows Student data for the class.
+         * @param start First row of the block
+         * @param end Row one past the last of the block
+         */
+        private void accumulate(final Partial partial, final Student[] rows,
+                                final int start, final int end) {
+            for (int f = 0; f < filters.length; f++) {
+                final Predicate<Student> filter = filters[f];
+                final int[] selection = partial.selections[f];
+                int n = 0;
+                for (int i = start; i < end; i++) {
+                    if (filter.test(rows[i])) {
+                        selection[n++] = i;
+                    }
+                }
+                partial.selected[f] = n;
+            }
+
+            for (int q = 0; q < queries.length; q++) {
+                final StudentQuery<Object, Object> query = queries[q];
+                final Object state = partial.states[q];
+                final int[] selection = partial.selections[filterOf[q]];
+                final int n = partial.selected[filterOf[q]];
+                for (int i = 0; i < n; i++) {
+                    query.accumulate(state, rows[selection[i]]);
+                }
+            }
+        }
+
+        /**
+         * Combine the states of a task into those of another, query by
+         * query.
+         * @param left States of the first rows; updated in place
+         * @param right States of the following rows
+         */
+        private void combine(final Partial left, final Partial right) {
+            for (int q = 0; q < queries.length; q++) {
+                left.states[q] = queries[q].combine(left.states[q],
+                                                    right.states[q]);
+            }
+        }
+
+        /**
+         * Computes the result of every query.
+         * @param partial States covering every row
+         * @return The results
+         */
+        private Results finish(final Partial partial) {
+            final Map<StudentQuery<?, ?>, Object> results =
+                new IdentityHashMap<StudentQuery<?, ?>, Object>();
+            for (int q = 0; q < queries.length; q++) {
+                results.put(queries[q], queries[q].finish(partial.states[q]));
+            }
+            return new Results(results);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package edu.coursera.parallel;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over a range of a Student array that splits into chunks
+ * sized from the data and the number of workers, rather than halving down
+ * to the fixed small leaves of the default array spliterator.
+ * <p>
+ * The chunk size aims at a few chunks per worker, so that a worker finishing
+ * early can steal another, and never drops below MIN_CHUNK_SIZE, so small
+ * rosters are not cut into tasks that cost more to schedule than to run.
+ * Splits fall on chunk boundaries, so every leaf is exactly one chunk except
+ * possibly the last.
+ */
+public final class StudentSpliterator implements Spliterator<Student> {
+
+    /**
+     * Smallest number of students worth processing as a separate task.
+     */
+    static final int MIN_CHUNK_SIZE = 1024;
+    /**
+     * Number of chunks aimed for per worker.
+     */
+    static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Students being traversed.
+     */
+    private final Student[] students;
+    /**
+     * Index of the next student to traverse.
+     */
+    private int index;
+    /**
+     * Index one past the last student to traverse.
+     */
+    private final int fence;
+    /**
+     * Number of students below which this spliterator no longer splits.
+     */
+    private final int chunkSize;
+
+    /**
+     * Constructor.
+     * @param studentArray Student data for the class.
+     * @param parallelism Number of workers the traversal will run on
+     */
+    public StudentSpliterator(final Student[] studentArray,
+                              final int parallelism) {
+        this(studentArray, 0, studentArray.length,
+             chunkSizeFor(studentArray.length, parallelism));
+    }
+
+    /**
+     * Constructor.
+     * @param setStudents Students being traversed
+     * @param setIndex Index of the first student to traverse
+     * @param setFence Index one past the last student to traverse
+     * @param setChunkSize Number of students below which not to split
+     */
+    StudentSpliterator(final Student[] setStudents, final int setIndex,
+                       final int setFence, final int setChunkSize) {
+        this.students = setStudents;
+        this.index = setIndex;
+        this.fence = setFence;
+        this.chunkSize = setChunkSize;
+    }
+
+    /**
+     * Computes the chunk size for a traversal.
+     * @param nStudents Number of students traversed
+     * @param parallelism Number of workers the traversal will run on
+     * @return The number of students each leaf task processes
+     */
+    static int chunkSizeFor(final int nStudents, final int parallelism) {
+        final long nChunks = (long) Math.max(1, parallelism)
+            * CHUNKS_PER_WORKER;
+        return (int) Math.max(MIN_CHUNK_SIZE,
+                              (nStudents + nChunks - 1) / nChunks);
+    }
+
+    @Override
+    public Spliterator<Student> trySplit() {
+        final int nChunks = (fence - index + chunkSize - 1) / chunkSize;
+        if (nChunks < 2) {
+            return null;
+        }
+        final int mid = index + (nChunks / 2) * chunkSize;
+        final Spliterator<Student> prefix = new StudentSpliterator(students,
+                index, mid, chunkSize);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Student> action) {
+        if (index >= fence) {
+            return false;
+        }
+        action.accept(students[index++]);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super Student> action) {
+        final Student[] a = students;
+        final int end = fence;
+        int i = index;
+        index = end;
+        for (; i < end; i++) {
+            action.accept(a[i]);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+    }
+}
@@ -0,0 +1,270 @@
+package edu.coursera.parallel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A columnar, primitive-backed copy of a roster of {@link Student}s.
+ * <p>
+ * Each field is stored in its own array, so a query only streams the columns
+ * it reads: ages and grades are plain double[] and int[] columns, whether a
+ * student is current is one bit in a long[] bitset, and names are stored as
+ * int codes into a dictionary of distinct strings. Row i of every column
+ * describes the i-th student of the array the table was built from.
+ */
+public final class StudentTable {
+
+    /**
+     * Number of rows covered by each word of the current bitset.
+     */
+    static final int ROWS_PER_WORD = Long.SIZE;
+
+    /**
+     * Number of rows in the table.
+     */
+    private final int size;
+    /**
+     * Age of each student.
+     */
+    private final double[] ages;
+    /**
+     * Grade of each student.
+     */
+    private final int[] grades;
+    /**
+     * Bit (row % 64) of word (row / 64) is set if the student is current.
+     */
+    private final long[] currentBits;
+    /**
+     * Code of the first name of each student.
+     */
+    private final int[] firstNameCodes;
+    /**
+     * Distinct first names, indexed by code.
+     */
+    private final String[] firstNameDictionary;
+    /**
+     * Code of the last name of each student.
+     */
+    private final int[] lastNameCodes;
+    /**
+     * Distinct last names, indexed by code.
+     */
+    private final String[] lastNameDictionary;
+
+    /**
+     * Constructor.
+     * @param setSize Number of rows
+     * @param setAges Age column
+     * @param setGrades Grade column
+     * @param setCurrentBits Current student bitset
+     * @param setFirstNameCodes First name code column
+     * @param setFirstNameDictionary Distinct first names
+     * @param setLastNameCodes Last name code column
+     * @param setLastNameDictionary Distinct last names
+     */
+    private StudentTable(final int setSize, final double[] setAges,
+                         final int[] setGrades, final long[] setCurrentBits,
+                         final int[] setFirstNameCodes,
+                         final String[] setFirstNameDictionary,
+                         final int[] setLastNameCodes,
+                         final String[] setLastNameDictionary) {
+        this.size = setSize;
+        this.ages = setAges;
+        this.grades = setGrades;
+        this.currentBits = setCurrentBits;
+        this.firstNameCodes = setFirstNameCodes;
+        this.firstNameDictionary = setFirstNameDictionary;
+        this.lastNameCodes = setLastNameCodes;
+        this.lastNameDictionary = setLastNameDictionary;
+    }
+
+    /**
+     * Build a table holding the same students as an array.
+     * @param studentArray Student data for the class.
+     * @return The columnar table
+     */
+    public static StudentTable fromStudents(final Student[] studentArray) {
+        final int n = studentArray.length;
+        final double[] ages = new double[n];
+        final int[] grades = new int[n];
+        final long[] currentBits = new long[numWords(n)];
+        final int[] firstNameCodes = new int[n];
+        final int[] lastNameCodes = new int[n];
+        final Map<String, Integer> firstNames = new HashMap<String, Integer>();
+        final List<String> firstNameDictionary = new ArrayList<String>();
+        final Map<String, Integer> lastNames = new HashMap<String, Integer>();
+        final List<String> lastNameDictionary = new ArrayList<String>();
+
+        for (int i = 0; i < n; i++) {
+            final Student s = studentArray[i];
+            ages[i] = s.getAge();
+            grades[i] = s.getGrade();
+            if (s.checkIsCurrent()) {
+                currentBits[i / ROWS_PER_WORD] |= 1L << i;
+            }
+            firstNameCodes[i] = encode(s.getFirstName(), firstNames,
+                                       firstNameDictionary);
+            lastNameCodes[i] = encode(s.getLastName(), lastNames,
+                                      lastNameDictionary);
+        }
+
+        return new StudentTable(n, ages, grades, currentBits, firstNameCodes,
+                firstNameDictionary.toArray(new String[0]), lastNameCodes,
+                lastNameDictionary.toArray(new String[0]));
+    }
+
+    /**
+     * Wrap existing columns in a table without copying them, for loaders
+     * that decode the columns directly.
+     * @param ages Age column
+     * @param grades Grade column
+     * @param currentBits Current student bitset, with bits past the last row
+     *        clear
+     * @param firstNameCodes First name code column
+     * @param firstNameDictionary Distinct first names, indexed by code
+     * @param lastNameCodes Last name code column
+     * @param lastNameDictionary Distinct last names, indexed by code
+     * @return The table
+     */
+    static StudentTable fromColumns(final double[] ages, final int[] grades,
+                                    final long[] currentBits,
+                                    final int[] firstNameCodes,
+                                    final String[] firstNameDictionary,
+                                    final int[] lastNameCodes,
+                                    final String[] lastNameDictionary) {
+        return new StudentTable(ages.length, ages, grades, currentBits,
+                firstNameCodes, firstNameDictionary, lastNameCodes,
+                lastNameDictionary);
+    }
+
+    /**
+     * Look up the code of a name, adding it to the dictionary if it is new.
+     * @param name Name to encode
+     * @param codes Codes of the names seen so far
+     * @param dictionary Names seen so far, indexed by code
+     * @return The code of name
+     */
+    private static int encode(final String name,
+                              final Map<String, Integer> codes,
+                              final List<String> dictionary) {
+        final Integer code = codes.get(name);
+        if (code != null) {
+            return code;
+        }
+        final int newCode = dictionary.size();
+        codes.put(name, newCode);
+        dictionary.add(name);
+        return newCode;
+    }
+
+    /**
+     * Computes the number of bitset words covering a number of rows.
+     * @param nRows Number of rows
+     * @return The number of words
+     */
+    static int numWords(final int nRows) {
+        return (nRows + ROWS_PER_WORD - 1) / ROWS_PER_WORD;
+    }
+
+    /**
+     * Getter for the number of rows.
+     * @return Number of students in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Materialize a row as a Student.
+     * @param row Row index
+     * @return A student equal to the one the row was built from
+     */
+    public Student getStudent(final int row) {
+        return new Student(firstNameDictionary[firstNameCodes[row]],
+                           lastNameDictionary[lastNameCodes[row]], ages[row],
+                           grades[row], isCurrent(row));
+    }
+
+    /**
+     * Check whether a row describes a current student.
+     * @param row Row index
+     * @return true if the student is currently enrolled
+     */
+    public boolean isCurrent(final int row) {
+        return (currentBits[row / ROWS_PER_WORD] & (1L << row)) != 0;
+    }
+
+    /**
+     * Getter for the age column.
+     * @return Age of each student; must not be modified
+     */
+    double[] getAges() {
+        return ages;
+    }
+
+    /**
+     * Getter for the grade column.
+     * @return Grade of each student; must not be modified
+     */
+    int[] getGrades() {
+        return grades;
+    }
+
+    /**
+     * Getter for the current student bitset. Bits past the last row are
+     * always clear.
+     * @return Bit (row % 64) of word (row / 64) is set for current students;
+     * must not be modified
+     */
+    long[] getCurrentBits() {
+        return currentBits;
+    }
+
+    /**
+     * Getter for the first name code column.
+     * @return Code of the first name of each student; must not be modified
+     */
+    int[] getFirstNameCodes() {
+        return firstNameCodes;
+    }
+
+    /**
+     * Getter for the first name dictionary.
+     * @return Distinct first names, indexed by code; must not be modified
+     */
+    String[] getFirstNameDictionary() {
+        return firstNameDictionary;
+    }
+
+    /**
+     * Getter for the last name code column.
+     * @return Code of the last name of each student; must not be modified
+     */
+    int[] getLastNameCodes() {
+        return lastNameCodes;
+    }
+
+    /**
+     * Getter for the last name dictionary.
+     * @return Distinct last names, indexed by code; must not be modified
+     */
+    String[] getLastNameDictionary() {
+        return lastNameDictionary;
+    }
+
+    /**
+     * Returns a mask of the rows of a bitset word that exist in the table.
+     * @param word Index of the word
+     * @return Mask with one bit set per existing row
+     */
+    long validRowsMask(final int word) {
+        final int rowsLeft = size - word * ROWS_PER_WORD;
+        if (rowsLeft >= ROWS_PER_WORD) {
+            return -1L;
+        }
+        return (1L << rowsLeft) - 1;
+    }
+}
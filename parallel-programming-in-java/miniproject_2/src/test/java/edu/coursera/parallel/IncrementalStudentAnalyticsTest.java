@@ -0,0 +1,85 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class IncrementalStudentAnalyticsTest extends TestCase {
+    private void assertMatchesFullScan(final Student[] roster, final IncrementalStudentAnalytics incremental) {
+        final StudentAnalytics analytics = new StudentAnalytics();
+        assertEquals(roster.length, incremental.size());
+        assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(roster),
+                     incremental.averageAgeOfEnrolledStudents(), 1E-6);
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(roster),
+                     incremental.mostCommonFirstNameOfInactiveStudents());
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(roster),
+                     incremental.countNumberOfFailedStudentsOlderThan20());
+    }
+
+    public void testInitialRoster() {
+        final Student[] roster = StudentFixtures.generateStudentData(1_000_000, 600_000);
+        assertMatchesFullScan(roster, IncrementalStudentAnalytics.fromStudents(roster));
+    }
+
+    public void testInsertUpdateRemove() {
+        final Student[] initial = StudentFixtures.generateStudentData(100_000, 50_000);
+        final IncrementalStudentAnalytics incremental = IncrementalStudentAnalytics.fromStudents(initial);
+        final Random r = new Random(7);
+
+        // Update a few thousand students, then remove the last tenth of the roster
+        final Student[] roster = initial.clone();
+        for (int i = 0; i < 5_000; i++) {
+            final int row = r.nextInt(roster.length);
+            final Student replacement = StudentFixtures.randomStudent(r, r.nextBoolean());
+            incremental.update(roster[row], replacement);
+            roster[row] = replacement;
+        }
+        final int kept = roster.length - roster.length / 10;
+        for (int row = kept; row < roster.length; row++) {
+            incremental.remove(roster[row]);
+        }
+
+        assertMatchesFullScan(java.util.Arrays.copyOf(roster, kept), incremental);
+    }
+
+    public void testEmptyRoster() {
+        final IncrementalStudentAnalytics incremental = new IncrementalStudentAnalytics();
+        final Student s = new Student("Max", "Grossman", 30, 50, false);
+        incremental.insert(s);
+        incremental.remove(s);
+
+        assertEquals(0, incremental.size());
+        assertNull(incremental.mostCommonFirstNameOfInactiveStudents());
+        assertEquals(0, incremental.countNumberOfFailedStudentsOlderThan20());
+        assertTrue(Double.isNaN(incremental.averageAgeOfEnrolledStudents()));
+    }
+
+    public void testConcurrentWriters() throws InterruptedException {
+        final Student[] roster = StudentFixtures.generateStudentData(200_000, 100_000);
+        final IncrementalStudentAnalytics incremental = IncrementalStudentAnalytics.fromStudents(roster);
+
+        // Each writer owns a disjoint slice of the roster and keeps replacing its students
+        final int nWriters = 4;
+        final int sliceSize = roster.length / nWriters;
+        final Thread[] writers = new Thread[nWriters];
+        for (int w = 0; w < nWriters; w++) {
+            final int first = w * sliceSize;
+            final long seed = w;
+            writers[w] = new Thread(() -> {
+                final Random r = new Random(seed);
+                for (int i = 0; i < 20_000; i++) {
+                    final int row = first + r.nextInt(sliceSize);
+                    final Student replacement = StudentFixtures.randomStudent(r, r.nextBoolean());
+                    incremental.update(roster[row], replacement);
+                    roster[row] = replacement;
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertMatchesFullScan(roster, incremental);
+    }
+}
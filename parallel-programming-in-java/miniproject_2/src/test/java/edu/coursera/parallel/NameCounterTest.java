@@ -0,0 +1,99 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class NameCounterTest extends TestCase {
+    /**
+     * Generate names from a large, skewed domain: name i occurs roughly in proportion to 1 / (i + 1).
+     */
+    private String[] generateZipfNames(final int n, final int domain) {
+        final double[] cumulative = new double[domain];
+        double total = 0.0;
+        for (int i = 0; i < domain; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+
+        final Random r = new Random(42);
+        final String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            int rank = Arrays.binarySearch(cumulative, r.nextDouble() * total);
+            rank = rank < 0 ? -rank - 1 : rank;
+            names[i] = "name" + Math.min(rank, domain - 1);
+        }
+        return names;
+    }
+
+    public void testCountsMatchHashMap() {
+        final String[] names = generateZipfNames(200_000, 50_000);
+        final NameCounter counter = new NameCounter();
+        final Map<String, Integer> expected = new HashMap<String, Integer>();
+        for (String name : names) {
+            counter.increment(name);
+            expected.merge(name, 1, Integer::sum);
+        }
+
+        assertEquals(expected.size(), counter.size());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), (int) entry.getValue(), counter.get(entry.getKey()));
+        }
+        assertEquals(0, counter.get("missing"));
+        assertEquals("name0", counter.mostCommon());
+    }
+
+    public void testMergeAndTopK() {
+        final NameCounter left = new NameCounter();
+        final NameCounter right = new NameCounter();
+        left.add("a", 5);
+        left.add("b", 1);
+        right.add("b", 7);
+        right.add("c", 3);
+        right.add("d", 2);
+        left.merge(right);
+
+        assertEquals(8, left.get("b"));
+        assertEquals(Arrays.asList("b", "a", "c"), left.topK(3));
+        assertEquals(4, left.topK(10).size());
+        assertTrue(left.topK(0).isEmpty());
+        assertNull(new NameCounter().mostCommon());
+    }
+
+    public void testSpaceSavingFindsHeavyHitters() {
+        final String[] names = generateZipfNames(500_000, 100_000);
+        final NameCounter exact = new NameCounter();
+        final SpaceSavingCounter left = new SpaceSavingCounter(256);
+        final SpaceSavingCounter right = new SpaceSavingCounter(256);
+        for (int i = 0; i < names.length; i++) {
+            exact.increment(names[i]);
+            (i % 2 == 0 ? left : right).offer(names[i]);
+        }
+        left.merge(right);
+
+        assertEquals(names.length, left.total());
+        assertEquals(exact.mostCommon(), left.mostCommon());
+        // Estimates never undercount tracked names, and overcount by at most total / capacity
+        for (String name : exact.topK(5)) {
+            final long estimate = left.estimate(name);
+            assertTrue(name + " estimated below its count", estimate >= exact.get(name));
+            assertTrue(name + " overestimated", estimate - exact.get(name) <= 2 * names.length / 256);
+        }
+    }
+
+    public void testStudentQueries() {
+        final Student[] students = StudentFixtures.generateStudentData(2_000_000, 600_000);
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final String expected = analytics.mostCommonFirstNameOfInactiveStudentsImperative(students);
+
+        assertEquals(expected, analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(students));
+        assertEquals(expected, analytics.mostCommonFirstNameOfInactiveStudentsApproximate(students, 16));
+        final List<String> top = analytics.topFirstNamesOfInactiveStudentsParallelStream(students, 3);
+        assertEquals(3, top.size());
+        assertEquals(expected, top.get(0));
+    }
+}
@@ -0,0 +1,45 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+
+/**
+ * Random rosters shared by the tests.
+ */
+final class StudentFixtures {
+    final static String[] FIRST_NAMES = {"Sanjay", "Yunming", "John", "Vivek", "Shams", "Max"};
+    final static String[] LAST_NAMES = {"Chatterjee", "Zhang", "Smith", "Sarkar", "Imam", "Grossman"};
+
+    private StudentFixtures() {
+    }
+
+    static Student randomStudent(final Random r, final boolean current) {
+        return randomStudent(r, current, FIRST_NAMES);
+    }
+
+    static Student randomStudent(final Random r, final boolean current, final String[] firstNames) {
+        final String firstName = firstNames[r.nextInt(firstNames.length)];
+        final String lastName = LAST_NAMES[r.nextInt(LAST_NAMES.length)];
+        final double age = r.nextDouble() * 100.0;
+        final int grade = 1 + r.nextInt(100);
+        return new Student(firstName, lastName, age, grade, current);
+    }
+
+    /**
+     * A roster of nStudents, of which the first nCurrentStudents are current, the same for every call.
+     */
+    static Student[] generateStudentData(final int nStudents, final int nCurrentStudents) {
+        return generateStudentData(nStudents, nCurrentStudents, FIRST_NAMES);
+    }
+
+    static Student[] generateStudentData(final int nStudents, final int nCurrentStudents,
+            final String[] firstNames) {
+        Student[] students = new Student[nStudents];
+        Random r = new Random(123);
+
+        for (int s = 0; s < nStudents; s++) {
+            students[s] = randomStudent(r, s < nCurrentStudents, firstNames);
+        }
+
+        return students;
+    }
+}
@@ -0,0 +1,112 @@
+package edu.coursera.parallel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class StudentLoaderTest extends TestCase {
+    private final static String[] firstNames = {"Sanjay", "Yunming", "John", "Vivek", "Shams", "Max", "Zoë"};
+
+    private void assertSameStudents(final Student[] expected, final Student[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getFirstName(), actual[i].getFirstName());
+            assertEquals(expected[i].getLastName(), actual[i].getLastName());
+            assertEquals(expected[i].getAge(), actual[i].getAge());
+            assertEquals(expected[i].getGrade(), actual[i].getGrade());
+            assertEquals(expected[i].checkIsCurrent(), actual[i].checkIsCurrent());
+        }
+    }
+
+    private Path tempFile(final String suffix) throws IOException {
+        final Path file = Files.createTempFile("students", suffix);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    public void testCsvRoundTripAcrossChunks() throws IOException {
+        final Student[] students = StudentFixtures.generateStudentData(100_000, 40_000, firstNames);
+        final Path file = tempFile(".csv");
+        StudentLoader.writeCsv(file, students);
+
+        // Small chunks force many cuts that land mid-line
+        final AtomicInteger nChunks = new AtomicInteger();
+        final Student[] loaded = StudentLoader.readCsv(file, chunk -> nChunks.incrementAndGet(), 4096);
+        assertSameStudents(students, loaded);
+        assertTrue(nChunks.get() > 1);
+
+        assertSameStudents(students, StudentLoader.readCsv(file));
+    }
+
+    public void testCsvLineEndingsAndNumberForms() throws IOException {
+        final Path file = tempFile(".csv");
+        Files.write(file, ("Max,Grossman,21.5,64,false\r\n"
+                           + "\n"
+                           + "Vivek,Sarkar,1e1,100,true\n"
+                           + "Shams,Imam,-0.25,-3,false\n"
+                           + "John,Smith,0.1000000000000000055511151231257827,7,true\n"
+                           + "Sanjay,Chatterjee,33").getBytes(StandardCharsets.UTF_8));
+        try {
+            StudentLoader.readCsv(file);
+            fail("Expected an IOException for the truncated last line");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Malformed"));
+        }
+
+        Files.write(file, ",65,true\n".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+        final Student[] loaded = StudentLoader.readCsv(file);
+        assertEquals(5, loaded.length);
+        assertEquals(21.5, loaded[0].getAge());
+        assertFalse(loaded[0].checkIsCurrent());
+        assertEquals(10.0, loaded[1].getAge());
+        assertEquals(-0.25, loaded[2].getAge());
+        assertEquals(-3, loaded[2].getGrade());
+        assertEquals(0.1, loaded[3].getAge());
+        assertEquals("Sanjay", loaded[4].getFirstName());
+        assertEquals(33.0, loaded[4].getAge());
+    }
+
+    public void testBinaryRoundTrip() throws IOException {
+        final Student[] students = StudentFixtures.generateStudentData(100_003, 30_000, firstNames);
+        final Path file = tempFile(".bin");
+        StudentLoader.writeBinary(file, students);
+
+        assertSameStudents(students, StudentLoader.readBinary(file));
+
+        final StudentTable table = StudentLoader.readBinaryTable(file);
+        final StudentAnalytics analytics = new StudentAnalytics();
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                     analytics.countNumberOfFailedStudentsOlderThan20Columnar(table));
+
+        final Path notARoster = tempFile(".bin");
+        Files.write(notARoster, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        try {
+            StudentLoader.readBinaryTable(notARoster);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testAggregatesWhileLoading() throws IOException {
+        final Student[] students = StudentFixtures.generateStudentData(200_000, 80_000, firstNames);
+        final Path file = tempFile(".csv");
+        StudentLoader.writeCsv(file, students);
+
+        final IncrementalStudentAnalytics incremental = new IncrementalStudentAnalytics();
+        final Student[] loaded = StudentLoader.readCsv(file, incremental::insertAll, 64 * 1024);
+
+        final StudentAnalytics analytics = new StudentAnalytics();
+        assertEquals(loaded.length, incremental.size());
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                     incremental.countNumberOfFailedStudentsOlderThan20());
+        assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(students),
+                     incremental.averageAgeOfEnrolledStudents(), 1E-9);
+    }
+}
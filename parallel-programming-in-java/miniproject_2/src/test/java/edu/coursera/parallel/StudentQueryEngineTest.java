@@ -0,0 +1,110 @@
+package edu.coursera.parallel;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+public class StudentQueryEngineTest extends TestCase {
+    private final static Predicate<Student> CURRENT = s -> s.checkIsCurrent();
+    private final static Predicate<Student> INACTIVE = s -> !s.checkIsCurrent();
+    private final static Predicate<Student> FAILED_OLDER_THAN_20 =
+        s -> !s.checkIsCurrent() && s.getAge() > 20 && s.getGrade() < 65;
+
+    public void testFusedPassMatchesImperative() {
+        final Student[] students = StudentFixtures.generateStudentData(1_000_000, 400_000);
+        final StudentAnalytics analytics = new StudentAnalytics();
+
+        final StudentQuery<double[], Double> averageAge =
+            StudentQuery.average(CURRENT, Student::getAge);
+        final StudentQuery<NameCounter, String> commonName =
+            StudentQuery.mostCommon(INACTIVE, Student::getFirstName);
+        final StudentQuery<long[], Long> failed = StudentQuery.count(FAILED_OLDER_THAN_20);
+
+        final StudentQueryEngine.Results results =
+            new StudentQueryEngine().runAll(students, averageAge, commonName, failed);
+
+        assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(students),
+                     results.get(averageAge), 1E-9);
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(students),
+                     results.get(commonName));
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                     results.get(failed).intValue());
+    }
+
+    public void testGroupByAndProjection() {
+        final Student[] students = StudentFixtures.generateStudentData(100_000, 30_000);
+        final StudentQuery<?, Map<String, Long>> perName = StudentQuery.groupBy(
+                INACTIVE, Student::getFirstName, Collectors.counting());
+        final StudentQuery<?, Map<Boolean, Double>> averageGrade = StudentQuery.groupBy(
+                s -> true, Student::checkIsCurrent,
+                Collectors.averagingInt(Student::getGrade));
+
+        final StudentQueryEngine.Results results =
+            new StudentQueryEngine().runAll(students, perName, averageGrade);
+
+        final Map<String, Long> expectedPerName = java.util.Arrays.stream(students)
+            .filter(INACTIVE).collect(Collectors.groupingBy(Student::getFirstName,
+                                                            Collectors.counting()));
+        assertEquals(expectedPerName, results.get(perName));
+
+        final Map<Boolean, Double> grades = results.get(averageGrade);
+        assertEquals(2, grades.size());
+        assertEquals(java.util.Arrays.stream(students).filter(CURRENT)
+                     .mapToInt(Student::getGrade).average().getAsDouble(),
+                     grades.get(true), 1E-9);
+    }
+
+    public void testSharedFilterIsEvaluatedOncePerRow() {
+        final Student[] students = StudentFixtures.generateStudentData(50_000, 20_000);
+        final AtomicLong evaluations = new AtomicLong();
+        final Predicate<Student> counted = s -> {
+            evaluations.incrementAndGet();
+            return s.checkIsCurrent();
+        };
+
+        final StudentQuery<long[], Long> count = StudentQuery.count(counted);
+        final StudentQuery<double[], Double> ageSum = StudentQuery.sum(counted, Student::getAge);
+        final StudentQuery<double[], Double> average = StudentQuery.average(counted, Student::getAge);
+
+        final StudentQueryEngine.Results results =
+            new StudentQueryEngine().runAll(students, count, ageSum, average);
+
+        assertEquals(students.length, evaluations.get());
+        assertEquals(20_000L, results.get(count).longValue());
+        assertEquals(results.get(ageSum) / 20_000, results.get(average), 1E-9);
+    }
+
+    public void testNarrowedQueryAndEmptyResult() {
+        final Student[] students = StudentFixtures.generateStudentData(10_000, 10_000);
+        final StudentQueryEngine engine = new StudentQueryEngine();
+
+        assertNull(engine.run(students, StudentQuery.mostCommon(INACTIVE, Student::getFirstName)));
+        assertTrue(Double.isNaN(engine.run(students,
+                StudentQuery.average(INACTIVE, Student::getAge))));
+        assertEquals(engine.run(students, StudentQuery.count(s -> s.getGrade() < 65)),
+                     engine.run(students, StudentQuery.count(CURRENT).and(s -> s.getGrade() < 65)));
+
+        try {
+            engine.runAll(students).get(StudentQuery.count(CURRENT));
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testParallelThreshold() {
+        final StudentQueryEngine engine = new StudentQueryEngine(1_000);
+        assertFalse(engine.isParallel(999, 1));
+        assertTrue(engine.isParallel(500, 2));
+        assertTrue(new StudentQueryEngine(0).isParallel(0, 0));
+
+        // Sequential and parallel passes must agree
+        final Student[] students = StudentFixtures.generateStudentData(20_000, 5_000);
+        final StudentQuery<long[], Long> failed = StudentQuery.count(FAILED_OLDER_THAN_20);
+        assertEquals(new StudentQueryEngine(Long.MAX_VALUE).run(students, failed),
+                     new StudentQueryEngine(0).run(students, failed));
+    }
+}
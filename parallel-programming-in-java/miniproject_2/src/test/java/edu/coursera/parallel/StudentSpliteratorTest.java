@@ -0,0 +1,58 @@
+package edu.coursera.parallel;
+
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class StudentSpliteratorTest extends TestCase {
+    /**
+     * Split recursively, checking that leaves are whole chunks and cover every index once, in order.
+     */
+    private int splitFully(final Spliterator<Student> spliterator, final Student[] students,
+                           final int expectedStart, final int chunkSize) {
+        final Spliterator<Student> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            assertTrue(spliterator.estimateSize() <= chunkSize);
+            final int[] next = {expectedStart};
+            spliterator.forEachRemaining(s -> assertSame(students[next[0]++], s));
+            return next[0];
+        }
+        final int afterPrefix = splitFully(prefix, students, expectedStart, chunkSize);
+        assertEquals(0, (afterPrefix - expectedStart) % chunkSize);
+        return splitFully(spliterator, students, afterPrefix, chunkSize);
+    }
+
+    public void testChunkSize() {
+        assertEquals(StudentSpliterator.MIN_CHUNK_SIZE, StudentSpliterator.chunkSizeFor(0, 8));
+        assertEquals(StudentSpliterator.MIN_CHUNK_SIZE, StudentSpliterator.chunkSizeFor(10_000, 8));
+        assertEquals(62_500, StudentSpliterator.chunkSizeFor(2_000_000, 8));
+        assertEquals(62_501, StudentSpliterator.chunkSizeFor(2_000_001, 8));
+        assertEquals(500_000, StudentSpliterator.chunkSizeFor(2_000_000, 0));
+    }
+
+    public void testSplitsCoverEveryStudentOnce() {
+        final int[] sizes = {0, 1, 1023, 1024, 1025, 100_003};
+        for (int N : sizes) {
+            final Student[] students = StudentFixtures.generateStudentData(N, N / 3);
+            final int chunkSize = StudentSpliterator.chunkSizeFor(N, 4);
+            assertEquals(N, splitFully(new StudentSpliterator(students, 4), students, 0, chunkSize));
+        }
+    }
+
+    public void testPooledQueriesMatchImperative() {
+        final Student[] students = StudentFixtures.generateStudentData(1_000_000, 300_000);
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            final StudentAnalytics analytics = new StudentAnalytics(pool);
+            assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(students),
+                         analytics.averageAgeOfEnrolledStudentsPooled(students), 1E-9);
+            assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(students),
+                         analytics.mostCommonFirstNameOfInactiveStudentsPooled(students));
+            assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                         analytics.countNumberOfFailedStudentsOlderThan20Pooled(students));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
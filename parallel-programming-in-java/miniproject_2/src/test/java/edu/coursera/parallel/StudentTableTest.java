@@ -0,0 +1,55 @@
+package edu.coursera.parallel;
+
+import junit.framework.TestCase;
+
+public class StudentTableTest extends TestCase {
+    public void testRoundTrip() {
+        final Student[] students = StudentFixtures.generateStudentData(1000, 300);
+        final StudentTable table = StudentTable.fromStudents(students);
+
+        assertEquals(students.length, table.size());
+        for (int i = 0; i < students.length; i++) {
+            final Student s = table.getStudent(i);
+            assertEquals(students[i].getFirstName(), s.getFirstName());
+            assertEquals(students[i].getLastName(), s.getLastName());
+            assertEquals(students[i].getAge(), s.getAge());
+            assertEquals(students[i].getGrade(), s.getGrade());
+            assertEquals(students[i].checkIsCurrent(), s.checkIsCurrent());
+        }
+    }
+
+    /**
+     * Check the columnar queries on sizes that leave a partial bitset word.
+     */
+    public void testQueriesMatchImperative() {
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final int[] sizes = {1, 63, 64, 65, 1000, 100_003};
+
+        for (int N : sizes) {
+            final Student[] students = StudentFixtures.generateStudentData(N, N / 3);
+            final StudentTable table = StudentTable.fromStudents(students);
+
+            assertEquals("Average age mismatch for N = " + N,
+                    analytics.averageAgeOfEnrolledStudentsImperative(students),
+                    analytics.averageAgeOfEnrolledStudentsColumnar(table), 1E-9);
+            assertEquals("Failed count mismatch for N = " + N,
+                    analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                    analytics.countNumberOfFailedStudentsOlderThan20Columnar(table));
+        }
+
+        // The name counts in small rosters may tie, so only compare the most common name on a large one
+        final Student[] students = StudentFixtures.generateStudentData(2_000_000, 600_000);
+        final StudentTable table = StudentTable.fromStudents(students);
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(students),
+                analytics.mostCommonFirstNameOfInactiveStudentsColumnar(table));
+    }
+
+    public void testNoInactiveStudents() {
+        final Student[] students = StudentFixtures.generateStudentData(100, 100);
+        final StudentTable table = StudentTable.fromStudents(students);
+        final StudentAnalytics analytics = new StudentAnalytics();
+
+        assertNull(analytics.mostCommonFirstNameOfInactiveStudentsColumnar(table));
+        assertEquals(0, analytics.countNumberOfFailedStudentsOlderThan20Columnar(table));
+    }
+}
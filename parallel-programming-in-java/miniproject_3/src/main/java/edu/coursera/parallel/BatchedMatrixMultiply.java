@@ -0,0 +1,443 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+
+import static edu.rice.pcdp.PCDP.forallChunked;
+import static edu.rice.pcdp.PCDP.numThreads;
+
+/**
+ * Multiplies many small matrices at once, C[t] = A[t] x B[t] for every t in
+ * a batch, with the parallelism across the batch rather than within each
+ * product: a 4x4 product is 64 multiply-adds, far less than the cost of the
+ * parallel region MatrixMultiply.parMatrixMultiply opens for it.
+ * <p>
+ * The main entry point takes each operand as one contiguous buffer holding
+ * the matrices of the batch back to back, each row-major, so a task walks
+ * its share of the batch sequentially through memory. Square products of
+ * size 4 and of multiples of 8 run on kernels specialized for their size,
+ * and every other shape on a general register-blocked kernel.
+ */
+public final class BatchedMatrixMultiply {
+    /**
+     * Number of multiply-adds below which a batch runs sequentially, as the
+     * parallel region would cost more than it saves.
+     */
+    static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+    /**
+     * Minimum number of multiply-adds in each chunk of the batch handed to a
+     * task.
+     */
+    static final int MIN_CHUNK_WORK = 1 << 14;
+    /**
+     * Number of chunks each PCDP worker gets, so that a worker finishing
+     * early can take over another chunk.
+     */
+    static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Default constructor.
+     */
+    private BatchedMatrixMultiply() {
+    }
+
+    /**
+     * Multiply a batch of n x n matrices packed back to back: matrix t of
+     * each buffer starts at index t * n * n.
+     *
+     * @param a Left operands
+     * @param b Right operands
+     * @param c Outputs
+     * @param batch Number of products
+     * @param n Size of each dimension of every matrix
+     */
+    public static void multiply(final double[] a, final double[] b,
+            final double[] c, final int batch, final int n) {
+        multiply(a, b, c, batch, n, n, n);
+    }
+
+    /**
+     * Multiply a batch of m x k matrices by a batch of k x n matrices, each
+     * batch packed back to back: matrix t of a starts at index t * m * k, of
+     * b at t * k * n and of c at t * m * n.
+     *
+     * @param a Left operands
+     * @param b Right operands
+     * @param c Outputs
+     * @param batch Number of products
+     * @param m Number of rows of each left operand and output
+     * @param k Number of columns of each left operand and rows of each right
+     *        operand
+     * @param n Number of columns of each right operand and output
+     */
+    public static void multiply(final double[] a, final double[] b,
+            final double[] c, final int batch, final int m, final int k,
+            final int n) {
+        if (batch < 0 || m < 0 || k < 0 || n < 0) {
+            throw new IllegalArgumentException("Invalid batch: " + batch
+                    + " products of " + m + "x" + k + " by " + k + "x" + n);
+        }
+        if (a.length < (long) batch * m * k || b.length < (long) batch * k * n
+                || c.length < (long) batch * m * n) {
+            throw new IllegalArgumentException("Buffers of " + a.length
+                    + ", " + b.length + " and " + c.length
+                    + " elements cannot hold " + batch + " products of " + m
+                    + "x" + k + " by " + k + "x" + n);
+        }
+        if (batch == 0) {
+            return;
+        }
+
+        final long work = Math.max(1L, (long) m * k * n);
+        if (batch * work < SEQUENTIAL_THRESHOLD) {
+            for (int t = 0; t < batch; t++) {
+                multiplyOne(a, b, c, t, m, k, n);
+            }
+            return;
+        }
+        forallChunked(0, batch - 1, chunkSize(batch, work),
+                t -> multiplyOne(a, b, c, t, m, k, n));
+    }
+
+    /**
+     * Multiply a batch of jagged matrices, C[t] = A[t] x B[t]. Each product
+     * runs in i-k-j order, streaming along rows of B[t] and C[t]. The shapes
+     * may differ from one product to the next; all of them are checked
+     * before any output is written.
+     *
+     * @param A Left operands, each with dimensions MxK
+     * @param B Right operands, each with dimensions KxN
+     * @param C Outputs, each with dimensions MxN
+     */
+    public static void multiply(final double[][][] A, final double[][][] B,
+            final double[][][] C) {
+        if (A.length != B.length || A.length != C.length) {
+            throw new IllegalArgumentException("Batches of " + A.length
+                    + ", " + B.length + " and " + C.length
+                    + " matrices do not match");
+        }
+        final int batch = A.length;
+        if (batch == 0) {
+            return;
+        }
+
+        long totalWork = 0;
+        for (int t = 0; t < batch; t++) {
+            totalWork += Math.max(1L, checkJaggedShapes(A[t], B[t], C[t], t));
+        }
+        if (totalWork < SEQUENTIAL_THRESHOLD) {
+            for (int t = 0; t < batch; t++) {
+                multiplyJagged(A[t], B[t], C[t]);
+            }
+            return;
+        }
+        forallChunked(0, batch - 1, chunkSize(batch, totalWork / batch),
+                t -> multiplyJagged(A[t], B[t], C[t]));
+    }
+
+    /**
+     * Check that one jagged product is well formed: every row of a has one
+     * element per row of b, and b and c have rows of one common length, c
+     * with one row per row of a.
+     *
+     * @param a Left operand
+     * @param b Right operand
+     * @param c Output
+     * @param t Index of the product in the batch, for the error message
+     * @return Number of multiply-adds in the product
+     */
+    private static long checkJaggedShapes(final double[][] a,
+            final double[][] b, final double[][] c, final int t) {
+        final int m = a.length;
+        final int k = b.length;
+        final int n = k > 0 ? b[0].length : (c.length > 0 ? c[0].length : 0);
+        boolean valid = c.length == m;
+        for (int i = 0; valid && i < m; i++) {
+            valid = a[i].length == k && c[i].length == n;
+        }
+        for (int p = 0; valid && p < k; p++) {
+            valid = b[p].length == n;
+        }
+        if (!valid) {
+            throw new IllegalArgumentException("Rows of product " + t
+                    + " do not form a product of " + m + "x" + k + " by "
+                    + k + "x" + n + " matrices");
+        }
+        return (long) m * k * n;
+    }
+
+    /**
+     * Compute one jagged product in i-k-j order.
+     *
+     * @param a Left operand
+     * @param b Right operand
+     * @param c Output
+     */
+    private static void multiplyJagged(final double[][] a, final double[][] b,
+            final double[][] c) {
+        for (int i = 0; i < a.length; i++) {
+            final double[] aRow = a[i];
+            final double[] cRow = c[i];
+            Arrays.fill(cRow, 0.0);
+            for (int p = 0; p < b.length; p++) {
+                final double[] bRow = b[p];
+                final double x = aRow[p];
+                for (int j = 0; j < cRow.length; j++) {
+                    cRow[j] += x * bRow[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of products per chunk: enough for CHUNKS_PER_WORKER chunks per
+     * worker, but no fewer than MIN_CHUNK_WORK multiply-adds per chunk.
+     *
+     * @param batch Number of products
+     * @param work Multiply-adds per product, at least one
+     * @return Chunk size
+     */
+    private static int chunkSize(final int batch, final long work) {
+        final int chunks = numThreads() * CHUNKS_PER_WORKER;
+        return Math.max((batch + chunks - 1) / chunks,
+                (int) Math.max(1L, MIN_CHUNK_WORK / work));
+    }
+
+    /**
+     * Compute product t of a packed batch on the kernel for its shape.
+     *
+     * @param a Left operands
+     * @param b Right operands
+     * @param c Outputs
+     * @param t Index of the product in the batch
+     * @param m Number of rows of the left operand and output
+     * @param k Number of columns of the left operand
+     * @param n Number of columns of the right operand and output
+     */
+    private static void multiplyOne(final double[] a, final double[] b,
+            final double[] c, final int t, final int m, final int k,
+            final int n) {
+        if (m == k && k == n) {
+            if (n == 4) {
+                multiply4(a, b, c, t * 16);
+                return;
+            }
+            if (n % 8 == 0) {
+                multiplySquareBy8(a, b, c, t * n * n, n);
+                return;
+            }
+        }
+        multiplyRegisterBlocked(a, t * m * k, b, t * k * n, c, t * m * n,
+                m, k, n);
+    }
+
+    /**
+     * Compute a 4x4 product with every loop unrolled: B is held in sixteen
+     * locals and each row of C is four dot products of length four.
+     *
+     * @param a Left operands
+     * @param b Right operands
+     * @param c Outputs
+     * @param offset Index of the first element of each matrix
+     */
+    static void multiply4(final double[] a, final double[] b,
+            final double[] c, final int offset) {
+        final double b00 = b[offset];
+        final double b01 = b[offset + 1];
+        final double b02 = b[offset + 2];
+        final double b03 = b[offset + 3];
+        final double b10 = b[offset + 4];
+        final double b11 = b[offset + 5];
+        final double b12 = b[offset + 6];
+        final double b13 = b[offset + 7];
+        final double b20 = b[offset + 8];
+        final double b21 = b[offset + 9];
+        final double b22 = b[offset + 10];
+        final double b23 = b[offset + 11];
+        final double b30 = b[offset + 12];
+        final double b31 = b[offset + 13];
+        final double b32 = b[offset + 14];
+        final double b33 = b[offset + 15];
+        for (int row = offset; row < offset + 16; row += 4) {
+            final double a0 = a[row];
+            final double a1 = a[row + 1];
+            final double a2 = a[row + 2];
+            final double a3 = a[row + 3];
+            c[row] = a0 * b00 + a1 * b10 + a2 * b20 + a3 * b30;
+            c[row + 1] = a0 * b01 + a1 * b11 + a2 * b21 + a3 * b31;
+            c[row + 2] = a0 * b02 + a1 * b12 + a2 * b22 + a3 * b32;
+            c[row + 3] = a0 * b03 + a1 * b13 + a2 * b23 + a3 * b33;
+        }
+    }
+
+    /**
+     * Compute a square product whose size is a multiple of eight, two rows
+     * by eight columns of C at a time: sixteen sums stay in registers, and
+     * each element of A loaded is used eight times and each element of B
+     * twice, twice the reuse of A that multiplyRegisterBlocked gets.
+     *
+     * @param a Left operands
+     * @param b Right operands
+     * @param c Outputs
+     * @param offset Index of the first element of each matrix
+     * @param n Size of each dimension, a multiple of eight
+     */
+    static void multiplySquareBy8(final double[] a, final double[] b,
+            final double[] c, final int offset, final int n) {
+        for (int i = 0; i < n; i += 2) {
+            final int a0 = offset + i * n;
+            final int a1 = a0 + n;
+            for (int j = 0; j < n; j += 8) {
+                double s00 = 0.0;
+                double s01 = 0.0;
+                double s02 = 0.0;
+                double s03 = 0.0;
+                double s04 = 0.0;
+                double s05 = 0.0;
+                double s06 = 0.0;
+                double s07 = 0.0;
+                double s10 = 0.0;
+                double s11 = 0.0;
+                double s12 = 0.0;
+                double s13 = 0.0;
+                double s14 = 0.0;
+                double s15 = 0.0;
+                double s16 = 0.0;
+                double s17 = 0.0;
+                for (int p = 0; p < n; p++) {
+                    final double x0 = a[a0 + p];
+                    final double x1 = a[a1 + p];
+                    final int bRow = offset + p * n + j;
+                    final double y0 = b[bRow];
+                    final double y1 = b[bRow + 1];
+                    final double y2 = b[bRow + 2];
+                    final double y3 = b[bRow + 3];
+                    final double y4 = b[bRow + 4];
+                    final double y5 = b[bRow + 5];
+                    final double y6 = b[bRow + 6];
+                    final double y7 = b[bRow + 7];
+                    s00 += x0 * y0;
+                    s01 += x0 * y1;
+                    s02 += x0 * y2;
+                    s03 += x0 * y3;
+                    s04 += x0 * y4;
+                    s05 += x0 * y5;
+                    s06 += x0 * y6;
+                    s07 += x0 * y7;
+                    s10 += x1 * y0;
+                    s11 += x1 * y1;
+                    s12 += x1 * y2;
+                    s13 += x1 * y3;
+                    s14 += x1 * y4;
+                    s15 += x1 * y5;
+                    s16 += x1 * y6;
+                    s17 += x1 * y7;
+                }
+                final int c0 = a0 + j;
+                final int c1 = a1 + j;
+                c[c0] = s00;
+                c[c0 + 1] = s01;
+                c[c0 + 2] = s02;
+                c[c0 + 3] = s03;
+                c[c0 + 4] = s04;
+                c[c0 + 5] = s05;
+                c[c0 + 6] = s06;
+                c[c0 + 7] = s07;
+                c[c1] = s10;
+                c[c1 + 1] = s11;
+                c[c1 + 2] = s12;
+                c[c1 + 3] = s13;
+                c[c1 + 4] = s14;
+                c[c1 + 5] = s15;
+                c[c1 + 6] = s16;
+                c[c1 + 7] = s17;
+            }
+        }
+    }
+
+    /**
+     * Compute C = A x B for one row-major product, two rows by four columns
+     * of C at a time: the eight sums stay in registers across the whole
+     * shared dimension, and each element of A loaded is used four times and
+     * each element of B twice. Sums run in increasing k, as in
+     * MatrixMultiply.seqMatrixMultiply.
+     *
+     * @param a Storage of A
+     * @param aOffset Index of A's first element
+     * @param b Storage of B
+     * @param bOffset Index of B's first element
+     * @param c Storage of C
+     * @param cOffset Index of C's first element
+     * @param m Number of rows of A and C
+     * @param k Number of columns of A and rows of B
+     * @param n Number of columns of B and C
+     */
+    static void multiplyRegisterBlocked(final double[] a, final int aOffset,
+            final double[] b, final int bOffset, final double[] c,
+            final int cOffset, final int m, final int k, final int n) {
+        int i = 0;
+        for (; i + 2 <= m; i += 2) {
+            final int a0 = aOffset + i * k;
+            final int a1 = a0 + k;
+            final int c0 = cOffset + i * n;
+            final int c1 = c0 + n;
+            int j = 0;
+            for (; j + 4 <= n; j += 4) {
+                double s00 = 0.0;
+                double s01 = 0.0;
+                double s02 = 0.0;
+                double s03 = 0.0;
+                double s10 = 0.0;
+                double s11 = 0.0;
+                double s12 = 0.0;
+                double s13 = 0.0;
+                for (int p = 0; p < k; p++) {
+                    final double x0 = a[a0 + p];
+                    final double x1 = a[a1 + p];
+                    final int bRow = bOffset + p * n + j;
+                    final double y0 = b[bRow];
+                    final double y1 = b[bRow + 1];
+                    final double y2 = b[bRow + 2];
+                    final double y3 = b[bRow + 3];
+                    s00 += x0 * y0;
+                    s01 += x0 * y1;
+                    s02 += x0 * y2;
+                    s03 += x0 * y3;
+                    s10 += x1 * y0;
+                    s11 += x1 * y1;
+                    s12 += x1 * y2;
+                    s13 += x1 * y3;
+                }
+                c[c0 + j] = s00;
+                c[c0 + j + 1] = s01;
+                c[c0 + j + 2] = s02;
+                c[c0 + j + 3] = s03;
+                c[c1 + j] = s10;
+                c[c1 + j + 1] = s11;
+                c[c1 + j + 2] = s12;
+                c[c1 + j + 3] = s13;
+            }
+            for (; j < n; j++) {
+                double s0 = 0.0;
+                double s1 = 0.0;
+                for (int p = 0; p < k; p++) {
+                    final double y = b[bOffset + p * n + j];
+                    s0 += a[a0 + p] * y;
+                    s1 += a[a1 + p] * y;
+                }
+                c[c0 + j] = s0;
+                c[c1 + j] = s1;
+            }
+        }
+        if (i < m) {
+            final int a0 = aOffset + i * k;
+            final int c0 = cOffset + i * n;
+            for (int j = 0; j < n; j++) {
+                double s = 0.0;
+                for (int p = 0; p < k; p++) {
+                    s += a[a0 + p] * b[bOffset + p * n + j];
+                }
+                c[c0 + j] = s;
+            }
+        }
+    }
+}
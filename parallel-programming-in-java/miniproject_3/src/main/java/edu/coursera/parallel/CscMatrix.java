@@ -0,0 +1,166 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+
+/**
+ * A sparse matrix in compressed sparse column (CSC) form, the transpose of
+ * the CsrMatrix layout: the nonzeros of column j are values[colPointers[j]]
+ * to values[colPointers[j + 1] - 1], in increasing row order, and rowIndices
+ * holds the row of each.
+ * <p>
+ * Instances never copy the arrays they are built from or hand out, so the
+ * arrays must not be modified while the matrix is in use.
+ */
+public final class CscMatrix {
+    /**
+     * The number of rows in the matrix.
+     */
+    private final int nrows;
+    /**
+     * The number of columns in the matrix.
+     */
+    private final int ncols;
+    /**
+     * Index in rowIndices and values of the first nonzero of each column,
+     * followed by the number of nonzeros.
+     */
+    private final int[] colPointers;
+    /**
+     * Row of each nonzero.
+     */
+    private final int[] rowIndices;
+    /**
+     * Value of each nonzero.
+     */
+    private final double[] values;
+
+    /**
+     * Constructor.
+     *
+     * @param setNrows Number of rows
+     * @param setNcols Number of columns
+     * @param setColPointers Start of each column's nonzeros, then their
+     *        count
+     * @param setRowIndices Row of each nonzero, increasing within a column
+     * @param setValues Value of each nonzero
+     */
+    public CscMatrix(final int setNrows, final int setNcols,
+            final int[] setColPointers, final int[] setRowIndices,
+            final double[] setValues) {
+        CsrMatrix.checkCompressed(setNcols, setNrows, setColPointers,
+                setRowIndices, setValues);
+        this.nrows = setNrows;
+        this.ncols = setNcols;
+        this.colPointers = setColPointers;
+        this.rowIndices = setRowIndices;
+        this.values = setValues;
+    }
+
+    /**
+     * Compress a jagged dense matrix, keeping its nonzero elements.
+     *
+     * @param dense Rows of the matrix, all of the same length
+     * @return The sparse matrix
+     */
+    public static CscMatrix fromDense(final double[][] dense) {
+        return CsrMatrix.fromDense(dense).toCsc();
+    }
+
+    /**
+     * Expand this matrix into a jagged dense one.
+     *
+     * @return Rows of the dense matrix
+     */
+    public double[][] toDense() {
+        final double[][] dense = new double[nrows][ncols];
+        for (int j = 0; j < ncols; j++) {
+            for (int p = colPointers[j]; p < colPointers[j + 1]; p++) {
+                dense[rowIndices[p]][j] = values[p];
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Convert this matrix to compressed sparse row form.
+     *
+     * @return The same matrix in CSR form
+     */
+    public CsrMatrix toCsr() {
+        final int nnz = getNnz();
+        final int[] rowPointers = new int[nrows + 1];
+        final int[] columnIndices = new int[nnz];
+        final double[] rowValues = new double[nnz];
+        CsrMatrix.transposeCompressed(ncols, nrows, colPointers, rowIndices,
+                values, rowPointers, columnIndices, rowValues);
+        return new CsrMatrix(nrows, ncols, rowPointers, columnIndices,
+                rowValues);
+    }
+
+    /**
+     * Fetch the value at (row, col), searching the column's nonzeros.
+     *
+     * @param row Row index
+     * @param col Column index
+     * @return The value stored at (row, col), zero if not stored
+     */
+    public double get(final int row, final int col) {
+        final int p = Arrays.binarySearch(rowIndices, colPointers[col],
+                colPointers[col + 1], row);
+        return p < 0 ? 0.0 : values[p];
+    }
+
+    /**
+     * Fetch the number of rows in this matrix.
+     *
+     * @return # of rows
+     */
+    public int getNRows() {
+        return nrows;
+    }
+
+    /**
+     * Fetch the number of columns in this matrix.
+     *
+     * @return # of columns
+     */
+    public int getNCols() {
+        return ncols;
+    }
+
+    /**
+     * Fetch the number of stored nonzeros.
+     *
+     * @return # of nonzeros
+     */
+    public int getNnz() {
+        return colPointers[ncols];
+    }
+
+    /**
+     * Get the start of each column's nonzeros, followed by their count.
+     *
+     * @return Column pointers, of length ncols + 1
+     */
+    public int[] getColPointers() {
+        return colPointers;
+    }
+
+    /**
+     * Get the row of each nonzero.
+     *
+     * @return Row indices
+     */
+    public int[] getRowIndices() {
+        return rowIndices;
+    }
+
+    /**
+     * Get the value of each nonzero.
+     *
+     * @return Values
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
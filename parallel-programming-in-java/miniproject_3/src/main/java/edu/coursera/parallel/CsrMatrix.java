@@ -0,0 +1,264 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+
+/**
+ * A sparse matrix in compressed sparse row (CSR) form. The nonzeros of row
+ * i are values[rowPointers[i]] to values[rowPointers[i + 1] - 1], in
+ * increasing column order, and columnIndices holds the column of each.
+ * <p>
+ * Instances never copy the arrays they are built from or hand out, so the
+ * arrays must not be modified while the matrix is in use.
+ */
+public final class CsrMatrix {
+    /**
+     * The number of rows in the matrix.
+     */
+    private final int nrows;
+    /**
+     * The number of columns in the matrix.
+     */
+    private final int ncols;
+    /**
+     * Index in columnIndices and values of the first nonzero of each row,
+     * followed by the number of nonzeros.
+     */
+    private final int[] rowPointers;
+    /**
+     * Column of each nonzero.
+     */
+    private final int[] columnIndices;
+    /**
+     * Value of each nonzero.
+     */
+    private final double[] values;
+
+    /**
+     * Constructor.
+     *
+     * @param setNrows Number of rows
+     * @param setNcols Number of columns
+     * @param setRowPointers Start of each row's nonzeros, then their count
+     * @param setColumnIndices Column of each nonzero, increasing within a
+     *        row
+     * @param setValues Value of each nonzero
+     */
+    public CsrMatrix(final int setNrows, final int setNcols,
+            final int[] setRowPointers, final int[] setColumnIndices,
+            final double[] setValues) {
+        checkCompressed(setNrows, setNcols, setRowPointers, setColumnIndices,
+                setValues);
+        this.nrows = setNrows;
+        this.ncols = setNcols;
+        this.rowPointers = setRowPointers;
+        this.columnIndices = setColumnIndices;
+        this.values = setValues;
+    }
+
+    /**
+     * Check the shape of a compressed matrix: major dimension n, minor
+     * dimension m. Only the ends of the pointer array are checked, so that
+     * construction stays O(n).
+     *
+     * @param n Number of rows (CSR) or columns (CSC)
+     * @param m Number of columns (CSR) or rows (CSC)
+     * @param pointers Start of each major line's nonzeros, then their count
+     * @param indices Minor index of each nonzero
+     * @param values Value of each nonzero
+     */
+    static void checkCompressed(final int n, final int m,
+            final int[] pointers, final int[] indices,
+            final double[] values) {
+        if (n < 0 || m < 0) {
+            throw new IllegalArgumentException("Invalid matrix shape: " + n
+                    + "x" + m);
+        }
+        if (pointers.length != n + 1) {
+            throw new IllegalArgumentException("Expected " + (n + 1)
+                    + " pointers, got " + pointers.length);
+        }
+        if (pointers[0] != 0 || pointers[n] > indices.length
+                || pointers[n] > values.length) {
+            throw new IllegalArgumentException("Pointers from "
+                    + pointers[0] + " to " + pointers[n] + " do not fit "
+                    + indices.length + " indices and " + values.length
+                    + " values");
+        }
+    }
+
+    /**
+     * Compress a jagged dense matrix, keeping its nonzero elements.
+     *
+     * @param dense Rows of the matrix, all of the same length
+     * @return The sparse matrix
+     */
+    public static CsrMatrix fromDense(final double[][] dense) {
+        final int nrows = dense.length;
+        final int ncols = nrows == 0 ? 0 : dense[0].length;
+        final int[] rowPointers = new int[nrows + 1];
+        for (int i = 0; i < nrows; i++) {
+            if (dense[i].length != ncols) {
+                throw new IllegalArgumentException("Row " + i + " has "
+                        + dense[i].length + " columns, expected " + ncols);
+            }
+            int count = 0;
+            for (final double value : dense[i]) {
+                if (value != 0.0) {
+                    count++;
+                }
+            }
+            rowPointers[i + 1] = rowPointers[i] + count;
+        }
+
+        final int[] columnIndices = new int[rowPointers[nrows]];
+        final double[] values = new double[rowPointers[nrows]];
+        for (int i = 0; i < nrows; i++) {
+            int p = rowPointers[i];
+            for (int j = 0; j < ncols; j++) {
+                if (dense[i][j] != 0.0) {
+                    columnIndices[p] = j;
+                    values[p] = dense[i][j];
+                    p++;
+                }
+            }
+        }
+        return new CsrMatrix(nrows, ncols, rowPointers, columnIndices,
+                values);
+    }
+
+    /**
+     * Expand this matrix into a jagged dense one.
+     *
+     * @return Rows of the dense matrix
+     */
+    public double[][] toDense() {
+        final double[][] dense = new double[nrows][ncols];
+        for (int i = 0; i < nrows; i++) {
+            for (int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                dense[i][columnIndices[p]] = values[p];
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Convert this matrix to compressed sparse column form.
+     *
+     * @return The same matrix in CSC form
+     */
+    public CscMatrix toCsc() {
+        final int nnz = getNnz();
+        final int[] columnPointers = new int[ncols + 1];
+        final int[] rowIndices = new int[nnz];
+        final double[] columnValues = new double[nnz];
+        transposeCompressed(nrows, ncols, rowPointers, columnIndices, values,
+                columnPointers, rowIndices, columnValues);
+        return new CscMatrix(nrows, ncols, columnPointers, rowIndices,
+                columnValues);
+    }
+
+    /**
+     * Regroup the nonzeros of a compressed matrix by minor index with a
+     * counting sort, which turns CSR into CSC and back. Scanning the major
+     * lines in order leaves the new minor lines sorted.
+     *
+     * @param n Number of major lines
+     * @param m Number of minor lines
+     * @param pointers Start of each major line's nonzeros, then their count
+     * @param indices Minor index of each nonzero
+     * @param values Value of each nonzero
+     * @param outPointers Receives the start of each minor line's nonzeros,
+     *        of length m + 1
+     * @param outIndices Receives the major index of each nonzero
+     * @param outValues Receives the value of each nonzero
+     */
+    static void transposeCompressed(final int n, final int m,
+            final int[] pointers, final int[] indices, final double[] values,
+            final int[] outPointers, final int[] outIndices,
+            final double[] outValues) {
+        final int nnz = pointers[n];
+        Arrays.fill(outPointers, 0);
+        for (int p = 0; p < nnz; p++) {
+            outPointers[indices[p] + 1]++;
+        }
+        for (int j = 0; j < m; j++) {
+            outPointers[j + 1] += outPointers[j];
+        }
+
+        final int[] next = Arrays.copyOf(outPointers, m);
+        for (int i = 0; i < n; i++) {
+            for (int p = pointers[i]; p < pointers[i + 1]; p++) {
+                final int q = next[indices[p]]++;
+                outIndices[q] = i;
+                outValues[q] = values[p];
+            }
+        }
+    }
+
+    /**
+     * Fetch the value at (row, col), searching the row's nonzeros.
+     *
+     * @param row Row index
+     * @param col Column index
+     * @return The value stored at (row, col), zero if not stored
+     */
+    public double get(final int row, final int col) {
+        final int p = Arrays.binarySearch(columnIndices, rowPointers[row],
+                rowPointers[row + 1], col);
+        return p < 0 ? 0.0 : values[p];
+    }
+
+    /**
+     * Fetch the number of rows in this matrix.
+     *
+     * @return # of rows
+     */
+    public int getNRows() {
+        return nrows;
+    }
+
+    /**
+     * Fetch the number of columns in this matrix.
+     *
+     * @return # of columns
+     */
+    public int getNCols() {
+        return ncols;
+    }
+
+    /**
+     * Fetch the number of stored nonzeros.
+     *
+     * @return # of nonzeros
+     */
+    public int getNnz() {
+        return rowPointers[nrows];
+    }
+
+    /**
+     * Get the start of each row's nonzeros, followed by their count.
+     *
+     * @return Row pointers, of length nrows + 1
+     */
+    public int[] getRowPointers() {
+        return rowPointers;
+    }
+
+    /**
+     * Get the column of each nonzero.
+     *
+     * @return Column indices
+     */
+    public int[] getColumnIndices() {
+        return columnIndices;
+    }
+
+    /**
+     * Get the value of each nonzero.
+     *
+     * @return Values
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
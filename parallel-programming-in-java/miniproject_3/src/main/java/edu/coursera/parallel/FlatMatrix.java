@@ -0,0 +1,242 @@
+package edu.coursera.parallel;
+
+/**
+ * A two-dimensional matrix stored as a single row-major double[], so every
+ * row lives in one contiguous heap object rather than an array of separate
+ * row arrays. Element (row, col) is values[row * ncols + col].
+ * <p>
+ * Rows of a double[][] are separate objects and cannot be viewed as one
+ * array without copying, so conversion from jagged callers is a copy
+ * (fromRows, copyFrom), while flat arrays a caller already holds are wrapped
+ * without copying (wrap).
+ */
+public final class FlatMatrix {
+    /**
+     * Side of the square blocks a transpose moves at a time.
+     */
+    static final int TRANSPOSE_BLOCK = 32;
+
+    /**
+     * The values of the matrix, flattened and stored in row-major order.
+     */
+    private final double[] values;
+    /**
+     * The number of rows in the matrix.
+     */
+    private final int nrows;
+    /**
+     * The number of columns in the matrix.
+     */
+    private final int ncols;
+
+    /**
+     * Constructor.
+     *
+     * @param setNrows Number of rows
+     * @param setNcols Number of columns
+     */
+    public FlatMatrix(final int setNrows, final int setNcols) {
+        this(new double[checkedSize(setNrows, setNcols)], setNrows, setNcols);
+    }
+
+    /**
+     * Constructor over existing storage.
+     *
+     * @param setValues Row-major values
+     * @param setNrows Number of rows
+     * @param setNcols Number of columns
+     */
+    private FlatMatrix(final double[] setValues, final int setNrows,
+            final int setNcols) {
+        this.values = setValues;
+        this.nrows = setNrows;
+        this.ncols = setNcols;
+    }
+
+    /**
+     * Computes the number of elements of a matrix, rejecting negative and
+     * unindexable shapes.
+     *
+     * @param nrows Number of rows
+     * @param ncols Number of columns
+     * @return nrows * ncols
+     */
+    private static int checkedSize(final int nrows, final int ncols) {
+        if (nrows < 0 || ncols < 0
+                || (long) nrows * ncols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid matrix shape: "
+                    + nrows + "x" + ncols);
+        }
+        return nrows * ncols;
+    }
+
+    /**
+     * View an existing row-major array as a matrix, without copying. Writes
+     * through either are visible to the other.
+     *
+     * @param values Row-major values, of length at least nrows * ncols
+     * @param nrows Number of rows
+     * @param ncols Number of columns
+     * @return The matrix view
+     */
+    public static FlatMatrix wrap(final double[] values, final int nrows,
+            final int ncols) {
+        if (values.length < checkedSize(nrows, ncols)) {
+            throw new IllegalArgumentException(values.length
+                    + " values cannot hold a " + nrows + "x" + ncols
+                    + " matrix");
+        }
+        return new FlatMatrix(values, nrows, ncols);
+    }
+
+    /**
+     * Copy a jagged matrix into a new flat one.
+     *
+     * @param rows Rows of the matrix, all of the same length
+     * @return The flat copy
+     */
+    public static FlatMatrix fromRows(final double[][] rows) {
+        final FlatMatrix matrix = new FlatMatrix(rows.length,
+                rows.length == 0 ? 0 : rows[0].length);
+        matrix.copyFrom(rows);
+        return matrix;
+    }
+
+    /**
+     * Overwrite this matrix with the contents of a jagged matrix of the same
+     * shape, reusing this matrix's storage.
+     *
+     * @param rows Rows of the matrix
+     */
+    public void copyFrom(final double[][] rows) {
+        checkRows(rows);
+        for (int row = 0; row < nrows; row++) {
+            System.arraycopy(rows[row], 0, values, row * ncols, ncols);
+        }
+    }
+
+    /**
+     * Copy this matrix into a jagged matrix of the same shape.
+     *
+     * @param rows Rows to overwrite
+     */
+    public void copyInto(final double[][] rows) {
+        checkRows(rows);
+        for (int row = 0; row < nrows; row++) {
+            System.arraycopy(values, row * ncols, rows[row], 0, ncols);
+        }
+    }
+
+    /**
+     * Check that a jagged matrix has the shape of this one.
+     *
+     * @param rows Rows of the jagged matrix
+     */
+    private void checkRows(final double[][] rows) {
+        if (rows.length != nrows) {
+            throw new IllegalArgumentException("Expected " + nrows
+                    + " rows, got " + rows.length);
+        }
+        for (int row = 0; row < nrows; row++) {
+            if (rows[row].length != ncols) {
+                throw new IllegalArgumentException("Row " + row + " has "
+                        + rows[row].length + " columns, expected " + ncols);
+            }
+        }
+    }
+
+    /**
+     * Create the transpose of this matrix, moving square blocks at a time so
+     * that both the reads and the writes stay within a few cache lines.
+     *
+     * @return A new ncols x nrows matrix
+     */
+    public FlatMatrix transpose() {
+        final FlatMatrix result = new FlatMatrix(ncols, nrows);
+        final double[] out = result.values;
+        for (int r0 = 0; r0 < nrows; r0 += TRANSPOSE_BLOCK) {
+            final int r1 = Math.min(nrows, r0 + TRANSPOSE_BLOCK);
+            for (int c0 = 0; c0 < ncols; c0 += TRANSPOSE_BLOCK) {
+                final int c1 = Math.min(ncols, c0 + TRANSPOSE_BLOCK);
+                for (int row = r0; row < r1; row++) {
+                    for (int col = c0; col < c1; col++) {
+                        out[col * nrows + row] = values[row * ncols + col];
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Set the value at (row, col) to the specified value.
+     *
+     * @param row Row index
+     * @param col Column index
+     * @param val Value
+     */
+    public void set(final int row, final int col, final double val) {
+        values[row * ncols + col] = val;
+    }
+
+    /**
+     * Increment the value at (row, col) by the specified value.
+     *
+     * @param row Row index
+     * @param col Column index
+     * @param val Increment value
+     */
+    public void incr(final int row, final int col, final double val) {
+        values[row * ncols + col] += val;
+    }
+
+    /**
+     * Fetch the value currently stored at (row, col).
+     *
+     * @param row Row index
+     * @param col Column index
+     * @return The value stored at (row, col)
+     */
+    public double get(final int row, final int col) {
+        return values[row * ncols + col];
+    }
+
+    /**
+     * Fetch the number of rows in this matrix.
+     *
+     * @return # of rows
+     */
+    public int getNRows() {
+        return nrows;
+    }
+
+    /**
+     * Fetch the number of columns in this matrix.
+     *
+     * @return # of columns
+     */
+    public int getNCols() {
+        return ncols;
+    }
+
+    /**
+     * Get the offset in the flattened values array of the first element in the
+     * specified row.
+     *
+     * @param row Row to get the offset of
+     * @return Row offset
+     */
+    public int getOffsetOfRow(final int row) {
+        return row * ncols;
+    }
+
+    /**
+     * Get the raw, one-dimensional values array used to store this matrix's
+     * values.
+     *
+     * @return Raw values array
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
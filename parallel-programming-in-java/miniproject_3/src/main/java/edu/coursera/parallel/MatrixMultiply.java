@@ -1,5 +1,9 @@
 package edu.coursera.parallel;
 
+import java.util.Arrays;
+
+import edu.rice.pcdp.ProcedureInt2D;
+
 import static edu.rice.pcdp.PCDP.forall;
 import static edu.rice.pcdp.PCDP.forall2dChunked;
 import static edu.rice.pcdp.PCDP.forallChunked;
@@ -9,6 +13,67 @@ import static edu.rice.pcdp.PCDP.forseq2d;
  * Wrapper class for implementing matrix multiply efficiently in parallel.
  */
 public final class MatrixMultiply {
+    /**
+     * Default number of rows of C in each output tile.
+     */
+    static final int DEFAULT_ROW_TILE = 64;
+    /**
+     * Default number of columns of A (rows of B) consumed per step over an
+     * output tile.
+     */
+    static final int DEFAULT_DEPTH_TILE = 256;
+    /**
+     * Default number of columns of C in each output tile.
+     */
+    static final int DEFAULT_COL_TILE = 256;
+    /**
+     * Number of rows of C the micro-kernel updates together, so each element
+     * of B loaded from cache is used that many times.
+     */
+    static final int MICRO_ROWS = 4;
+    /**
+     * Number of rows of B the packed kernel copies into its panel per step.
+     * A panel of DEFAULT_COL_TILE columns then takes 128 KB, half of a
+     * typical 256 KB L2 cache, leaving room for the rows of A and C it is
+     * multiplied with.
+     */
+    static final int DEFAULT_PANEL_DEPTH = 64;
+
+    /**
+     * Scratch space of the packed kernel for the output tiles of the flat
+     * multiplies, one per thread computing tiles. A tile never spawns
+     * tasks, so no two tiles share it.
+     */
+    private static final ThreadLocal<PackScratch> TILE_SCRATCH =
+        ThreadLocal.withInitial(() -> new PackScratch(DEFAULT_PANEL_DEPTH,
+                DEFAULT_COL_TILE));
+
+    /**
+     * Scratch space of the packed kernel, multiplyAccumulate, for blocks of
+     * up to a given depth and number of columns.
+     */
+    static final class PackScratch {
+        /**
+         * Packed rows of B, one depth step's worth.
+         */
+        private final double[][] panel;
+        /**
+         * Rows of C being accumulated.
+         */
+        private final double[][] rowBuffers;
+
+        /**
+         * Constructor.
+         *
+         * @param maxDepth Largest depth of any step
+         * @param maxCols Largest number of columns of any block
+         */
+        PackScratch(final int maxDepth, final int maxCols) {
+            this.panel = new double[maxDepth][maxCols];
+            this.rowBuffers = new double[MICRO_ROWS][maxCols];
+        }
+    }
+
     /**
      * Default constructor.
      */
@@ -52,4 +117,455 @@ public final class MatrixMultiply {
             }
         } );
     }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) in parallel with
+     * a cache-blocked kernel, using the default tile sizes.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     */
+    public static void blockedMatrixMultiply(final double[][] A,
+            final double[][] B, final double[][] C, final int N) {
+        blockedMatrixMultiply(A, B, C, N, DEFAULT_ROW_TILE,
+                DEFAULT_DEPTH_TILE, DEFAULT_COL_TILE);
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) in parallel with
+     * a cache-blocked kernel.
+     * <p>
+     * C is cut into rowTile x colTile output tiles, each computed by one
+     * task. A task walks the shared dimension depthTile at a time, so the
+     * depthTile x colTile panel of B it reads stays in cache while every row
+     * of its tile uses it. Within a tile the loops run in i-k-j order, so the
+     * innermost loop streams along rows of B and C with unit stride, and
+     * MICRO_ROWS rows of C are updated together so each element of B is
+     * loaded once for all of them.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     * @param rowTile Number of rows of C in each output tile
+     * @param depthTile Number of columns of A consumed per step
+     * @param colTile Number of columns of C in each output tile
+     */
+    public static void blockedMatrixMultiply(final double[][] A,
+            final double[][] B, final double[][] C, final int N,
+            final int rowTile, final int depthTile, final int colTile) {
+        if (rowTile < 1 || depthTile < 1 || colTile < 1) {
+            throw new IllegalArgumentException("Tile sizes must be positive: "
+                    + rowTile + "x" + depthTile + "x" + colTile);
+        }
+        if (N == 0) {
+            return;
+        }
+
+        final int nRowTiles = (N + rowTile - 1) / rowTile;
+        final int nColTiles = (N + colTile - 1) / colTile;
+        forall2dChunked(0, nRowTiles - 1, 0, nColTiles - 1, 1, (ti, tj) -> {
+            final int rowStart = ti * rowTile;
+            final int rowEnd = Math.min(N, rowStart + rowTile);
+            final int colStart = tj * colTile;
+            final int colEnd = Math.min(N, colStart + colTile);
+
+            for (int i = rowStart; i < rowEnd; i++) {
+                Arrays.fill(C[i], colStart, colEnd, 0.0);
+            }
+            for (int k = 0; k < N; k += depthTile) {
+                multiplyTile(A, B, C, rowStart, rowEnd, k,
+                             Math.min(N, k + depthTile), colStart, colEnd);
+            }
+        });
+    }
+
+    /**
+     * Accumulate the product of a block of A and a block of B into a block
+     * of C: C[i][j] += A[i][k] * B[k][j] for rowStart &lt;= i &lt; rowEnd,
+     * depthStart &lt;= k &lt; depthEnd and colStart &lt;= j &lt; colEnd.
+     *
+     * @param A Left operand
+     * @param B Right operand
+     * @param C Output, accumulated into
+     * @param rowStart First row of C
+     * @param rowEnd Row of C one past the last
+     * @param depthStart First column of A
+     * @param depthEnd Column of A one past the last
+     * @param colStart First column of C
+     * @param colEnd Column of C one past the last
+     */
+    static void multiplyTile(final double[][] A, final double[][] B,
+            final double[][] C, final int rowStart, final int rowEnd,
+            final int depthStart, final int depthEnd, final int colStart,
+            final int colEnd) {
+        int i = rowStart;
+        for (; i + MICRO_ROWS <= rowEnd; i += MICRO_ROWS) {
+            final double[] a0 = A[i];
+            final double[] a1 = A[i + 1];
+            final double[] a2 = A[i + 2];
+            final double[] a3 = A[i + 3];
+            final double[] c0 = C[i];
+            final double[] c1 = C[i + 1];
+            final double[] c2 = C[i + 2];
+            final double[] c3 = C[i + 3];
+            for (int k = depthStart; k < depthEnd; k++) {
+                final double[] b = B[k];
+                final double x0 = a0[k];
+                final double x1 = a1[k];
+                final double x2 = a2[k];
+                final double x3 = a3[k];
+                for (int j = colStart; j < colEnd; j++) {
+                    final double bj = b[j];
+                    c0[j] += x0 * bj;
+                    c1[j] += x1 * bj;
+                    c2[j] += x2 * bj;
+                    c3[j] += x3 * bj;
+                }
+            }
+        }
+        for (; i < rowEnd; i++) {
+            final double[] a = A[i];
+            final double[] c = C[i];
+            for (int k = depthStart; k < depthEnd; k++) {
+                final double[] b = B[k];
+                final double x = a[k];
+                for (int j = colStart; j < colEnd; j++) {
+                    c[j] += x * b[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Perform a matrix multiply (A x B = C) sequentially on flat matrices,
+     * with the same cache-blocked kernel as parMatrixMultiply.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN
+     */
+    public static void seqMatrixMultiply(final FlatMatrix A,
+            final FlatMatrix B, final FlatMatrix C) {
+        checkShapes(A, B.getNRows(), B.getNCols(), C);
+        multiplyTiles(A, B, C, false);
+    }
+
+    /**
+     * Perform a matrix multiply (A x B = C) in parallel on flat matrices.
+     * Each output tile of DEFAULT_ROW_TILE x DEFAULT_COL_TILE is one task,
+     * running the kernel of blockedMatrixMultiply over contiguous rows.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN
+     */
+    public static void parMatrixMultiply(final FlatMatrix A,
+            final FlatMatrix B, final FlatMatrix C) {
+        checkShapes(A, B.getNRows(), B.getNCols(), C);
+        multiplyTiles(A, B, C, true);
+    }
+
+    /**
+     * Perform a matrix multiply (A x B = C) in parallel with B supplied
+     * transposed. Each output tile is computed as in parMatrixMultiply, the
+     * panel of B for each depth step being gathered from the rows of BT
+     * instead of copied from rows of B, so it runs at the same speed as
+     * that kernel plus the cost of the strided gather.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param BT The transpose of the right input matrix, with dimensions NxK
+     * @param C The output matrix, with dimensions MxN
+     */
+    public static void parMatrixMultiplyTransposed(final FlatMatrix A,
+            final FlatMatrix BT, final FlatMatrix C) {
+        checkShapes(A, BT.getNCols(), BT.getNRows(), C);
+        final int m = C.getNRows();
+        final int n = C.getNCols();
+        final int depth = A.getNCols();
+        if (m == 0 || n == 0) {
+            return;
+        }
+
+        final double[] a = A.getValues();
+        final double[] bt = BT.getValues();
+        final double[] c = C.getValues();
+        final int nRowTiles = (m + DEFAULT_ROW_TILE - 1) / DEFAULT_ROW_TILE;
+        final int nColTiles = (n + DEFAULT_COL_TILE - 1) / DEFAULT_COL_TILE;
+        forall2dChunked(0, nRowTiles - 1, 0, nColTiles - 1, 1, (ti, tj) -> {
+            final int rowStart = ti * DEFAULT_ROW_TILE;
+            final int rows = Math.min(m, rowStart + DEFAULT_ROW_TILE)
+                - rowStart;
+            final int colStart = tj * DEFAULT_COL_TILE;
+            final int cols = Math.min(n, colStart + DEFAULT_COL_TILE)
+                - colStart;
+
+            for (int i = rowStart; i < rowStart + rows; i++) {
+                Arrays.fill(c, i * n + colStart, i * n + colStart + cols,
+                            0.0);
+            }
+            final PackScratch scratch = TILE_SCRATCH.get();
+            for (int k = 0; k < depth; k += DEFAULT_PANEL_DEPTH) {
+                final int steps = Math.min(DEFAULT_PANEL_DEPTH, depth - k);
+                for (int j = 0; j < cols; j++) {
+                    final int btRow = (colStart + j) * depth + k;
+                    for (int kk = 0; kk < steps; kk++) {
+                        scratch.panel[kk][j] = bt[btRow + kk];
+                    }
+                }
+                accumulatePacked(a, rowStart * depth + k, depth,
+                        c, rowStart * n + colStart, n,
+                        rows, steps, cols, scratch);
+            }
+        });
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) by recursive
+     * divide and conquer with Strassen steps, using the default thresholds.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     */
+    public static void strassenMatrixMultiply(final double[][] A,
+            final double[][] B, final double[][] C, final int N) {
+        strassenMatrixMultiply(A, B, C, N,
+                StrassenMultiply.DEFAULT_STRASSEN_THRESHOLD,
+                StrassenMultiply.DEFAULT_LEAF_SIZE);
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) by recursive
+     * divide and conquer with Strassen steps. The recursion works on flat
+     * storage, so the operands are copied in and the result copied out.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     * @param strassenThreshold Size above which a product is computed from
+     *        seven half-size products rather than by quadrants
+     * @param leafSize Size at or below which a block runs on the blocked
+     *        kernel
+     */
+    public static void strassenMatrixMultiply(final double[][] A,
+            final double[][] B, final double[][] C, final int N,
+            final int strassenThreshold, final int leafSize) {
+        final FlatMatrix flatA = new FlatMatrix(N, N);
+        final FlatMatrix flatB = new FlatMatrix(N, N);
+        final FlatMatrix flatC = new FlatMatrix(N, N);
+        flatA.copyFrom(A);
+        flatB.copyFrom(B);
+        StrassenMultiply.multiply(flatA.getValues(), flatB.getValues(),
+                flatC.getValues(), N, strassenThreshold, leafSize);
+        flatC.copyInto(C);
+    }
+
+    /**
+     * Perform a matrix multiply (A x B = C) of square flat matrices by
+     * recursive divide and conquer with Strassen steps, using the default
+     * thresholds. Strassen's method trades the eighth half-size product of
+     * each step for eighteen half-size additions, so its rounding error
+     * grows somewhat faster with N than the classical kernels'.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix, with dimensions NxN
+     */
+    public static void strassenMatrixMultiply(final FlatMatrix A,
+            final FlatMatrix B, final FlatMatrix C) {
+        checkShapes(A, B.getNRows(), B.getNCols(), C);
+        if (A.getNRows() != A.getNCols() || B.getNRows() != B.getNCols()) {
+            throw new IllegalArgumentException("Strassen multiply needs "
+                    + "square matrices, got " + A.getNRows() + "x"
+                    + A.getNCols() + " by " + B.getNRows() + "x"
+                    + B.getNCols());
+        }
+        StrassenMultiply.multiply(A.getValues(), B.getValues(), C.getValues(),
+                A.getNRows(), StrassenMultiply.DEFAULT_STRASSEN_THRESHOLD,
+                StrassenMultiply.DEFAULT_LEAF_SIZE);
+    }
+
+    /**
+     * Check that A x B = C is well formed.
+     *
+     * @param A Left operand
+     * @param bRows Number of rows of the right operand
+     * @param bCols Number of columns of the right operand
+     * @param C Output
+     */
+    private static void checkShapes(final FlatMatrix A, final int bRows,
+            final int bCols, final FlatMatrix C) {
+        if (A.getNCols() != bRows || C.getNRows() != A.getNRows()
+                || C.getNCols() != bCols) {
+            throw new IllegalArgumentException("Cannot multiply "
+                    + A.getNRows() + "x" + A.getNCols() + " by " + bRows + "x"
+                    + bCols + " into " + C.getNRows() + "x" + C.getNCols());
+        }
+    }
+
+    /**
+     * Compute C = A x B one output tile at a time, the tiles running either
+     * in parallel or in sequence.
+     *
+     * @param A Left operand
+     * @param B Right operand
+     * @param C Output
+     * @param parallel Whether to compute the tiles in parallel
+     */
+    private static void multiplyTiles(final FlatMatrix A, final FlatMatrix B,
+            final FlatMatrix C, final boolean parallel) {
+        final int m = C.getNRows();
+        final int n = C.getNCols();
+        final int depth = A.getNCols();
+        if (m == 0 || n == 0) {
+            return;
+        }
+
+        final double[] a = A.getValues();
+        final double[] b = B.getValues();
+        final double[] c = C.getValues();
+        final int nRowTiles = (m + DEFAULT_ROW_TILE - 1) / DEFAULT_ROW_TILE;
+        final int nColTiles = (n + DEFAULT_COL_TILE - 1) / DEFAULT_COL_TILE;
+        final ProcedureInt2D tile = (ti, tj) -> {
+            final int rowStart = ti * DEFAULT_ROW_TILE;
+            final int rows = Math.min(m, rowStart + DEFAULT_ROW_TILE)
+                - rowStart;
+            final int colStart = tj * DEFAULT_COL_TILE;
+            final int cols = Math.min(n, colStart + DEFAULT_COL_TILE)
+                - colStart;
+
+            for (int i = rowStart; i < rowStart + rows; i++) {
+                Arrays.fill(c, i * n + colStart, i * n + colStart + cols,
+                            0.0);
+            }
+            final PackScratch scratch = TILE_SCRATCH.get();
+            for (int k = 0; k < depth; k += DEFAULT_PANEL_DEPTH) {
+                multiplyAccumulate(a, rowStart * depth + k, depth,
+                        b, k * n + colStart, n,
+                        c, rowStart * n + colStart, n,
+                        rows, Math.min(DEFAULT_PANEL_DEPTH, depth - k), cols,
+                        scratch);
+            }
+        };
+        if (parallel) {
+            forall2dChunked(0, nRowTiles - 1, 0, nColTiles - 1, 1, tile);
+        } else {
+            forseq2d(0, nRowTiles - 1, 0, nColTiles - 1, tile);
+        }
+    }
+
+    /**
+     * Accumulate the product of two row-major blocks into a third, each
+     * block given by its offset and leading dimension (the distance between
+     * the starts of consecutive rows) within a flat array: C += A x B, where
+     * the blocks of A, B and C are rows x depth, depth x cols and rows x
+     * cols.
+     * <p>
+     * The block of B is first packed into panel, one row of B per array, and
+     * each group of MICRO_ROWS rows of C is accumulated in rowBuffers before
+     * being copied back. The JIT only vectorizes the inner loop fully when
+     * all of its array indices share one offset, which a loop over rows of a
+     * flat B and C at unrelated offsets never does, so the micro-kernel runs
+     * as in multiplyTile on arrays indexed from zero.
+     *
+     * @param a Storage of A
+     * @param aOffset Index of A's first element
+     * @param lda Leading dimension of A
+     * @param b Storage of B
+     * @param bOffset Index of B's first element
+     * @param ldb Leading dimension of B
+     * @param c Storage of C, accumulated into
+     * @param cOffset Index of C's first element
+     * @param ldc Leading dimension of C
+     * @param rows Number of rows of A and C
+     * @param depth Number of columns of A and rows of B
+     * @param cols Number of columns of B and C
+     * @param scratch Scratch space for at least depth rows of cols elements
+     */
+    static void multiplyAccumulate(final double[] a, final int aOffset,
+            final int lda, final double[] b, final int bOffset, final int ldb,
+            final double[] c, final int cOffset, final int ldc,
+            final int rows, final int depth, final int cols,
+            final PackScratch scratch) {
+        for (int k = 0; k < depth; k++) {
+            System.arraycopy(b, bOffset + k * ldb, scratch.panel[k], 0, cols);
+        }
+        accumulatePacked(a, aOffset, lda, c, cOffset, ldc, rows, depth, cols,
+                scratch);
+    }
+
+    /**
+     * Accumulate the product of a row-major block of A and the block of B
+     * already packed into scratch's panel into a block of C, as in
+     * multiplyAccumulate.
+     *
+     * @param a Storage of A
+     * @param aOffset Index of A's first element
+     * @param lda Leading dimension of A
+     * @param c Storage of C, accumulated into
+     * @param cOffset Index of C's first element
+     * @param ldc Leading dimension of C
+     * @param rows Number of rows of A and C
+     * @param depth Number of columns of A and of packed rows of B
+     * @param cols Number of columns of B and C
+     * @param scratch Scratch space holding the packed block of B
+     */
+    private static void accumulatePacked(final double[] a, final int aOffset,
+            final int lda, final double[] c, final int cOffset, final int ldc,
+            final int rows, final int depth, final int cols,
+            final PackScratch scratch) {
+        final double[][] panel = scratch.panel;
+        final double[] c0 = scratch.rowBuffers[0];
+        final double[] c1 = scratch.rowBuffers[1];
+        final double[] c2 = scratch.rowBuffers[2];
+        final double[] c3 = scratch.rowBuffers[3];
+        int i = 0;
+        for (; i + MICRO_ROWS <= rows; i += MICRO_ROWS) {
+            final int a0 = aOffset + i * lda;
+            final int a1 = a0 + lda;
+            final int a2 = a1 + lda;
+            final int a3 = a2 + lda;
+            final int cRow = cOffset + i * ldc;
+            System.arraycopy(c, cRow, c0, 0, cols);
+            System.arraycopy(c, cRow + ldc, c1, 0, cols);
+            System.arraycopy(c, cRow + 2 * ldc, c2, 0, cols);
+            System.arraycopy(c, cRow + 3 * ldc, c3, 0, cols);
+            for (int k = 0; k < depth; k++) {
+                final double[] bk = panel[k];
+                final double x0 = a[a0 + k];
+                final double x1 = a[a1 + k];
+                final double x2 = a[a2 + k];
+                final double x3 = a[a3 + k];
+                for (int j = 0; j < cols; j++) {
+                    final double bj = bk[j];
+                    c0[j] += x0 * bj;
+                    c1[j] += x1 * bj;
+                    c2[j] += x2 * bj;
+                    c3[j] += x3 * bj;
+                }
+            }
+            System.arraycopy(c0, 0, c, cRow, cols);
+            System.arraycopy(c1, 0, c, cRow + ldc, cols);
+            System.arraycopy(c2, 0, c, cRow + 2 * ldc, cols);
+            System.arraycopy(c3, 0, c, cRow + 3 * ldc, cols);
+        }
+        for (; i < rows; i++) {
+            final int aRow = aOffset + i * lda;
+            final int cRow = cOffset + i * ldc;
+            System.arraycopy(c, cRow, c0, 0, cols);
+            for (int k = 0; k < depth; k++) {
+                final double[] bk = panel[k];
+                final double x = a[aRow + k];
+                for (int j = 0; j < cols; j++) {
+                    c0[j] += x * bk[j];
+                }
+            }
+            System.arraycopy(c0, 0, c, cRow, cols);
+        }
+    }
 }
@@ -0,0 +1,330 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+import static edu.rice.pcdp.PCDP.forall;
+import static edu.rice.pcdp.PCDP.numThreads;
+
+/**
+ * Parallel products of sparse matrices with dense vectors, dense matrices
+ * and other sparse matrices.
+ * <p>
+ * Every product is split into PARTS_PER_WORKER contiguous ranges of rows (or
+ * columns) per PCDP worker, and the ranges are cut so that each holds about
+ * the same work rather than the same number of rows: a few dense rows in an
+ * otherwise sparse matrix would leave whichever task drew them running long
+ * after the others had finished.
+ */
+public final class SparseMatrixMultiply {
+    /**
+     * Number of ranges each PCDP worker gets, so that a worker finishing
+     * early can take over another range.
+     */
+    static final int PARTS_PER_WORKER = 4;
+
+    /**
+     * Default constructor.
+     */
+    private SparseMatrixMultiply() {
+    }
+
+    /**
+     * Compute y = A x in parallel.
+     *
+     * @param A A sparse matrix with dimensions MxK
+     * @param x An input vector of length K
+     * @param y The output vector, of length M
+     */
+    public static void multiply(final CsrMatrix A, final double[] x,
+            final double[] y) {
+        if (x.length != A.getNCols() || y.length != A.getNRows()) {
+            throw new IllegalArgumentException("Cannot multiply "
+                    + A.getNRows() + "x" + A.getNCols() + " by a vector of "
+                    + x.length + " into " + y.length);
+        }
+        final int[] rowPointers = A.getRowPointers();
+        final int[] columnIndices = A.getColumnIndices();
+        final double[] values = A.getValues();
+        final int[] splits = lineSplits(rowPointers, A.getNRows());
+        forall(0, splits.length - 2, part -> {
+            for (int i = splits[part]; i < splits[part + 1]; i++) {
+                double sum = 0.0;
+                for (int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                    sum += values[p] * x[columnIndices[p]];
+                }
+                y[i] = sum;
+            }
+        });
+    }
+
+    /**
+     * Compute C = A x B in parallel for a sparse A, one row of C per row of
+     * A: each nonzero A[i][k] adds a multiple of row k of B to row i of C.
+     *
+     * @param A A sparse matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN
+     */
+    public static void multiply(final CsrMatrix A, final double[][] B,
+            final double[][] C) {
+        final int n = checkDenseShapes(A.getNRows(), A.getNCols(), B, C);
+        final int[] rowPointers = A.getRowPointers();
+        final int[] columnIndices = A.getColumnIndices();
+        final double[] values = A.getValues();
+        final int[] splits = lineSplits(rowPointers, A.getNRows());
+        forall(0, splits.length - 2, part -> {
+            for (int i = splits[part]; i < splits[part + 1]; i++) {
+                final double[] c = C[i];
+                Arrays.fill(c, 0.0);
+                for (int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                    final double[] b = B[columnIndices[p]];
+                    final double x = values[p];
+                    for (int j = 0; j < n; j++) {
+                        c[j] += x * b[j];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Compute C = A x B in parallel for a sparse B, one column of C per
+     * column of B: C[i][j] is the dot product of row i of A with the
+     * nonzeros of column j of B.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B A sparse matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN
+     */
+    public static void multiply(final double[][] A, final CscMatrix B,
+            final double[][] C) {
+        if (A.length != C.length) {
+            throw new IllegalArgumentException("Cannot multiply " + A.length
+                    + " rows into " + C.length);
+        }
+        for (int i = 0; i < A.length; i++) {
+            if (A[i].length != B.getNRows() || C[i].length != B.getNCols()) {
+                throw new IllegalArgumentException("Row " + i + " cannot "
+                        + "multiply " + A[i].length + " by " + B.getNRows()
+                        + "x" + B.getNCols() + " into " + C[i].length);
+            }
+        }
+        final int[] colPointers = B.getColPointers();
+        final int[] rowIndices = B.getRowIndices();
+        final double[] values = B.getValues();
+        final int[] splits = lineSplits(colPointers, B.getNCols());
+        forall(0, splits.length - 2, part -> {
+            for (int i = 0; i < A.length; i++) {
+                final double[] a = A[i];
+                final double[] c = C[i];
+                for (int j = splits[part]; j < splits[part + 1]; j++) {
+                    double sum = 0.0;
+                    for (int p = colPointers[j]; p < colPointers[j + 1];
+                            p++) {
+                        sum += values[p] * a[rowIndices[p]];
+                    }
+                    c[j] = sum;
+                }
+            }
+        });
+    }
+
+    /**
+     * Compute C = A x B in parallel for sparse A and B, with Gustavson's
+     * row-by-row method: row i of C accumulates a multiple of row k of B for
+     * each nonzero A[i][k], in a dense accumulator that each task reuses
+     * across its rows. Ranges of rows are balanced by the number of
+     * multiply-adds they take, which is known before any is done. Each task
+     * writes its rows into its own arrays, and the arrays are concatenated
+     * once every row's length is known.
+     *
+     * @param A A sparse matrix with dimensions MxK
+     * @param B A sparse matrix with dimensions KxN
+     * @return C, with dimensions MxN and every entry that some product
+     *         touched stored, even if it summed to zero
+     */
+    public static CsrMatrix multiply(final CsrMatrix A, final CsrMatrix B) {
+        if (A.getNCols() != B.getNRows()) {
+            throw new IllegalArgumentException("Cannot multiply "
+                    + A.getNRows() + "x" + A.getNCols() + " by "
+                    + B.getNRows() + "x" + B.getNCols());
+        }
+        final int m = A.getNRows();
+        final int n = B.getNCols();
+        final int[] aPointers = A.getRowPointers();
+        final int[] aIndices = A.getColumnIndices();
+        final double[] aValues = A.getValues();
+        final int[] bPointers = B.getRowPointers();
+        final int[] bIndices = B.getColumnIndices();
+        final double[] bValues = B.getValues();
+
+        // Multiply-adds of the rows before each row, plus one per row
+        final long[] work = new long[m + 1];
+        for (int i = 0; i < m; i++) {
+            long rowWork = 1;
+            for (int p = aPointers[i]; p < aPointers[i + 1]; p++) {
+                rowWork += bPointers[aIndices[p] + 1]
+                    - bPointers[aIndices[p]];
+            }
+            work[i + 1] = work[i] + rowWork;
+        }
+
+        final int[] splits = balancedSplits(i -> work[i], m, numParts(m));
+        final int parts = splits.length - 1;
+        final int[] rowPointers = new int[m + 1];
+        final int[][] partIndices = new int[parts][];
+        final double[][] partValues = new double[parts][];
+        forall(0, parts - 1, part -> {
+            final double[] accumulator = new double[n];
+            final int[] lastRow = new int[n];
+            Arrays.fill(lastRow, -1);
+            final int[] touched = new int[n];
+            int[] indices = new int[Math.min(n, 16)];
+            double[] values = new double[indices.length];
+            int count = 0;
+
+            for (int i = splits[part]; i < splits[part + 1]; i++) {
+                int nTouched = 0;
+                for (int p = aPointers[i]; p < aPointers[i + 1]; p++) {
+                    final double x = aValues[p];
+                    final int k = aIndices[p];
+                    for (int q = bPointers[k]; q < bPointers[k + 1]; q++) {
+                        final int j = bIndices[q];
+                        if (lastRow[j] != i) {
+                            lastRow[j] = i;
+                            touched[nTouched++] = j;
+                            accumulator[j] = x * bValues[q];
+                        } else {
+                            accumulator[j] += x * bValues[q];
+                        }
+                    }
+                }
+
+                Arrays.sort(touched, 0, nTouched);
+                if (count + nTouched > indices.length) {
+                    final int capacity =
+                        Math.max(count + nTouched, 2 * indices.length);
+                    indices = Arrays.copyOf(indices, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                }
+                for (int t = 0; t < nTouched; t++) {
+                    indices[count] = touched[t];
+                    values[count] = accumulator[touched[t]];
+                    count++;
+                }
+                rowPointers[i + 1] = nTouched;
+            }
+            partIndices[part] = indices;
+            partValues[part] = values;
+        });
+
+        for (int i = 0; i < m; i++) {
+            rowPointers[i + 1] += rowPointers[i];
+        }
+        final int[] columnIndices = new int[rowPointers[m]];
+        final double[] values = new double[rowPointers[m]];
+        forall(0, parts - 1, part -> {
+            final int start = rowPointers[splits[part]];
+            final int length = rowPointers[splits[part + 1]] - start;
+            System.arraycopy(partIndices[part], 0, columnIndices, start,
+                    length);
+            System.arraycopy(partValues[part], 0, values, start, length);
+        });
+        return new CsrMatrix(m, n, rowPointers, columnIndices, values);
+    }
+
+    /**
+     * Check that A x B = C is well formed for a sparse MxK A and jagged B
+     * and C.
+     *
+     * @param m Number of rows of A
+     * @param k Number of columns of A
+     * @param B Right operand
+     * @param C Output
+     * @return Number of columns of B and C
+     */
+    private static int checkDenseShapes(final int m, final int k,
+            final double[][] B, final double[][] C) {
+        if (B.length != k || C.length != m) {
+            throw new IllegalArgumentException("Cannot multiply " + m + "x"
+                    + k + " by " + B.length + " rows into " + C.length
+                    + " rows");
+        }
+        final int n = m > 0 ? C[0].length : k > 0 ? B[0].length : 0;
+        for (int i = 0; i < k; i++) {
+            if (B[i].length != n) {
+                throw new IllegalArgumentException("Row " + i + " of B has "
+                        + B[i].length + " columns, expected " + n);
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            if (C[i].length != n) {
+                throw new IllegalArgumentException("Row " + i + " of C has "
+                        + C[i].length + " columns, expected " + n);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Split the lines of a compressed matrix into ranges of about equal
+     * work, counting each nonzero and each line once, so that runs of empty
+     * lines are not free.
+     *
+     * @param pointers Start of each line's nonzeros, then their count
+     * @param n Number of lines
+     * @return Range boundaries, as for balancedSplits
+     */
+    static int[] lineSplits(final int[] pointers, final int n) {
+        return balancedSplits(i -> (long) pointers[i] + i, n, numParts(n));
+    }
+
+    /**
+     * Number of ranges to split n lines into.
+     *
+     * @param n Number of lines
+     * @return At least one range, and no more than n
+     */
+    private static int numParts(final int n) {
+        return Math.max(1, Math.min(n, numThreads() * PARTS_PER_WORKER));
+    }
+
+    /**
+     * Split the items 0 to n - 1 into contiguous ranges of about equal work,
+     * by binary search for the items at which the cumulative work crosses
+     * each multiple of the total divided by parts. An item heavier than a
+     * share still lands in a single range, and the ranges whose boundaries
+     * it spans are left empty.
+     *
+     * @param prefix Work of the items before each index, nondecreasing,
+     *        defined from 0 to n
+     * @param n Number of items
+     * @param parts Number of ranges
+     * @return parts + 1 boundaries: range p covers items splits[p] to
+     *         splits[p + 1] - 1, and may be empty
+     */
+    static int[] balancedSplits(final IntToLongFunction prefix, final int n,
+            final int parts) {
+        final int[] splits = new int[parts + 1];
+        final long start = prefix.applyAsLong(0);
+        final long total = prefix.applyAsLong(n) - start;
+        for (int p = 1; p < parts; p++) {
+            final long target =
+                start + (long) ((double) total * p / parts);
+            int lo = splits[p - 1];
+            int hi = n;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (prefix.applyAsLong(mid) < target) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            splits[p] = lo;
+        }
+        splits[parts] = n;
+        return splits;
+    }
+}
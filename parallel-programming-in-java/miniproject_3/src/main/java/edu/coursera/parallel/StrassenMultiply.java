@@ -0,0 +1,512 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Recursive divide-and-conquer multiply of square flat matrices, run as
+ * fork-join tasks on the common pool.
+ * <p>
+ * A product above the Strassen threshold is computed from seven half-size
+ * products instead of eight, the seven running as parallel subtasks; the
+ * matrices are padded with zeros first if some step would otherwise have an
+ * odd size. Products at or below the threshold are cut into quadrants
+ * instead: the four quadrants of C are independent, so each step runs them
+ * in parallel twice, once per half of the shared dimension. Blocks no larger
+ * than the leaf size run on the packed kernel of
+ * MatrixMultiply.multiplyAccumulate.
+ * <p>
+ * The operand sums and products of every Strassen step live in one arena
+ * allocated before the recursion starts, each step owning a fixed region of
+ * it. A step of size n holds 17 (n/2)^2 elements and its seven concurrent
+ * subproducts each hold their own, so every Strassen level below the first
+ * multiplies the arena by about 7/4: one level of a 2048x2048 product takes
+ * 17M elements, two take 48M. The packed kernel's panel and row buffers are
+ * allocated once per worker thread, sized for the largest leaf, and reused
+ * by every leaf that thread runs; a leaf never forks, so no two leaves share
+ * them. Past that, the recursion allocates nothing but its tasks.
+ */
+final class StrassenMultiply {
+    /**
+     * Default size above which a square product takes a Strassen step.
+     */
+    static final int DEFAULT_STRASSEN_THRESHOLD = 1024;
+    /**
+     * Default size at or below which a block runs on the packed kernel.
+     */
+    static final int DEFAULT_LEAF_SIZE = 256;
+    /**
+     * Number of half-size temporaries in the arena region of a Strassen
+     * step: ten operand sums and seven products.
+     */
+    static final int STEP_TEMPORARIES = 17;
+
+    /**
+     * Default constructor.
+     */
+    private StrassenMultiply() {
+    }
+
+    /**
+     * Compute C = A x B for n x n row-major matrices.
+     *
+     * @param a Values of A
+     * @param b Values of B
+     * @param c Values of C, overwritten
+     * @param n Size of each dimension
+     * @param strassenThreshold Size above which to take Strassen steps
+     * @param leafSize Size at or below which to run the packed kernel
+     */
+    static void multiply(final double[] a, final double[] b,
+            final double[] c, final int n, final int strassenThreshold,
+            final int leafSize) {
+        if (strassenThreshold < 1 || leafSize < 1) {
+            throw new IllegalArgumentException("Invalid thresholds: Strassen "
+                    + strassenThreshold + ", leaf " + leafSize);
+        }
+        if (n == 0) {
+            return;
+        }
+
+        final int padded = paddedSize(n, strassenThreshold);
+        final long arenaSize = workspaceSize(padded, strassenThreshold);
+        if (arenaSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A " + n + "x" + n
+                    + " Strassen workspace needs " + arenaSize
+                    + " elements, raise the Strassen threshold");
+        }
+        final Config config = new Config(new double[(int) arenaSize],
+                strassenThreshold, leafSize, Math.min(leafSize, padded));
+        if (padded == n) {
+            Arrays.fill(c, 0, n * n, 0.0);
+            ForkJoinPool.commonPool().invoke(new MultiplyTask(config,
+                        a, 0, n, b, 0, n, c, 0, n, n, n, n, 0));
+            return;
+        }
+
+        final double[] paddedC = new double[padded * padded];
+        ForkJoinPool.commonPool().invoke(new MultiplyTask(config,
+                    pad(a, n, padded), 0, padded, pad(b, n, padded), 0,
+                    padded, paddedC, 0, padded, padded, padded, padded, 0));
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(paddedC, i * padded, c, i * n, n);
+        }
+    }
+
+    /**
+     * Smallest size of at least n that stays even through every Strassen
+     * step: halving n until it is no more than the threshold L times,
+     * rounding up, the padded size is the final size times 2^L.
+     *
+     * @param n Size of the product
+     * @param strassenThreshold Size above which to take Strassen steps
+     * @return The padded size
+     */
+    static int paddedSize(final int n, final int strassenThreshold) {
+        int size = n;
+        int levels = 0;
+        while (size > strassenThreshold) {
+            size = (size + 1) / 2;
+            levels++;
+        }
+        return size << levels;
+    }
+
+    /**
+     * Copy an n x n matrix into the top left corner of a zeroed padded x
+     * padded one.
+     *
+     * @param values Row-major values of the matrix
+     * @param n Size of each dimension of the matrix
+     * @param padded Size of each dimension of the copy
+     * @return Row-major values of the copy
+     */
+    private static double[] pad(final double[] values, final int n,
+            final int padded) {
+        final double[] result = new double[padded * padded];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(values, i * n, result, i * padded, n);
+        }
+        return result;
+    }
+
+    /**
+     * Number of arena elements the Strassen steps of an n x n product use:
+     * the step's own temporaries plus a region for each of its seven
+     * subproducts, which run concurrently.
+     *
+     * @param n Size of the product
+     * @param strassenThreshold Size above which to take Strassen steps
+     * @return Number of elements
+     */
+    static long workspaceSize(final int n, final int strassenThreshold) {
+        if (!takesStrassenStep(n, strassenThreshold)) {
+            return 0;
+        }
+        final long half = n / 2;
+        return STEP_TEMPORARIES * half * half
+            + 7 * workspaceSize(n / 2, strassenThreshold);
+    }
+
+    /**
+     * Whether a square product of size n takes a Strassen step. Padding
+     * keeps every such n even.
+     *
+     * @param n Size of the product
+     * @param strassenThreshold Size above which to take Strassen steps
+     * @return True if n is even and above the threshold
+     */
+    private static boolean takesStrassenStep(final int n,
+            final int strassenThreshold) {
+        return n > strassenThreshold && n % 2 == 0;
+    }
+
+    /**
+     * Settings and storage shared by every task of one multiply.
+     */
+    private static final class Config {
+        /**
+         * Workspace of the Strassen steps.
+         */
+        private final double[] arena;
+        /**
+         * Size above which a square product takes a Strassen step.
+         */
+        private final int strassenThreshold;
+        /**
+         * Size at or below which a block runs on the packed kernel.
+         */
+        private final int leafSize;
+        /**
+         * Scratch space of the packed kernel, one per thread running leaves.
+         */
+        private final ThreadLocal<MatrixMultiply.PackScratch> scratch;
+
+        /**
+         * Constructor.
+         *
+         * @param setArena Workspace of the Strassen steps
+         * @param setStrassenThreshold Size above which to take Strassen
+         *        steps
+         * @param setLeafSize Size at or below which to run the packed
+         *        kernel
+         * @param maxLeafSize Largest dimension of any leaf block
+         */
+        Config(final double[] setArena, final int setStrassenThreshold,
+                final int setLeafSize, final int maxLeafSize) {
+            this.arena = setArena;
+            this.strassenThreshold = setStrassenThreshold;
+            this.leafSize = setLeafSize;
+            this.scratch = ThreadLocal.withInitial(
+                    () -> new MatrixMultiply.PackScratch(Math.min(
+                            maxLeafSize, MatrixMultiply.DEFAULT_PANEL_DEPTH),
+                        maxLeafSize));
+        }
+    }
+
+    /**
+     * Accumulates the product of two row-major blocks into a third, C += A x
+     * B, each block given by its offset and leading dimension within a flat
+     * array as in MatrixMultiply.multiplyAccumulate.
+     */
+    private static final class MultiplyTask extends RecursiveAction {
+        /**
+         * Settings and storage of this multiply.
+         */
+        private final Config config;
+        /**
+         * Storage of A.
+         */
+        private final double[] a;
+        /**
+         * Index of A's first element.
+         */
+        private final int aOffset;
+        /**
+         * Leading dimension of A.
+         */
+        private final int lda;
+        /**
+         * Storage of B.
+         */
+        private final double[] b;
+        /**
+         * Index of B's first element.
+         */
+        private final int bOffset;
+        /**
+         * Leading dimension of B.
+         */
+        private final int ldb;
+        /**
+         * Storage of C.
+         */
+        private final double[] c;
+        /**
+         * Index of C's first element.
+         */
+        private final int cOffset;
+        /**
+         * Leading dimension of C.
+         */
+        private final int ldc;
+        /**
+         * Number of rows of A and C.
+         */
+        private final int rows;
+        /**
+         * Number of columns of A and rows of B.
+         */
+        private final int depth;
+        /**
+         * Number of columns of B and C.
+         */
+        private final int cols;
+        /**
+         * Start of this task's region of the arena.
+         */
+        private final int workspace;
+
+        /**
+         * Constructor.
+         *
+         * @param setConfig Settings and storage of this multiply
+         * @param setA Storage of A
+         * @param setAOffset Index of A's first element
+         * @param setLda Leading dimension of A
+         * @param setB Storage of B
+         * @param setBOffset Index of B's first element
+         * @param setLdb Leading dimension of B
+         * @param setC Storage of C
+         * @param setCOffset Index of C's first element
+         * @param setLdc Leading dimension of C
+         * @param setRows Number of rows of A and C
+         * @param setDepth Number of columns of A and rows of B
+         * @param setCols Number of columns of B and C
+         * @param setWorkspace Start of this task's region of the arena
+         */
+        MultiplyTask(final Config setConfig, final double[] setA,
+                final int setAOffset, final int setLda, final double[] setB,
+                final int setBOffset, final int setLdb, final double[] setC,
+                final int setCOffset, final int setLdc, final int setRows,
+                final int setDepth, final int setCols,
+                final int setWorkspace) {
+            this.config = setConfig;
+            this.a = setA;
+            this.aOffset = setAOffset;
+            this.lda = setLda;
+            this.b = setB;
+            this.bOffset = setBOffset;
+            this.ldb = setLdb;
+            this.c = setC;
+            this.cOffset = setCOffset;
+            this.ldc = setLdc;
+            this.rows = setRows;
+            this.depth = setDepth;
+            this.cols = setCols;
+            this.workspace = setWorkspace;
+        }
+
+        @Override
+        protected void compute() {
+            if (rows == 0 || depth == 0 || cols == 0) {
+                return;
+            }
+            if (rows == depth && depth == cols
+                    && takesStrassenStep(rows, config.strassenThreshold)) {
+                strassenStep();
+            } else if (Math.max(rows, Math.max(depth, cols))
+                    <= config.leafSize) {
+                leaf();
+            } else {
+                quadrantStep();
+            }
+        }
+
+        /**
+         * Run the packed kernel over this block, a depth tile at a time, on
+         * this thread's scratch space.
+         */
+        private void leaf() {
+            final int depthTile =
+                Math.min(depth, MatrixMultiply.DEFAULT_PANEL_DEPTH);
+            final MatrixMultiply.PackScratch scratch = config.scratch.get();
+            for (int k = 0; k < depth; k += depthTile) {
+                MatrixMultiply.multiplyAccumulate(a, aOffset + k, lda,
+                        b, bOffset + k * ldb, ldb, c, cOffset, ldc,
+                        rows, Math.min(depthTile, depth - k), cols,
+                        scratch);
+            }
+        }
+
+        /**
+         * Accumulate the four quadrants of C in parallel, first with the
+         * products over the first half of the shared dimension and then with
+         * those over the second half.
+         */
+        private void quadrantStep() {
+            final int[] rowSplit = {0, rows / 2, rows};
+            final int[] depthSplit = {0, depth / 2, depth};
+            final int[] colSplit = {0, cols / 2, cols};
+            for (int k = 0; k < 2; k++) {
+                final MultiplyTask[] quadrants = new MultiplyTask[4];
+                for (int i = 0; i < 2; i++) {
+                    for (int j = 0; j < 2; j++) {
+                        quadrants[2 * i + j] = new MultiplyTask(config,
+                                a, aOffset + rowSplit[i] * lda
+                                    + depthSplit[k], lda,
+                                b, bOffset + depthSplit[k] * ldb
+                                    + colSplit[j], ldb,
+                                c, cOffset + rowSplit[i] * ldc
+                                    + colSplit[j], ldc,
+                                rowSplit[i + 1] - rowSplit[i],
+                                depthSplit[k + 1] - depthSplit[k],
+                                colSplit[j + 1] - colSplit[j], workspace);
+                    }
+                }
+                invokeAll(quadrants);
+            }
+        }
+
+        /**
+         * Accumulate C with one Strassen step, using the operand sums and
+         * products
+         * <pre>
+         * P1 = A11 (B12 - B22)          P5 = (A11 + A22) (B11 + B22)
+         * P2 = (A11 + A12) B22          P6 = (A12 - A22) (B21 + B22)
+         * P3 = (A21 + A22) B11          P7 = (A11 - A21) (B11 + B12)
+         * P4 = A22 (B21 - B11)
+         * </pre>
+         * with C11 += P5 + P4 - P2 + P6, C12 += P1 + P2, C21 += P3 + P4 and
+         * C22 += P5 + P1 - P3 - P7.
+         */
+        private void strassenStep() {
+            final int h = rows / 2;
+            final double[] w = config.arena;
+            final int size = h * h;
+            final int a11 = aOffset;
+            final int a12 = aOffset + h;
+            final int a21 = aOffset + h * lda;
+            final int a22 = a21 + h;
+            final int b11 = bOffset;
+            final int b12 = bOffset + h;
+            final int b21 = bOffset + h * ldb;
+            final int b22 = b21 + h;
+
+            // Ten operand sums, then seven products, each h x h with
+            // leading dimension h
+            final int[] s = new int[10];
+            for (int t = 0; t < s.length; t++) {
+                s[t] = workspace + t * size;
+            }
+            final int[] p = new int[7];
+            for (int t = 0; t < p.length; t++) {
+                p[t] = workspace + (s.length + t) * size;
+            }
+            combine(b, b12, ldb, 1.0, b, b22, ldb, -1.0, s[0], h);
+            combine(a, a11, lda, 1.0, a, a12, lda, 1.0, s[1], h);
+            combine(a, a21, lda, 1.0, a, a22, lda, 1.0, s[2], h);
+            combine(b, b21, ldb, 1.0, b, b11, ldb, -1.0, s[3], h);
+            combine(a, a11, lda, 1.0, a, a22, lda, 1.0, s[4], h);
+            combine(b, b11, ldb, 1.0, b, b22, ldb, 1.0, s[5], h);
+            combine(a, a12, lda, 1.0, a, a22, lda, -1.0, s[6], h);
+            combine(b, b21, ldb, 1.0, b, b22, ldb, 1.0, s[7], h);
+            combine(a, a11, lda, 1.0, a, a21, lda, -1.0, s[8], h);
+            combine(b, b11, ldb, 1.0, b, b12, ldb, 1.0, s[9], h);
+            Arrays.fill(w, p[0], p[0] + p.length * size, 0.0);
+
+            final long childSize = workspaceSize(h, config.strassenThreshold);
+            final int children = workspace + STEP_TEMPORARIES * size;
+            invokeAll(
+                product(a, a11, lda, w, s[0], h, p[0], children),
+                product(w, s[1], h, b, b22, ldb, p[1],
+                        children + childSize),
+                product(w, s[2], h, b, b11, ldb, p[2],
+                        children + 2 * childSize),
+                product(a, a22, lda, w, s[3], h, p[3],
+                        children + 3 * childSize),
+                product(w, s[4], h, w, s[5], h, p[4],
+                        children + 4 * childSize),
+                product(w, s[6], h, w, s[7], h, p[5],
+                        children + 5 * childSize),
+                product(w, s[8], h, w, s[9], h, p[6],
+                        children + 6 * childSize));
+
+            final int c11 = cOffset;
+            final int c12 = cOffset + h;
+            final int c21 = cOffset + h * ldc;
+            final int c22 = c21 + h;
+            for (int i = 0; i < h; i++) {
+                final int pRow = i * h;
+                final int cRow = i * ldc;
+                for (int j = 0; j < h; j++) {
+                    final int q = pRow + j;
+                    final double p1 = w[p[0] + q];
+                    final double p2 = w[p[1] + q];
+                    final double p3 = w[p[2] + q];
+                    final double p4 = w[p[3] + q];
+                    final double p5 = w[p[4] + q];
+                    final double p6 = w[p[5] + q];
+                    final double p7 = w[p[6] + q];
+                    c[c11 + cRow + j] += p5 + p4 - p2 + p6;
+                    c[c12 + cRow + j] += p1 + p2;
+                    c[c21 + cRow + j] += p3 + p4;
+                    c[c22 + cRow + j] += p5 + p1 - p3 - p7;
+                }
+            }
+        }
+
+        /**
+         * Create the task accumulating one h x h Strassen product into the
+         * arena.
+         *
+         * @param x Storage of the left operand
+         * @param xOffset Index of the left operand's first element
+         * @param ldx Leading dimension of the left operand
+         * @param y Storage of the right operand
+         * @param yOffset Index of the right operand's first element
+         * @param ldy Leading dimension of the right operand
+         * @param output Arena index of the product
+         * @param childWorkspace Arena index of the product's own workspace
+         * @return The task
+         */
+        private MultiplyTask product(final double[] x, final int xOffset,
+                final int ldx, final double[] y, final int yOffset,
+                final int ldy, final int output, final long childWorkspace) {
+            final int h = rows / 2;
+            return new MultiplyTask(config, x, xOffset, ldx, y, yOffset, ldy,
+                    config.arena, output, h, h, h, h, (int) childWorkspace);
+        }
+
+        /**
+         * Write xSign * X + ySign * Y into an h x h block of the arena with
+         * leading dimension h.
+         *
+         * @param x Storage of X
+         * @param xOffset Index of X's first element
+         * @param ldx Leading dimension of X
+         * @param xSign Coefficient of X
+         * @param y Storage of Y
+         * @param yOffset Index of Y's first element
+         * @param ldy Leading dimension of Y
+         * @param ySign Coefficient of Y
+         * @param output Arena index of the result
+         * @param h Size of each dimension
+         */
+        private void combine(final double[] x, final int xOffset,
+                final int ldx, final double xSign, final double[] y,
+                final int yOffset, final int ldy, final double ySign,
+                final int output, final int h) {
+            final double[] w = config.arena;
+            for (int i = 0; i < h; i++) {
+                final int xRow = xOffset + i * ldx;
+                final int yRow = yOffset + i * ldy;
+                final int outRow = output + i * h;
+                for (int j = 0; j < h; j++) {
+                    w[outRow + j] = xSign * x[xRow + j] + ySign * y[yRow + j];
+                }
+            }
+        }
+    }
+}
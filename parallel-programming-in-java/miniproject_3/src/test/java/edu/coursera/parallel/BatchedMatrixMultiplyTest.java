@@ -0,0 +1,145 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class BatchedMatrixMultiplyTest extends TestCase {
+    private double[] createBatch(final int length, final long seed) {
+        final double[] input = new double[length];
+        final Random rand = new Random(seed);
+        for (int i = 0; i < length; i++) {
+            input[i] = rand.nextInt(100) - 50;
+        }
+        return input;
+    }
+
+    /**
+     * A reference multiply of every pair in a packed batch.
+     */
+    private double[] multiply(final double[] a, final double[] b, final int batch, final int m, final int k,
+                              final int n) {
+        final double[] c = new double[batch * m * n];
+        for (int t = 0; t < batch; t++) {
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    double sum = 0.0;
+                    for (int p = 0; p < k; p++) {
+                        sum += a[t * m * k + i * k + p] * b[t * k * n + p * n + j];
+                    }
+                    c[t * m * n + i * n + j] = sum;
+                }
+            }
+        }
+        return c;
+    }
+
+    private void checkResult(final double[] ref, final double[] output) {
+        for (int i = 0; i < ref.length; i++) {
+            assertEquals("Error detected on element " + i, ref[i], output[i]);
+        }
+    }
+
+    private void checkBatch(final int batch, final int m, final int k, final int n) {
+        final double[] a = createBatch(batch * m * k, m * 31 + k);
+        final double[] b = createBatch(batch * k * n, n * 17 + k);
+        final double[] c = createBatch(batch * m * n, 5);
+        BatchedMatrixMultiply.multiply(a, b, c, batch, m, k, n);
+        checkResult(multiply(a, b, batch, m, k, n), c);
+    }
+
+    /**
+     * Checks the specialized and general kernels against the reference, on batches both below and above the
+     * sequential threshold.
+     */
+    public void testMatchesReference() {
+        for (int n : new int[] {1, 3, 4, 5, 8, 13, 16, 24, 32}) {
+            checkBatch(7, n, n, n);
+            checkBatch(2000, n, n, n);
+        }
+        checkBatch(3000, 3, 5, 7);
+        checkBatch(3000, 8, 4, 16);
+        checkBatch(0, 4, 4, 4);
+
+        final double[] a = createBatch(4000 * 16, 1);
+        final double[] b = createBatch(4000 * 16, 2);
+        final double[] c = new double[4000 * 16];
+        BatchedMatrixMultiply.multiply(a, b, c, 4000, 4);
+        checkResult(multiply(a, b, 4000, 4, 4, 4), c);
+
+        try {
+            BatchedMatrixMultiply.multiply(a, b, new double[16], 2, 4);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks the jagged overload against the reference.
+     */
+    public void testJagged() {
+        final int batch = 500;
+        final double[] a = createBatch(batch * 6 * 9, 3);
+        final double[] b = createBatch(batch * 9 * 5, 4);
+        final double[] ref = multiply(a, b, batch, 6, 9, 5);
+
+        final double[][][] A = new double[batch][6][9];
+        final double[][][] B = new double[batch][9][5];
+        final double[][][] C = new double[batch][6][5];
+        for (int t = 0; t < batch; t++) {
+            for (int i = 0; i < 6; i++) {
+                System.arraycopy(a, t * 54 + i * 9, A[t][i], 0, 9);
+            }
+            for (int p = 0; p < 9; p++) {
+                System.arraycopy(b, t * 45 + p * 5, B[t][p], 0, 5);
+            }
+            C[t][2][3] = 1.0;
+        }
+        BatchedMatrixMultiply.multiply(A, B, C);
+        for (int t = 0; t < batch; t++) {
+            for (int i = 0; i < 6; i++) {
+                for (int j = 0; j < 5; j++) {
+                    assertEquals(ref[t * 30 + i * 5 + j], C[t][i][j]);
+                }
+            }
+        }
+
+        try {
+            BatchedMatrixMultiply.multiply(A, B, new double[1][6][5]);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // A malformed last product is rejected before any output is written
+        final double[][][] badC = new double[batch][6][5];
+        badC[0][0][0] = 7.0;
+        B[batch - 1][4] = new double[4];
+        try {
+            BatchedMatrixMultiply.multiply(A, B, badC);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals(7.0, badC[0][0][0]);
+        }
+        B[batch - 1][4] = new double[5];
+        badC[batch - 1][5] = new double[6];
+        try {
+            BatchedMatrixMultiply.multiply(A, B, badC);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals(7.0, badC[0][0][0]);
+        }
+
+        // A batch small enough to run sequentially, with shapes that differ between products
+        final double[][][] smallA = {{{1, 2}, {3, 4}}, {{2, 0, 1}}, {}};
+        final double[][][] smallB = {{{5, 6}, {7, 8}}, {{1}, {4}, {3}}, {}};
+        final double[][][] smallC = {new double[2][2], new double[1][1], {}};
+        BatchedMatrixMultiply.multiply(smallA, smallB, smallC);
+        assertEquals(19.0, smallC[0][0][0]);
+        assertEquals(22.0, smallC[0][0][1]);
+        assertEquals(43.0, smallC[0][1][0]);
+        assertEquals(50.0, smallC[0][1][1]);
+        assertEquals(5.0, smallC[1][0][0]);
+    }
+}
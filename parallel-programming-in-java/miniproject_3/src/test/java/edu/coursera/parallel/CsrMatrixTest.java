@@ -0,0 +1,99 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class CsrMatrixTest extends TestCase {
+
+    private double[][] createSparseMatrix(final int nrows, final int ncols, final double density, final long seed) {
+        final double[][] input = new double[nrows][ncols];
+        final Random rand = new Random(seed);
+
+        for (int i = 0; i < nrows; i++) {
+            for (int j = 0; j < ncols; j++) {
+                if (rand.nextDouble() < density) {
+                    input[i][j] = 1 + rand.nextInt(100);
+                }
+            }
+        }
+
+        return input;
+    }
+
+    private void checkDense(final double[][] expected, final double[][] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].length, actual[i].length);
+            for (int j = 0; j < expected[i].length; j++) {
+                assertEquals("Error detected on cell (" + i + ", " + j + ")", expected[i][j], actual[i][j]);
+            }
+        }
+    }
+
+    public void testConversions() {
+        final double[][] dense = createSparseMatrix(57, 83, 0.1, 1);
+        // An empty row and an empty column
+        dense[3] = new double[83];
+        for (int i = 0; i < 57; i++) {
+            dense[i][40] = 0.0;
+        }
+
+        final CsrMatrix csr = CsrMatrix.fromDense(dense);
+        assertEquals(57, csr.getNRows());
+        assertEquals(83, csr.getNCols());
+        checkDense(dense, csr.toDense());
+        for (int i = 0; i < 57; i++) {
+            for (int j = 0; j < 83; j++) {
+                assertEquals(dense[i][j], csr.get(i, j));
+            }
+        }
+
+        final CscMatrix csc = csr.toCsc();
+        assertEquals(csr.getNnz(), csc.getNnz());
+        checkDense(dense, csc.toDense());
+        checkDense(dense, CscMatrix.fromDense(dense).toDense());
+        for (int i = 0; i < 57; i++) {
+            for (int j = 0; j < 83; j++) {
+                assertEquals(dense[i][j], csc.get(i, j));
+            }
+        }
+        // Rows within each column come out sorted
+        final int[] colPointers = csc.getColPointers();
+        final int[] rowIndices = csc.getRowIndices();
+        for (int j = 0; j < 83; j++) {
+            for (int p = colPointers[j] + 1; p < colPointers[j + 1]; p++) {
+                assertTrue(rowIndices[p - 1] < rowIndices[p]);
+            }
+        }
+
+        final CsrMatrix roundTrip = csc.toCsr();
+        assertEquals(csr.getNnz(), roundTrip.getNnz());
+        checkDense(dense, roundTrip.toDense());
+
+        final CsrMatrix empty = CsrMatrix.fromDense(new double[0][0]);
+        assertEquals(0, empty.getNnz());
+        assertEquals(0, empty.toCsc().getNCols());
+    }
+
+    public void testRejectsInvalidInput() {
+        try {
+            new CsrMatrix(2, 2, new int[] {0, 1}, new int[] {0}, new double[] {1.0});
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new CscMatrix(2, 2, new int[] {0, 1, 3}, new int[] {0, 1}, new double[] {1.0, 2.0});
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            CsrMatrix.fromDense(new double[][] {{1.0, 2.0}, {3.0}});
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class FlatMatrixTest extends TestCase {
+    private double[][] createMatrix(final int nrows, final int ncols, final long seed) {
+        final double[][] input = new double[nrows][ncols];
+        final Random rand = new Random(seed);
+
+        for (int i = 0; i < nrows; i++) {
+            for (int j = 0; j < ncols; j++) {
+                input[i][j] = rand.nextInt(100);
+            }
+        }
+
+        return input;
+    }
+
+    /**
+     * A reference multiply of an MxK matrix by a KxN matrix.
+     */
+    private double[][] multiply(final double[][] A, final double[][] B) {
+        final int m = A.length;
+        final int depth = B.length;
+        final int n = depth == 0 ? 0 : B[0].length;
+        final double[][] C = new double[m][n];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                for (int k = 0; k < depth; k++) {
+                    C[i][j] += A[i][k] * B[k][j];
+                }
+            }
+        }
+        return C;
+    }
+
+    private void checkResult(final double[][] ref, final FlatMatrix output) {
+        assertEquals(ref.length, output.getNRows());
+        for (int i = 0; i < ref.length; i++) {
+            for (int j = 0; j < ref[i].length; j++) {
+                assertEquals("Error detected on cell (" + i + ", " + j + ")", ref[i][j], output.get(i, j));
+            }
+        }
+    }
+
+    public void testConversions() {
+        final double[][] rows = createMatrix(37, 70, 1);
+        final FlatMatrix flat = FlatMatrix.fromRows(rows);
+        checkResult(rows, flat);
+
+        final double[][] copy = new double[37][70];
+        flat.copyInto(copy);
+        checkResult(copy, flat);
+
+        final FlatMatrix transposed = flat.transpose();
+        assertEquals(70, transposed.getNRows());
+        assertEquals(37, transposed.getNCols());
+        for (int i = 0; i < 37; i++) {
+            for (int j = 0; j < 70; j++) {
+                assertEquals(rows[i][j], transposed.get(j, i));
+            }
+        }
+
+        // A wrapped array is shared, not copied
+        final double[] values = new double[6];
+        final FlatMatrix view = FlatMatrix.wrap(values, 2, 3);
+        view.set(1, 2, 5.0);
+        assertEquals(5.0, values[5]);
+        assertSame(values, view.getValues());
+
+        try {
+            FlatMatrix.wrap(values, 3, 3);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            flat.copyFrom(new double[37][71]);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks every flat multiply on rectangular shapes that leave partial tiles.
+     */
+    public void testMultiplyMatchesReference() {
+        final int[][] shapes = {{1, 1, 1}, {3, 5, 2}, {70, 33, 301}, {130, 300, 67}, {0, 4, 3}};
+
+        for (int[] shape : shapes) {
+            final double[][] A = createMatrix(shape[0], shape[1], 2);
+            final double[][] B = createMatrix(shape[1], shape[2], 3);
+            final double[][] ref = multiply(A, B);
+
+            // fromRows cannot recover the column count of a matrix without rows
+            final FlatMatrix flatA = shape[0] == 0 ? new FlatMatrix(0, shape[1]) : FlatMatrix.fromRows(A);
+            final FlatMatrix flatB = FlatMatrix.fromRows(B);
+
+            final FlatMatrix seqC = new FlatMatrix(shape[0], shape[2]);
+            seqC.copyFrom(createMatrix(shape[0], shape[2], 4));
+            MatrixMultiply.seqMatrixMultiply(flatA, flatB, seqC);
+            checkResult(ref, seqC);
+
+            final FlatMatrix parC = new FlatMatrix(shape[0], shape[2]);
+            parC.copyFrom(createMatrix(shape[0], shape[2], 4));
+            MatrixMultiply.parMatrixMultiply(flatA, flatB, parC);
+            checkResult(ref, parC);
+
+            final FlatMatrix transposedC = new FlatMatrix(shape[0], shape[2]);
+            transposedC.copyFrom(createMatrix(shape[0], shape[2], 4));
+            MatrixMultiply.parMatrixMultiplyTransposed(flatA, flatB.transpose(), transposedC);
+            checkResult(ref, transposedC);
+        }
+
+        try {
+            MatrixMultiply.parMatrixMultiply(new FlatMatrix(2, 3), new FlatMatrix(2, 3), new FlatMatrix(2, 3));
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -129,4 +129,61 @@ public class MatrixMultiplyTest extends TestCase {
                 "least %fx faster, but it only achieved %fx speedup", minimalExpectedSpeedup, speedup);
         assertTrue(errMsg, speedup >= minimalExpectedSpeedup);
     }
+
+    /**
+     * Checks the blocked kernel on sizes and tiles that leave partial tiles and partial micro-kernel row groups.
+     */
+    public void testBlockedMatchesSequential() {
+        final int[] sizes = {1, 3, 5, 77, 130};
+        final int[][] tiles = {{1, 1, 1}, {4, 8, 16}, {7, 5, 3}, {64, 256, 256}};
+
+        for (int N : sizes) {
+            final double[][] A = createMatrix(N);
+            final double[][] B = createMatrix(N);
+            final double[][] refC = new double[N][N];
+            seqMatrixMultiply(A, B, refC, N);
+
+            for (int[] tile : tiles) {
+                final double[][] C = createMatrix(N);
+                MatrixMultiply.blockedMatrixMultiply(A, B, C, N, tile[0], tile[1], tile[2]);
+                checkResult(refC, C, N);
+            }
+        }
+    }
+
+    /**
+     * Tests the performance of the blocked implementation on a 1024x1024 matrix against the reference sequential
+     * kernel.
+     */
+    public void testBlocked1024_x_1024() {
+        final int N = 1024;
+        final double[][] A = createMatrix(N);
+        final double[][] B = createMatrix(N);
+        final double[][] C = new double[N][N];
+        final double[][] refC = new double[N][N];
+
+        seqMatrixMultiply(A, B, refC, N);
+        MatrixMultiply.blockedMatrixMultiply(A, B, C, N);
+        checkResult(refC, C, N);
+
+        final int repeats = 3;
+        final long seqStartTime = System.currentTimeMillis();
+        for (int r = 0; r < repeats; r++) {
+            seqMatrixMultiply(A, B, C, N);
+        }
+        final long blockedStartTime = System.currentTimeMillis();
+        for (int r = 0; r < repeats; r++) {
+            MatrixMultiply.blockedMatrixMultiply(A, B, C, N);
+        }
+        final long blockedEndTime = System.currentTimeMillis();
+
+        final long seqTime = (blockedStartTime - seqStartTime) / repeats;
+        final long blockedTime = (blockedEndTime - blockedStartTime) / repeats;
+
+        final double minimalExpectedSpeedup = (double)getNCores() * 0.6;
+        final double speedup = (double)seqTime / (double)blockedTime;
+        final String errMsg = String.format("It was expected that the blocked implementation would run at " +
+                "least %fx faster, but it only achieved %fx speedup", minimalExpectedSpeedup, speedup);
+        assertTrue(errMsg, speedup >= minimalExpectedSpeedup);
+    }
 }
@@ -0,0 +1,115 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class SparseMatrixMultiplyTest extends TestCase {
+    /**
+     * Create a matrix of small random integers with the given fraction of nonzeros. The first row is made dense, so
+     * that splitting by row count would leave one task with far more work than the rest.
+     */
+    private double[][] createSkewedMatrix(final int nrows, final int ncols, final double density, final long seed) {
+        final double[][] input = new double[nrows][ncols];
+        final Random rand = new Random(seed);
+
+        for (int i = 0; i < nrows; i++) {
+            for (int j = 0; j < ncols; j++) {
+                if (i == 0 || rand.nextDouble() < density) {
+                    input[i][j] = 1 + rand.nextInt(100);
+                }
+            }
+        }
+
+        return input;
+    }
+
+    private double[][] multiply(final double[][] A, final double[][] B) {
+        final int m = A.length;
+        final int depth = B.length;
+        final int n = depth == 0 ? 0 : B[0].length;
+        final double[][] C = new double[m][n];
+        for (int i = 0; i < m; i++) {
+            for (int k = 0; k < depth; k++) {
+                for (int j = 0; j < n; j++) {
+                    C[i][j] += A[i][k] * B[k][j];
+                }
+            }
+        }
+        return C;
+    }
+
+    private void checkResult(final double[][] ref, final double[][] output) {
+        assertEquals(ref.length, output.length);
+        for (int i = 0; i < ref.length; i++) {
+            for (int j = 0; j < ref[i].length; j++) {
+                assertEquals("Error detected on cell (" + i + ", " + j + ")", ref[i][j], output[i][j]);
+            }
+        }
+    }
+
+    /**
+     * Checks every product against a dense reference across densities, including a fully dense and an empty matrix.
+     */
+    public void testMatchesDense() {
+        final double[] densities = {0.0, 0.003, 0.05, 0.3, 1.0};
+
+        for (double density : densities) {
+            final double[][] A = createSkewedMatrix(150, 91, density, 1);
+            final double[][] B = createSkewedMatrix(91, 77, density, 2);
+            final double[][] ref = multiply(A, B);
+            final CsrMatrix sparseA = CsrMatrix.fromDense(A);
+            final CsrMatrix sparseB = CsrMatrix.fromDense(B);
+
+            final double[][] C = new double[150][77];
+            SparseMatrixMultiply.multiply(sparseA, B, C);
+            checkResult(ref, C);
+
+            final double[][] denseTimesSparse = new double[150][77];
+            SparseMatrixMultiply.multiply(A, sparseB.toCsc(), denseTimesSparse);
+            checkResult(ref, denseTimesSparse);
+
+            checkResult(ref, SparseMatrixMultiply.multiply(sparseA, sparseB).toDense());
+
+            final double[] x = new double[91];
+            for (int k = 0; k < 91; k++) {
+                x[k] = B[k][5];
+            }
+            final double[] y = new double[150];
+            SparseMatrixMultiply.multiply(sparseA, x, y);
+            for (int i = 0; i < 150; i++) {
+                assertEquals(ref[i][5], y[i]);
+            }
+        }
+
+        try {
+            SparseMatrixMultiply.multiply(CsrMatrix.fromDense(new double[3][4]), new double[3][2], new double[3][2]);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks that ranges follow the work rather than the number of items.
+     */
+    public void testBalancedSplits() {
+        // Item 0 costs 100, the other 99 cost 1 each
+        final long[] prefix = new long[101];
+        prefix[1] = 100;
+        for (int i = 2; i <= 100; i++) {
+            prefix[i] = prefix[i - 1] + 1;
+        }
+        final int[] splits = SparseMatrixMultiply.balancedSplits(i -> prefix[i], 100, 4);
+        assertEquals(5, splits.length);
+        assertEquals(0, splits[0]);
+        assertEquals(1, splits[1]);
+        assertEquals(1, splits[2]);
+        assertEquals(50, splits[3]);
+        assertEquals(100, splits[4]);
+
+        final int[] empty = SparseMatrixMultiply.balancedSplits(i -> 0L, 0, 1);
+        assertEquals(0, empty[0]);
+        assertEquals(0, empty[1]);
+    }
+}
@@ -0,0 +1,146 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class StrassenMultiplyTest extends TestCase {
+    private double[][] createMatrix(final int N, final long seed) {
+        final double[][] input = new double[N][N];
+        final Random rand = new Random(seed);
+
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                input[i][j] = rand.nextInt(100);
+            }
+        }
+
+        return input;
+    }
+
+    private double[][] createUniformMatrix(final int N, final long seed) {
+        final double[][] input = new double[N][N];
+        final Random rand = new Random(seed);
+
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                input[i][j] = 2.0 * rand.nextDouble() - 1.0;
+            }
+        }
+
+        return input;
+    }
+
+    private void checkResult(final double[][] ref, final double[][] output, final int N) {
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                assertEquals("Error detected on cell (" + i + ", " + j + ")", ref[i][j], output[i][j]);
+            }
+        }
+    }
+
+    /**
+     * A reference multiply with compensated (Kahan) summation, accurate to about one rounding of each result.
+     */
+    private double[][] compensatedMultiply(final double[][] A, final double[][] B, final int N) {
+        final double[][] C = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                double sum = 0.0;
+                double compensation = 0.0;
+                for (int k = 0; k < N; k++) {
+                    final double y = A[i][k] * B[k][j] - compensation;
+                    final double t = sum + y;
+                    compensation = (t - sum) - y;
+                    sum = t;
+                }
+                C[i][j] = sum;
+            }
+        }
+        return C;
+    }
+
+    private double maxError(final double[][] ref, final double[][] output, final int N) {
+        double max = 0.0;
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                max = Math.max(max, Math.abs(ref[i][j] - output[i][j]));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Checks sizes that need padding and thresholds that take several Strassen and quadrant levels. Integer inputs
+     * keep every intermediate exact, so results must match exactly.
+     */
+    public void testMatchesSequential() {
+        final int[] sizes = {1, 2, 7, 64, 130, 257, 300};
+        final int[][] thresholds = {{1, 1}, {16, 8}, {40, 16}, {512, 128}};
+
+        for (int N : sizes) {
+            final double[][] A = createMatrix(N, 1);
+            final double[][] B = createMatrix(N, 2);
+            final double[][] refC = new double[N][N];
+            MatrixMultiply.seqMatrixMultiply(A, B, refC, N);
+
+            for (int[] threshold : thresholds) {
+                final double[][] C = createMatrix(N, 3);
+                MatrixMultiply.strassenMatrixMultiply(A, B, C, N, threshold[0], threshold[1]);
+                checkResult(refC, C, N);
+            }
+        }
+
+        final FlatMatrix flatA = FlatMatrix.fromRows(createMatrix(70, 1));
+        final FlatMatrix flatC = new FlatMatrix(70, 70);
+        MatrixMultiply.strassenMatrixMultiply(flatA, flatA, flatC);
+        final FlatMatrix refC = new FlatMatrix(70, 70);
+        MatrixMultiply.seqMatrixMultiply(flatA, flatA, refC);
+        for (int i = 0; i < 70; i++) {
+            for (int j = 0; j < 70; j++) {
+                assertEquals(refC.get(i, j), flatC.get(i, j));
+            }
+        }
+
+        try {
+            MatrixMultiply.strassenMatrixMultiply(new FlatMatrix(2, 3), new FlatMatrix(3, 2), new FlatMatrix(2, 2));
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks the rounding error of a three-level Strassen product against a compensated reference, on inputs uniform
+     * in [-1, 1].
+     */
+    public void testAccuracy() {
+        final int N = 512;
+        final double[][] A = createUniformMatrix(N, 4);
+        final double[][] B = createUniformMatrix(N, 5);
+        final double[][] ref = compensatedMultiply(A, B, N);
+
+        final double[][] strassenC = new double[N][N];
+        MatrixMultiply.strassenMatrixMultiply(A, B, strassenC, N, 64, 32);
+
+        final double strassenError = maxError(ref, strassenC, N);
+
+        // Each result is a sum of 512 products bounded by 1, so this is a few hundred ulps of the largest.
+        assertTrue("Strassen error " + strassenError, strassenError < 1e-11);
+    }
+
+    /**
+     * Checks the default thresholds on a 2048x2048 matrix, which takes one Strassen step.
+     */
+    public void testDefaultThresholds() {
+        final int N = 2048;
+        final double[][] A = createMatrix(N, 6);
+        final double[][] B = createMatrix(N, 7);
+        final double[][] refC = new double[N][N];
+        final double[][] C = new double[N][N];
+
+        MatrixMultiply.blockedMatrixMultiply(A, B, refC, N);
+        MatrixMultiply.strassenMatrixMultiply(A, B, C, N);
+        checkResult(refC, C, N);
+    }
+}
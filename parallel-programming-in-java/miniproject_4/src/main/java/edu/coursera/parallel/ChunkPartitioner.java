@@ -0,0 +1,243 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+
+/**
+ * Splits elements 1 to n of a one-dimensional averaging problem into one
+ * contiguous chunk per task, and moves the chunk boundaries between
+ * iterations so that the tasks' sweeps take equally long.
+ * <p>
+ * Tasks record how long each sweep of their chunk took and how long they
+ * then waited at the barrier. rebalance, called while every task is held
+ * at the barrier, gives each task a share of the elements proportional to
+ * the rate at which it swept its last chunk, moving only part of the way
+ * there each time so that timing noise does not make the boundaries
+ * oscillate. Since every element is still computed exactly once per
+ * iteration, moving the boundaries never changes the results.
+ * <p>
+ * An instance may be reused across runs of the same size, keeping the
+ * boundaries it learned; the wait times accumulate until
+ * resetStatistics.
+ */
+public final class ChunkPartitioner {
+    /**
+     * Default number of iterations between rebalances.
+     */
+    static final int DEFAULT_REBALANCE_INTERVAL = 16;
+    /**
+     * Fraction of the way to the balanced boundaries that each rebalance
+     * moves.
+     */
+    static final double DAMPING = 0.5;
+
+    /**
+     * The size of the problem.
+     */
+    private final int n;
+    /**
+     * The number of tasks.
+     */
+    private final int tasks;
+    /**
+     * First element of each chunk, followed by n + 1.
+     */
+    private final int[] starts;
+    /**
+     * Time each task spent sweeping since the last rebalance, in
+     * nanoseconds.
+     */
+    private final long[] sweepNanos;
+    /**
+     * Time each task spent waiting at the barrier since the last
+     * resetStatistics, in nanoseconds.
+     */
+    private final long[] waitNanos;
+    /**
+     * Number of sweeps each task recorded since the last resetStatistics.
+     */
+    private final long[] sweeps;
+
+    /**
+     * Constructor, starting from chunks that differ in size by at most one.
+     *
+     * @param setN The size of the problem
+     * @param setTasks The number of tasks
+     */
+    public ChunkPartitioner(final int setN, final int setTasks) {
+        if (setN < 0 || setTasks < 1) {
+            throw new IllegalArgumentException("Cannot split " + setN
+                    + " elements between " + setTasks + " tasks");
+        }
+        this.n = setN;
+        this.tasks = setTasks;
+        this.starts = new int[setTasks + 1];
+        for (int i = 0; i <= setTasks; i++) {
+            starts[i] = evenStart(i, setN, setTasks);
+        }
+        this.sweepNanos = new long[setTasks];
+        this.waitNanos = new long[setTasks];
+        this.sweeps = new long[setTasks];
+    }
+
+    /**
+     * First element of chunk i when elements 1 to n are split into chunks
+     * that differ in size by at most one. Chunk i ends just before chunk
+     * i + 1 starts, and evenStart(tasks, n, tasks) is n + 1.
+     *
+     * @param i Index of the chunk, from 0 to tasks
+     * @param n The size of the problem
+     * @param tasks The number of chunks
+     * @return The first element of the chunk
+     */
+    public static int evenStart(final int i, final int n, final int tasks) {
+        return (int) ((long) i * n / tasks) + 1;
+    }
+
+    /**
+     * Get the first element of a task's chunk.
+     *
+     * @param task Index of the task
+     * @return The first element
+     */
+    public int getLeft(final int task) {
+        return starts[task];
+    }
+
+    /**
+     * Get the last element of a task's chunk.
+     *
+     * @param task Index of the task
+     * @return The last element, getLeft(task) - 1 if the chunk is empty
+     */
+    public int getRight(final int task) {
+        return starts[task + 1] - 1;
+    }
+
+    /**
+     * Record the time a task took to sweep its chunk.
+     *
+     * @param task Index of the task
+     * @param nanos Duration of the sweep
+     */
+    void recordSweep(final int task, final long nanos) {
+        sweepNanos[task] += nanos;
+        sweeps[task]++;
+    }
+
+    /**
+     * Record the time a task waited at the barrier.
+     *
+     * @param task Index of the task
+     * @param nanos Duration of the wait
+     */
+    void recordWait(final int task, final long nanos) {
+        waitNanos[task] += nanos;
+    }
+
+    /**
+     * Move the chunk boundaries toward equal sweep times, using the sweep
+     * times recorded since the last call, then clear them. Must only be
+     * called while no task is sweeping.
+     */
+    void rebalance() {
+        // Elements per nanosecond of each task, the mean for tasks that
+        // have no chunk or recorded no time
+        final double[] rates = new double[tasks];
+        double rateSum = 0.0;
+        int measured = 0;
+        for (int i = 0; i < tasks; i++) {
+            final int size = starts[i + 1] - starts[i];
+            if (size > 0 && sweepNanos[i] > 0) {
+                rates[i] = (double) size / sweepNanos[i];
+                rateSum += rates[i];
+                measured++;
+            }
+        }
+        if (measured == 0) {
+            return;
+        }
+        final double meanRate = rateSum / measured;
+        double total = 0.0;
+        for (int i = 0; i < tasks; i++) {
+            if (rates[i] == 0.0) {
+                rates[i] = meanRate;
+            }
+            total += rates[i];
+        }
+
+        // Damped target sizes, turned into boundaries by rounding their
+        // prefix sums, keeping at least one element per task when n allows
+        final int minSize = n >= tasks ? 1 : 0;
+        double prefix = 0.0;
+        for (int i = 0; i < tasks - 1; i++) {
+            final int size = starts[i + 1] - starts[i];
+            final double target = n * rates[i] / total;
+            prefix += size + DAMPING * (target - size);
+            final int lowest = starts[i] + minSize;
+            final int highest = n + 1 - (tasks - 1 - i) * minSize;
+            starts[i + 1] = (int) Math.max(lowest,
+                    Math.min(highest, Math.round(prefix) + 1));
+        }
+        Arrays.fill(sweepNanos, 0L);
+    }
+
+    /**
+     * Clear the recorded wait times and sweep counts.
+     */
+    public void resetStatistics() {
+        Arrays.fill(waitNanos, 0L);
+        Arrays.fill(sweeps, 0L);
+    }
+
+    /**
+     * Get the size of the problem.
+     *
+     * @return The size of the problem
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Get the number of tasks.
+     *
+     * @return # of tasks
+     */
+    public int getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Get the current size of each task's chunk.
+     *
+     * @return Chunk sizes, one per task
+     */
+    public int[] getChunkSizes() {
+        final int[] sizes = new int[tasks];
+        for (int i = 0; i < tasks; i++) {
+            sizes[i] = starts[i + 1] - starts[i];
+        }
+        return sizes;
+    }
+
+    /**
+     * Get the time each task spent waiting at the barrier since the last
+     * resetStatistics. A task that waits much less than the others is the
+     * one holding them back.
+     *
+     * @return Wait time of each task, in nanoseconds
+     */
+    public long[] getWaitNanos() {
+        return waitNanos.clone();
+    }
+
+    /**
+     * Get the number of sweeps each task recorded since the last
+     * resetStatistics.
+     *
+     * @return Sweep count of each task
+     */
+    public long[] getSweeps() {
+        return sweeps.clone();
+    }
+}
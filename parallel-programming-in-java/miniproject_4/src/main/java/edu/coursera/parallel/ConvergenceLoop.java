@@ -0,0 +1,110 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.Phaser;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The parallel iterate-until-converged loop shared by
+ * OneDimAveragingPhaser.runParallelUntilConverged and StencilEngine.run.
+ * <p>
+ * Each task sweeps its own part of the solution, alternating between two
+ * shared arrays, and stores the change it measured in its slot before
+ * arriving at the barrier that ends the sweep. After the barrier every task
+ * combines all the slots in the same order, so all reach the same decision
+ * to stop and no second barrier is needed. The slots alternate between two
+ * rows by iteration parity, so a task storing the next change never
+ * overwrites one a slower task is still reading.
+ */
+final class ConvergenceLoop {
+
+    /**
+     * One task's part of a sweep.
+     */
+    interface Sweep {
+        /**
+         * Compute the task's part of the next iteration and measure how much
+         * it changed.
+         *
+         * @param task Index of the task, from 0 to tasks - 1
+         * @param in Values before the sweep
+         * @param out Receives the values after the sweep
+         * @return The change in the task's part
+         */
+        double sweep(int task, double[] in, double[] out);
+    }
+
+    /**
+     * Default constructor.
+     */
+    private ConvergenceLoop() {
+    }
+
+    /**
+     * Run sweeps on tasks threads until the combined change is no more than
+     * tolerance, or maxIterations sweeps have run. The values after k
+     * iterations are in myVal when k is even and in myNew when it is odd.
+     *
+     * @param myNew An array that starts as the output
+     * @param myVal An array that contains the initial values
+     * @param tasks The number of threads/tasks to run the sweeps on
+     * @param maxIterations The largest number of iterations to run
+     * @param sweep Each task's part of a sweep
+     * @param combine Combines the changes of all tasks, in task order, into
+     *        the change in the whole solution
+     * @param tolerance Change at which to stop, or a negative value to
+     *        always run maxIterations without combining the changes
+     * @return The number of iterations run
+     */
+    static int run(final double[] myNew, final double[] myVal,
+            final int tasks, final int maxIterations, final Sweep sweep,
+            final ToDoubleFunction<double[]> combine,
+            final double tolerance) {
+        final boolean check = tolerance >= 0.0;
+        final double[][] changes = new double[2][tasks];
+        final int[] iterationsRun = new int[1];
+
+        Phaser ph = new Phaser(0);
+        ph.bulkRegister(tasks);
+
+        Thread[] threads = new Thread[tasks];
+
+        for (int ii = 0; ii < tasks; ii++) {
+            final int i = ii;
+
+            threads[ii] = new Thread(() -> {
+                double[] threadPrivateMyVal = myVal;
+                double[] threadPrivateMyNew = myNew;
+
+                int iter = 0;
+                while (iter < maxIterations) {
+                    final double[] slots = changes[iter % 2];
+                    slots[i] = sweep.sweep(i, threadPrivateMyVal,
+                            threadPrivateMyNew);
+                    ph.arriveAndAwaitAdvance(); //barrier and reduction
+
+                    final double[] temp = threadPrivateMyNew;
+                    threadPrivateMyNew = threadPrivateMyVal;
+                    threadPrivateMyVal = temp;
+
+                    iter++;
+                    if (check && combine.applyAsDouble(slots) <= tolerance) {
+                        break;
+                    }
+                }
+                if (i == 0) {
+                    iterationsRun[0] = iter;
+                }
+            });
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        return iterationsRun[0];
+    }
+}
@@ -7,6 +7,32 @@ import java.util.concurrent.Phaser;
  * phasers.
  */
 public final class OneDimAveragingPhaser {
+    /**
+     * Default number of iterations each task advances between barriers in
+     * runParallelTemporalBlocking.
+     */
+    static final int DEFAULT_TIME_BLOCK = 16;
+    /**
+     * Default number of elements in each tile a task advances through a time
+     * block at once: with its halos, two tiles of 4096 doubles take 66 KB,
+     * which stays in L2.
+     */
+    static final int DEFAULT_TILE = 4096;
+
+    /**
+     * Norm of the change in the solution over one iteration, which the
+     * UntilConverged solvers compare with their tolerance.
+     */
+    public enum Norm {
+        /**
+         * Largest absolute change of any element.
+         */
+        MAX,
+        /**
+         * Square root of the sum of the squared changes.
+         */
+        L2
+    }
 
     /**
      * Default constructor.
@@ -67,8 +93,9 @@ public final class OneDimAveragingPhaser {
                 double[] threadPrivateMyNew = myNew;
 
                 for (int iter = 0; iter < iterations; iter++) {
-                    final int left = i * (n / tasks) + 1;
-                    final int right = (i + 1) * (n / tasks);
+                    final int left = ChunkPartitioner.evenStart(i, n, tasks);
+                    final int right = ChunkPartitioner.evenStart(i + 1, n,
+                            tasks) - 1;
 
                     for (int j = left; j <= right; j++) {
                         threadPrivateMyNew[j] = (threadPrivateMyVal[j - 1]
@@ -124,11 +151,22 @@ public final class OneDimAveragingPhaser {
                 double[] threadPrivateMyNew = myNew;
 
                 for (int iter = 0; iter < iterations; iter++) {
-                    final int left = i * (n / tasks) + 1;
-                    final int right = (i + 1) * (n / tasks);
+                    final int left = ChunkPartitioner.evenStart(i, n, tasks);
+                    final int right = ChunkPartitioner.evenStart(i + 1, n,
+                            tasks) - 1;
 
+                    // Neighbours read only the edges once the phase
+                    // advances, so those must be written before arriving
+                    if (left <= right) {
+                        threadPrivateMyNew[left] =
+                                (threadPrivateMyVal[left - 1]
+                                + threadPrivateMyVal[left + 1]) / 2.0;
+                        threadPrivateMyNew[right] =
+                                (threadPrivateMyVal[right - 1]
+                                + threadPrivateMyVal[right + 1]) / 2.0;
+                    }
                     int currentPhase = ph.arrive();
-                    for (int j = left; j <= right; j++) {
+                    for (int j = left + 1; j < right; j++) {
                         threadPrivateMyNew[j] = (threadPrivateMyVal[j - 1]
                                 + threadPrivateMyVal[j + 1]) / 2.0;
                     }
@@ -150,4 +188,559 @@ public final class OneDimAveragingPhaser {
             }
         }
     }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging with
+     * point-to-point synchronization: each task owns a Phaser it alone is
+     * registered on, and before each iteration waits only for the phasers of
+     * its two neighbours to show they finished the previous one, rather than
+     * for every task.
+     * <p>
+     * A task first computes the two edge elements of its chunk, the only
+     * ones its neighbours read, then arrives on its phaser and computes the
+     * rest of the chunk while its neighbours proceed. Neighbouring tasks are
+     * then at most one iteration apart, so a task never overwrites values a
+     * neighbour has yet to read, and tasks further apart run ahead freely.
+     * Chunks differ in size by at most one element, and at most n tasks are
+     * started so that none is empty.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     * iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     */
+    public static void runParallelPointToPoint(final int iterations,
+                                               final double[] myNew,
+                                               final double[] myVal,
+                                               final int n,
+                                               final int tasks) {
+        final int ntasks = Math.min(tasks, n);
+        Phaser[] phs = new Phaser[ntasks];
+        for (int ii = 0; ii < ntasks; ii++) {
+            phs[ii] = new Phaser(1);
+        }
+
+        Thread[] threads = new Thread[ntasks];
+
+        for (int ii = 0; ii < ntasks; ii++) {
+            final int i = ii;
+            final int left = ChunkPartitioner.evenStart(i, n, ntasks);
+            final int right = ChunkPartitioner.evenStart(i + 1, n, ntasks) - 1;
+
+            threads[ii] = new Thread(() -> {
+                double[] threadPrivateMyVal = myVal;
+                double[] threadPrivateMyNew = myNew;
+
+                for (int iter = 0; iter < iterations; iter++) {
+                    threadPrivateMyNew[left] = (threadPrivateMyVal[left - 1]
+                            + threadPrivateMyVal[left + 1]) / 2.0;
+                    threadPrivateMyNew[right] = (threadPrivateMyVal[right - 1]
+                            + threadPrivateMyVal[right + 1]) / 2.0;
+                    final int currentPhase = phs[i].arrive();
+
+                    for (int j = left + 1; j < right; j++) {
+                        threadPrivateMyNew[j] = (threadPrivateMyVal[j - 1]
+                                + threadPrivateMyVal[j + 1]) / 2.0;
+                    }
+                    if (i > 0) {
+                        phs[i - 1].awaitAdvance(currentPhase);
+                    }
+                    if (i < ntasks - 1) {
+                        phs[i + 1].awaitAdvance(currentPhase);
+                    }
+
+                    double[] temp = threadPrivateMyNew;
+                    threadPrivateMyNew = threadPrivateMyVal;
+                    threadPrivateMyVal = temp;
+                }
+            });
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < ntasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging that
+     * rebalances the chunks, using ChunkPartitioner.DEFAULT_REBALANCE_INTERVAL.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     * iterative averaging problem
+     * @param n The size of this problem
+     * @param partitioner Partitioner of elements 1 to n between the tasks
+     */
+    public static void runParallelBalanced(final int iterations,
+                                           final double[] myNew,
+                                           final double[] myVal,
+                                           final int n,
+                                           final ChunkPartitioner partitioner) {
+        runParallelBalanced(iterations, myNew, myVal, n, partitioner,
+                            ChunkPartitioner.DEFAULT_REBALANCE_INTERVAL);
+    }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging that
+     * uses a phaser as a barrier, as runParallelBarrier does, with one task
+     * per chunk of the partitioner. Each task records in the partitioner how
+     * long it took to sweep its chunk and how long it then waited at the
+     * barrier. Every rebalanceInterval iterations, the last task to arrive
+     * rebalances the chunks from the recorded sweep times in the Phaser's
+     * onAdvance, while the others are still held at the barrier, so moving
+     * the boundaries costs no extra synchronization.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     * iterative averaging problem
+     * @param n The size of this problem
+     * @param partitioner Partitioner of elements 1 to n between the tasks
+     * @param rebalanceInterval The number of iterations between rebalances
+     */
+    public static void runParallelBalanced(final int iterations,
+                                           final double[] myNew,
+                                           final double[] myVal,
+                                           final int n,
+                                           final ChunkPartitioner partitioner,
+                                           final int rebalanceInterval) {
+        if (partitioner.getN() != n || rebalanceInterval < 1) {
+            throw new IllegalArgumentException("Partitioner of "
+                    + partitioner.getN() + " elements, rebalance interval "
+                    + rebalanceInterval + ", for a problem of size " + n);
+        }
+        final int tasks = partitioner.getTasks();
+        Phaser ph = new Phaser(0) {
+            @Override
+            protected boolean onAdvance(final int phase,
+                                        final int registeredParties) {
+                if ((phase + 1) % rebalanceInterval == 0) {
+                    partitioner.rebalance();
+                }
+                return false;
+            }
+        };
+        ph.bulkRegister(tasks);
+
+        Thread[] threads = new Thread[tasks];
+
+        for (int ii = 0; ii < tasks; ii++) {
+            final int i = ii;
+
+            threads[ii] = new Thread(() -> {
+                double[] threadPrivateMyVal = myVal;
+                double[] threadPrivateMyNew = myNew;
+
+                for (int iter = 0; iter < iterations; iter++) {
+                    final int left = partitioner.getLeft(i);
+                    final int right = partitioner.getRight(i);
+
+                    final long sweepStart = System.nanoTime();
+                    for (int j = left; j <= right; j++) {
+                        threadPrivateMyNew[j] = (threadPrivateMyVal[j - 1]
+                                + threadPrivateMyVal[j + 1]) / 2.0;
+                    }
+                    final long sweepEnd = System.nanoTime();
+                    partitioner.recordSweep(i, sweepEnd - sweepStart);
+                    ph.arriveAndAwaitAdvance();//barrier
+                    partitioner.recordWait(i, System.nanoTime() - sweepEnd);
+
+                    double[] temp = threadPrivateMyNew;
+                    threadPrivateMyNew = threadPrivateMyVal;
+                    threadPrivateMyVal = temp;
+                }
+            });
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Sequential implementation of one-dimensional iterative averaging that
+     * stops as soon as an iteration changes the solution by no more than
+     * tolerance, measured in the given norm, or after maxIterations.
+     * As in runSequential, the values after k iterations are in myVal when
+     * k is even and in myNew when it is odd.
+     *
+     * @param maxIterations The largest number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     * iterative averaging problem
+     * @param n The size of this problem
+     * @param tolerance Change in the solution at which to stop
+     * @param norm Norm in which to measure the change
+     * @return The number of iterations run
+     */
+    public static int runSequentialUntilConverged(final int maxIterations,
+                                                  final double[] myNew,
+                                                  final double[] myVal,
+                                                  final int n,
+                                                  final double tolerance,
+                                                  final Norm norm) {
+        double[] next = myNew;
+        double[] curr = myVal;
+
+        for (int iter = 0; iter < maxIterations; iter++) {
+            final double change = sweep(next, curr, 1, n, norm);
+            double[] tmp = curr;
+            curr = next;
+            next = tmp;
+
+            if ((norm == Norm.MAX ? change : Math.sqrt(change))
+                    <= tolerance) {
+                return iter + 1;
+            }
+        }
+        return maxIterations;
+    }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging that
+     * stops as soon as an iteration changes the solution by no more than
+     * tolerance, measured in the given norm, or after maxIterations.
+     * <p>
+     * Each task measures the change in its own chunk during the sweep and
+     * the tasks agree on when to stop at the barrier they already wait on,
+     * as described in ConvergenceLoop.
+     * <p>
+     * The elements computed match runSequentialUntilConverged exactly. With
+     * Norm.MAX the iteration counts match too; with Norm.L2 the chunks' sums
+     * are added in a different order, so a change within rounding of the
+     * tolerance may stop one iteration apart.
+     *
+     * @param maxIterations The largest number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     * iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     * @param tolerance Change in the solution at which to stop
+     * @param norm Norm in which to measure the change
+     * @return The number of iterations run
+     */
+    public static int runParallelUntilConverged(final int maxIterations,
+                                                final double[] myNew,
+                                                final double[] myVal,
+                                                final int n,
+                                                final int tasks,
+                                                final double tolerance,
+                                                final Norm norm) {
+        return ConvergenceLoop.run(myNew, myVal, tasks, maxIterations,
+            (i, curr, next) -> sweep(next, curr,
+                    ChunkPartitioner.evenStart(i, n, tasks),
+                    ChunkPartitioner.evenStart(i + 1, n, tasks) - 1, norm),
+            changes -> combine(changes, norm), tolerance);
+    }
+
+    /**
+     * Compute elements left to right of the next iteration and measure how
+     * much they changed.
+     *
+     * @param next Receives the next iteration
+     * @param curr The current iteration
+     * @param left First element to compute
+     * @param right Last element to compute
+     * @param norm Norm in which to measure the change
+     * @return The largest absolute change for Norm.MAX, the sum of the
+     *         squared changes for Norm.L2
+     */
+    private static double sweep(final double[] next, final double[] curr,
+                                final int left, final int right,
+                                final Norm norm) {
+        double change = 0.0;
+        if (norm == Norm.MAX) {
+            for (int j = left; j <= right; j++) {
+                next[j] = (curr[j - 1] + curr[j + 1]) / 2.0;
+                change = Math.max(change, Math.abs(next[j] - curr[j]));
+            }
+        } else {
+            for (int j = left; j <= right; j++) {
+                next[j] = (curr[j - 1] + curr[j + 1]) / 2.0;
+                final double delta = next[j] - curr[j];
+                change += delta * delta;
+            }
+        }
+        return change;
+    }
+
+    /**
+     * Combine the changes measured by sweep over several chunks, in order.
+     *
+     * @param changes The change in each chunk
+     * @param norm Norm the changes were measured in
+     * @return The change in the whole solution
+     */
+    private static double combine(final double[] changes, final Norm norm) {
+        double result = 0.0;
+        for (final double change : changes) {
+            result = norm == Norm.MAX ? Math.max(result, change)
+                    : result + change;
+        }
+        return norm == Norm.MAX ? result : Math.sqrt(result);
+    }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging with
+     * temporal blocking, using DEFAULT_TIME_BLOCK and DEFAULT_TILE.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     * iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     */
+    public static void runParallelTemporalBlocking(final int iterations,
+                                                   final double[] myNew,
+                                                   final double[] myVal,
+                                                   final int n,
+                                                   final int tasks) {
+        runParallelTemporalBlocking(iterations, myNew, myVal, n, tasks,
+                                    DEFAULT_TIME_BLOCK, DEFAULT_TILE);
+    }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging with
+     * temporal blocking: each task advances its chunk timeBlock iterations
+     * between synchronizations instead of one.
+     * <p>
+     * Within a block, a task walks its chunk in tiles and advances each tile
+     * the whole block at once in private buffers, starting from a window
+     * that reaches timeBlock elements past the tile on each side; the window
+     * shrinks by one element per side each iteration, leaving the tile
+     * itself exact (trapezoid tiling). Each block takes two phases of one
+     * Phaser: every task first copies the halo it needs from its neighbours'
+     * chunks, and only once all have done so does any task write its
+     * results back. The copy phase is a fuzzy barrier, overlapped with the
+     * first tile. That is two phases per timeBlock iterations rather than
+     * one per iteration, and a tile's working set stays in cache across the
+     * block instead of the whole array streaming through memory each sweep.
+     * <p>
+     * Every element is computed by the same expression as in runSequential,
+     * on the same inputs, so both arrays end bit-identical to what
+     * runSequential leaves in them, including when n is not a multiple of
+     * tasks.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     * iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     * @param timeBlock The number of iterations between synchronizations
+     * @param tile The number of elements a task advances through a block at
+     * once, raised to timeBlock if smaller
+     */
+    public static void runParallelTemporalBlocking(final int iterations,
+                                                   final double[] myNew,
+                                                   final double[] myVal,
+                                                   final int n,
+                                                   final int tasks,
+                                                   final int timeBlock,
+                                                   final int tile) {
+        if (tasks < 1 || timeBlock < 1 || tile < 1) {
+            throw new IllegalArgumentException("Invalid configuration: "
+                    + tasks + " tasks, time block " + timeBlock + ", tile "
+                    + tile);
+        }
+        Phaser ph = new Phaser(0);
+        ph.bulkRegister(tasks);
+
+        Thread[] threads = new Thread[tasks];
+
+        for (int ii = 0; ii < tasks; ii++) {
+            threads[ii] = new Thread(new TemporalBlockingTask(iterations,
+                    myNew, myVal, n, ChunkPartitioner.evenStart(ii, n, tasks),
+                    ChunkPartitioner.evenStart(ii + 1, n, tasks) - 1, timeBlock,
+                    Math.max(tile, timeBlock), ph));
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * The work of one task of runParallelTemporalBlocking: advancing the
+     * chunk [left, right] of the array one time block at a time.
+     * <p>
+     * Level L of the solution, the values after L iterations, lives in myVal
+     * when L is even and in myNew when L is odd, as in runSequential.
+     */
+    private static final class TemporalBlockingTask implements Runnable {
+        /**
+         * The number of iterations to run.
+         */
+        private final int iterations;
+        /**
+         * Array holding the odd levels.
+         */
+        private final double[] myNew;
+        /**
+         * Array holding the even levels.
+         */
+        private final double[] myVal;
+        /**
+         * The size of the problem.
+         */
+        private final int n;
+        /**
+         * First element of this task's chunk.
+         */
+        private final int left;
+        /**
+         * Last element of this task's chunk, left - 1 if it is empty.
+         */
+        private final int right;
+        /**
+         * The number of iterations between synchronizations.
+         */
+        private final int timeBlock;
+        /**
+         * The number of elements advanced through a block at once.
+         */
+        private final int tile;
+        /**
+         * Phaser shared by all tasks.
+         */
+        private final Phaser ph;
+
+        /**
+         * Constructor.
+         *
+         * @param setIterations The number of iterations to run
+         * @param setMyNew Array holding the odd levels
+         * @param setMyVal Array holding the even levels
+         * @param setN The size of the problem
+         * @param setLeft First element of the chunk
+         * @param setRight Last element of the chunk
+         * @param setTimeBlock The number of iterations between
+         *        synchronizations
+         * @param setTile The number of elements advanced at once, at least
+         *        setTimeBlock
+         * @param setPh Phaser shared by all tasks
+         */
+        TemporalBlockingTask(final int setIterations, final double[] setMyNew,
+                final double[] setMyVal, final int setN, final int setLeft,
+                final int setRight, final int setTimeBlock, final int setTile,
+                final Phaser setPh) {
+            this.iterations = setIterations;
+            this.myNew = setMyNew;
+            this.myVal = setMyVal;
+            this.n = setN;
+            this.left = setLeft;
+            this.right = setRight;
+            this.timeBlock = setTimeBlock;
+            this.tile = setTile;
+            this.ph = setPh;
+        }
+
+        /**
+         * Get the array holding a level.
+         *
+         * @param level Number of iterations run
+         * @return The array holding the values after that many iterations
+         */
+        private double[] levelArray(final int level) {
+            return level % 2 == 0 ? myVal : myNew;
+        }
+
+        @Override
+        public void run() {
+            final int maxWindow = tile + 2 * timeBlock;
+            double[] curr = new double[maxWindow];
+            double[] next = new double[maxWindow];
+            double[] halo = new double[timeBlock];
+            final double[] rightGhost = new double[timeBlock];
+
+            for (int level = 0; level < iterations; level += timeBlock) {
+                final int steps = Math.min(timeBlock, iterations - level);
+                final boolean last = level + steps == iterations;
+                final double[] in = levelArray(level);
+
+                // Copy the halo of level `level` that lies in other chunks
+                int haloLo = Math.max(0, left - steps);
+                System.arraycopy(in, haloLo, halo, 0, left - haloLo);
+                final int ghostHi = Math.min(n + 1, right + steps);
+                System.arraycopy(in, right + 1, rightGhost, 0,
+                        ghostHi - right);
+                final int phase = ph.arrive();
+                boolean awaited = false;
+
+                for (int s = left; s <= right; s += tile) {
+                    final int e = Math.min(right, s + tile - 1);
+                    final int lo = haloLo;
+                    final int hi = Math.min(n + 1, e + steps);
+
+                    // Assemble the window [lo, hi] of level `level`
+                    System.arraycopy(halo, 0, curr, 0, s - lo);
+                    final int inHi = Math.min(hi, right);
+                    System.arraycopy(in, s, curr, s - lo, inHi - s + 1);
+                    if (hi > right) {
+                        System.arraycopy(rightGhost, 0, curr,
+                                right + 1 - lo, hi - right);
+                    }
+                    // Save the next tile's left halo before it is written
+                    haloLo = Math.max(0, e + 1 - steps);
+                    System.arraycopy(curr, haloLo - lo, halo, 0,
+                            e + 1 - haloLo);
+
+                    for (int step = 1; step <= steps; step++) {
+                        final double[] prev = levelArray(level + step - 1);
+                        if (lo == 0) {
+                            curr[0] = prev[0];
+                        }
+                        if (hi == n + 1) {
+                            curr[hi - lo] = prev[n + 1];
+                        }
+                        final int from = lo == 0 ? 1 : step;
+                        final int to = (hi == n + 1 ? n : hi - step) - lo;
+                        for (int j = from; j <= to; j++) {
+                            next[j] = (curr[j - 1] + curr[j + 1]) / 2.0;
+                        }
+                        double[] temp = next;
+                        next = curr;
+                        curr = temp;
+                    }
+
+                    if (!awaited) {
+                        ph.awaitAdvance(phase);
+                        awaited = true;
+                    }
+                    System.arraycopy(curr, s - lo, levelArray(level + steps),
+                            s, e - s + 1);
+                    if (last) {
+                        // Leave the other array as runSequential does
+                        System.arraycopy(next, s - lo,
+                                levelArray(level + steps - 1), s, e - s + 1);
+                    }
+                }
+
+                if (!awaited) {
+                    ph.awaitAdvance(phase);
+                }
+                ph.arriveAndAwaitAdvance();
+            }
+        }
+    }
 }
@@ -0,0 +1,116 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A reusable barrier for a fixed set of parties, tuned for short phases:
+ * a party that is not the last to arrive first spins on the phase counter,
+ * which costs no system call when the others are only microseconds behind,
+ * and parks only once the spin limit runs out. The last party to arrive
+ * advances the phase and unparks only the parties that actually parked.
+ * <p>
+ * Each party is identified by an index below the number of parties and
+ * must always pass the same one.
+ */
+final class SpinParkBarrier {
+    /**
+     * Default number of times a waiting party polls the phase before
+     * parking, when there is more than one processor to spin on.
+     */
+    static final int DEFAULT_SPINS = 1 << 14;
+
+    /**
+     * Number of parties.
+     */
+    private final int parties;
+    /**
+     * Number of polls before parking.
+     */
+    private final int spins;
+    /**
+     * Number of parties yet to arrive in the current phase.
+     */
+    private final AtomicInteger remaining;
+    /**
+     * Thread of each party that is parked or about to park, null otherwise.
+     */
+    private final AtomicReferenceArray<Thread> parked;
+    /**
+     * Number of completed phases.
+     */
+    private volatile int phase;
+
+    /**
+     * Constructor using DEFAULT_SPINS on a multiprocessor and no spinning on
+     * a uniprocessor, where spinning only delays the party being waited for.
+     *
+     * @param setParties Number of parties
+     */
+    SpinParkBarrier(final int setParties) {
+        this(setParties, Runtime.getRuntime().availableProcessors() > 1
+                ? DEFAULT_SPINS : 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param setParties Number of parties
+     * @param setSpins Number of polls before parking
+     */
+    SpinParkBarrier(final int setParties, final int setSpins) {
+        if (setParties < 1 || setSpins < 0) {
+            throw new IllegalArgumentException("Invalid barrier: "
+                    + setParties + " parties, " + setSpins + " spins");
+        }
+        this.parties = setParties;
+        this.spins = setSpins;
+        this.remaining = new AtomicInteger(setParties);
+        this.parked = new AtomicReferenceArray<>(setParties);
+    }
+
+    /**
+     * Arrive at the barrier and wait for every other party to arrive.
+     * Writes made by any party before arriving are visible to every party
+     * after it returns.
+     *
+     * @param party Index of the calling party
+     */
+    void await(final int party) {
+        final int current = phase;
+        if (remaining.decrementAndGet() == 0) {
+            remaining.set(parties);
+            phase = current + 1;
+            for (int i = 0; i < parties; i++) {
+                final Thread waiter = parked.get(i);
+                if (waiter != null) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < spins; i++) {
+            if (phase != current) {
+                return;
+            }
+        }
+        // The releaser writes phase before reading parked, and we write
+        // parked before reading phase, so one of us sees the other
+        parked.set(party, Thread.currentThread());
+        while (phase == current) {
+            LockSupport.park(this);
+        }
+        parked.set(party, null);
+    }
+
+    /**
+     * Get the number of parties.
+     *
+     * @return # of parties
+     */
+    int getParties() {
+        return parties;
+    }
+}
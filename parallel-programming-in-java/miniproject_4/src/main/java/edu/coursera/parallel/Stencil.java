@@ -0,0 +1,167 @@
+package edu.coursera.parallel;
+
+/**
+ * A linear stencil on an N-dimensional grid: the new value of each point is
+ * the weighted sum of the old values at fixed offsets from it, taken in the
+ * order the offsets are given. The radius is the largest offset along any
+ * dimension, and the width of the fixed boundary StencilEngine keeps around
+ * the grid.
+ */
+public final class Stencil {
+    /**
+     * Number of dimensions of the grid.
+     */
+    private final int dims;
+    /**
+     * Offset of each point from the point being updated, one coordinate per
+     * dimension.
+     */
+    private final int[][] offsets;
+    /**
+     * Weight of each point.
+     */
+    private final double[] weights;
+    /**
+     * Largest absolute offset along any dimension.
+     */
+    private final int radius;
+
+    /**
+     * Constructor.
+     *
+     * @param setDims Number of dimensions of the grid
+     * @param setOffsets Offset of each point, setDims coordinates each
+     * @param setWeights Weight of each point
+     */
+    public Stencil(final int setDims, final int[][] setOffsets,
+            final double[] setWeights) {
+        if (setDims < 1 || setOffsets.length == 0
+                || setOffsets.length != setWeights.length) {
+            throw new IllegalArgumentException("Invalid stencil: " + setDims
+                    + " dimensions, " + setOffsets.length + " offsets and "
+                    + setWeights.length + " weights");
+        }
+        int r = 0;
+        this.offsets = new int[setOffsets.length][];
+        for (int p = 0; p < setOffsets.length; p++) {
+            if (setOffsets[p].length != setDims) {
+                throw new IllegalArgumentException("Offset " + p + " has "
+                        + setOffsets[p].length + " coordinates, expected "
+                        + setDims);
+            }
+            offsets[p] = setOffsets[p].clone();
+            for (final int o : offsets[p]) {
+                r = Math.max(r, Math.abs(o));
+            }
+        }
+        this.dims = setDims;
+        this.weights = setWeights.clone();
+        this.radius = r;
+    }
+
+    /**
+     * Create a star stencil: the point itself and the points up to
+     * neighbour.length away along each axis. Points come in order of
+     * distance, then of dimension, the negative side first; the point itself
+     * comes first and is left out when its weight is zero.
+     *
+     * @param dims Number of dimensions of the grid
+     * @param center Weight of the point itself
+     * @param neighbour Weight of the points at distance 1, 2, ... along an
+     *        axis
+     * @return The stencil
+     */
+    public static Stencil star(final int dims, final double center,
+            final double... neighbour) {
+        final int first = center == 0.0 ? 0 : 1;
+        final int points = first + 2 * dims * neighbour.length;
+        final int[][] offsets = new int[points][dims];
+        final double[] weights = new double[points];
+        if (first == 1) {
+            weights[0] = center;
+        }
+        int p = first;
+        for (int r = 1; r <= neighbour.length; r++) {
+            for (int d = 0; d < dims; d++) {
+                offsets[p][d] = -r;
+                weights[p++] = neighbour[r - 1];
+                offsets[p][d] = r;
+                weights[p++] = neighbour[r - 1];
+            }
+        }
+        return new Stencil(dims, offsets, weights);
+    }
+
+    /**
+     * Create the Jacobi stencil for Laplace's equation: the average of the
+     * 2 * dims nearest neighbours. In one dimension this is the update of
+     * OneDimAveragingPhaser.
+     *
+     * @param dims Number of dimensions of the grid
+     * @return The stencil
+     */
+    public static Stencil jacobi(final int dims) {
+        return star(dims, 0.0, 1.0 / (2 * dims));
+    }
+
+    /**
+     * Create the explicit (forward Euler) stencil for the heat equation,
+     * u + alpha * (sum of nearest neighbours - 2 * dims * u), which is
+     * stable for alpha at most 1 / (2 * dims).
+     *
+     * @param dims Number of dimensions of the grid
+     * @param alpha Diffusion coefficient times time step over grid spacing
+     *        squared
+     * @return The stencil
+     */
+    public static Stencil heat(final int dims, final double alpha) {
+        return star(dims, 1.0 - 2 * dims * alpha, alpha);
+    }
+
+    /**
+     * Get the number of dimensions of the grid.
+     *
+     * @return # of dimensions
+     */
+    public int getDims() {
+        return dims;
+    }
+
+    /**
+     * Get the largest absolute offset along any dimension.
+     *
+     * @return The radius
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Get the number of points.
+     *
+     * @return # of points
+     */
+    public int getPoints() {
+        return weights.length;
+    }
+
+    /**
+     * Get the offset of a point.
+     *
+     * @param p Index of the point
+     * @return A copy of its offset, one coordinate per dimension
+     */
+    public int[] getOffset(final int p) {
+        return offsets[p].clone();
+    }
+
+    /**
+     * Get the weight of a point.
+     *
+     * @param p Index of the point
+     * @return Its weight
+     */
+    public double getWeight(final int p) {
+        return weights[p];
+    }
+}
@@ -0,0 +1,278 @@
+package edu.coursera.parallel;
+
+/**
+ * Iterates a Stencil over an N-dimensional grid in parallel, the
+ * generalization of OneDimAveragingPhaser to any number of dimensions,
+ * weights and radius.
+ * <p>
+ * A grid is a flat row-major double array, the last dimension contiguous,
+ * surrounded on every side by a boundary radius points wide whose values
+ * stay fixed, as elements 0 and n + 1 do in the one-dimensional solvers.
+ * Like those, a run alternates between two such arrays: the values after k
+ * iterations are in myVal when k is even and in myNew when it is odd.
+ * <p>
+ * The grid is decomposed into slabs along the first dimension, one per
+ * task. Slabs live in the two shared arrays, so the halo a task reads from
+ * its neighbours' slabs needs no copying: the Phaser barrier ending each
+ * sweep is the halo exchange, making every slab's new values visible to
+ * its neighbours before they are read. The same barrier carries the
+ * convergence test: each task publishes the largest change in its slab
+ * before arriving, and after the barrier every task combines all of them
+ * in the same order and so reaches the same decision to stop.
+ */
+public final class StencilEngine {
+    /**
+     * The stencil.
+     */
+    private final Stencil stencil;
+    /**
+     * Number of interior points along each dimension.
+     */
+    private final int[] shape;
+    /**
+     * Distance in the flat array between neighbours along each dimension.
+     */
+    private final int[] strides;
+    /**
+     * Number of elements in the flat array, boundary included.
+     */
+    private final int paddedLength;
+    /**
+     * Distance in the flat array of each stencil point from the point being
+     * updated.
+     */
+    private final int[] flatOffsets;
+    /**
+     * Weight of each stencil point.
+     */
+    private final double[] weights;
+    /**
+     * Number of threads/tasks.
+     */
+    private final int tasks;
+
+    /**
+     * Constructor.
+     *
+     * @param setShape Number of interior points along each dimension
+     * @param setStencil Stencil, with as many dimensions as setShape
+     * @param setTasks Number of threads/tasks to use
+     */
+    public StencilEngine(final int[] setShape, final Stencil setStencil,
+            final int setTasks) {
+        if (setShape.length != setStencil.getDims() || setTasks < 1) {
+            throw new IllegalArgumentException("Invalid engine: "
+                    + setShape.length + "-dimensional grid, "
+                    + setStencil.getDims() + "-dimensional stencil, "
+                    + setTasks + " tasks");
+        }
+        final int dims = setShape.length;
+        final int radius = setStencil.getRadius();
+        this.stencil = setStencil;
+        this.shape = setShape.clone();
+        this.strides = new int[dims];
+        long length = 1;
+        for (int d = dims - 1; d >= 0; d--) {
+            if (shape[d] < 0) {
+                throw new IllegalArgumentException("Invalid extent "
+                        + shape[d] + " along dimension " + d);
+            }
+            strides[d] = (int) length;
+            length *= shape[d] + 2 * radius;
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Grid too large");
+            }
+        }
+        this.paddedLength = (int) length;
+
+        this.flatOffsets = new int[setStencil.getPoints()];
+        this.weights = new double[setStencil.getPoints()];
+        for (int p = 0; p < weights.length; p++) {
+            final int[] offset = setStencil.getOffset(p);
+            for (int d = 0; d < dims; d++) {
+                flatOffsets[p] += offset[d] * strides[d];
+            }
+            weights[p] = setStencil.getWeight(p);
+        }
+        this.tasks = setTasks;
+    }
+
+    /**
+     * Index in the flat array of a point. Interior points have coordinates
+     * from 0 to shape[d] - 1; the boundary extends radius points past them.
+     *
+     * @param coords Coordinates of the point, one per dimension
+     * @return The index of the point
+     */
+    public int index(final int... coords) {
+        final int radius = stencil.getRadius();
+        int idx = 0;
+        for (int d = 0; d < shape.length; d++) {
+            idx += (coords[d] + radius) * strides[d];
+        }
+        return idx;
+    }
+
+    /**
+     * Run a fixed number of iterations.
+     *
+     * @param myNew A grid that starts as the output
+     * @param myVal A grid that contains the initial values
+     * @param iterations The number of iterations to run
+     */
+    public void run(final double[] myNew, final double[] myVal,
+            final int iterations) {
+        run(myNew, myVal, iterations, -1.0);
+    }
+
+    /**
+     * Iterate until no point changes by more than tolerance in a sweep, or
+     * maxIterations sweeps have run.
+     *
+     * @param myNew A grid that starts as the output
+     * @param myVal A grid that contains the initial values
+     * @param maxIterations The largest number of iterations to run
+     * @param tolerance Largest change in any point at which to stop, or a
+     *        negative value to always run maxIterations and skip computing
+     *        the change
+     * @return The number of iterations run, the last of them the first with
+     *         no change larger than tolerance unless it is maxIterations
+     */
+    public int run(final double[] myNew, final double[] myVal,
+            final int maxIterations, final double tolerance) {
+        if (myNew.length < paddedLength || myVal.length < paddedLength
+                || maxIterations < 0) {
+            throw new IllegalArgumentException("Invalid run: "
+                    + maxIterations + " iterations, grids of "
+                    + myNew.length + " and " + myVal.length
+                    + " elements, expected " + paddedLength);
+        }
+        final boolean check = tolerance >= 0.0;
+        // evenStart numbers the elements from 1, the slabs start from 0
+        return ConvergenceLoop.run(myNew, myVal, tasks, maxIterations,
+            (i, in, out) -> sweep(in, out,
+                    ChunkPartitioner.evenStart(i, shape[0], tasks) - 1,
+                    ChunkPartitioner.evenStart(i + 1, shape[0], tasks) - 1,
+                    check),
+            StencilEngine::max, tolerance);
+    }
+
+    /**
+     * Largest of the published changes, combined in task order.
+     *
+     * @param values Change in each task's slab
+     * @return The largest change
+     */
+    private static double max(final double[] values) {
+        double result = 0.0;
+        for (final double value : values) {
+            result = Math.max(result, value);
+        }
+        return result;
+    }
+
+    /**
+     * Apply the stencil to the interior points whose first coordinate is in
+     * [lo, hi).
+     *
+     * @param in Values before the sweep
+     * @param out Receives the values after the sweep
+     * @param lo First coordinate of the slab
+     * @param hi One past the last coordinate of the slab
+     * @param check Whether to compute the largest change
+     * @return The largest change of any point in the slab, or 0 if check is
+     *         false
+     */
+    private double sweep(final double[] in, final double[] out, final int lo,
+            final int hi, final boolean check) {
+        final int dims = shape.length;
+        final int radius = stencil.getRadius();
+        if (dims == 1) {
+            return sweepRow(in, out, lo + radius, hi + radius, check);
+        }
+
+        final int rowLength = shape[dims - 1];
+        int rowsPerSlice = 1;
+        for (int d = 1; d < dims - 1; d++) {
+            rowsPerSlice *= shape[d];
+        }
+        double change = 0.0;
+        for (int i0 = lo; i0 < hi; i0++) {
+            for (int row = 0; row < rowsPerSlice; row++) {
+                int start = (i0 + radius) * strides[0] + radius;
+                int rest = row;
+                for (int d = dims - 2; d >= 1; d--) {
+                    start += (rest % shape[d] + radius) * strides[d];
+                    rest /= shape[d];
+                }
+                change = Math.max(change, sweepRow(in, out, start,
+                        start + rowLength, check));
+            }
+        }
+        return change;
+    }
+
+    /**
+     * Apply the stencil to a run of points contiguous in the flat array, one
+     * stencil point at a time over the whole run, which accumulates each
+     * sum in the same order as a point-by-point loop would.
+     *
+     * @param in Values before the sweep
+     * @param out Receives the values after the sweep
+     * @param start Index of the first point
+     * @param end One past the index of the last point
+     * @param check Whether to compute the largest change
+     * @return The largest change of any point in the run, or 0 if check is
+     *         false
+     */
+    private double sweepRow(final double[] in, final double[] out,
+            final int start, final int end, final boolean check) {
+        final int offset0 = flatOffsets[0];
+        final double weight0 = weights[0];
+        for (int j = start; j < end; j++) {
+            out[j] = weight0 * in[j + offset0];
+        }
+        for (int p = 1; p < weights.length; p++) {
+            final int offset = flatOffsets[p];
+            final double weight = weights[p];
+            for (int j = start; j < end; j++) {
+                out[j] += weight * in[j + offset];
+            }
+        }
+
+        double change = 0.0;
+        if (check) {
+            for (int j = start; j < end; j++) {
+                change = Math.max(change, Math.abs(out[j] - in[j]));
+            }
+        }
+        return change;
+    }
+
+    /**
+     * Get the stencil.
+     *
+     * @return The stencil
+     */
+    public Stencil getStencil() {
+        return stencil;
+    }
+
+    /**
+     * Get the number of interior points along each dimension.
+     *
+     * @return A copy of the shape
+     */
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    /**
+     * Get the number of elements of a grid, boundary included.
+     *
+     * @return # of elements
+     */
+    public int getPaddedLength() {
+        return paddedLength;
+    }
+}
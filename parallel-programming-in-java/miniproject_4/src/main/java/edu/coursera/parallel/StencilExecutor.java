@@ -0,0 +1,201 @@
+package edu.coursera.parallel;
+
+/**
+ * Runs one-dimensional iterative averaging jobs on a fixed set of worker
+ * threads that stay alive between jobs, rather than starting and joining
+ * a thread per task on every call as OneDimAveragingPhaser does. For short
+ * jobs the thread startup is most of the cost.
+ * <p>
+ * A job is handed over as a small descriptor published through a control
+ * barrier the caller and every worker pass, and a second pass of that
+ * barrier tells the caller the job is done. Workers synchronize between
+ * sweeps on a SpinParkBarrier, which avoids parking when phases are short.
+ * Worker w always computes chunk w, so its part of the arrays stays in the
+ * caches of whichever core it last ran on.
+ * <p>
+ * Jobs are run one at a time; run may be called from any thread. Workers
+ * are daemon threads, but close should be called to stop them.
+ */
+public final class StencilExecutor implements AutoCloseable {
+    /**
+     * Number of worker threads.
+     */
+    private final int workers;
+    /**
+     * Barrier the caller and the workers pass to start and finish each job,
+     * with the caller as the last party.
+     */
+    private final SpinParkBarrier control;
+    /**
+     * Barrier the workers pass between sweeps.
+     */
+    private final SpinParkBarrier sweep;
+    /**
+     * Worker threads.
+     */
+    private final Thread[] threads;
+    /**
+     * Job being run, or null once the executor is closed. Written by the
+     * caller before it passes the control barrier and read by the workers
+     * after, which makes it visible to them.
+     */
+    private Job job;
+    /**
+     * Whether close has been called.
+     */
+    private boolean closed;
+
+    /**
+     * Constructor, starting the workers.
+     *
+     * @param setWorkers Number of worker threads
+     */
+    public StencilExecutor(final int setWorkers) {
+        if (setWorkers < 1) {
+            throw new IllegalArgumentException("Invalid number of workers: "
+                    + setWorkers);
+        }
+        this.workers = setWorkers;
+        this.control = new SpinParkBarrier(setWorkers + 1);
+        this.sweep = new SpinParkBarrier(setWorkers);
+        this.threads = new Thread[setWorkers];
+        for (int w = 0; w < setWorkers; w++) {
+            final int worker = w;
+            threads[w] = new Thread(() -> work(worker),
+                    "stencil-worker-" + w);
+            threads[w].setDaemon(true);
+            threads[w].start();
+        }
+    }
+
+    /**
+     * Run one-dimensional iterative averaging on the workers, leaving both
+     * arrays as OneDimAveragingPhaser.runSequential does.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     * iterative averaging problem
+     * @param n The size of this problem
+     */
+    public synchronized void run(final int iterations, final double[] myNew,
+            final double[] myVal, final int n) {
+        if (closed) {
+            throw new IllegalStateException("Executor is closed");
+        }
+        if (iterations < 0 || n < 0 || myNew.length < n + 2
+                || myVal.length < n + 2) {
+            throw new IllegalArgumentException("Invalid job: " + iterations
+                    + " iterations on " + n + " elements, arrays of "
+                    + myNew.length + " and " + myVal.length);
+        }
+        job = new Job(iterations, myNew, myVal, n);
+        control.await(workers);
+        control.await(workers);
+    }
+
+    /**
+     * Stop the workers and wait for them to exit.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        job = null;
+        control.await(workers);
+        for (final Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Get the number of worker threads.
+     *
+     * @return # of workers
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Body of worker w: wait for a job, run its sweeps over chunk w, and
+     * report back, until the executor is closed.
+     *
+     * @param w Index of the worker
+     */
+    private void work(final int w) {
+        while (true) {
+            control.await(w);
+            final Job current = job;
+            if (current == null) {
+                return;
+            }
+            final int n = current.n;
+            final int left = ChunkPartitioner.evenStart(w, n, workers);
+            final int right = ChunkPartitioner.evenStart(w + 1, n, workers)
+                    - 1;
+            double[] threadPrivateMyVal = current.myVal;
+            double[] threadPrivateMyNew = current.myNew;
+
+            for (int iter = 0; iter < current.iterations; iter++) {
+                for (int j = left; j <= right; j++) {
+                    threadPrivateMyNew[j] = (threadPrivateMyVal[j - 1]
+                            + threadPrivateMyVal[j + 1]) / 2.0;
+                }
+                // The control barrier ends the last sweep
+                if (iter < current.iterations - 1) {
+                    sweep.await(w);
+                }
+
+                double[] temp = threadPrivateMyNew;
+                threadPrivateMyNew = threadPrivateMyVal;
+                threadPrivateMyVal = temp;
+            }
+            control.await(w);
+        }
+    }
+
+    /**
+     * Descriptor of one job.
+     */
+    private static final class Job {
+        /**
+         * The number of iterations to run.
+         */
+        private final int iterations;
+        /**
+         * Array that starts as the output array.
+         */
+        private final double[] myNew;
+        /**
+         * Array that holds the initial input.
+         */
+        private final double[] myVal;
+        /**
+         * The size of the problem.
+         */
+        private final int n;
+
+        /**
+         * Constructor.
+         *
+         * @param setIterations The number of iterations to run
+         * @param setMyNew Array that starts as the output array
+         * @param setMyVal Array that holds the initial input
+         * @param setN The size of the problem
+         */
+        Job(final int setIterations, final double[] setMyNew,
+                final double[] setMyVal, final int setN) {
+            this.iterations = setIterations;
+            this.myNew = setMyNew;
+            this.myVal = setMyVal;
+            this.n = setN;
+        }
+    }
+}
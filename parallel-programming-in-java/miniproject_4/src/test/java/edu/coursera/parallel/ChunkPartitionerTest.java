@@ -0,0 +1,81 @@
+package edu.coursera.parallel;
+
+import junit.framework.TestCase;
+
+public class ChunkPartitionerTest extends TestCase {
+
+    private void checkCovers(final ChunkPartitioner partitioner) {
+        assertEquals(1, partitioner.getLeft(0));
+        for (int i = 1; i < partitioner.getTasks(); i++) {
+            assertEquals(partitioner.getRight(i - 1) + 1, partitioner.getLeft(i));
+        }
+        assertEquals(partitioner.getN(), partitioner.getRight(partitioner.getTasks() - 1));
+    }
+
+    /**
+     * Checks that even chunks cover every element and differ in size by at most one, including when tasks does not
+     * divide n or exceeds it.
+     */
+    public void testEvenSplit() {
+        final int[][] configs = {{1000, 4}, {1001, 7}, {5, 8}, {0, 3}, {1, 1}, {Integer.MAX_VALUE - 2, 3}};
+        for (int[] config : configs) {
+            final ChunkPartitioner partitioner = new ChunkPartitioner(config[0], config[1]);
+            checkCovers(partitioner);
+            int smallest = Integer.MAX_VALUE;
+            int largest = 0;
+            for (int size : partitioner.getChunkSizes()) {
+                smallest = Math.min(smallest, size);
+                largest = Math.max(largest, size);
+            }
+            assertTrue(largest - smallest <= 1);
+        }
+
+        try {
+            new ChunkPartitioner(10, 0);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks that a task sweeping three times slower per element ends up with a third of the others' share.
+     */
+    public void testRebalance() {
+        final int N = 12000;
+        final ChunkPartitioner partitioner = new ChunkPartitioner(N, 4);
+        for (int round = 0; round < 30; round++) {
+            final int[] sizes = partitioner.getChunkSizes();
+            for (int i = 0; i < 4; i++) {
+                partitioner.recordSweep(i, sizes[i] * (i == 1 ? 30L : 10L));
+            }
+            partitioner.rebalance();
+            checkCovers(partitioner);
+        }
+        final int[] sizes = partitioner.getChunkSizes();
+        assertTrue(Math.abs(sizes[1] - 1200) <= 2);
+        assertTrue(Math.abs(sizes[0] - 3600) <= 2);
+        assertTrue(Math.abs(sizes[3] - 3600) <= 2);
+        assertEquals(30, partitioner.getSweeps()[1]);
+
+        // No task is left without elements, however slow it is
+        final ChunkPartitioner skewed = new ChunkPartitioner(10, 5);
+        for (int round = 0; round < 20; round++) {
+            final int[] current = skewed.getChunkSizes();
+            for (int i = 0; i < 5; i++) {
+                skewed.recordSweep(i, current[i] * (i == 4 ? 1000000L : 1L));
+            }
+            skewed.rebalance();
+            checkCovers(skewed);
+            for (int size : skewed.getChunkSizes()) {
+                assertTrue(size >= 1);
+            }
+        }
+
+        partitioner.recordWait(2, 500L);
+        assertEquals(500L, partitioner.getWaitNanos()[2]);
+        partitioner.resetStatistics();
+        assertEquals(0L, partitioner.getWaitNanos()[2]);
+        assertEquals(0L, partitioner.getSweeps()[1]);
+    }
+}
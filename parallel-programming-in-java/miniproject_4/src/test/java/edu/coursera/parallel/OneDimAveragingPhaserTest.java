@@ -126,4 +126,228 @@ public class OneDimAveragingPhaserTest extends TestCase {
                 "run %fx faster than the barrier implementation, but it only achieved %fx speedup", expected, speedup);
         assertTrue(errMsg, speedup >= expected);
     }
+
+    private double[] createRandomArray(final int N, final long seed) {
+        final double[] input = new double[N + 2];
+        final Random rand = new Random(seed);
+        for (int i = 0; i < N + 2; i++) {
+            input[i] = rand.nextDouble();
+        }
+        return input;
+    }
+
+    /**
+     * Checks that temporal blocking leaves both arrays bit-identical to the sequential reference, across sizes that
+     * tasks do not divide, more tasks than elements, iteration counts that are not a multiple of the time block, and
+     * arrays whose boundary values differ.
+     */
+    public void testTemporalBlocking() {
+        final int[][] configs = {
+            // n, tasks, iterations, timeBlock, tile
+            {1000, 4, 100, 16, 64},
+            {1001, 7, 37, 8, 50},
+            {999, 3, 1, 16, 4096},
+            {5, 8, 23, 4, 4},
+            {1, 1, 10, 3, 1},
+            {300, 4, 64, 30, 10},
+            {100000, 6, 51, 16, 4096},
+        };
+        for (int[] config : configs) {
+            final int N = config[0];
+            final double[] myNew = createRandomArray(N, 1);
+            final double[] myVal = createRandomArray(N, 2);
+            final double[] myNewRef = myNew.clone();
+            final double[] myValRef = myVal.clone();
+
+            runSequential(config[2], myNewRef, myValRef, N);
+            OneDimAveragingPhaser.runParallelTemporalBlocking(config[2], myNew, myVal, N, config[1], config[3],
+                    config[4]);
+            checkResult(myNewRef, myNew);
+            checkResult(myValRef, myVal);
+        }
+
+        final double[] myNew = createRandomArray(4096, 3);
+        final double[] myVal = createRandomArray(4096, 4);
+        final double[] myNewRef = myNew.clone();
+        final double[] myValRef = myVal.clone();
+        runSequential(100, myNewRef, myValRef, 4096);
+        OneDimAveragingPhaser.runParallelTemporalBlocking(100, myNew, myVal, 4096, 4);
+        checkResult(myNewRef, myNew);
+        checkResult(myValRef, myVal);
+    }
+
+    /**
+     * Checks that point-to-point synchronization leaves both arrays bit-identical to the sequential reference, with
+     * as many tasks as elements and more tasks than elements.
+     */
+    public void testPointToPoint() {
+        final int[][] configs = {
+            // n, tasks, iterations
+            {1000, 4, 100},
+            {1001, 7, 37},
+            {5, 8, 23},
+            {1, 1, 10},
+            {64, 64, 65},
+        };
+        for (int[] config : configs) {
+            final int N = config[0];
+            final double[] myNew = createRandomArray(N, 1);
+            final double[] myVal = createRandomArray(N, 2);
+            final double[] myNewRef = myNew.clone();
+            final double[] myValRef = myVal.clone();
+
+            runSequential(config[2], myNewRef, myValRef, N);
+            OneDimAveragingPhaser.runParallelPointToPoint(config[2], myNew, myVal, N, config[1]);
+            checkResult(myNewRef, myNew);
+            checkResult(myValRef, myVal);
+        }
+    }
+
+    /**
+     * A reference sequential run that stops once no element changes by more than tolerance, returning the number of
+     * iterations.
+     */
+    private int runSequentialUntilConverged(final int maxIterations, double[] myNew, double[] myVal, final int n,
+                                            final double tolerance) {
+        for (int iter = 0; iter < maxIterations; iter++) {
+            double change = 0.0;
+            for (int j = 1; j <= n; j++) {
+                myNew[j] = (myVal[j - 1] + myVal[j + 1]) / 2.0;
+                change = Math.max(change, Math.abs(myNew[j] - myVal[j]));
+            }
+            double[] tmp = myNew;
+            myNew = myVal;
+            myVal = tmp;
+            if (change <= tolerance) {
+                return iter + 1;
+            }
+        }
+        return maxIterations;
+    }
+
+    /**
+     * Checks that the converging solvers stop at the same iteration as the reference, leaving both arrays
+     * bit-identical to it, and run every iteration when the tolerance is never reached.
+     */
+    public void testUntilConverged() {
+        final int[][] configs = {
+            // n, tasks
+            {100, 4},
+            {101, 7},
+            {5, 8},
+            {1, 1},
+        };
+        for (int[] config : configs) {
+            final int N = config[0];
+            final double[] myNewRef = createRandomArray(N, 1);
+            final double[] myValRef = createRandomArray(N, 2);
+            // Boundaries that differ between the arrays would alternate forever
+            myNewRef[0] = myValRef[0];
+            myNewRef[N + 1] = myValRef[N + 1];
+            final double[] myNewSeq = myNewRef.clone();
+            final double[] myValSeq = myValRef.clone();
+            final double[] myNew = myNewRef.clone();
+            final double[] myVal = myValRef.clone();
+
+            final int refIterations = runSequentialUntilConverged(1000000, myNewRef, myValRef, N, 1e-7);
+            assertTrue(refIterations < 1000000);
+            assertEquals(refIterations, OneDimAveragingPhaser.runSequentialUntilConverged(1000000, myNewSeq,
+                    myValSeq, N, 1e-7, OneDimAveragingPhaser.Norm.MAX));
+            assertEquals(refIterations, OneDimAveragingPhaser.runParallelUntilConverged(1000000, myNew, myVal, N,
+                    config[1], 1e-7, OneDimAveragingPhaser.Norm.MAX));
+            checkResult(myNewRef, myNewSeq);
+            checkResult(myValRef, myValSeq);
+            checkResult(myNewRef, myNew);
+            checkResult(myValRef, myVal);
+        }
+
+        // The L2 norm is at least the largest change, so it stops no earlier
+        final int N = 200;
+        final double[] myNew = createRandomArray(N, 3);
+        final double[] myVal = createRandomArray(N, 4);
+        myNew[0] = myVal[0];
+        myNew[N + 1] = myVal[N + 1];
+        final int maxIterations = OneDimAveragingPhaser.runSequentialUntilConverged(1000000, myNew.clone(),
+                myVal.clone(), N, 1e-8, OneDimAveragingPhaser.Norm.MAX);
+        final int l2Iterations = OneDimAveragingPhaser.runSequentialUntilConverged(1000000, myNew.clone(),
+                myVal.clone(), N, 1e-8, OneDimAveragingPhaser.Norm.L2);
+        final int parallelL2Iterations = OneDimAveragingPhaser.runParallelUntilConverged(1000000, myNew.clone(),
+                myVal.clone(), N, 4, 1e-8, OneDimAveragingPhaser.Norm.L2);
+        assertTrue(l2Iterations >= maxIterations);
+        assertTrue(Math.abs(parallelL2Iterations - l2Iterations) <= 1);
+
+        // A tolerance that is never reached runs every iteration, as runSequential does
+        final double[] myNewRef = myNew.clone();
+        final double[] myValRef = myVal.clone();
+        runSequential(500, myNewRef, myValRef, N);
+        assertEquals(500, OneDimAveragingPhaser.runParallelUntilConverged(500, myNew, myVal, N, 3, -1.0,
+                OneDimAveragingPhaser.Norm.L2));
+        checkResult(myNewRef, myNew);
+        checkResult(myValRef, myVal);
+    }
+
+    /**
+     * Checks that the barrier solvers and the rebalancing solver cover every element when tasks does not divide n,
+     * leaving both arrays bit-identical to the sequential reference, and that after a run at the default rebalance
+     * interval the chunks still tile the array and every task has recorded each sweep and its waits.
+     */
+    public void testBalanced() {
+        final int[][] configs = {
+            // n, tasks, iterations, rebalance interval
+            {1001, 7, 100, 4},
+            {1000, 3, 37, 1},
+            {5, 8, 23, 2},
+            {100000, 4, 200, 16},
+        };
+        for (int[] config : configs) {
+            final int N = config[0];
+            final double[] myNewRef = createRandomArray(N, 1);
+            final double[] myValRef = createRandomArray(N, 2);
+            final double[] myNew = myNewRef.clone();
+            final double[] myVal = myValRef.clone();
+            final double[] myNewBarrier = myNewRef.clone();
+            final double[] myValBarrier = myValRef.clone();
+            final double[] myNewFuzzy = myNewRef.clone();
+            final double[] myValFuzzy = myValRef.clone();
+
+            runSequential(config[2], myNewRef, myValRef, N);
+            final ChunkPartitioner partitioner = new ChunkPartitioner(N, config[1]);
+            OneDimAveragingPhaser.runParallelBalanced(config[2], myNew, myVal, N, partitioner, config[3]);
+            checkResult(myNewRef, myNew);
+            checkResult(myValRef, myVal);
+            assertEquals(config[2], partitioner.getSweeps()[0]);
+
+            OneDimAveragingPhaser.runParallelBarrier(config[2], myNewBarrier, myValBarrier, N, config[1]);
+            checkResult(myNewRef, myNewBarrier);
+            checkResult(myValRef, myValBarrier);
+            OneDimAveragingPhaser.runParallelFuzzyBarrier(config[2], myNewFuzzy, myValFuzzy, N, config[1]);
+            checkResult(myNewRef, myNewFuzzy);
+            checkResult(myValRef, myValFuzzy);
+        }
+
+        final int N = 65536;
+        final int ntasks = 4;
+        final double[] myNewRef = createRandomArray(N, 3);
+        final double[] myValRef = createRandomArray(N, 4);
+        final double[] myNew = myNewRef.clone();
+        final double[] myVal = myValRef.clone();
+        runSequential(500, myNewRef, myValRef, N);
+        final ChunkPartitioner partitioner = new ChunkPartitioner(N, ntasks);
+        OneDimAveragingPhaser.runParallelBalanced(500, myNew, myVal, N, partitioner);
+        checkResult(myNewRef, myNew);
+        checkResult(myValRef, myVal);
+
+        final int[] sizes = partitioner.getChunkSizes();
+        final long[] waits = partitioner.getWaitNanos();
+        final long[] sweeps = partitioner.getSweeps();
+        int next = 1;
+        for (int i = 0; i < ntasks; i++) {
+            assertEquals(next, partitioner.getLeft(i));
+            assertEquals(partitioner.getRight(i) - partitioner.getLeft(i) + 1, sizes[i]);
+            assertTrue(waits[i] >= 0);
+            assertEquals(500, sweeps[i]);
+            next = partitioner.getRight(i) + 1;
+        }
+        assertEquals(N + 1, next);
+    }
 }
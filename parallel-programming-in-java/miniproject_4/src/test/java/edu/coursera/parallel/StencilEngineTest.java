@@ -0,0 +1,154 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class StencilEngineTest extends TestCase {
+    private double[] createRandomGrid(final int length, final long seed) {
+        final double[] input = new double[length];
+        final Random rand = new Random(seed);
+        for (int i = 0; i < length; i++) {
+            input[i] = rand.nextDouble();
+        }
+        return input;
+    }
+
+    /**
+     * A reference sweep that visits every interior point by its coordinates, summing the stencil points in order.
+     * Returns the largest change.
+     */
+    private double referenceSweep(final StencilEngine engine, final double[] in, final double[] out) {
+        final int[] shape = engine.getShape();
+        final Stencil stencil = engine.getStencil();
+        final int[] coords = new int[shape.length];
+        final int[] neighbour = new int[shape.length];
+        double change = 0.0;
+        int total = 1;
+        for (int extent : shape) {
+            total *= extent;
+        }
+        for (int k = 0; k < total; k++) {
+            int rest = k;
+            for (int d = shape.length - 1; d >= 0; d--) {
+                coords[d] = rest % shape[d];
+                rest /= shape[d];
+            }
+            double sum = 0.0;
+            for (int p = 0; p < stencil.getPoints(); p++) {
+                final int[] offset = stencil.getOffset(p);
+                for (int d = 0; d < shape.length; d++) {
+                    neighbour[d] = coords[d] + offset[d];
+                }
+                final double term = stencil.getWeight(p) * in[engine.index(neighbour)];
+                sum = p == 0 ? term : sum + term;
+            }
+            final int idx = engine.index(coords);
+            out[idx] = sum;
+            change = Math.max(change, Math.abs(sum - in[idx]));
+        }
+        return change;
+    }
+
+    /**
+     * A reference run, returning the number of iterations.
+     */
+    private int referenceRun(final StencilEngine engine, double[] myNew, double[] myVal, final int maxIterations,
+                             final double tolerance) {
+        for (int iter = 0; iter < maxIterations; iter++) {
+            final double change = referenceSweep(engine, myVal, myNew);
+            double[] tmp = myNew;
+            myNew = myVal;
+            myVal = tmp;
+            if (tolerance >= 0.0 && change <= tolerance) {
+                return iter + 1;
+            }
+        }
+        return maxIterations;
+    }
+
+    private void checkResult(final double[] ref, final double[] output) {
+        for (int i = 0; i < ref.length; i++) {
+            String msg = "Mismatch on output at element " + i;
+            assertEquals(msg, ref[i], output[i]);
+        }
+    }
+
+    private void checkEngine(final int[] shape, final Stencil stencil, final int tasks, final int iterations,
+                             final double tolerance, final int expectedIterations) {
+        final StencilEngine engine = new StencilEngine(shape, stencil, tasks);
+        final double[] myNew = createRandomGrid(engine.getPaddedLength(), 1);
+        final double[] myVal = createRandomGrid(engine.getPaddedLength(), 2);
+        final double[] myNewRef = myNew.clone();
+        final double[] myValRef = myVal.clone();
+
+        final int refIterations = referenceRun(engine, myNewRef, myValRef, iterations, tolerance);
+        final int ranIterations = engine.run(myNew, myVal, iterations, tolerance);
+        assertEquals(refIterations, ranIterations);
+        if (expectedIterations >= 0) {
+            assertEquals(expectedIterations, ranIterations);
+        }
+        checkResult(myNewRef, myNew);
+        checkResult(myValRef, myVal);
+    }
+
+    /**
+     * Checks 1-, 2- and 3-dimensional stencils of radius 1 and 2 against the reference, with tasks that do not
+     * divide the first dimension and more tasks than slabs.
+     */
+    public void testMatchesReference() {
+        checkEngine(new int[] {100}, Stencil.jacobi(1), 3, 20, -1.0, 20);
+        checkEngine(new int[] {37, 41}, Stencil.jacobi(2), 4, 15, -1.0, 15);
+        checkEngine(new int[] {30, 17}, Stencil.heat(2, 0.2), 7, 9, -1.0, 9);
+        checkEngine(new int[] {3, 50}, Stencil.jacobi(2), 5, 4, -1.0, 4);
+        checkEngine(new int[] {11, 9, 13}, Stencil.heat(3, 0.1), 4, 10, -1.0, 10);
+        checkEngine(new int[] {12, 10, 8}, Stencil.star(3, 0.4, 0.08, 0.02), 3, 7, -1.0, 7);
+        checkEngine(new int[] {20, 20}, new Stencil(2, new int[][] {{-1, -1}, {1, 1}, {-1, 1}, {1, -1}, {0, 2}},
+                new double[] {0.3, 0.3, 0.2, 0.1, 0.1}), 2, 6, -1.0, 6);
+        checkEngine(new int[] {5, 5}, Stencil.jacobi(2), 2, 0, -1.0, 0);
+
+        // In one dimension the Jacobi stencil is the update of OneDimAveragingPhaser
+        final int N = 1000;
+        final StencilEngine engine = new StencilEngine(new int[] {N}, Stencil.jacobi(1), 4);
+        final double[] myNew = createRandomGrid(N + 2, 3);
+        final double[] myVal = createRandomGrid(N + 2, 4);
+        final double[] myNewRef = myNew.clone();
+        final double[] myValRef = myVal.clone();
+        OneDimAveragingPhaser.runSequential(51, myNewRef, myValRef, N);
+        engine.run(myNew, myVal, 51);
+        checkResult(myNewRef, myNew);
+        checkResult(myValRef, myVal);
+
+        try {
+            new StencilEngine(new int[] {4, 4}, Stencil.jacobi(3), 2);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            engine.run(new double[N], myVal, 1);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks that a run stops at the first sweep whose largest change is within the tolerance.
+     */
+    public void testConvergence() {
+        checkEngine(new int[] {24, 24}, Stencil.jacobi(2), 4, 100000, 1e-6, -1);
+        checkEngine(new int[] {8, 8, 8}, Stencil.heat(3, 0.15), 3, 100000, 1e-9, -1);
+        // A tolerance never reached runs every iteration
+        checkEngine(new int[] {24, 24}, Stencil.jacobi(2), 4, 50, 0.0, 50);
+
+        // A stationary grid stops after one sweep
+        final StencilEngine engine = new StencilEngine(new int[] {16, 16}, Stencil.jacobi(2), 4);
+        final double[] myNew = new double[engine.getPaddedLength()];
+        final double[] myVal = new double[engine.getPaddedLength()];
+        Arrays.fill(myNew, 2.0);
+        Arrays.fill(myVal, 2.0);
+        assertEquals(1, engine.run(myNew, myVal, 1000, 0.0));
+    }
+}
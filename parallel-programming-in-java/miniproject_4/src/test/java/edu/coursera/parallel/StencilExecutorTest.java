@@ -0,0 +1,107 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class StencilExecutorTest extends TestCase {
+    private double[] createRandomArray(final int N, final long seed) {
+        final double[] input = new double[N + 2];
+        final Random rand = new Random(seed);
+        for (int i = 0; i < N + 2; i++) {
+            input[i] = rand.nextDouble();
+        }
+        return input;
+    }
+
+    private void checkResult(final double[] ref, final double[] output) {
+        for (int i = 0; i < ref.length; i++) {
+            String msg = "Mismatch on output at element " + i;
+            assertEquals(msg, ref[i], output[i]);
+        }
+    }
+
+    /**
+     * Checks that one executor runs many jobs of different shapes, each leaving both arrays as runSequential does.
+     */
+    public void testMatchesSequential() {
+        final int[][] configs = {
+            // n, iterations
+            {1000, 100},
+            {1001, 37},
+            {3, 23},
+            {1, 10},
+            {5000, 1},
+            {64, 0},
+            {100000, 51},
+        };
+        try (StencilExecutor executor = new StencilExecutor(4)) {
+            assertEquals(4, executor.getWorkers());
+            for (int repeat = 0; repeat < 3; repeat++) {
+                for (int[] config : configs) {
+                    final int N = config[0];
+                    final double[] myNew = createRandomArray(N, 1);
+                    final double[] myVal = createRandomArray(N, 2);
+                    final double[] myNewRef = myNew.clone();
+                    final double[] myValRef = myVal.clone();
+
+                    OneDimAveragingPhaser.runSequential(config[1], myNewRef, myValRef, N);
+                    executor.run(config[1], myNew, myVal, N);
+                    checkResult(myNewRef, myNew);
+                    checkResult(myValRef, myVal);
+                }
+            }
+
+            try {
+                executor.run(10, new double[10], new double[12], 10);
+                fail("Expected an IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            executor.close();
+            executor.close();
+            try {
+                executor.run(10, new double[12], new double[12], 10);
+                fail("Expected an IllegalStateException");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Checks that no party leaves a phase of the barrier before every party has arrived, with and without spinning.
+     */
+    public void testBarrier() throws InterruptedException {
+        for (int spins : new int[] {0, 1000}) {
+            final int parties = 5;
+            final int phases = 2000;
+            final SpinParkBarrier barrier = new SpinParkBarrier(parties, spins);
+            assertEquals(parties, barrier.getParties());
+            final AtomicInteger arrivals = new AtomicInteger();
+            final AtomicInteger errors = new AtomicInteger();
+
+            final Thread[] threads = new Thread[parties];
+            for (int p = 0; p < parties; p++) {
+                final int party = p;
+                threads[p] = new Thread(() -> {
+                    for (int phase = 0; phase < phases; phase++) {
+                        arrivals.incrementAndGet();
+                        barrier.await(party);
+                        if (arrivals.get() < (phase + 1) * parties) {
+                            errors.incrementAndGet();
+                        }
+                        barrier.await(party);
+                    }
+                });
+                threads[p].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(0, errors.get());
+            assertEquals(parties * phases, arrivals.get());
+        }
+    }
+}